@@ -1,6 +1,7 @@
 package ch.unifr.diva.dip.api.components;
 
 import ch.unifr.diva.dip.api.utils.DipThreadPool;
+import ch.unifr.diva.dip.api.utils.WriteBehindQueue;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -21,6 +22,43 @@ public interface ProcessorContext {
 	 */
 	public DipThreadPool getThreadPool();
 
+	/**
+	 * Returns the write-behind queue used to write persistent data of the
+	 * processor in the background.
+	 *
+	 * @return the write-behind queue, or {@code null} if persistent data is to
+	 * be written right away.
+	 */
+	default WriteBehindQueue getWriteBehindQueue() {
+		return null;
+	}
+
+	/**
+	 * Returns the image format used to write images to the directory dedicated
+	 * for persistent data of the processor, overriding the format requested by
+	 * the processor (e.g. {@code BufferedIO.BUFFERED_IMAGE_FORMAT} to write all
+	 * images in the fast binary format, instead of PNG).
+	 *
+	 * @return the image format, or {@code null} to use the format requested by
+	 * the processor.
+	 */
+	default String getImageFormat() {
+		return null;
+	}
+
+	/**
+	 * Returns the format used to write objects (e.g. shapes) to the directory
+	 * dedicated for persistent data of the processor, overriding the format
+	 * requested by the processor (e.g. {@code BinaryCodec.FORMAT} to write all
+	 * supported objects in the compact binary format, instead of XML).
+	 *
+	 * @return the object format, or {@code null} to use the format requested
+	 * by the processor.
+	 */
+	default String getObjectFormat() {
+		return null;
+	}
+
 	/**
 	 * Returns the ID of the page.
 	 *
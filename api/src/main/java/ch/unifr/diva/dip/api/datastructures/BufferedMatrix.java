@@ -1,6 +1,7 @@
 package ch.unifr.diva.dip.api.datastructures;
 
 import ch.unifr.diva.dip.api.utils.ArrayUtils;
+import ch.unifr.diva.dip.api.utils.BufferedIO;
 import java.awt.Transparency;
 import java.awt.color.ColorSpace;
 import java.awt.image.BandedSampleModel;
@@ -18,6 +19,9 @@ import java.awt.image.DataBufferUShort;
 import java.awt.image.PixelInterleavedSampleModel;
 import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * A BufferedMatrix is a BufferedImage with abritrary number of bands,
@@ -258,14 +262,41 @@ public class BufferedMatrix extends BufferedImage {
 	 * @param interleave Interleave mode.
 	 */
 	public BufferedMatrix(int width, int height, int bands, DataType dataType, Interleave interleave) {
+		this(
+				width, height, bands, dataType, interleave,
+				newMatrixDataBuffer(
+						width, height, bands,
+						dataType.dataBufferOrdinal, interleave
+				)
+		);
+	}
+
+	/**
+	 * Creates a {@code BufferedMatrix} backed by the given data buffer (e.g. a
+	 * {@code MappedDataBuffer}).
+	 *
+	 * @param width width of the created image.
+	 * @param height height of the created image.
+	 * @param bands number of bands of the created image.
+	 * @param dataType sample precision.
+	 * @param interleave Interleave mode.
+	 * @param buffer the data buffer. Must be of the given data type, with a
+	 * single bank of {@code width * height * bands} samples for BIP, or
+	 * {@code bands} banks of {@code width * height} samples for BSQ.
+	 */
+	public BufferedMatrix(int width, int height, int bands, DataType dataType, Interleave interleave, DataBuffer buffer) {
 		super(
 				newMatrixColorModel(
 						bands, dataType.dataBufferOrdinal,
 						HAS_ALPHA, IS_ALPHA_PREMULTIPLIED
 				),
-				newMatrixRaster(
-						width, height, bands,
-						dataType.dataBufferOrdinal, interleave
+				Raster.createWritableRaster(
+						newMatrixSampleModel(
+								width, height, bands,
+								dataType.dataBufferOrdinal, interleave
+						),
+						buffer,
+						null
 				),
 				IS_ALPHA_PREMULTIPLIED,
 				null
@@ -278,6 +309,84 @@ public class BufferedMatrix extends BufferedImage {
 		this.bands = bands;
 	}
 
+	// matrices larger than this (in bytes) are created out-of-core
+	private static volatile long outOfCoreThreshold = Runtime.getRuntime().maxMemory() / 4;
+
+	/**
+	 * Sets the size of matrices from which on {@code createBufferedMatrix}
+	 * creates out-of-core matrices.
+	 *
+	 * @param bytes the size in bytes. Use {@code Long.MAX_VALUE} to never
+	 * create out-of-core matrices.
+	 */
+	public static void setOutOfCoreThreshold(long bytes) {
+		outOfCoreThreshold = bytes;
+	}
+
+	/**
+	 * Returns the size of matrices from which on {@code createBufferedMatrix}
+	 * creates out-of-core matrices. Defaults to a quarter of the maximum
+	 * memory of the JVM.
+	 *
+	 * @return the size in bytes.
+	 */
+	public static long getOutOfCoreThreshold() {
+		return outOfCoreThreshold;
+	}
+
+	/**
+	 * Creates a {@code BufferedMatrix}. Matrices larger than the out-of-core
+	 * threshold are backed by a memory-mapped, temporary file (and don't take
+	 * up any heap), smaller ones by arrays on the heap, as usual. The temporary
+	 * file is deleted right after it got mapped; its disk space is freed once
+	 * the matrix is garbage collected (and the mapping released).
+	 *
+	 * @param width width of the created image.
+	 * @param height height of the created image.
+	 * @param bands number of bands of the created image.
+	 * @param dataType sample precision.
+	 * @param interleave Interleave mode.
+	 * @return a BufferedMatrix.
+	 */
+	public static BufferedMatrix createBufferedMatrix(int width, int height, int bands, DataType dataType, Interleave interleave) {
+		final long bytes = (long) width * height * bands * getBytesPerSample(dataType);
+		if (bytes > outOfCoreThreshold) {
+			Path file = null;
+			try {
+				file = Files.createTempFile("dip-", "." + BufferedIO.BUFFERED_MATRIX_FILE_EXTENSION);
+				final BufferedMatrix mat = BufferedIO.createMappedMat(file, width, height, bands, dataType, interleave);
+				deleteTempFile(file);
+				return mat;
+			} catch (IOException ex) {
+				// just try on the heap then...
+				if (file != null) {
+					deleteTempFile(file);
+				}
+			}
+		}
+		return new BufferedMatrix(width, height, bands, dataType, interleave);
+	}
+
+	// the mapping stays valid without a name for the file on POSIX systems,
+	// while mapped files can't be deleted on Windows, so we try again on exit
+	private static void deleteTempFile(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException ex) {
+			file.toFile().deleteOnExit();
+		}
+	}
+
+	/**
+	 * Checks whether this matrix is out-of-core, i.e. backed by a
+	 * memory-mapped file, rather than arrays on the heap.
+	 *
+	 * @return {@code true} if out-of-core, {@code false} otherwise.
+	 */
+	public boolean isOutOfCore() {
+		return getRaster().getDataBuffer() instanceof MappedDataBuffer;
+	}
+
 	/**
 	 * Creates a new {@code BufferedMatrix} with single-precision floats and
 	 * Band-Sequential (BSQ) interleave.
@@ -436,17 +545,6 @@ public class BufferedMatrix extends BufferedImage {
 		};
 	}
 
-	/**
-	 * WritableRaster.
-	 */
-	private static WritableRaster newMatrixRaster(int width, int height, int bands, int dataType, Interleave interleave) {
-		return Raster.createWritableRaster(
-				newMatrixSampleModel(width, height, bands, dataType, interleave),
-				newMatrixDataBuffer(width, height, bands, dataType, interleave),
-				null
-		);
-	}
-
 	/**
 	 * SampleModel.
 	 */
@@ -488,19 +586,22 @@ public class BufferedMatrix extends BufferedImage {
 	 * DataBuffer.
 	 */
 	private static DataBuffer newMatrixDataBuffer(int width, int height, int bands, int dataType, Interleave interleave) {
+		// BSQ: one bank per band, BIP: a single bank with all samples
+		final int size = (interleave == Interleave.BIP) ? width * height * bands : width * height;
+		final int banks = (interleave == Interleave.BIP) ? 1 : bands;
 		switch (dataType) {
 			case 0:
-				return new DataBufferByte(width * height, bands);
+				return new DataBufferByte(size, banks);
 			case 1:
-				return new DataBufferUShort(width * height, bands);
+				return new DataBufferUShort(size, banks);
 			case 2:
-				return new DataBufferShort(width * height, bands);
+				return new DataBufferShort(size, banks);
 			case 3:
-				return new DataBufferInt(width * height, bands);
+				return new DataBufferInt(size, banks);
 			case 4:
-				return new DataBufferFloat(width * height, bands);
+				return new DataBufferFloat(size, banks);
 			case 5:
-				return new DataBufferDouble(width * height, bands);
+				return new DataBufferDouble(size, banks);
 			case 32:
 			default:
 				throw new IllegalArgumentException(
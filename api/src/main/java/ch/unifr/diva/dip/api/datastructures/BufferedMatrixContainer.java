@@ -36,6 +36,15 @@ public class BufferedMatrixContainer {
 		this.bytes = baos.toByteArray();
 	}
 
+	/**
+	 * Creates a new buffered matrix container.
+	 *
+	 * @param bytes the buffered matrix in the binary BufferedMatrix format.
+	 */
+	public BufferedMatrixContainer(byte[] bytes) {
+		this.bytes = bytes;
+	}
+
 	/**
 	 * Returns the wrapped buffered matrix.
 	 *
@@ -0,0 +1,242 @@
+package ch.unifr.diva.dip.api.datastructures;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * An integral image (or summed-area table) of the samples, and of the squared
+ * samples of an image. The sum (or the mean, or the variance) of the samples
+ * in any rectangular window is computed in constant time from four entries of
+ * the tables.
+ *
+ * <p>
+ * The tables have an additional, zeroed first row and column, i.e. entry
+ * {@code (x, y)} holds the sum of all samples left of column {@code x} and
+ * above row {@code y}. Tables are stored band after band, row by row, in
+ * {@code long}s for images with integral samples (exact sums), or in
+ * {@code double}s otherwise. Either the long, or the double tables are
+ * {@code null}.
+ *
+ * <p>
+ * Integral images are rather large (twice the size of the image in 64-bit
+ * samples), hence only meant to be passed between processors, not to be
+ * stored encoded by XML.
+ */
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.NONE)
+public class IntegralImage {
+
+	/**
+	 * Maximum number of entries of the tables (the maximum size of an array).
+	 */
+	public final static int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Width of the image.
+	 */
+	@XmlAttribute
+	final public int width;
+
+	/**
+	 * Height of the image.
+	 */
+	@XmlAttribute
+	final public int height;
+
+	/**
+	 * Number of bands.
+	 */
+	@XmlAttribute
+	final public int numBands;
+
+	/**
+	 * Summed-area tables of the samples of an image with integral samples, or
+	 * {@code null}.
+	 */
+	@XmlElement
+	final public long[] sums;
+
+	/**
+	 * Summed-area tables of the squared samples of an image with integral
+	 * samples, or {@code null}.
+	 */
+	@XmlElement
+	final public long[] squaredSums;
+
+	/**
+	 * Summed-area tables of the samples of an image with floating point
+	 * samples, or {@code null}.
+	 */
+	@XmlElement
+	final public double[] doubleSums;
+
+	/**
+	 * Summed-area tables of the squared samples of an image with floating
+	 * point samples, or {@code null}.
+	 */
+	@XmlElement
+	final public double[] doubleSquaredSums;
+
+	@SuppressWarnings("unused")
+	public IntegralImage() {
+		this(0, 0, 0, true);
+	}
+
+	/**
+	 * Creates a new, zeroed integral image.
+	 *
+	 * @param width width of the image.
+	 * @param height height of the image.
+	 * @param numBands number of bands.
+	 * @param integral {@code true} for an image with integral samples (backed
+	 * by {@code long}s), {@code false} for an image with floating point samples
+	 * (backed by {@code double}s).
+	 */
+	public IntegralImage(int width, int height, int numBands, boolean integral) {
+		this.width = width;
+		this.height = height;
+		this.numBands = numBands;
+		final long size = (long) numBands * (width + 1) * (height + 1);
+		if (size > MAX_SIZE) {
+			throw new IllegalArgumentException(
+					"image too large for an integral image: "
+					+ width + "x" + height + "x" + numBands
+			);
+		}
+		final int n = (int) size;
+		this.sums = integral ? new long[n] : null;
+		this.squaredSums = integral ? new long[n] : null;
+		this.doubleSums = integral ? null : new double[n];
+		this.doubleSquaredSums = integral ? null : new double[n];
+	}
+
+	/**
+	 * Checks whether the integral image is backed by {@code long}s.
+	 *
+	 * @return {@code true} if the integral image is backed by {@code long}s,
+	 * {@code false} if backed by {@code double}s.
+	 */
+	public boolean isIntegral() {
+		return this.sums != null;
+	}
+
+	/**
+	 * Returns the index of an entry in the tables.
+	 *
+	 * @param x the column, in {@code 0..width}.
+	 * @param y the row, in {@code 0..height}.
+	 * @param band the band.
+	 * @return the index of the entry.
+	 */
+	public int index(int x, int y, int band) {
+		return (int) (((long) band * (this.height + 1) + y) * (this.width + 1) + x);
+	}
+
+	/**
+	 * Returns the number of samples in a window, clipped to the image.
+	 *
+	 * @param x0 the first column, inclusive.
+	 * @param y0 the first row, inclusive.
+	 * @param x1 the last column, exclusive.
+	 * @param y1 the last row, exclusive.
+	 * @return the number of samples in the clipped window.
+	 */
+	public int getArea(int x0, int y0, int x1, int y1) {
+		final int w = Math.min(x1, this.width) - Math.max(x0, 0);
+		final int h = Math.min(y1, this.height) - Math.max(y0, 0);
+		return (w > 0 && h > 0) ? w * h : 0;
+	}
+
+	/**
+	 * Returns the sum of the samples in a window, clipped to the image.
+	 *
+	 * @param band the band.
+	 * @param x0 the first column, inclusive.
+	 * @param y0 the first row, inclusive.
+	 * @param x1 the last column, exclusive.
+	 * @param y1 the last row, exclusive.
+	 * @return the sum of the samples in the clipped window.
+	 */
+	public double getSum(int band, int x0, int y0, int x1, int y1) {
+		return sum(this.sums, this.doubleSums, band, x0, y0, x1, y1);
+	}
+
+	/**
+	 * Returns the sum of the squared samples in a window, clipped to the
+	 * image.
+	 *
+	 * @param band the band.
+	 * @param x0 the first column, inclusive.
+	 * @param y0 the first row, inclusive.
+	 * @param x1 the last column, exclusive.
+	 * @param y1 the last row, exclusive.
+	 * @return the sum of the squared samples in the clipped window.
+	 */
+	public double getSquaredSum(int band, int x0, int y0, int x1, int y1) {
+		return sum(this.squaredSums, this.doubleSquaredSums, band, x0, y0, x1, y1);
+	}
+
+	/**
+	 * Returns the mean of the samples in a window, clipped to the image.
+	 *
+	 * @param band the band.
+	 * @param x0 the first column, inclusive.
+	 * @param y0 the first row, inclusive.
+	 * @param x1 the last column, exclusive.
+	 * @param y1 the last row, exclusive.
+	 * @return the mean of the samples in the clipped window, or 0 if the
+	 * window doesn't overlap the image.
+	 */
+	public double getMean(int band, int x0, int y0, int x1, int y1) {
+		final int n = getArea(x0, y0, x1, y1);
+		if (n == 0) {
+			return 0;
+		}
+		return getSum(band, x0, y0, x1, y1) / n;
+	}
+
+	/**
+	 * Returns the (population) variance of the samples in a window, clipped
+	 * to the image.
+	 *
+	 * @param band the band.
+	 * @param x0 the first column, inclusive.
+	 * @param y0 the first row, inclusive.
+	 * @param x1 the last column, exclusive.
+	 * @param y1 the last row, exclusive.
+	 * @return the variance of the samples in the clipped window, or 0 if the
+	 * window doesn't overlap the image.
+	 */
+	public double getVariance(int band, int x0, int y0, int x1, int y1) {
+		final int n = getArea(x0, y0, x1, y1);
+		if (n == 0) {
+			return 0;
+		}
+		final double sum = getSum(band, x0, y0, x1, y1);
+		final double variance = (getSquaredSum(band, x0, y0, x1, y1) - sum * sum / n) / n;
+		// no negative variance due to rounding errors
+		return Math.max(0, variance);
+	}
+
+	private double sum(long[] longs, double[] doubles, int band, int x0, int y0, int x1, int y1) {
+		x0 = Math.max(x0, 0);
+		y0 = Math.max(y0, 0);
+		x1 = Math.min(x1, this.width);
+		y1 = Math.min(y1, this.height);
+		if (x1 <= x0 || y1 <= y0) {
+			return 0;
+		}
+		final int a = index(x0, y0, band);
+		final int b = index(x1, y0, band);
+		final int c = index(x0, y1, band);
+		final int d = index(x1, y1, band);
+		if (longs != null) {
+			return longs[d] - longs[b] - longs[c] + longs[a];
+		}
+		return doubles[d] - doubles[b] - doubles[c] + doubles[a];
+	}
+
+}
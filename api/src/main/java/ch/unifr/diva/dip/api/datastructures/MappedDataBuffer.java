@@ -0,0 +1,241 @@
+package ch.unifr.diva.dip.api.datastructures;
+
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A data buffer backed by a memory-mapped file. The samples are not kept on
+ * the heap, but in the file, split up into tiles (linear chunks of up to
+ * {@code TILE_SIZE} bytes of samples, in bank order) that are mapped into
+ * memory. The operating system's page cache acts as the tile cache:
+ * recently used tiles stay in memory, while least recently used ones get
+ * written back to (or dropped in favour of) the file, s.t. data buffers
+ * larger than the available memory (let alone the heap) can be processed.
+ *
+ * <p>
+ * Supported data types are {@code TYPE_INT}, {@code TYPE_FLOAT}, and
+ * {@code TYPE_DOUBLE}. Samples are stored bank by bank, starting at some
+ * position in the file (e.g. after the header of a binary BufferedMatrix
+ * file). Concurrent access to distinct samples is safe, as usual for data
+ * buffers.
+ */
+public class MappedDataBuffer extends DataBuffer {
+
+	/**
+	 * Maximum size of a tile in bytes. A power of two.
+	 */
+	public final static int TILE_SIZE = 1 << 28;
+
+	private final Path file;
+	private final int shift;
+	private final int mask;
+	private final IntBuffer[] ints;
+	private final FloatBuffer[] floats;
+	private final DoubleBuffer[] doubles;
+
+	/**
+	 * Creates a new data buffer, mapping an existing file, or a new one.
+	 *
+	 * @param file the file. Created, or extended, if necessary.
+	 * @param position the position of the first sample in the file.
+	 * @param order the byte order of the samples.
+	 * @param dataType the data type ({@code TYPE_INT}, {@code TYPE_FLOAT},
+	 * or {@code TYPE_DOUBLE}).
+	 * @param size the size of the banks.
+	 * @param numBanks the number of banks.
+	 * @param writable whether samples can be written (and the file may be
+	 * extended), or not.
+	 * @throws IOException in case of an I/O error.
+	 */
+	public MappedDataBuffer(Path file, long position, ByteOrder order, int dataType, int size, int numBanks, boolean writable) throws IOException {
+		super(dataType, size, numBanks);
+
+		final int bytesPerSample;
+		switch (dataType) {
+			case TYPE_INT:
+			case TYPE_FLOAT:
+				bytesPerSample = 4;
+				break;
+			case TYPE_DOUBLE:
+				bytesPerSample = 8;
+				break;
+			default:
+				throw new IllegalArgumentException(
+						"unsupported data type: " + dataType
+				);
+		}
+
+		this.file = file;
+		final int samplesPerTile = TILE_SIZE / bytesPerSample;
+		this.shift = Integer.numberOfTrailingZeros(samplesPerTile);
+		this.mask = samplesPerTile - 1;
+
+		final long numSamples = (long) size * numBanks;
+		final int numTiles = (int) ((numSamples + samplesPerTile - 1) / samplesPerTile);
+		this.ints = (dataType == TYPE_INT) ? new IntBuffer[numTiles] : null;
+		this.floats = (dataType == TYPE_FLOAT) ? new FloatBuffer[numTiles] : null;
+		this.doubles = (dataType == TYPE_DOUBLE) ? new DoubleBuffer[numTiles] : null;
+
+		// mapping just reserves address space; tiles are paged in on access
+		try (FileChannel channel = writable
+				? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+				: FileChannel.open(file, StandardOpenOption.READ)) {
+			final FileChannel.MapMode mode = writable
+					? FileChannel.MapMode.READ_WRITE
+					: FileChannel.MapMode.READ_ONLY;
+			for (int t = 0; t < numTiles; t++) {
+				final long first = (long) t * samplesPerTile;
+				final long n = Math.min(samplesPerTile, numSamples - first);
+				final ByteBuffer tile = channel.map(
+						mode,
+						position + first * bytesPerSample,
+						n * bytesPerSample
+				).order(order);
+				switch (dataType) {
+					case TYPE_INT:
+						this.ints[t] = tile.asIntBuffer();
+						break;
+					case TYPE_FLOAT:
+						this.floats[t] = tile.asFloatBuffer();
+						break;
+					case TYPE_DOUBLE:
+						this.doubles[t] = tile.asDoubleBuffer();
+						break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the file backing this data buffer. Note that the file may not
+	 * exist anymore, e.g. temporary files get deleted as soon as they're
+	 * mapped (see {@code BufferedMatrix.createBufferedMatrix}).
+	 *
+	 * @return the file.
+	 */
+	public Path getFile() {
+		return this.file;
+	}
+
+	// index of the sample over all banks
+	private long index(int bank, int i) {
+		return (long) bank * this.size + i + this.offsets[bank];
+	}
+
+	private int tile(long index) {
+		return (int) (index >>> this.shift);
+	}
+
+	private int offset(long index) {
+		return (int) (index & this.mask);
+	}
+
+	@Override
+	public int getElem(int bank, int i) {
+		final long index = index(bank, i);
+		switch (this.dataType) {
+			case TYPE_INT:
+				return this.ints[tile(index)].get(offset(index));
+			case TYPE_FLOAT:
+				return (int) this.floats[tile(index)].get(offset(index));
+			default:
+				return (int) this.doubles[tile(index)].get(offset(index));
+		}
+	}
+
+	@Override
+	public void setElem(int bank, int i, int val) {
+		final long index = index(bank, i);
+		switch (this.dataType) {
+			case TYPE_INT:
+				this.ints[tile(index)].put(offset(index), val);
+				break;
+			case TYPE_FLOAT:
+				this.floats[tile(index)].put(offset(index), val);
+				break;
+			default:
+				this.doubles[tile(index)].put(offset(index), val);
+				break;
+		}
+	}
+
+	@Override
+	public float getElemFloat(int bank, int i) {
+		final long index = index(bank, i);
+		switch (this.dataType) {
+			case TYPE_INT:
+				return this.ints[tile(index)].get(offset(index));
+			case TYPE_FLOAT:
+				return this.floats[tile(index)].get(offset(index));
+			default:
+				return (float) this.doubles[tile(index)].get(offset(index));
+		}
+	}
+
+	@Override
+	public void setElemFloat(int bank, int i, float val) {
+		final long index = index(bank, i);
+		switch (this.dataType) {
+			case TYPE_INT:
+				this.ints[tile(index)].put(offset(index), (int) val);
+				break;
+			case TYPE_FLOAT:
+				this.floats[tile(index)].put(offset(index), val);
+				break;
+			default:
+				this.doubles[tile(index)].put(offset(index), val);
+				break;
+		}
+	}
+
+	@Override
+	public double getElemDouble(int bank, int i) {
+		final long index = index(bank, i);
+		switch (this.dataType) {
+			case TYPE_INT:
+				return this.ints[tile(index)].get(offset(index));
+			case TYPE_FLOAT:
+				return this.floats[tile(index)].get(offset(index));
+			default:
+				return this.doubles[tile(index)].get(offset(index));
+		}
+	}
+
+	@Override
+	public void setElemDouble(int bank, int i, double val) {
+		final long index = index(bank, i);
+		switch (this.dataType) {
+			case TYPE_INT:
+				this.ints[tile(index)].put(offset(index), (int) val);
+				break;
+			case TYPE_FLOAT:
+				this.floats[tile(index)].put(offset(index), (float) val);
+				break;
+			default:
+				this.doubles[tile(index)].put(offset(index), val);
+				break;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName()
+				+ "@"
+				+ Integer.toHexString(this.hashCode())
+				+ "{"
+				+ "file=" + this.file
+				+ ", type=" + this.dataType
+				+ ", size=" + this.size
+				+ ", banks=" + this.banks
+				+ "}";
+	}
+
+}
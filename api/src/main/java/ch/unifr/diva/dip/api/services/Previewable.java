@@ -2,6 +2,13 @@ package ch.unifr.diva.dip.api.services;
 
 import ch.unifr.diva.dip.api.components.ProcessorContext;
 import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.AffineTransformOp;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImagingOpException;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import javafx.scene.image.Image;
 
 /**
@@ -48,4 +55,95 @@ public interface Previewable {
 	 */
 	public Image preview(ProcessorContext context, Rectangle bounds);
 
+	/**
+	 * Checks whether the preview is progressive. A progressive preview is
+	 * rendered coarse-to-fine: first at a reduced scale, then at full
+	 * resolution (see {@code preview(context, bounds, scale)}). Previews in
+	 * progress get interrupted once superseded (e.g. by a changed parameter),
+	 * so implementations should check the interrupted flag of the current
+	 * thread, and return early (e.g. with {@code null}) if set.
+	 *
+	 * @return {@code true} if the preview is progressive, {@code false}
+	 * otherwise.
+	 */
+	default boolean isProgressivePreview() {
+		return false;
+	}
+
+	/**
+	 * Returns the processed preview image at the given scale. Only called at
+	 * scales other than 1.0 if {@code isProgressivePreview()} returns
+	 * {@code true}. The preview image covers the given bounds, and gets
+	 * stretched to them, so its size should be about the size of the bounds
+	 * times the scale. Parameters given in pixels (e.g. the size of a filter
+	 * kernel) should be scaled accordingly.
+	 *
+	 * <p>
+	 * The default implementation returns the full resolution preview.
+	 *
+	 * @param context the processor context.
+	 * @param bounds the bounds (or region) to be previewed.
+	 * @param scale the scale of the preview image ({@code 0 < scale <= 1}).
+	 * @return the processed preview image, or {@code null} if no preview image
+	 * can be displayed (or if interrupted).
+	 */
+	default Image preview(ProcessorContext context, Rectangle bounds, double scale) {
+		return preview(context, bounds);
+	}
+
+	/**
+	 * Returns a region of the source image at the given scale. Helper method
+	 * for progressive previews. The image keeps its type (and bands), unless
+	 * it has an indexed color model.
+	 *
+	 * @param source the source image.
+	 * @param bounds the bounds (or region) to be previewed.
+	 * @param scale the scale ({@code 0 < scale <= 1}).
+	 * @return the (scaled) region of the source image.
+	 */
+	public static BufferedImage getPreviewRegion(BufferedImage source, Rectangle bounds, double scale) {
+		final BufferedImage region = source.getSubimage(
+				bounds.x,
+				bounds.y,
+				bounds.width,
+				bounds.height
+		);
+		if (scale >= 1) {
+			return region;
+		}
+		final int width = Math.max(1, (int) Math.round(bounds.width * scale));
+		final int height = Math.max(1, (int) Math.round(bounds.height * scale));
+		final AffineTransformOp op = new AffineTransformOp(
+				AffineTransform.getScaleInstance(
+						width / (double) bounds.width,
+						height / (double) bounds.height
+				),
+				(source.getColorModel() instanceof IndexColorModel)
+						? AffineTransformOp.TYPE_NEAREST_NEIGHBOR
+						: AffineTransformOp.TYPE_BILINEAR
+		);
+		final BufferedImage dst = new BufferedImage(
+				region.getColorModel(),
+				region.getRaster().createCompatibleWritableRaster(width, height),
+				region.isAlphaPremultiplied(),
+				null
+		);
+		try {
+			return op.filter(region, dst);
+		} catch (ImagingOpException ex) {
+			// not supported by the native ops (e.g. float samples): resample NN
+			final Raster src = region.getRaster();
+			final WritableRaster raster = dst.getRaster();
+			final double[] pixel = new double[src.getNumBands()];
+			for (int y = 0; y < height; y++) {
+				final int sy = (int) ((y + 0.5) * bounds.height / height);
+				for (int x = 0; x < width; x++) {
+					final int sx = (int) ((x + 0.5) * bounds.width / width);
+					raster.setPixel(x, y, src.getPixel(sx, sy, pixel));
+				}
+			}
+			return dst;
+		}
+	}
+
 }
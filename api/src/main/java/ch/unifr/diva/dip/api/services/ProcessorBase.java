@@ -6,10 +6,16 @@ import ch.unifr.diva.dip.api.components.OutputPort;
 import ch.unifr.diva.dip.api.components.Port;
 import ch.unifr.diva.dip.api.components.ProcessorContext;
 import ch.unifr.diva.dip.api.parameters.Parameter;
+import ch.unifr.diva.dip.api.ui.TiledImageView;
+import ch.unifr.diva.dip.api.utils.BinaryCodec;
 import ch.unifr.diva.dip.api.utils.BufferedIO;
+import ch.unifr.diva.dip.api.utils.DipThreadPool;
+import ch.unifr.diva.dip.api.utils.WriteBehindQueue;
 import ch.unifr.diva.dip.api.datastructures.BufferedMatrix;
+import ch.unifr.diva.dip.api.datastructures.MappedDataBuffer;
 import ch.unifr.diva.dip.api.utils.XmlUtils;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.FileNotFoundException;
@@ -18,9 +24,13 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.embed.swing.SwingFXUtils;
@@ -38,6 +48,7 @@ import org.slf4j.LoggerFactory;
 public abstract class ProcessorBase implements Processor {
 
 	protected static final org.slf4j.Logger log = LoggerFactory.getLogger(ProcessorBase.class);
+	private static DipThreadPool tileThreadPool;
 
 	/**
 	 * Name of the processor.
@@ -169,7 +180,9 @@ public abstract class ProcessorBase implements Processor {
 
 	/**
 	 * Provides and adds a simple {@code LayerPane} with an {@code ImageView} to
-	 * the processor layer.
+	 * the processor layer. Large images (see {@code TiledImageView.THRESHOLD})
+	 * are displayed by a {@code TiledImageView} instead, s.t. only the visible
+	 * tiles at the current zoom level get materialized.
 	 *
 	 * @param context the processor context.
 	 * @param bufferedImage the image to be displayed in the {@code LayerPane}.
@@ -177,10 +190,33 @@ public abstract class ProcessorBase implements Processor {
 	 * @return the added {@code LayerPane}.
 	 */
 	public static EditorLayerPane provideImageLayer(ProcessorContext context, BufferedImage bufferedImage, String name) {
+		final long pixels = (long) bufferedImage.getWidth() * bufferedImage.getHeight();
+		if (pixels > TiledImageView.THRESHOLD) {
+			return provideLayer(
+					context,
+					new TiledImageView(
+							bufferedImage,
+							getTileThreadPool().getExecutorService()
+					),
+					name
+			);
+		}
 		final Image image = SwingFXUtils.toFXImage(bufferedImage, null);
 		return provideImageLayer(context, image, name);
 	}
 
+	/*
+	 * Tiles are generated on a dedicated, discarding thread pool (rather than
+	 * on the thread pool of the context, busy with processing), s.t. requests
+	 * of stale viewports don't pile up while scrolling or zooming.
+	 */
+	private static synchronized DipThreadPool getTileThreadPool() {
+		if (tileThreadPool == null) {
+			tileThreadPool = DipThreadPool.newDiscardingThreadPool("dip-tile-pool", 2, 1);
+		}
+		return tileThreadPool;
+	}
+
 	/**
 	 * Provides and adds a simple {@code LayerPane} with an {@code ImageView} to
 	 * the processor layer.
@@ -209,7 +245,8 @@ public abstract class ProcessorBase implements Processor {
 	}
 
 	/**
-	 * Writes an object to the savefile.
+	 * Writes an object to the savefile. The object is written as XML, unless
+	 * overruled by the object format of the context.
 	 *
 	 * @param <T> type of the object.
 	 * @param context the processor context.
@@ -217,16 +254,53 @@ public abstract class ProcessorBase implements Processor {
 	 * @param filename the filename of the image.
 	 */
 	public static <T> void writeObject(ProcessorContext context, T obj, String filename) {
-		final Path file = context.getDirectory().resolve(filename);
+		writeObject(context, obj, filename, XmlUtils.XML_FORMAT);
+	}
+
+	/**
+	 * Writes an object to the savefile. The requested format may be overruled
+	 * by the object format of the context, in which case the extension of the
+	 * actual format is appended to the filename (e.g. {@code lines.xml.dipbin},
+	 * see {@code writeBufferedImage}). Such a file is found again by
+	 * {@code readObject}, or removed by {@code deleteFile}, given the
+	 * requested filename.
+	 *
+	 * @param <T> type of the object.
+	 * @param context the processor context.
+	 * @param obj the object. Must be marshallable with JAXB.
+	 * @param filename the filename of the image.
+	 * @param format the format of the object ({@code XmlUtils.XML_FORMAT}, or
+	 * {@code BinaryCodec.FORMAT}).
+	 */
+	public static <T> void writeObject(ProcessorContext context, T obj, String filename, String format) {
+		final String objectFormat = (context.getObjectFormat() == null)
+				? format
+				: context.getObjectFormat();
+		final String extension = getObjectExtension(obj, objectFormat);
+		final Path file = context.getDirectory().resolve(
+				extension.equals(getObjectExtension(obj, format))
+						? filename
+						: filename + "." + extension
+		);
+		// no stale file written in another format before
+		deleteFile(context, filename);
 		try {
-			writeObject(obj, file);
+			writeObject(obj, objectFormat, file);
 		} catch (IOException | JAXBException ex) {
 			log.warn("failed to write {} to file: {}", obj, file, ex);
 		}
 	}
 
+	// the extension of the file an object is written to in the given format
+	private static <T> String getObjectExtension(T obj, String format) {
+		if (BinaryCodec.FORMAT.equalsIgnoreCase(format) && BinaryCodec.canWrite(obj)) {
+			return BinaryCodec.FILE_EXTENSION;
+		}
+		return "xml";
+	}
+
 	/**
-	 * Writes an object to a file.
+	 * Writes an object to a file as XML.
 	 *
 	 * @param <T> type of the object.
 	 * @param obj the object. Must be marshallable with JAXB.
@@ -235,14 +309,36 @@ public abstract class ProcessorBase implements Processor {
 	 * @throws JAXBException
 	 */
 	public static <T> void writeObject(T obj, Path file) throws IOException, JAXBException {
+		writeObject(obj, XmlUtils.XML_FORMAT, file);
+	}
+
+	/**
+	 * Writes an object to a file. Objects that can't be written by the binary
+	 * codec are written as XML instead.
+	 *
+	 * @param <T> type of the object.
+	 * @param obj the object. Must be marshallable with JAXB.
+	 * @param format the format of the object ({@code XmlUtils.XML_FORMAT}, or
+	 * {@code BinaryCodec.FORMAT}).
+	 * @param file the file to write to.
+	 * @throws IOException
+	 * @throws JAXBException
+	 */
+	public static <T> void writeObject(T obj, String format, Path file) throws IOException, JAXBException {
 		deleteFile(file);
+		if (BinaryCodec.FORMAT.equalsIgnoreCase(format) && BinaryCodec.canWrite(obj)) {
+			BinaryCodec.write(obj, Files.newOutputStream(file));
+			return;
+		}
 		try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(file))) {
 			XmlUtils.marshal(obj, stream);
 		}
 	}
 
 	/**
-	 * Reads an object from the savefile.
+	 * Reads an object from the savefile. The object is read from the file with
+	 * the given filename, or from the file it got written to if the requested
+	 * format was overruled (see {@code writeObject}).
 	 *
 	 * @param <T> type of the object.
 	 * @param context the processor context.
@@ -251,19 +347,22 @@ public abstract class ProcessorBase implements Processor {
 	 * @return the object, or {@code null}.
 	 */
 	public static <T> T readObject(ProcessorContext context, String filename, Class<T> clazz) {
-		final Path file = context.getDirectory().resolve(filename);
-		try {
-			return readObject(file, clazz);
-		} catch (FileNotFoundException ex) {
-			return null;
-		} catch (IOException | JAXBException ex) {
-			log.warn("failed to read file: {}", file, ex);
+		for (Path file : getStorageFiles(context, filename)) {
+			try {
+				return readObject(file, clazz);
+			} catch (FileNotFoundException ex) {
+				// try the next one
+			} catch (IOException | JAXBException ex) {
+				log.warn("failed to read file: {}", file, ex);
+				return null;
+			}
 		}
 		return null;
 	}
 
 	/**
-	 * Reads an object from a file.
+	 * Reads an object from a file. The format of the file is recognized by its
+	 * header, so XML and binary files can be read, no matter the filename.
 	 *
 	 * @param <T> type of the object.
 	 * @param file the file to read from.
@@ -275,6 +374,9 @@ public abstract class ProcessorBase implements Processor {
 	public static <T> T readObject(Path file, Class<T> clazz) throws IOException, JAXBException {
 		if (Files.exists(file)) {
 			try (InputStream stream = new BufferedInputStream(Files.newInputStream(file))) {
+				if (BinaryCodec.isBinary(stream)) {
+					return BinaryCodec.read(clazz, stream);
+				}
 				return XmlUtils.unmarshal(clazz, stream);
 			}
 		}
@@ -282,31 +384,118 @@ public abstract class ProcessorBase implements Processor {
 	}
 
 	/**
-	 * Writes a {@code BufferedImage} to the savefile.
+	 * Writes a {@code BufferedImage} to the savefile. The image is written in
+	 * the background if the context has a write-behind queue, so the image
+	 * must not be modified afterwards. The requested format may be overruled
+	 * by the image format of the context, in which case the extension of the
+	 * actual format is appended to the filename (e.g. {@code image.png.bimg}),
+	 * s.t. the extension of a file always matches its format, and no other
+	 * file of the processor gets clobbered. Such a file is found again by
+	 * {@code readBufferedImage}, or removed by {@code deleteFile}, given the
+	 * requested filename.
 	 *
 	 * @param context the processor context.
 	 * @param image the image.
 	 * @param filename the filename of the image.
-	 * @param format the format (or extension) of the image (e.g. "PNG").
+	 * @param format the format (or extension) of the image (e.g. "PNG", or
+	 * {@code BufferedIO.BUFFERED_IMAGE_FORMAT}).
 	 */
 	public static void writeBufferedImage(ProcessorContext context, BufferedImage image, String filename, String format) {
-		final Path file = context.getDirectory().resolve(filename);
+		final String imageFormat = (context.getImageFormat() == null)
+				? format
+				: context.getImageFormat();
+		final String extension = getImageExtension(image, imageFormat);
+		final Path file = context.getDirectory().resolve(
+				extension.equalsIgnoreCase(getImageExtension(image, format))
+						? filename
+						: filename + "." + extension
+		);
+		// no stale file written in another format before
+		deleteFile(context, filename);
+		final WriteBehindQueue queue = context.getWriteBehindQueue();
+		if (queue != null) {
+			queue.write(file, image, getSizeInBytes(image), () -> writeBufferedImage(image, imageFormat, file));
+			return;
+		}
 		try {
-			writeBufferedImage(image, format, file);
+			writeBufferedImage(image, imageFormat, file);
 		} catch (IOException ex) {
 			log.warn("failed to write file: {}", file, ex);
 		}
 	}
 
+	// the extension of the file an image is written to in the given format
+	private static String getImageExtension(BufferedImage image, String format) {
+		if (BufferedIO.BUFFERED_IMAGE_FORMAT.equalsIgnoreCase(format)) {
+			if (BufferedIO.canWriteImage(image)) {
+				return BufferedIO.BUFFERED_IMAGE_FILE_EXTENSION;
+			}
+			if (image instanceof BufferedMatrix) {
+				return BufferedIO.BUFFERED_MATRIX_FILE_EXTENSION;
+			}
+			return "png";
+		}
+		return format.toLowerCase();
+	}
+
 	/**
-	 * Writes a {@code BufferedImage} to a file.
+	 * Returns the files a file of the savefile may be stored as. That's the
+	 * file with the given filename first, followed by the files with the
+	 * extension of a format overruling the requested one appended to the
+	 * filename.
+	 *
+	 * @param context the processor context.
+	 * @param filename the (requested) filename of the file.
+	 * @return the files the file may be stored as.
+	 */
+	public static List<Path> getStorageFiles(ProcessorContext context, String filename) {
+		final Set<String> extensions = new LinkedHashSet<>();
+		extensions.add(BufferedIO.BUFFERED_IMAGE_FILE_EXTENSION);
+		extensions.add(BufferedIO.BUFFERED_MATRIX_FILE_EXTENSION);
+		extensions.add("png");
+		if (context.getImageFormat() != null
+				&& !BufferedIO.BUFFERED_IMAGE_FORMAT.equalsIgnoreCase(context.getImageFormat())) {
+			extensions.add(context.getImageFormat().toLowerCase());
+		}
+		extensions.add(BinaryCodec.FILE_EXTENSION);
+		extensions.add("xml");
+
+		final Path directory = context.getDirectory();
+		final List<Path> files = new ArrayList<>();
+		files.add(directory.resolve(filename));
+		for (String extension : extensions) {
+			files.add(directory.resolve(filename + "." + extension));
+		}
+		return files;
+	}
+
+	/**
+	 * Writes a {@code BufferedImage} to a file. Images that can't be written in
+	 * the binary BufferedImage format are written as {@code BufferedMatrix}, or
+	 * PNG instead.
 	 *
 	 * @param image the image.
-	 * @param format the format (or extension) of the image (e.g. "PNG").
+	 * @param format the format (or extension) of the image (e.g. "PNG", or
+	 * {@code BufferedIO.BUFFERED_IMAGE_FORMAT}).
 	 * @param file the file to write to.
 	 * @throws IOException
 	 */
 	public static void writeBufferedImage(BufferedImage image, String format, Path file) throws IOException {
+		if (BufferedIO.BUFFERED_IMAGE_FORMAT.equalsIgnoreCase(format)) {
+			if (BufferedIO.canWriteImage(image)) {
+				deleteFile(file);
+				// DON'T os.close(); see writeBufferedMatrix. Samples are written
+				// raw, since the zip file system compresses its entries anyways
+				final OutputStream os = new BufferedOutputStream(Files.newOutputStream(file));
+				BufferedIO.writeImage(image, os, BufferedIO.Compression.NONE);
+				return;
+			}
+			if (image instanceof BufferedMatrix) {
+				writeBufferedMatrix((BufferedMatrix) image, file);
+				return;
+			}
+			format = "PNG";
+		}
 		deleteFile(file);
 		try (OutputStream os = Files.newOutputStream(file)) {
 			ImageIO.write(image, format, os);
@@ -314,26 +503,36 @@ public abstract class ProcessorBase implements Processor {
 	}
 
 	/**
-	 * Reads a {@code BufferedImage} from the savefile.
+	 * Reads a {@code BufferedImage} from the savefile. The image is read from
+	 * the file with the given filename, or from the file it got written to if
+	 * the requested format was overruled (see {@code writeBufferedImage}).
 	 *
 	 * @param context the processor context.
 	 * @param filename the filename of the image.
 	 * @return the image, or {@code null}.
 	 */
 	public static BufferedImage readBufferedImage(ProcessorContext context, String filename) {
-		final Path file = context.getDirectory().resolve(filename);
-		try {
-			return readBufferedImage(file);
-		} catch (FileNotFoundException ex) {
-			return null;
-		} catch (IOException ex) {
-			log.warn("failed to read file: {}", file, ex);
+		for (Path file : getStorageFiles(context, filename)) {
+			final BufferedImage pending = getPending(context, file, BufferedImage.class);
+			if (pending != null) {
+				return pending;
+			}
+			try {
+				return readBufferedImage(file);
+			} catch (FileNotFoundException ex) {
+				// try the next one
+			} catch (IOException ex) {
+				log.warn("failed to read file: {}", file, ex);
+				return null;
+			}
 		}
 		return null;
 	}
 
 	/**
-	 * Reads a {@code BufferedImage} from a file.
+	 * Reads a {@code BufferedImage} from a file. The format of the file is
+	 * recognized by its header, so binary BufferedImage and BufferedMatrix
+	 * files can be read, no matter the filename.
 	 *
 	 * @param file the file to read from.
 	 * @return the image.
@@ -341,7 +540,14 @@ public abstract class ProcessorBase implements Processor {
 	 */
 	public static BufferedImage readBufferedImage(Path file) throws IOException {
 		if (Files.exists(file)) {
-			try (InputStream is = Files.newInputStream(file)) {
+			try (InputStream is = new BufferedInputStream(Files.newInputStream(file))) {
+				final String format = BufferedIO.peekFormat(is);
+				if (BufferedIO.BUFFERED_IMAGE_FORMAT.equals(format)) {
+					return BufferedIO.readImage(is);
+				}
+				if (BufferedIO.BUFFERED_MATRIX_FILE_EXTENSION.equals(format)) {
+					return BufferedIO.readMat(is);
+				}
 				return ImageIO.read(is);
 			}
 		}
@@ -349,7 +555,9 @@ public abstract class ProcessorBase implements Processor {
 	}
 
 	/**
-	 * Writes a {@code BufferedMatrix} to the savefile.
+	 * Writes a {@code BufferedMatrix} to the savefile. The image/matrix is
+	 * written in the background if the context has a write-behind queue, so
+	 * the image/matrix must not be modified afterwards.
 	 *
 	 * @param context the processor context.
 	 * @param mat the image/matrix.
@@ -357,6 +565,11 @@ public abstract class ProcessorBase implements Processor {
 	 */
 	public static void writeBufferedMatrix(ProcessorContext context, BufferedMatrix mat, String filename) {
 		final Path file = context.getDirectory().resolve(filename);
+		final WriteBehindQueue queue = context.getWriteBehindQueue();
+		if (queue != null) {
+			queue.write(file, mat, getSizeInBytes(mat), () -> writeBufferedMatrix(mat, file));
+			return;
+		}
 		try {
 			writeBufferedMatrix(mat, file);
 		} catch (IOException ex) {
@@ -403,24 +616,54 @@ public abstract class ProcessorBase implements Processor {
 	}
 
 	/**
-	 * Reads a {@code BufferedMatrix} from the savefile.
+	 * Reads a {@code BufferedMatrix} from the savefile. The image/matrix is
+	 * read from the file with the given filename, or from the file it got
+	 * written to by {@code writeBufferedImage} if the requested format was
+	 * overruled.
 	 *
 	 * @param context the processor context.
 	 * @param filename the filename of the image/matrix.
 	 * @return the image/matrix, or {@code null}.
 	 */
 	public static BufferedMatrix readBufferedMatrix(ProcessorContext context, String filename) {
-		final Path file = context.getDirectory().resolve(filename);
-		try {
-			return readBufferedMatrix(file);
-		} catch (FileNotFoundException ex) {
-			return null;
-		} catch (IOException ex) {
-			log.warn("failed to read file: {}", file, ex);
+		for (Path file : getStorageFiles(context, filename)) {
+			final BufferedMatrix pending = getPending(context, file, BufferedMatrix.class);
+			if (pending != null) {
+				return pending;
+			}
+			try {
+				return readBufferedMatrix(file);
+			} catch (FileNotFoundException ex) {
+				// try the next one
+			} catch (IOException ex) {
+				log.warn("failed to read file: {}", file, ex);
+				return null;
+			}
 		}
 		return null;
 	}
 
+	private static <T> T getPending(ProcessorContext context, Path file, Class<T> clazz) {
+		final WriteBehindQueue queue = context.getWriteBehindQueue();
+		return (queue == null) ? null : queue.get(file, clazz);
+	}
+
+	/**
+	 * Returns the (approximate) size of an image in memory.
+	 *
+	 * @param image the image.
+	 * @return the size of the image in bytes (on the heap, so 0 for
+	 * out-of-core images).
+	 */
+	public static long getSizeInBytes(BufferedImage image) {
+		final DataBuffer buffer = image.getRaster().getDataBuffer();
+		if (buffer instanceof MappedDataBuffer) {
+			return 0;
+		}
+		final long bytesPerElement = Math.max(1, DataBuffer.getDataTypeSize(buffer.getDataType()) / 8);
+		return (long) buffer.getSize() * buffer.getNumBanks() * bytesPerElement;
+	}
+
 	/**
 	 * Reads a {@code BufferedMatrix} from a file.
 	 *
@@ -505,7 +748,8 @@ public abstract class ProcessorBase implements Processor {
 	}
 
 	/**
-	 * Removes a file from the savefile (if it exists).
+	 * Removes a file from the savefile (if it exists), no matter the format it
+	 * got written in (see {@code getStorageFiles}).
 	 *
 	 * @param context the processor context.
 	 * @param filename the filename of the file.
@@ -513,13 +757,19 @@ public abstract class ProcessorBase implements Processor {
 	 * {@code false} otherwise.
 	 */
 	public static boolean deleteFile(ProcessorContext context, String filename) {
-		final Path file = context.getDirectory().resolve(filename);
-		try {
-			return deleteFile(file);
-		} catch (IOException ex) {
-			log.warn("failed to remove processor file: {}", file, ex);
+		final WriteBehindQueue queue = context.getWriteBehindQueue();
+		boolean deleted = false;
+		for (Path file : getStorageFiles(context, filename)) {
+			if (queue != null) {
+				queue.discard(file);
+			}
+			try {
+				deleted |= deleteFile(file);
+			} catch (IOException ex) {
+				log.warn("failed to remove processor file: {}", file, ex);
+			}
 		}
-		return false;
+		return deleted;
 	}
 
 	/**
@@ -0,0 +1,520 @@
+package ch.unifr.diva.dip.api.ui;
+
+import ch.unifr.diva.dip.api.utils.ImagePyramid;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Region;
+import javafx.scene.transform.Transform;
+
+/**
+ * A tiled, multi-resolution image view for (very) large images. Only the tiles
+ * visible in the viewport are materialized as JavaFX images, and at the level
+ * of the image pyramid that matches the current zoom factor. Tiles are
+ * generated lazily on a background executor, and kept in a least recently
+ * used (LRU) tile cache shared by all tiled image views. The cache identifies
+ * tiles by the id of their image pyramid (not holding on to the pyramid, let
+ * alone its image), and a view purges its tiles once it leaves the scene.
+ *
+ * <p>
+ * The viewport is derived from the scene graph: the bounds of the scene,
+ * clipped by the clips of all ancestors (e.g. the viewport of a scroll pane),
+ * while the zoom factor is given by the scale of the local to scene transform.
+ * A coarse preview of the whole image (the last level of the pyramid) is
+ * displayed below the tiles, until these are ready.
+ *
+ * <p>
+ * Tiles are requested newest first, and the executor may silently discard
+ * tasks (e.g. a discarding thread pool, see
+ * {@code DipThreadPool.newDiscardingThreadPool}): a task doesn't run a request
+ * of its own, but all requests (of all views) queued on its executor so far.
+ * Since such an executor keeps the newest task, no request gets lost.
+ *
+ * <p>
+ * Compared to an {@code ImageView} of the full-resolution image, this saves
+ * the conversion of the whole image, and most of the texture memory. Use it
+ * for images above {@code THRESHOLD} pixels.
+ */
+public class TiledImageView extends Region {
+
+	/**
+	 * Number of pixels above which an image should be displayed by a tiled
+	 * image view, rather than by a simple {@code ImageView}.
+	 */
+	public final static long THRESHOLD = 2048L * 2048L;
+
+	private final static TileCache cache = new TileCache(defaultCapacity());
+	private final static Map<Executor, Deque<Runnable>> requests = new WeakHashMap<>();
+
+	private final ImagePyramid pyramid;
+	private final Executor executor;
+	private final ImageView preview;
+	private final Map<TileKey, ImageView> tiles;
+	private final Set<TileKey> pending;
+	private volatile Set<TileKey> wanted;
+	private final List<Observable> observed;
+	private boolean updateScheduled;
+
+	/**
+	 * Creates a new tiled image view.
+	 *
+	 * @param image the image.
+	 * @param executor the executor to generate the tiles on.
+	 */
+	public TiledImageView(BufferedImage image, Executor executor) {
+		this(new ImagePyramid(image), executor);
+	}
+
+	/**
+	 * Creates a new tiled image view.
+	 *
+	 * @param pyramid the image pyramid.
+	 * @param executor the executor to generate the tiles on.
+	 */
+	public TiledImageView(ImagePyramid pyramid, Executor executor) {
+		this.pyramid = pyramid;
+		this.executor = executor;
+		this.tiles = new HashMap<>();
+		this.pending = new HashSet<>();
+		this.wanted = Collections.emptySet();
+		this.observed = new ArrayList<>();
+
+		this.preview = new ImageView();
+		this.preview.setFitWidth(pyramid.getWidth());
+		this.preview.setFitHeight(pyramid.getHeight());
+		this.preview.setManaged(false);
+		getChildren().add(this.preview);
+
+		setMinSize(pyramid.getWidth(), pyramid.getHeight());
+		setPrefSize(pyramid.getWidth(), pyramid.getHeight());
+		setMaxSize(pyramid.getWidth(), pyramid.getHeight());
+
+		localToSceneTransformProperty().addListener(updateListener);
+		layoutBoundsProperty().addListener(updateListener);
+		sceneProperty().addListener(observerListener);
+		sceneProperty().addListener((e) -> {
+			if (getScene() == null) {
+				purge();
+			}
+		});
+		parentProperty().addListener(observerListener);
+
+		final int last = pyramid.getNumLevels() - 1;
+		submit(() -> {
+			final Image image = SwingFXUtils.toFXImage(pyramid.getLevel(last), null);
+			Platform.runLater(() -> this.preview.setImage(image));
+		});
+	}
+
+	/**
+	 * Returns the image pyramid.
+	 *
+	 * @return the image pyramid.
+	 */
+	public ImagePyramid getPyramid() {
+		return this.pyramid;
+	}
+
+	/**
+	 * Sets the capacity of the tile cache shared by all tiled image views.
+	 *
+	 * @param capacity the maximum number of tiles to keep.
+	 */
+	public static void setCacheCapacity(int capacity) {
+		cache.setCapacity(capacity);
+	}
+
+	/**
+	 * Returns the capacity of the tile cache shared by all tiled image views.
+	 *
+	 * @return the maximum number of tiles to keep.
+	 */
+	public static int getCacheCapacity() {
+		return cache.getCapacity();
+	}
+
+	// an eighth of the heap, given (worst-case) 4 bytes per pixel
+	private static int defaultCapacity() {
+		final long tileBytes = 4L * ImagePyramid.DEFAULT_TILE_SIZE * ImagePyramid.DEFAULT_TILE_SIZE;
+		final long capacity = Runtime.getRuntime().maxMemory() / 8 / tileBytes;
+		return (int) Math.max(256, Math.min(4096, capacity));
+	}
+
+	/*
+	 * Removes all tiles of this view, from the view and the cache. Tiles are
+	 * generated again once the view is back in a scene.
+	 */
+	private void purge() {
+		this.wanted = Collections.emptySet();
+		for (ImageView view : this.tiles.values()) {
+			getChildren().remove(view);
+		}
+		this.tiles.clear();
+		cache.removeAll(this.pyramid.getId());
+	}
+
+	private final InvalidationListener updateListener = (e) -> requestUpdate();
+
+	private final InvalidationListener observerListener = (e) -> {
+		observeAncestors();
+		requestUpdate();
+	};
+
+	/*
+	 * The viewport also depends on the visibility, and the clips of all
+	 * ancestors, so we need to listen to them as well (and to their parents,
+	 * to keep track of changes in the scene graph).
+	 */
+	private void observeAncestors() {
+		for (Observable o : this.observed) {
+			o.removeListener(updateListener);
+			o.removeListener(observerListener);
+		}
+		this.observed.clear();
+
+		final Scene scene = getScene();
+		if (scene != null) {
+			observe(scene.widthProperty(), updateListener);
+			observe(scene.heightProperty(), updateListener);
+		}
+		for (Node node = this; node != null; node = node.getParent()) {
+			observe(node.visibleProperty(), updateListener);
+			if (node != this) {
+				observe(node.parentProperty(), observerListener);
+				observe(node.clipProperty(), observerListener);
+				if (node.getClip() != null) {
+					observe(node.getClip().boundsInParentProperty(), updateListener);
+				}
+			}
+		}
+	}
+
+	private void observe(Observable observable, InvalidationListener listener) {
+		observable.addListener(listener);
+		this.observed.add(observable);
+	}
+
+	private void requestUpdate() {
+		if (this.updateScheduled) {
+			return;
+		}
+		this.updateScheduled = true;
+		Platform.runLater(this::update);
+	}
+
+	private boolean isTreeVisible() {
+		for (Node node = this; node != null; node = node.getParent()) {
+			if (!node.isVisible()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// the visible region in local coordinates, or null if nothing is visible
+	private Bounds getVisibleBounds() {
+		final Scene scene = getScene();
+		if (scene == null || !isTreeVisible()) {
+			return null;
+		}
+		Bounds bounds = new BoundingBox(0, 0, scene.getWidth(), scene.getHeight());
+		for (Parent parent = getParent(); parent != null; parent = parent.getParent()) {
+			final Node clip = parent.getClip();
+			if (clip != null) {
+				bounds = intersect(bounds, parent.localToScene(clip.getBoundsInParent()));
+				if (bounds == null) {
+					return null;
+				}
+			}
+		}
+		final Bounds local = sceneToLocal(bounds);
+		if (local == null) {
+			return null;
+		}
+		return intersect(
+				local,
+				new BoundingBox(0, 0, this.pyramid.getWidth(), this.pyramid.getHeight())
+		);
+	}
+
+	private static Bounds intersect(Bounds a, Bounds b) {
+		final double minX = Math.max(a.getMinX(), b.getMinX());
+		final double minY = Math.max(a.getMinY(), b.getMinY());
+		final double maxX = Math.min(a.getMaxX(), b.getMaxX());
+		final double maxY = Math.min(a.getMaxY(), b.getMaxY());
+		if (minX >= maxX || minY >= maxY) {
+			return null;
+		}
+		return new BoundingBox(minX, minY, maxX - minX, maxY - minY);
+	}
+
+	private void update() {
+		this.updateScheduled = false;
+
+		final Bounds bounds = getVisibleBounds();
+		if (bounds == null) {
+			this.wanted = Collections.emptySet();
+			return;
+		}
+
+		final Transform t = getLocalToSceneTransform();
+		final double zoom = Math.hypot(t.getMxx(), t.getMyx());
+		final int level = this.pyramid.levelOf(zoom);
+		final double tileWidth = this.pyramid.getTileSize() * this.pyramid.getScaleX(level);
+		final double tileHeight = this.pyramid.getTileSize() * this.pyramid.getScaleY(level);
+		final int minColumn = (int) Math.floor(bounds.getMinX() / tileWidth);
+		final int maxColumn = Math.min(
+				this.pyramid.getColumns(level) - 1,
+				(int) Math.ceil(bounds.getMaxX() / tileWidth) - 1
+		);
+		final int minRow = (int) Math.floor(bounds.getMinY() / tileHeight);
+		final int maxRow = Math.min(
+				this.pyramid.getRows(level) - 1,
+				(int) Math.ceil(bounds.getMaxY() / tileHeight) - 1
+		);
+
+		final Set<TileKey> keys = new HashSet<>();
+		for (int row = minRow; row <= maxRow; row++) {
+			for (int column = minColumn; column <= maxColumn; column++) {
+				keys.add(new TileKey(this.pyramid.getId(), level, column, row));
+			}
+		}
+		this.wanted = keys;
+
+		for (TileKey key : keys) {
+			if (this.tiles.containsKey(key)) {
+				cache.get(key); // mark as recently used
+				continue;
+			}
+			final Image image = cache.get(key);
+			if (image != null) {
+				showTile(key, image);
+			} else if (!this.pending.contains(key)) {
+				requestTile(key);
+			}
+		}
+
+		removeTiles(bounds);
+	}
+
+	/*
+	 * Tiles no longer wanted are kept as long as they're visible and some
+	 * wanted tiles are still missing, s.t. we don't fall back to the coarse
+	 * preview while zooming.
+	 */
+	private void removeTiles(Bounds bounds) {
+		final Set<TileKey> keys = this.wanted;
+		final boolean complete = this.tiles.keySet().containsAll(keys);
+		final List<TileKey> remove = new ArrayList<>();
+		for (Map.Entry<TileKey, ImageView> e : this.tiles.entrySet()) {
+			if (keys.contains(e.getKey())) {
+				continue;
+			}
+			if (complete || bounds == null || !e.getValue().getBoundsInParent().intersects(bounds)) {
+				remove.add(e.getKey());
+			}
+		}
+		for (TileKey key : remove) {
+			getChildren().remove(this.tiles.remove(key));
+		}
+	}
+
+	private void requestTile(TileKey key) {
+		this.pending.add(key);
+		final boolean submitted = submit(() -> {
+			if (!this.wanted.contains(key)) {
+				Platform.runLater(() -> this.pending.remove(key));
+				return;
+			}
+			final Image image = SwingFXUtils.toFXImage(
+					this.pyramid.getTile(key.level, key.column, key.row),
+					null
+			);
+			Platform.runLater(() -> onTileReady(key, image));
+		});
+		if (!submitted) {
+			this.pending.remove(key);
+		}
+	}
+
+	private boolean submit(Runnable runnable) {
+		final Deque<Runnable> queue = getRequests(this.executor);
+		queue.addFirst(runnable);
+		try {
+			this.executor.execute(() -> runRequests(queue));
+			return true;
+		} catch (RejectedExecutionException ex) {
+			queue.remove(runnable);
+			return false;
+		}
+	}
+
+	private static Deque<Runnable> getRequests(Executor executor) {
+		synchronized (requests) {
+			Deque<Runnable> queue = requests.get(executor);
+			if (queue == null) {
+				queue = new ConcurrentLinkedDeque<>();
+				requests.put(executor, queue);
+			}
+			return queue;
+		}
+	}
+
+	private static void runRequests(Deque<Runnable> queue) {
+		Runnable runnable;
+		while ((runnable = queue.pollFirst()) != null) {
+			runnable.run();
+		}
+	}
+
+	private void onTileReady(TileKey key, Image image) {
+		this.pending.remove(key);
+		if (getScene() == null) {
+			// purged in the meantime
+			return;
+		}
+		cache.put(key, image);
+		if (this.wanted.contains(key) && !this.tiles.containsKey(key)) {
+			showTile(key, image);
+			removeTiles(getVisibleBounds());
+		}
+	}
+
+	private void showTile(TileKey key, Image image) {
+		final double scaleX = this.pyramid.getScaleX(key.level);
+		final double scaleY = this.pyramid.getScaleY(key.level);
+		final int size = this.pyramid.getTileSize();
+		final ImageView view = new ImageView(image);
+		view.setManaged(false);
+		view.setLayoutX(key.column * size * scaleX);
+		view.setLayoutY(key.row * size * scaleY);
+		view.setFitWidth(image.getWidth() * scaleX);
+		view.setFitHeight(image.getHeight() * scaleY);
+
+		// coarser levels below finer ones, and all of them above the preview
+		int index = 1;
+		while (index < getChildren().size()
+				&& levelOf(getChildren().get(index)) >= key.level) {
+			index++;
+		}
+		view.setUserData(key);
+		getChildren().add(index, view);
+		this.tiles.put(key, view);
+	}
+
+	private static int levelOf(Node node) {
+		return ((TileKey) node.getUserData()).level;
+	}
+
+	/**
+	 * Key of a tile in the tile cache.
+	 */
+	private static class TileKey {
+
+		private final long pyramid;
+		private final int level;
+		private final int column;
+		private final int row;
+
+		TileKey(long pyramid, int level, int column, int row) {
+			this.pyramid = pyramid;
+			this.level = level;
+			this.column = column;
+			this.row = row;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = Long.hashCode(this.pyramid);
+			hash = 31 * hash + this.level;
+			hash = 31 * hash + this.column;
+			hash = 31 * hash + this.row;
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			final TileKey other = (TileKey) obj;
+			return this.pyramid == other.pyramid
+					&& this.level == other.level
+					&& this.column == other.column
+					&& this.row == other.row;
+		}
+
+	}
+
+	/**
+	 * Least recently used (LRU) tile cache. Tiles still on display aren't
+	 * released by eviction, but once their views are removed.
+	 */
+	private static class TileCache {
+
+		private final LinkedHashMap<TileKey, Image> map;
+		private int capacity;
+
+		TileCache(int capacity) {
+			this.capacity = capacity;
+			this.map = new LinkedHashMap<TileKey, Image>(capacity, 0.75f, true) {
+				private static final long serialVersionUID = -2830519338717049212L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<TileKey, Image> eldest) {
+					return size() > TileCache.this.capacity;
+				}
+			};
+		}
+
+		synchronized Image get(TileKey key) {
+			return this.map.get(key);
+		}
+
+		synchronized void put(TileKey key, Image image) {
+			this.map.put(key, image);
+		}
+
+		synchronized void removeAll(long pyramid) {
+			this.map.keySet().removeIf((key) -> key.pyramid == pyramid);
+		}
+
+		synchronized int getCapacity() {
+			return this.capacity;
+		}
+
+		synchronized void setCapacity(int capacity) {
+			this.capacity = Math.max(1, capacity);
+			while (this.map.size() > this.capacity) {
+				this.map.remove(this.map.keySet().iterator().next());
+			}
+		}
+
+	}
+
+}
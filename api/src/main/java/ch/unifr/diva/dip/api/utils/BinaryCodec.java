@@ -0,0 +1,841 @@
+package ch.unifr.diva.dip.api.utils;
+
+import ch.unifr.diva.dip.api.datastructures.AbstractNestedShape2D;
+import ch.unifr.diva.dip.api.datastructures.Circle2D;
+import ch.unifr.diva.dip.api.datastructures.Circles2D;
+import ch.unifr.diva.dip.api.datastructures.Floats1D;
+import ch.unifr.diva.dip.api.datastructures.Floats2D;
+import ch.unifr.diva.dip.api.datastructures.Line2D;
+import ch.unifr.diva.dip.api.datastructures.Lines2D;
+import ch.unifr.diva.dip.api.datastructures.MultiFloats2D;
+import ch.unifr.diva.dip.api.datastructures.NestedRectangle2D;
+import ch.unifr.diva.dip.api.datastructures.NestedRectangles2D;
+import ch.unifr.diva.dip.api.datastructures.NestedShape2D;
+import ch.unifr.diva.dip.api.datastructures.NestedShapes2D;
+import ch.unifr.diva.dip.api.datastructures.Point2D;
+import ch.unifr.diva.dip.api.datastructures.Points2D;
+import ch.unifr.diva.dip.api.datastructures.Polygon2D;
+import ch.unifr.diva.dip.api.datastructures.Polygons2D;
+import ch.unifr.diva.dip.api.datastructures.Polyline2D;
+import ch.unifr.diva.dip.api.datastructures.Polylines2D;
+import ch.unifr.diva.dip.api.datastructures.Rectangle2D;
+import ch.unifr.diva.dip.api.datastructures.Rectangles2D;
+import ch.unifr.diva.dip.api.datastructures.Shape2D;
+import ch.unifr.diva.dip.api.datastructures.Shapes2D;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact, versioned binary codec for shapes, collections of shapes, and
+ * arrays of floats. A much faster (and smaller) alternative to marshalling
+ * these data structures to XML, which is kept as interchange/export format.
+ *
+ * <p>
+ * A file starts with the header id, the version of the codec, and a tag
+ * identifying the type of the object. Collections are stored in a columnar
+ * layout (e.g. all X coordinates, then all Y coordinates, ...), and each
+ * column of coordinates is delta encoded as variable-length integers if all
+ * coordinates are integral (which is usually the case for shapes in pixel
+ * coordinates), or stored as raw doubles otherwise. Floats are always stored
+ * raw. Encoding is lossless either way.
+ */
+public class BinaryCodec {
+
+	/**
+	 * The format name of the binary codec.
+	 */
+	public final static String FORMAT = "DIPBIN";
+
+	/**
+	 * The file extension of binary files.
+	 */
+	public final static String FILE_EXTENSION = "dipbin";
+
+	/**
+	 * The header id of binary files.
+	 */
+	public final static String HEADER_ID = "DIPBIN";
+
+	/**
+	 * The current version of the codec. Readers can read files of this, or
+	 * any former version.
+	 */
+	public final static int VERSION = 1;
+
+	// column of integral values, delta encoded as zigzag varints
+	private final static int COLUMN_DELTA = 0;
+	// column of raw doubles
+	private final static int COLUMN_RAW = 1;
+	// largest integral value that can be represented exactly by a double
+	private final static double MAX_INTEGRAL = (double) (1L << 53);
+
+	private BinaryCodec() {
+		// nope
+	}
+
+	/**
+	 * Supported types. The tag of a type is its ordinal, so new types are to
+	 * be appended only.
+	 */
+	private enum Tag {
+
+		POINT(Point2D.class),
+		POINTS(Points2D.class),
+		LINE(Line2D.class),
+		LINES(Lines2D.class),
+		POLYLINE(Polyline2D.class),
+		POLYLINES(Polylines2D.class),
+		POLYGON(Polygon2D.class),
+		POLYGONS(Polygons2D.class),
+		RECTANGLE(Rectangle2D.class),
+		RECTANGLES(Rectangles2D.class),
+		CIRCLE(Circle2D.class),
+		CIRCLES(Circles2D.class),
+		NESTED_RECTANGLE(NestedRectangle2D.class),
+		NESTED_RECTANGLES(NestedRectangles2D.class),
+		NESTED_SHAPE(NestedShape2D.class),
+		NESTED_SHAPES(NestedShapes2D.class),
+		SHAPES(Shapes2D.class),
+		FLOATS_1D(Floats1D.class),
+		FLOATS_2D(Floats2D.class),
+		MULTI_FLOATS_2D(MultiFloats2D.class);
+
+		public final Class<?> clazz;
+
+		Tag(Class<?> clazz) {
+			this.clazz = clazz;
+		}
+
+		public static Tag of(Class<?> clazz) {
+			for (Tag tag : values()) {
+				if (tag.clazz.equals(clazz)) {
+					return tag;
+				}
+			}
+			return null;
+		}
+
+		public static Tag of(int ordinal) throws IOException {
+			final Tag[] tags = values();
+			if (ordinal < 0 || ordinal >= tags.length) {
+				throw new InvalidObjectException("Unknown type: " + ordinal);
+			}
+			return tags[ordinal];
+		}
+
+	}
+
+	/**
+	 * Checks whether objects of the given class can be written by the codec.
+	 * Note that collections of arbitrary shapes ({@code Shapes2D}, and nested
+	 * shapes) can only be written if all shapes are supported as well.
+	 *
+	 * @param clazz the class.
+	 * @return {@code true} if supported, {@code false} otherwise.
+	 */
+	public static boolean canWrite(Class<?> clazz) {
+		return Tag.of(clazz) != null;
+	}
+
+	/**
+	 * Checks whether an object can be written by the codec.
+	 *
+	 * @param obj the object.
+	 * @return {@code true} if the object can be written, {@code false}
+	 * otherwise.
+	 */
+	public static boolean canWrite(Object obj) {
+		if (obj == null) {
+			return false;
+		}
+		final Tag tag = Tag.of(obj.getClass());
+		if (tag == null) {
+			return false;
+		}
+		switch (tag) {
+			case POLYLINES:
+				// polygons would be read back as polylines
+				for (Polyline2D p : (Polylines2D) obj) {
+					if (p == null || !Polyline2D.class.equals(p.getClass())) {
+						return false;
+					}
+				}
+				return true;
+			case SHAPES:
+				for (Shape2D shape : (Shapes2D) obj) {
+					if (!canWriteShape(shape)) {
+						return false;
+					}
+				}
+				return true;
+			case NESTED_SHAPES:
+				for (NestedShape2D shape : (NestedShapes2D) obj) {
+					if (!canWriteShape(shape)) {
+						return false;
+					}
+				}
+				return true;
+			case NESTED_SHAPE:
+			case NESTED_RECTANGLE:
+				return canWriteShape((Shape2D) obj);
+			case NESTED_RECTANGLES:
+				for (NestedRectangle2D shape : (NestedRectangles2D) obj) {
+					if (!canWriteShape(shape)) {
+						return false;
+					}
+				}
+				return true;
+			default:
+				return true;
+		}
+	}
+
+	private static boolean canWriteShape(Shape2D shape) {
+		if (shape == null) {
+			return false;
+		}
+		final Tag tag = Tag.of(shape.getClass());
+		if (tag == null) {
+			return false;
+		}
+		if (shape instanceof AbstractNestedShape2D) {
+			final AbstractNestedShape2D<?, ?> nested = (AbstractNestedShape2D<?, ?>) shape;
+			if (!canWriteShape(nested.shape)) {
+				return false;
+			}
+			if (nested.children != null) {
+				for (AbstractNestedShape2D<?, ?> child : nested.children) {
+					if (!canWriteShape(child)) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Peeks at the format of the data in an input stream. The input stream
+	 * must support marks.
+	 *
+	 * @param is the input stream.
+	 * @return {@code true} if the input stream starts with the header of the
+	 * binary codec, {@code false} otherwise (e.g. for XML).
+	 * @throws IOException
+	 */
+	public static boolean isBinary(InputStream is) throws IOException {
+		final byte[] id = HEADER_ID.getBytes(StandardCharsets.US_ASCII);
+		final byte[] bytes = new byte[id.length];
+		is.mark(bytes.length);
+		int n = 0;
+		while (n < bytes.length) {
+			final int r = is.read(bytes, n, bytes.length - n);
+			if (r < 0) {
+				break;
+			}
+			n += r;
+		}
+		is.reset();
+		return Arrays.equals(id, bytes);
+	}
+
+	/**
+	 * Writes an object in the binary format to an output stream. The output
+	 * stream gets closed.
+	 *
+	 * @param obj the object. Must be supported by the codec (see
+	 * {@code canWrite(obj)}).
+	 * @param os the output stream to write to.
+	 * @throws IOException
+	 */
+	public static void write(Object obj, OutputStream os) throws IOException {
+		if (!canWrite(obj)) {
+			throw new IllegalArgumentException(
+					"unsupported object: " + obj
+			);
+		}
+		final Tag tag = Tag.of(obj.getClass());
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+			out.write(HEADER_ID.getBytes(StandardCharsets.US_ASCII));
+			out.writeByte(VERSION);
+			out.writeByte(tag.ordinal());
+			writeObject(out, tag, obj);
+		}
+	}
+
+	/**
+	 * Reads an object in the binary format from an input stream. The input
+	 * stream gets closed.
+	 *
+	 * @param <T> type of the object.
+	 * @param clazz class of the object.
+	 * @param is the input stream to read from.
+	 * @return the object.
+	 * @throws IOException
+	 */
+	public static <T> T read(Class<T> clazz, InputStream is) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(is))) {
+			final byte[] id = HEADER_ID.getBytes(StandardCharsets.US_ASCII);
+			final byte[] bytes = new byte[id.length];
+			in.readFully(bytes);
+			if (!Arrays.equals(id, bytes)) {
+				throw new InvalidObjectException("Invalid header (unknown format)");
+			}
+			final int version = in.readUnsignedByte();
+			if (version > VERSION) {
+				throw new InvalidObjectException("Unsupported version: " + version);
+			}
+			final Object obj = readObject(in, Tag.of(in.readUnsignedByte()));
+			if (!clazz.isInstance(obj)) {
+				throw new InvalidObjectException(
+						"Unexpected type: " + obj.getClass().getName()
+				);
+			}
+			return clazz.cast(obj);
+		}
+	}
+
+	private static void writeObject(DataOutputStream out, Tag tag, Object obj) throws IOException {
+		switch (tag) {
+			case POINTS:
+				writePoints(out, (Points2D) obj);
+				break;
+			case LINES:
+				writeLines(out, (Lines2D) obj);
+				break;
+			case POLYLINES:
+				writePolylines(out, (Polylines2D) obj);
+				break;
+			case POLYGONS:
+				writePolylines(out, (Polygons2D) obj);
+				break;
+			case RECTANGLES:
+				writeRectangles(out, (Rectangles2D) obj);
+				break;
+			case CIRCLES:
+				writeCircles(out, (Circles2D) obj);
+				break;
+			case NESTED_RECTANGLES:
+				writeNestedRectangles(out, (NestedRectangles2D) obj);
+				break;
+			case NESTED_SHAPES:
+				writeVarInt(out, ((NestedShapes2D) obj).size());
+				for (NestedShape2D shape : (NestedShapes2D) obj) {
+					writeNestedShape(out, shape);
+				}
+				break;
+			case SHAPES:
+				writeVarInt(out, ((Shapes2D) obj).size());
+				for (Shape2D shape : (Shapes2D) obj) {
+					final Tag t = Tag.of(shape.getClass());
+					out.writeByte(t.ordinal());
+					writeObject(out, t, shape);
+				}
+				break;
+			case POINT:
+				writePoints(out, Arrays.asList((Point2D) obj));
+				break;
+			case LINE:
+				writeLines(out, Arrays.asList((Line2D) obj));
+				break;
+			case POLYLINE:
+			case POLYGON:
+				writePolylines(out, Arrays.asList((Polyline2D) obj));
+				break;
+			case RECTANGLE:
+				writeRectangles(out, Arrays.asList((Rectangle2D) obj));
+				break;
+			case CIRCLE:
+				writeCircles(out, Arrays.asList((Circle2D) obj));
+				break;
+			case NESTED_RECTANGLE:
+				writeNestedRectangles(out, Arrays.asList((NestedRectangle2D) obj));
+				break;
+			case NESTED_SHAPE:
+				writeNestedShape(out, (NestedShape2D) obj);
+				break;
+			case FLOATS_1D:
+				writeFloats(out, ((Floats1D) obj).data);
+				break;
+			case FLOATS_2D:
+				writeFloats2D(out, (Floats2D) obj);
+				break;
+			case MULTI_FLOATS_2D:
+				writeVarInt(out, ((MultiFloats2D) obj).size());
+				for (Floats2D band : (MultiFloats2D) obj) {
+					writeFloats2D(out, band);
+				}
+				break;
+		}
+	}
+
+	private static Object readObject(DataInputStream in, Tag tag) throws IOException {
+		switch (tag) {
+			case POINTS:
+				return new Points2D(readPoints(in));
+			case LINES:
+				return new Lines2D(readLines(in));
+			case POLYLINES:
+				return new Polylines2D(readPolylines(in, false));
+			case POLYGONS: {
+				final List<Polygon2D> polygons = new ArrayList<>();
+				for (Polyline2D p : readPolylines(in, true)) {
+					polygons.add((Polygon2D) p);
+				}
+				return new Polygons2D(polygons);
+			}
+			case RECTANGLES:
+				return new Rectangles2D(readRectangles(in));
+			case CIRCLES:
+				return new Circles2D(readCircles(in));
+			case NESTED_RECTANGLES:
+				return new NestedRectangles2D(readNestedRectangles(in));
+			case NESTED_SHAPES: {
+				final int n = readVarInt(in);
+				final List<NestedShape2D> shapes = new ArrayList<>(n);
+				for (int i = 0; i < n; i++) {
+					shapes.add(readNestedShape(in));
+				}
+				return new NestedShapes2D(shapes);
+			}
+			case SHAPES: {
+				final int n = readVarInt(in);
+				final List<Shape2D> shapes = new ArrayList<>(n);
+				for (int i = 0; i < n; i++) {
+					shapes.add((Shape2D) readObject(in, Tag.of(in.readUnsignedByte())));
+				}
+				return new Shapes2D(shapes);
+			}
+			case POINT:
+				return first(readPoints(in));
+			case LINE:
+				return first(readLines(in));
+			case POLYLINE:
+				return first(readPolylines(in, false));
+			case POLYGON:
+				return first(readPolylines(in, true));
+			case RECTANGLE:
+				return first(readRectangles(in));
+			case CIRCLE:
+				return first(readCircles(in));
+			case NESTED_RECTANGLE:
+				return first(readNestedRectangles(in));
+			case NESTED_SHAPE:
+				return readNestedShape(in);
+			case FLOATS_1D:
+				return new Floats1D(readFloats(in));
+			case FLOATS_2D:
+				return readFloats2D(in);
+			case MULTI_FLOATS_2D:
+			default: {
+				final int n = readVarInt(in);
+				final MultiFloats2D bands = new MultiFloats2D();
+				for (int i = 0; i < n; i++) {
+					bands.add(readFloats2D(in));
+				}
+				return bands;
+			}
+		}
+	}
+
+	private static <T> T first(List<T> list) throws IOException {
+		if (list.size() != 1) {
+			throw new InvalidObjectException("Expected a single object");
+		}
+		return list.get(0);
+	}
+
+	/*
+	 * shapes
+	 */
+	private static void writePoints(DataOutputStream out, List<Point2D> points) throws IOException {
+		final int n = points.size();
+		final double[] x = new double[n];
+		final double[] y = new double[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = points.get(i).x;
+			y[i] = points.get(i).y;
+		}
+		writeVarInt(out, n);
+		writeColumn(out, x);
+		writeColumn(out, y);
+	}
+
+	private static List<Point2D> readPoints(DataInputStream in) throws IOException {
+		final int n = readVarInt(in);
+		final double[] x = readColumn(in, n);
+		final double[] y = readColumn(in, n);
+		final List<Point2D> points = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			points.add(new Point2D(x[i], y[i]));
+		}
+		return points;
+	}
+
+	private static void writeLines(DataOutputStream out, List<Line2D> lines) throws IOException {
+		final int n = lines.size();
+		final double[] sx = new double[n];
+		final double[] sy = new double[n];
+		final double[] ex = new double[n];
+		final double[] ey = new double[n];
+		for (int i = 0; i < n; i++) {
+			final Line2D line = lines.get(i);
+			sx[i] = line.start.x;
+			sy[i] = line.start.y;
+			ex[i] = line.end.x;
+			ey[i] = line.end.y;
+		}
+		writeVarInt(out, n);
+		writeColumn(out, sx);
+		writeColumn(out, sy);
+		writeColumn(out, ex);
+		writeColumn(out, ey);
+	}
+
+	private static List<Line2D> readLines(DataInputStream in) throws IOException {
+		final int n = readVarInt(in);
+		final double[] sx = readColumn(in, n);
+		final double[] sy = readColumn(in, n);
+		final double[] ex = readColumn(in, n);
+		final double[] ey = readColumn(in, n);
+		final List<Line2D> lines = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			lines.add(new Line2D(sx[i], sy[i], ex[i], ey[i]));
+		}
+		return lines;
+	}
+
+	private static void writePolylines(DataOutputStream out, List<? extends Polyline2D> polylines) throws IOException {
+		int m = 0;
+		for (Polyline2D p : polylines) {
+			m += p.size();
+		}
+		final double[] x = new double[m];
+		final double[] y = new double[m];
+		int k = 0;
+		writeVarInt(out, polylines.size());
+		for (Polyline2D p : polylines) {
+			writeVarInt(out, p.size());
+			for (Point2D point : p) {
+				x[k] = point.x;
+				y[k] = point.y;
+				k++;
+			}
+		}
+		writeColumn(out, x);
+		writeColumn(out, y);
+	}
+
+	private static List<Polyline2D> readPolylines(DataInputStream in, boolean polygons) throws IOException {
+		final int n = readVarInt(in);
+		final int[] sizes = new int[n];
+		int m = 0;
+		for (int i = 0; i < n; i++) {
+			sizes[i] = readVarInt(in);
+			m += sizes[i];
+		}
+		final double[] x = readColumn(in, m);
+		final double[] y = readColumn(in, m);
+		final List<Polyline2D> polylines = new ArrayList<>(n);
+		int k = 0;
+		for (int i = 0; i < n; i++) {
+			final List<Point2D> points = new ArrayList<>(sizes[i]);
+			for (int j = 0; j < sizes[i]; j++) {
+				points.add(new Point2D(x[k], y[k]));
+				k++;
+			}
+			polylines.add(polygons ? new Polygon2D(points) : new Polyline2D(points));
+		}
+		return polylines;
+	}
+
+	private static void writeRectangles(DataOutputStream out, List<Rectangle2D> rectangles) throws IOException {
+		final int n = rectangles.size();
+		final double[] x = new double[n];
+		final double[] y = new double[n];
+		final double[] w = new double[n];
+		final double[] h = new double[n];
+		for (int i = 0; i < n; i++) {
+			final Rectangle2D r = rectangles.get(i);
+			x[i] = r.x;
+			y[i] = r.y;
+			w[i] = r.width;
+			h[i] = r.height;
+		}
+		writeVarInt(out, n);
+		writeColumn(out, x);
+		writeColumn(out, y);
+		writeColumn(out, w);
+		writeColumn(out, h);
+	}
+
+	private static List<Rectangle2D> readRectangles(DataInputStream in) throws IOException {
+		final int n = readVarInt(in);
+		final double[] x = readColumn(in, n);
+		final double[] y = readColumn(in, n);
+		final double[] w = readColumn(in, n);
+		final double[] h = readColumn(in, n);
+		final List<Rectangle2D> rectangles = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			rectangles.add(new Rectangle2D(x[i], y[i], w[i], h[i]));
+		}
+		return rectangles;
+	}
+
+	private static void writeCircles(DataOutputStream out, List<Circle2D> circles) throws IOException {
+		final int n = circles.size();
+		final double[] x = new double[n];
+		final double[] y = new double[n];
+		final double[] r = new double[n];
+		for (int i = 0; i < n; i++) {
+			final Circle2D c = circles.get(i);
+			x[i] = c.x;
+			y[i] = c.y;
+			r[i] = c.radius;
+		}
+		writeVarInt(out, n);
+		writeColumn(out, x);
+		writeColumn(out, y);
+		writeColumn(out, r);
+	}
+
+	private static List<Circle2D> readCircles(DataInputStream in) throws IOException {
+		final int n = readVarInt(in);
+		final double[] x = readColumn(in, n);
+		final double[] y = readColumn(in, n);
+		final double[] r = readColumn(in, n);
+		final List<Circle2D> circles = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			circles.add(new Circle2D(x[i], y[i], r[i]));
+		}
+		return circles;
+	}
+
+	// trees of nested rectangles are flattened (depth-first), s.t. all the
+	// rectangles end up in the same columns
+	private static void writeNestedRectangles(DataOutputStream out, List<NestedRectangle2D> roots) throws IOException {
+		final List<NestedRectangle2D> nodes = new ArrayList<>();
+		for (NestedRectangle2D root : roots) {
+			flatten(root, nodes);
+		}
+		final List<Rectangle2D> rectangles = new ArrayList<>(nodes.size());
+		writeVarInt(out, roots.size());
+		writeVarInt(out, nodes.size());
+		for (NestedRectangle2D node : nodes) {
+			// number of children + 1, or 0 for no list of children at all
+			writeVarInt(out, (node.children == null) ? 0 : node.children.size() + 1);
+			rectangles.add(node.shape);
+		}
+		writeRectangles(out, rectangles);
+	}
+
+	private static void flatten(NestedRectangle2D node, List<NestedRectangle2D> nodes) {
+		nodes.add(node);
+		if (node.children != null) {
+			for (NestedRectangle2D child : node.children) {
+				flatten(child, nodes);
+			}
+		}
+	}
+
+	private static List<NestedRectangle2D> readNestedRectangles(DataInputStream in) throws IOException {
+		final int n = readVarInt(in);
+		final int m = readVarInt(in);
+		final int[] children = new int[m];
+		for (int i = 0; i < m; i++) {
+			children[i] = readVarInt(in);
+		}
+		final List<Rectangle2D> rectangles = readRectangles(in);
+		if (rectangles.size() != m) {
+			throw new InvalidObjectException("Invalid number of nested rectangles");
+		}
+		final int[] next = new int[]{0};
+		final List<NestedRectangle2D> roots = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			roots.add(unflatten(children, rectangles, next));
+		}
+		return roots;
+	}
+
+	private static NestedRectangle2D unflatten(int[] children, List<Rectangle2D> rectangles, int[] next) throws IOException {
+		final int i = next[0]++;
+		if (i >= children.length) {
+			throw new InvalidObjectException("Invalid tree of nested rectangles");
+		}
+		if (children[i] == 0) {
+			return new NestedRectangle2D(rectangles.get(i), null);
+		}
+		final List<NestedRectangle2D> list = new ArrayList<>(children[i] - 1);
+		for (int j = 1; j < children[i]; j++) {
+			list.add(unflatten(children, rectangles, next));
+		}
+		return new NestedRectangle2D(rectangles.get(i), list);
+	}
+
+	private static void writeNestedShape(DataOutputStream out, NestedShape2D node) throws IOException {
+		final Tag tag = Tag.of(node.shape.getClass());
+		out.writeByte(tag.ordinal());
+		writeObject(out, tag, node.shape);
+		writeVarInt(out, (node.children == null) ? 0 : node.children.size() + 1);
+		if (node.children != null) {
+			for (NestedShape2D child : node.children) {
+				writeNestedShape(out, child);
+			}
+		}
+	}
+
+	private static NestedShape2D readNestedShape(DataInputStream in) throws IOException {
+		final Shape2D shape = (Shape2D) readObject(in, Tag.of(in.readUnsignedByte()));
+		final int n = readVarInt(in);
+		if (n == 0) {
+			return new NestedShape2D(shape, null);
+		}
+		final List<NestedShape2D> children = new ArrayList<>(n - 1);
+		for (int i = 1; i < n; i++) {
+			children.add(readNestedShape(in));
+		}
+		return new NestedShape2D(shape, children);
+	}
+
+	/*
+	 * floats
+	 */
+	private static void writeFloats(DataOutputStream out, float[] floats) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(floats.length * 4);
+		buffer.asFloatBuffer().put(floats);
+		writeVarInt(out, floats.length);
+		out.write(buffer.array());
+	}
+
+	private static float[] readFloats(DataInputStream in) throws IOException {
+		final float[] floats = new float[readVarInt(in)];
+		final byte[] bytes = new byte[floats.length * 4];
+		in.readFully(bytes);
+		ByteBuffer.wrap(bytes).asFloatBuffer().get(floats);
+		return floats;
+	}
+
+	private static void writeFloats2D(DataOutputStream out, Floats2D floats) throws IOException {
+		writeVarInt(out, floats.data.length);
+		for (float[] row : floats.data) {
+			writeFloats(out, row);
+		}
+	}
+
+	private static Floats2D readFloats2D(DataInputStream in) throws IOException {
+		final float[][] data = new float[readVarInt(in)][];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = readFloats(in);
+		}
+		return new Floats2D(data);
+	}
+
+	/*
+	 * columns and varints
+	 */
+	private static boolean isIntegral(double value) {
+		return value == Math.rint(value)
+				&& Math.abs(value) <= MAX_INTEGRAL
+				// -0.0 would end up as 0.0
+				&& Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(-0.0);
+	}
+
+	private static void writeColumn(DataOutputStream out, double[] values) throws IOException {
+		boolean integral = true;
+		for (double v : values) {
+			if (!isIntegral(v)) {
+				integral = false;
+				break;
+			}
+		}
+
+		if (integral) {
+			out.writeByte(COLUMN_DELTA);
+			long previous = 0;
+			for (double v : values) {
+				final long value = (long) v;
+				writeVarLong(out, zigzag(value - previous));
+				previous = value;
+			}
+		} else {
+			out.writeByte(COLUMN_RAW);
+			for (double v : values) {
+				out.writeDouble(v);
+			}
+		}
+	}
+
+	private static double[] readColumn(DataInputStream in, int n) throws IOException {
+		final double[] values = new double[n];
+		final int type = in.readUnsignedByte();
+		switch (type) {
+			case COLUMN_DELTA:
+				long previous = 0;
+				for (int i = 0; i < n; i++) {
+					previous += unzigzag(readVarLong(in));
+					values[i] = previous;
+				}
+				break;
+			case COLUMN_RAW:
+				for (int i = 0; i < n; i++) {
+					values[i] = in.readDouble();
+				}
+				break;
+			default:
+				throw new InvalidObjectException("Unknown column type: " + type);
+		}
+		return values;
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		writeVarLong(out, value & 0xffffffffL);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		final long value = readVarLong(in);
+		if (value > Integer.MAX_VALUE) {
+			throw new InvalidObjectException("Invalid size: " + value);
+		}
+		return (int) value;
+	}
+
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7fL) != 0) {
+			out.writeByte((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new InvalidObjectException("Invalid varint");
+	}
+
+}
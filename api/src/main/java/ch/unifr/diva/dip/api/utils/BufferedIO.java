@@ -1,23 +1,46 @@
 package ch.unifr.diva.dip.api.utils;
 
 import ch.unifr.diva.dip.api.datastructures.BufferedMatrix;
+import ch.unifr.diva.dip.api.datastructures.MappedDataBuffer;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.IndexColorModel;
+import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InvalidObjectException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 /**
- * I/O utilities for BufferedMatrix.
+ * I/O utilities for BufferedMatrix, and a fast (raw) binary format for
+ * BufferedImage.
  */
 public class BufferedIO {
 
@@ -32,6 +55,55 @@ public class BufferedIO {
 	 */
 	private final static String HEADER_ID = "BMAT";
 
+	/**
+	 * The current version of binary BufferedMatrix files. Version 1 files have
+	 * no version (nor byte order) in their header, and samples in big endian.
+	 * Version 2 files have samples in the (native) byte order declared in the
+	 * header.
+	 */
+	private final static int MAT_VERSION = 2;
+
+	/**
+	 * Size of the regions of files that are memory-mapped at once, in bytes.
+	 */
+	private final static int MAP_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * Official file extension for binary BufferedImage files.
+	 */
+	public final static String BUFFERED_IMAGE_FILE_EXTENSION = "bimg";
+
+	/**
+	 * Format name of binary BufferedImage files. Can be passed as format to
+	 * {@code ProcessorBase.writeBufferedImage}.
+	 */
+	public final static String BUFFERED_IMAGE_FORMAT = "BIMG";
+
+	/**
+	 * The header id of binary BufferedImage files.
+	 */
+	private final static String IMAGE_HEADER_ID = "BIMG";
+
+	/**
+	 * Size of the chunks samples are written/read in, in bytes.
+	 */
+	private final static int CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * Compression of the samples of binary BufferedImage files.
+	 */
+	public enum Compression {
+
+		/**
+		 * Raw samples.
+		 */
+		NONE,
+		/**
+		 * Deflated samples, with the fastest compression level.
+		 */
+		DEFLATE;
+	}
+
 	/**
 	 * Encoding of strings if converted to bytes. US-ASCII is good enough, and
 	 * get's us a nice one byte per char.
@@ -73,7 +145,9 @@ public class BufferedIO {
 	}
 
 	/**
-	 * Writes a BufferedMatrix in a binary format.
+	 * Writes a BufferedMatrix in a binary format. Files on the default file
+	 * system are written memory-mapped, files on other file systems (e.g. a
+	 * zip file system) are streamed.
 	 *
 	 * @param mat the BufferedMatrix to be saved/written to disk.
 	 * @param path path to save/write the BufferedMatrix to.
@@ -84,108 +158,186 @@ public class BufferedIO {
 			Files.delete(path);
 		}
 
-		final OutputStream os = new FileOutputStream(path.toFile());
-		writeMat(mat, new BufferedOutputStream(os));
+		if (!isDefaultFileSystem(path)) {
+			writeMat(mat, new BufferedOutputStream(Files.newOutputStream(path)));
+			return;
+		}
+
+		final DataBuffer buffer = mat.getRaster().getDataBuffer();
+		final ByteOrder order = ByteOrder.nativeOrder();
+		final byte[] header = newMatHeader(mat, order);
+		final int bytesPerSample = mat.getBytesPerSample();
+
+		try (FileChannel channel = FileChannel.open(
+				path,
+				StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.READ,
+				StandardOpenOption.WRITE
+		)) {
+			channel.write(ByteBuffer.wrap(header));
+			long position = header.length;
+			final int samplesPerMap = MAP_SIZE / bytesPerSample;
+			for (int bank = 0; bank < buffer.getNumBanks(); bank++) {
+				final int size = buffer.getSize();
+				for (int offset = 0; offset < size; offset += samplesPerMap) {
+					final int length = Math.min(samplesPerMap, size - offset);
+					final MappedByteBuffer map = channel.map(
+							FileChannel.MapMode.READ_WRITE,
+							position,
+							(long) length * bytesPerSample
+					);
+					map.order(order);
+					putSamples(buffer, bank, offset, length, map);
+					position += (long) length * bytesPerSample;
+				}
+			}
+		}
 	}
 
 	/**
-	 * Writes a BufferedMatrix in a binary format to an output stream.
+	 * Writes a BufferedMatrix in a binary format to an output stream. Samples
+	 * are streamed in chunks straight from the data buffer. The output stream
+	 * gets closed.
 	 *
 	 * @param mat the BufferedMatrix to be saved/written to disk.
 	 * @param os the output stream to write to.
 	 * @throws IOException
 	 */
 	public static void writeMat(BufferedMatrix mat, OutputStream os) throws IOException {
-		final int width = mat.getWidth();
-		final int height = mat.getHeight();
-		final int bands = mat.getRaster().getNumBands();
-		final BufferedMatrix.DataType type = mat.getSampleDataType();
-		final BufferedMatrix.Interleave interleave = mat.getInterleave();
+		final DataBuffer buffer = mat.getRaster().getDataBuffer();
+		final ByteOrder order = ByteOrder.nativeOrder();
+		final int bytesPerSample = mat.getBytesPerSample();
 
-		try (DataOutputStream out = new DataOutputStream(os)) {
+		try (OutputStream out = os) {
 			// write header
+			out.write(newMatHeader(mat, order));
+
+			// write samples, bank by bank
+			final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE).order(order);
+			final int samplesPerChunk = CHUNK_SIZE / bytesPerSample;
+			for (int bank = 0; bank < buffer.getNumBanks(); bank++) {
+				final int size = buffer.getSize();
+				for (int offset = 0; offset < size; offset += samplesPerChunk) {
+					final int length = Math.min(samplesPerChunk, size - offset);
+					chunk.clear();
+					putSamples(buffer, bank, offset, length, chunk);
+					out.write(chunk.array(), 0, length * bytesPerSample);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the header of a binary BufferedMatrix file (in the current
+	 * version).
+	 *
+	 * @param mat the BufferedMatrix.
+	 * @param order the byte order of the samples.
+	 * @return the header.
+	 * @throws IOException
+	 */
+	private static byte[] newMatHeader(BufferedMatrix mat, ByteOrder order) throws IOException {
+		return newMatHeader(
+				mat.getWidth(),
+				mat.getHeight(),
+				mat.getRaster().getNumBands(),
+				mat.getSampleDataType(),
+				mat.getInterleave(),
+				order
+		);
+	}
+
+	private static byte[] newMatHeader(int width, int height, int bands, BufferedMatrix.DataType type, BufferedMatrix.Interleave interleave, ByteOrder order) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
 			out.write(HEADER_ID.getBytes(STRING_ENCODING));
+			// negative, s.t. it can't be mistaken for the width (version 1)
+			out.writeInt(-MAT_VERSION);
+			out.writeByte(ByteOrder.BIG_ENDIAN.equals(order) ? 0 : 1);
 
 			out.writeInt(width);
 			out.writeInt(height);
 			out.writeInt(bands);
 			writeChars(out, type.name());
 			writeChars(out, interleave.name());
+		}
+		return bytes.toByteArray();
+	}
 
-			// write samples
-			final int numPixels = width * height;
-			final int numSamples = numPixels * bands;
-			final int bytesPerSample = mat.getBytesPerSample();
-			final ByteBuffer buffer;
-
-			switch (interleave) {
-				case BIP:
-					buffer = ByteBuffer.allocate(numSamples * bytesPerSample);
-					switch (type) {
-						case INT:
-							buffer.asIntBuffer().put(mat.getPixelsInt());
-							break;
-
-						case FLOAT:
-							buffer.asFloatBuffer().put(mat.getPixelsFloat());
-							break;
-
-						case DOUBLE:
-							buffer.asDoubleBuffer().put(mat.getPixelsDouble());
-							break;
-							
-						default:
-							throw new IllegalArgumentException(
-									"Don't know how to write: " + type.name()
-							);
-					}
-					out.write(buffer.array());
-					break;
+	/**
+	 * Header of a binary BufferedMatrix file.
+	 */
+	private static class MatHeader {
+
+		final ByteOrder order;
+		final int width;
+		final int height;
+		final int bands;
+		final BufferedMatrix.DataType type;
+		final BufferedMatrix.Interleave interleave;
+		// length of the header in bytes
+		final int length;
+
+		/**
+		 * Reads the header of a binary BufferedMatrix file. Version 1 files
+		 * (without version and byte order) are written in big endian.
+		 *
+		 * @param in the DataInputStream, positioned at the start of the file.
+		 * @throws IOException
+		 */
+		MatHeader(DataInputStream in) throws IOException {
+			final byte[] id_bytes = HEADER_ID.getBytes(STRING_ENCODING);
+			final byte[] mat_bytes = new byte[HEADER_ID.length()];
+			in.readFully(mat_bytes);
+			for (int i = 0; i < mat_bytes.length; i++) {
+				if (id_bytes[i] != mat_bytes[i]) {
+					throw new InvalidObjectException("Invalid header (unknown format)");
+				}
+			}
+			int n = mat_bytes.length;
 
-				case BSQ:
-					buffer = ByteBuffer.allocate(numPixels * bytesPerSample);
-					switch (type) {
-						case INT:
-							for (int i = 0; i < bands; i++) {
-								buffer.asIntBuffer().put(mat.getSamplesInt(i));
-								out.write(buffer.array());
-								buffer.clear();
-							}
-							break;
-
-						case FLOAT:
-							for (int i = 0; i < bands; i++) {
-								buffer.asFloatBuffer().put(mat.getSamplesFloat(i));
-								out.write(buffer.array());
-								buffer.clear();
-							}
-							break;
-
-						case DOUBLE:
-							for (int i = 0; i < bands; i++) {
-								buffer.asDoubleBuffer().put(mat.getSamplesDouble(i));
-								out.write(buffer.array());
-								buffer.clear();
-							}
-							break;
-
-						default:
-							throw new IllegalArgumentException(
-									"Don't know how to write: " + type.name()
-							);
-					}
-					break;
+			final int first = in.readInt();
+			n += 4;
+			if (first < 0) {
+				if (-first > MAT_VERSION) {
+					throw new InvalidObjectException("Invalid header (unknown version)");
+				}
+				this.order = (in.readByte() == 0) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+				this.width = in.readInt();
+				n += 5;
+			} else {
+				this.order = ByteOrder.BIG_ENDIAN;
+				this.width = first;
+			}
+			this.height = in.readInt();
+			this.bands = in.readInt();
+			n += 8;
 
-				default:
-					throw new IllegalArgumentException(
-							"Don't know how to write: " + interleave.name()
-					);
+			final String typeName = readChars(in);
+			try {
+				this.type = BufferedMatrix.DataType.valueOf(typeName);
+			} catch (IllegalArgumentException ex) {
+				throw new InvalidObjectException("Invalid header (unknown type)");
 			}
+			final String interleaveName = readChars(in);
+			try {
+				this.interleave = BufferedMatrix.Interleave.valueOf(interleaveName);
+			} catch (IllegalArgumentException ex) {
+				throw new InvalidObjectException("Invalid header (unknown interleave)");
+			}
+			n += 8 + typeName.length() + interleaveName.length();
+			this.length = n;
+		}
+
+		BufferedMatrix newBufferedMatrix() {
+			return new BufferedMatrix(width, height, bands, type, interleave);
 		}
 	}
 
 	/**
-	 * Reads a BufferdMatrix in binary format.
+	 * Reads a BufferdMatrix in binary format. Files on the default file system
+	 * are read memory-mapped, files on other file systems (e.g. a zip file
+	 * system) are streamed.
 	 *
 	 * @param path path to the binary file.
 	 * @return a BufferedMatrix.
@@ -196,140 +348,633 @@ public class BufferedIO {
 			throw new IOException("Can't read input file (does not exist)!");
 		}
 
-		final InputStream is = new FileInputStream(path.toFile());
-		return readMat(new BufferedInputStream(is));
+		if (!isDefaultFileSystem(path)) {
+			return readMat(new BufferedInputStream(Files.newInputStream(path)));
+		}
+
+		final MatHeader header;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			header = new MatHeader(in);
+		}
+
+		final BufferedMatrix mat = header.newBufferedMatrix();
+		final DataBuffer buffer = mat.getRaster().getDataBuffer();
+		final int bytesPerSample = mat.getBytesPerSample();
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long position = header.length;
+			final int samplesPerMap = MAP_SIZE / bytesPerSample;
+			for (int bank = 0; bank < buffer.getNumBanks(); bank++) {
+				final int size = buffer.getSize();
+				for (int offset = 0; offset < size; offset += samplesPerMap) {
+					final int length = Math.min(samplesPerMap, size - offset);
+					final long bytes = (long) length * bytesPerSample;
+					if (position + bytes > channel.size()) {
+						throw new EOFException();
+					}
+					final MappedByteBuffer map = channel.map(
+							FileChannel.MapMode.READ_ONLY,
+							position,
+							bytes
+					);
+					map.order(header.order);
+					getSamples(map, buffer, bank, offset, length);
+					position += bytes;
+				}
+			}
+		}
+
+		return mat;
 	}
 
 	/**
-	 * Reads a BufferedMatrix in a binary format from an input stream.
+	 * Reads a BufferedMatrix in a binary format from an input stream. Samples
+	 * are streamed in chunks straight into the data buffer. The input stream
+	 * gets closed.
 	 *
 	 * @param is the input stream to read from.
 	 * @return a BufferedMatrix.
 	 * @throws IOException
 	 */
 	public static BufferedMatrix readMat(InputStream is) throws IOException {
-		BufferedMatrix mat;
+		try (DataInputStream in = new DataInputStream(is)) {
+			final MatHeader header = new MatHeader(in);
+			final BufferedMatrix mat = header.newBufferedMatrix();
+			final DataBuffer buffer = mat.getRaster().getDataBuffer();
+			final int bytesPerSample = mat.getBytesPerSample();
+
+			// read samples, bank by bank
+			final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE).order(header.order);
+			final int samplesPerChunk = CHUNK_SIZE / bytesPerSample;
+			for (int bank = 0; bank < buffer.getNumBanks(); bank++) {
+				final int size = buffer.getSize();
+				for (int offset = 0; offset < size; offset += samplesPerChunk) {
+					final int length = Math.min(samplesPerChunk, size - offset);
+					in.readFully(chunk.array(), 0, length * bytesPerSample);
+					chunk.clear();
+					getSamples(chunk, buffer, bank, offset, length);
+				}
+			}
+
+			return mat;
+		}
+	}
+
+	/**
+	 * Maps a binary BufferedMatrix file into memory. Unlike {@code readMat}
+	 * the samples are not read onto the heap, but stay in the file, and are
+	 * paged in (and out) on access, s.t. matrices larger than the available
+	 * memory can be processed. Only files on the default file system can be
+	 * mapped. Note that the file can't be deleted while mapped on some
+	 * platforms (until the matrix is garbage collected).
+	 *
+	 * @param path path to the binary file.
+	 * @param writable whether the samples can be modified (written back to
+	 * the file), or not.
+	 * @return an out-of-core BufferedMatrix.
+	 * @throws IOException
+	 */
+	public static BufferedMatrix mapMat(Path path, boolean writable) throws IOException {
+		if (!Files.exists(path)) {
+			throw new IOException("Can't read input file (does not exist)!");
+		}
+
+		final MatHeader header;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			header = new MatHeader(in);
+		}
+		return newMappedMat(
+				path,
+				header.length,
+				header.order,
+				header.width,
+				header.height,
+				header.bands,
+				header.type,
+				header.interleave,
+				writable
+		);
+	}
+
+	/**
+	 * Creates a new, out-of-core BufferedMatrix, backed by a binary
+	 * BufferedMatrix file. All samples are initially zero. The file stays a
+	 * valid binary BufferedMatrix file, and can be read (or mapped) again
+	 * later on.
+	 *
+	 * @param path path to the binary file. An existing file is replaced.
+	 * @param width width of the matrix.
+	 * @param height height of the matrix.
+	 * @param bands number of bands of the matrix.
+	 * @param type the sample precision.
+	 * @param interleave the interleave.
+	 * @return an out-of-core BufferedMatrix.
+	 * @throws IOException
+	 */
+	public static BufferedMatrix createMappedMat(Path path, int width, int height, int bands, BufferedMatrix.DataType type, BufferedMatrix.Interleave interleave) throws IOException {
+		if (Files.exists(path)) {
+			Files.delete(path);
+		}
+
+		final ByteOrder order = ByteOrder.nativeOrder();
+		final byte[] header = newMatHeader(width, height, bands, type, interleave, order);
+		Files.write(path, header);
+		return newMappedMat(
+				path,
+				header.length,
+				order,
+				width,
+				height,
+				bands,
+				type,
+				interleave,
+				true
+		);
+	}
+
+	private static BufferedMatrix newMappedMat(Path path, long position, ByteOrder order, int width, int height, int bands, BufferedMatrix.DataType type, BufferedMatrix.Interleave interleave, boolean writable) throws IOException {
+		final long samples = (long) width * height * bands;
+		final int size;
+		final int banks;
+		if (interleave == BufferedMatrix.Interleave.BIP) {
+			if (samples > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Matrix too large for BIP interleave");
+			}
+			size = (int) samples;
+			banks = 1;
+		} else {
+			size = width * height;
+			banks = bands;
+		}
+		final MappedDataBuffer buffer = new MappedDataBuffer(
+				path,
+				position,
+				order,
+				type.dataBufferOrdinal,
+				size,
+				banks,
+				writable
+		);
+		return new BufferedMatrix(width, height, bands, type, interleave, buffer);
+	}
+
+	/**
+	 * Puts samples of a bank of a data buffer into a byte buffer, starting at
+	 * the position of the byte buffer (which is left untouched).
+	 *
+	 * @param buffer the data buffer.
+	 * @param bank the bank.
+	 * @param offset the offset of the first sample in the bank.
+	 * @param length the number of samples.
+	 * @param bytes the byte buffer.
+	 */
+	private static void putSamples(DataBuffer buffer, int bank, int offset, int length, ByteBuffer bytes) {
+		if (buffer instanceof MappedDataBuffer) {
+			// not backed by arrays on the heap
+			switch (buffer.getDataType()) {
+				case DataBuffer.TYPE_INT:
+					final IntBuffer ints = bytes.asIntBuffer();
+					for (int i = 0; i < length; i++) {
+						ints.put(i, buffer.getElem(bank, offset + i));
+					}
+					return;
+				case DataBuffer.TYPE_FLOAT:
+					final FloatBuffer floats = bytes.asFloatBuffer();
+					for (int i = 0; i < length; i++) {
+						floats.put(i, buffer.getElemFloat(bank, offset + i));
+					}
+					return;
+				default:
+					final DoubleBuffer doubles = bytes.asDoubleBuffer();
+					for (int i = 0; i < length; i++) {
+						doubles.put(i, buffer.getElemDouble(bank, offset + i));
+					}
+					return;
+			}
+		}
+		switch (buffer.getDataType()) {
+			case DataBuffer.TYPE_INT:
+				bytes.asIntBuffer().put(((DataBufferInt) buffer).getData(bank), offset, length);
+				break;
+
+			case DataBuffer.TYPE_FLOAT:
+				bytes.asFloatBuffer().put(((DataBufferFloat) buffer).getData(bank), offset, length);
+				break;
+
+			case DataBuffer.TYPE_DOUBLE:
+				bytes.asDoubleBuffer().put(((DataBufferDouble) buffer).getData(bank), offset, length);
+				break;
+
+			default:
+				throw new IllegalArgumentException(
+						"Don't know how to write data type: " + buffer.getDataType()
+				);
+		}
+	}
+
+	/**
+	 * Gets samples from a byte buffer into a bank of a data buffer, starting
+	 * at the position of the byte buffer (which is left untouched).
+	 *
+	 * @param bytes the byte buffer.
+	 * @param buffer the data buffer.
+	 * @param bank the bank.
+	 * @param offset the offset of the first sample in the bank.
+	 * @param length the number of samples.
+	 */
+	private static void getSamples(ByteBuffer bytes, DataBuffer buffer, int bank, int offset, int length) {
+		if (buffer instanceof MappedDataBuffer) {
+			// not backed by arrays on the heap
+			switch (buffer.getDataType()) {
+				case DataBuffer.TYPE_INT:
+					final IntBuffer ints = bytes.asIntBuffer();
+					for (int i = 0; i < length; i++) {
+						buffer.setElem(bank, offset + i, ints.get(i));
+					}
+					return;
+				case DataBuffer.TYPE_FLOAT:
+					final FloatBuffer floats = bytes.asFloatBuffer();
+					for (int i = 0; i < length; i++) {
+						buffer.setElemFloat(bank, offset + i, floats.get(i));
+					}
+					return;
+				default:
+					final DoubleBuffer doubles = bytes.asDoubleBuffer();
+					for (int i = 0; i < length; i++) {
+						buffer.setElemDouble(bank, offset + i, doubles.get(i));
+					}
+					return;
+			}
+		}
+		switch (buffer.getDataType()) {
+			case DataBuffer.TYPE_INT:
+				bytes.asIntBuffer().get(((DataBufferInt) buffer).getData(bank), offset, length);
+				break;
+
+			case DataBuffer.TYPE_FLOAT:
+				bytes.asFloatBuffer().get(((DataBufferFloat) buffer).getData(bank), offset, length);
+				break;
+
+			case DataBuffer.TYPE_DOUBLE:
+				bytes.asDoubleBuffer().get(((DataBufferDouble) buffer).getData(bank), offset, length);
+				break;
+
+			default:
+				throw new IllegalArgumentException(
+						"Don't know how to read data type: " + buffer.getDataType()
+				);
+		}
+	}
+
+	private static boolean isDefaultFileSystem(Path path) {
+		return FileSystems.getDefault().equals(path.getFileSystem());
+	}
+
+	/**
+	 * Checks whether a BufferedImage can be written in the binary BufferedImage
+	 * format. Supported are all predefined image types, except indexed ones
+	 * (but including black and white binary images).
+	 *
+	 * @param image the image.
+	 * @return {@code true} if the image can be written, {@code false}
+	 * otherwise.
+	 */
+	public static boolean canWriteImage(BufferedImage image) {
+		if (image instanceof BufferedMatrix) {
+			return false;
+		}
+		switch (image.getType()) {
+			case BufferedImage.TYPE_INT_RGB:
+			case BufferedImage.TYPE_INT_ARGB:
+			case BufferedImage.TYPE_INT_ARGB_PRE:
+			case BufferedImage.TYPE_INT_BGR:
+			case BufferedImage.TYPE_3BYTE_BGR:
+			case BufferedImage.TYPE_4BYTE_ABGR:
+			case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+			case BufferedImage.TYPE_USHORT_565_RGB:
+			case BufferedImage.TYPE_USHORT_555_RGB:
+			case BufferedImage.TYPE_BYTE_GRAY:
+			case BufferedImage.TYPE_USHORT_GRAY:
+				return true;
+
+			case BufferedImage.TYPE_BYTE_BINARY:
+				return isBlackAndWhite(image);
+
+			default:
+				return false;
+		}
+	}
+
+	// checks for the color model of TYPE_BYTE_BINARY images created without
+	// a custom color model (1 bit, black and white)
+	private static boolean isBlackAndWhite(BufferedImage image) {
+		if (!(image.getColorModel() instanceof IndexColorModel)) {
+			return false;
+		}
+		final IndexColorModel cm = (IndexColorModel) image.getColorModel();
+		return cm.getMapSize() == 2
+				&& cm.getRGB(0) == 0xff000000
+				&& cm.getRGB(1) == 0xffffffff;
+	}
+
+	/**
+	 * Writes a BufferedImage in a binary format.
+	 *
+	 * @param image the BufferedImage to be saved/written to disk.
+	 * @param path path to save/write the BufferedImage to.
+	 * @throws IOException
+	 */
+	public static void writeImage(BufferedImage image, Path path) throws IOException {
+		if (Files.exists(path)) {
+			Files.delete(path);
+		}
+
+		final OutputStream os = Files.newOutputStream(path);
+		writeImage(image, new BufferedOutputStream(os));
+	}
 
+	/**
+	 * Writes a BufferedImage in a binary format to an output stream. Samples
+	 * are deflated with the fastest compression level. The output stream gets
+	 * closed.
+	 *
+	 * @param image the BufferedImage to be saved/written to disk.
+	 * @param os the output stream to write to.
+	 * @throws IOException
+	 */
+	public static void writeImage(BufferedImage image, OutputStream os) throws IOException {
+		writeImage(image, os, Compression.DEFLATE);
+	}
+
+	/**
+	 * Writes a BufferedImage in a binary format to an output stream. The output
+	 * stream gets closed.
+	 *
+	 * @param image the BufferedImage to be saved/written to disk.
+	 * @param os the output stream to write to.
+	 * @param compression the compression of the samples.
+	 * @throws IOException
+	 */
+	public static void writeImage(BufferedImage image, OutputStream os, Compression compression) throws IOException {
+		if (!canWriteImage(image)) {
+			throw new IllegalArgumentException(
+					"Don't know how to write image of type: " + image.getType()
+			);
+		}
+		final BufferedImage canonical = toCanonicalImage(image);
+		final int width = canonical.getWidth();
+		final int height = canonical.getHeight();
+		final DataBuffer buffer = canonical.getRaster().getDataBuffer();
+
+		try (DataOutputStream out = new DataOutputStream(os)) {
+			// write header
+			out.write(IMAGE_HEADER_ID.getBytes(STRING_ENCODING));
+
+			out.writeInt(width);
+			out.writeInt(height);
+			out.writeInt(canonical.getType());
+			writeChars(out, compression.name());
+
+			// write samples
+			final Deflater deflater;
+			final OutputStream sos;
+			switch (compression) {
+				case DEFLATE:
+					deflater = new Deflater(Deflater.BEST_SPEED);
+					// DON'T close: would close the underlying stream twice
+					sos = new DeflaterOutputStream(out, deflater, CHUNK_SIZE);
+					break;
+
+				case NONE:
+				default:
+					deflater = null;
+					sos = out;
+					break;
+			}
+
+			try {
+				writeSamples(buffer, sos);
+				if (deflater != null) {
+					((DeflaterOutputStream) sos).finish();
+				}
+			} finally {
+				if (deflater != null) {
+					deflater.end();
+				}
+			}
+		}
+	}
+
+	private static void writeSamples(DataBuffer buffer, OutputStream os) throws IOException {
+		switch (buffer.getDataType()) {
+			case DataBuffer.TYPE_BYTE:
+				os.write(((DataBufferByte) buffer).getData());
+				break;
+
+			case DataBuffer.TYPE_USHORT: {
+				final short[] data = ((DataBufferUShort) buffer).getData();
+				final ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE);
+				final int n = CHUNK_SIZE / 2;
+				for (int i = 0; i < data.length; i += n) {
+					final int len = Math.min(n, data.length - i);
+					bytes.clear();
+					bytes.asShortBuffer().put(data, i, len);
+					os.write(bytes.array(), 0, len * 2);
+				}
+				break;
+			}
+
+			case DataBuffer.TYPE_INT: {
+				final int[] data = ((DataBufferInt) buffer).getData();
+				final ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE);
+				final int n = CHUNK_SIZE / 4;
+				for (int i = 0; i < data.length; i += n) {
+					final int len = Math.min(n, data.length - i);
+					bytes.clear();
+					bytes.asIntBuffer().put(data, i, len);
+					os.write(bytes.array(), 0, len * 4);
+				}
+				break;
+			}
+
+			default:
+				throw new IllegalArgumentException(
+						"Don't know how to write data type: " + buffer.getDataType()
+				);
+		}
+	}
+
+	// returns the image itself if its data buffer is laid out exactly as the one
+	// of a new image of the same type (e.g. not a subimage), or a copy otherwise
+	private static BufferedImage toCanonicalImage(BufferedImage image) {
+		final WritableRaster raster = image.getRaster();
+		final DataBuffer buffer = raster.getDataBuffer();
+		final SampleModel expected = new BufferedImage(1, 1, image.getType())
+				.getSampleModel()
+				.createCompatibleSampleModel(image.getWidth(), image.getHeight());
+		if (raster.getSampleModelTranslateX() == 0
+				&& raster.getSampleModelTranslateY() == 0
+				&& buffer.getNumBanks() == 1
+				&& buffer.getOffset() == 0
+				&& buffer.getSize() == expected.createDataBuffer().getSize()
+				&& raster.getSampleModel().equals(expected)) {
+			return image;
+		}
+		final BufferedImage copy = new BufferedImage(
+				image.getWidth(),
+				image.getHeight(),
+				image.getType()
+		);
+		copy.getRaster().setRect(raster);
+		return copy;
+	}
+
+	/**
+	 * Reads a BufferedImage in binary format.
+	 *
+	 * @param path path to the binary file.
+	 * @return a BufferedImage.
+	 * @throws IOException
+	 */
+	public static BufferedImage readImage(Path path) throws IOException {
+		if (!Files.exists(path)) {
+			throw new IOException("Can't read input file (does not exist)!");
+		}
+
+		final InputStream is = Files.newInputStream(path);
+		return readImage(new BufferedInputStream(is));
+	}
+
+	/**
+	 * Reads a BufferedImage in a binary format from an input stream. The input
+	 * stream gets closed.
+	 *
+	 * @param is the input stream to read from.
+	 * @return a BufferedImage.
+	 * @throws IOException
+	 */
+	public static BufferedImage readImage(InputStream is) throws IOException {
 		try (DataInputStream in = new DataInputStream(is)) {
 			// read header
-			final byte[] id_bytes = HEADER_ID.getBytes(STRING_ENCODING);
-			final byte[] mat_bytes = new byte[HEADER_ID.length()];
-			in.readFully(mat_bytes);
-			for (int i = 0; i < mat_bytes.length; i++) {
-				if (id_bytes[i] != mat_bytes[i]) {
+			final byte[] id_bytes = IMAGE_HEADER_ID.getBytes(STRING_ENCODING);
+			final byte[] img_bytes = new byte[IMAGE_HEADER_ID.length()];
+			in.readFully(img_bytes);
+			for (int i = 0; i < img_bytes.length; i++) {
+				if (id_bytes[i] != img_bytes[i]) {
 					throw new InvalidObjectException("Invalid header (unknown format)");
 				}
 			}
 
 			final int width = in.readInt();
 			final int height = in.readInt();
-			final int bands = in.readInt();
+			final int type = in.readInt();
 
-			BufferedMatrix.DataType type;
+			Compression compression;
 			try {
-				type = BufferedMatrix.DataType.valueOf(readChars(in));
+				compression = Compression.valueOf(readChars(in));
 			} catch (IllegalArgumentException ex) {
-				throw new InvalidObjectException("Invalid header (unknown type)");
+				throw new InvalidObjectException("Invalid header (unknown compression)");
 			}
 
-			BufferedMatrix.Interleave interleave;
+			final BufferedImage image;
 			try {
-				interleave = BufferedMatrix.Interleave.valueOf(readChars(in));
+				image = new BufferedImage(width, height, type);
 			} catch (IllegalArgumentException ex) {
-				throw new InvalidObjectException("Invalid header (unknown interleave)");
+				throw new InvalidObjectException("Invalid header (unknown type)");
 			}
 
 			// read samples
-			mat = new BufferedMatrix(width, height, bands, type, interleave);
-			WritableRaster raster = mat.getRaster();
-
-			final int numPixels = width * height;
-			final int numSamples = numPixels * bands;
-			final int bytesPerSample = mat.getBytesPerSample();
-			final byte[] bytes;
-			ByteBuffer buffer;
-
-			switch (interleave) {
-				case BIP:
-					bytes = new byte[numSamples * bytesPerSample];
-					in.readFully(bytes);
-					buffer = ByteBuffer.wrap(bytes);
-
-					switch (type) {
-						case INT:
-							final int[] ints = new int[numSamples];
-							buffer.asIntBuffer().get(ints);
-							raster.setPixels(0, 0, width, height, ints);
-							break;
-
-						case FLOAT:
-							final float[] floats = new float[numSamples];
-							buffer.asFloatBuffer().get(floats);
-							raster.setPixels(0, 0, width, height, floats);
-							break;
-
-						case DOUBLE:
-							final double[] doubles = new double[numSamples];
-							buffer.asDoubleBuffer().get(doubles);
-							raster.setPixels(0, 0, width, height, doubles);
-							break;
-
-						default:
-							throw new IllegalArgumentException(
-									"Don't know how to read: " + type.name()
-							);
+			switch (compression) {
+				case DEFLATE:
+					final Inflater inflater = new Inflater();
+					final InflaterInputStream iis = new InflaterInputStream(in, inflater, CHUNK_SIZE);
+					try {
+						readSamples(image.getRaster().getDataBuffer(), new DataInputStream(iis));
+					} finally {
+						inflater.end();
 					}
 					break;
 
-				case BSQ:
-					bytes = new byte[numPixels * bytesPerSample];
-
-					switch (type) {
-						case INT:
-							final int[] ints = new int[numPixels];
-							for (int i = 0; i < bands; i++) {
-								in.readFully(bytes);
-								buffer = ByteBuffer.wrap(bytes);
-								buffer.asIntBuffer().get(ints);
-								raster.setSamples(0, 0, width, height, i, ints);
-							}
-							break;
-
-						case FLOAT:
-							final float[] floats = new float[numPixels];
-							for (int i = 0; i < bands; i++) {
-								in.readFully(bytes);
-								buffer = ByteBuffer.wrap(bytes);
-								buffer.asFloatBuffer().get(floats);
-								raster.setSamples(0, 0, width, height, i, floats);
-							}
-							break;
-
-						case DOUBLE:
-							final double[] doubles = new double[numPixels];
-							for (int i = 0; i < bands; i++) {
-								in.readFully(bytes);
-								buffer = ByteBuffer.wrap(bytes);
-								buffer.asDoubleBuffer().get(doubles);
-								raster.setSamples(0, 0, width, height, i, doubles);
-							}
-							break;
-
-						default:
-							throw new IllegalArgumentException(
-									"Don't know how to read: " + type.name()
-							);
-					}
+				case NONE:
+				default:
+					readSamples(image.getRaster().getDataBuffer(), in);
 					break;
+			}
 
-				default:
-					throw new IllegalArgumentException(
-							"Don't know how to read: " + interleave.name()
-					);
+			return image;
+		}
+	}
+
+	private static void readSamples(DataBuffer buffer, DataInputStream in) throws IOException {
+		switch (buffer.getDataType()) {
+			case DataBuffer.TYPE_BYTE:
+				in.readFully(((DataBufferByte) buffer).getData());
+				break;
+
+			case DataBuffer.TYPE_USHORT: {
+				final short[] data = ((DataBufferUShort) buffer).getData();
+				final byte[] bytes = new byte[CHUNK_SIZE];
+				final int n = CHUNK_SIZE / 2;
+				for (int i = 0; i < data.length; i += n) {
+					final int len = Math.min(n, data.length - i);
+					in.readFully(bytes, 0, len * 2);
+					ByteBuffer.wrap(bytes).asShortBuffer().get(data, i, len);
+				}
+				break;
+			}
+
+			case DataBuffer.TYPE_INT: {
+				final int[] data = ((DataBufferInt) buffer).getData();
+				final byte[] bytes = new byte[CHUNK_SIZE];
+				final int n = CHUNK_SIZE / 4;
+				for (int i = 0; i < data.length; i += n) {
+					final int len = Math.min(n, data.length - i);
+					in.readFully(bytes, 0, len * 4);
+					ByteBuffer.wrap(bytes).asIntBuffer().get(data, i, len);
+				}
+				break;
 			}
+
+			default:
+				throw new IllegalArgumentException(
+						"Don't know how to read data type: " + buffer.getDataType()
+				);
 		}
+	}
 
-		return mat;
+	/**
+	 * Peeks at the header of a binary file, and returns its format. The
+	 * position of the input stream is left untouched.
+	 *
+	 * @param is the input stream. Must support {@code mark}/{@code reset}.
+	 * @return {@code BUFFERED_IMAGE_FORMAT} for binary BufferedImage files,
+	 * {@code BUFFERED_MATRIX_FILE_EXTENSION} for binary BufferedMatrix files,
+	 * or {@code null} for anything else (e.g. PNG files).
+	 * @throws IOException
+	 */
+	public static String peekFormat(InputStream is) throws IOException {
+		final byte[] bytes = new byte[HEADER_ID.length()];
+		is.mark(bytes.length);
+		int n = 0;
+		try {
+			while (n < bytes.length) {
+				final int r = is.read(bytes, n, bytes.length - n);
+				if (r < 0) {
+					return null;
+				}
+				n += r;
+			}
+		} finally {
+			is.reset();
+		}
+		final String id = new String(bytes, STRING_ENCODING);
+		if (IMAGE_HEADER_ID.equals(id)) {
+			return BUFFERED_IMAGE_FORMAT;
+		}
+		if (HEADER_ID.equals(id)) {
+			return BUFFERED_MATRIX_FILE_EXTENSION;
+		}
+		return null;
 	}
 
 }
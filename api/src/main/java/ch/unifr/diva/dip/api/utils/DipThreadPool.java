@@ -3,8 +3,11 @@ package ch.unifr.diva.dip.api.utils;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -15,8 +18,11 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class DipThreadPool {
 
+	private final String poolName;
 	private final int poolSize;
 	private final ThreadPoolExecutor executor;
+	private final Semaphore workers;
+	private ForkJoinPool forkJoinPool;
 
 	/**
 	 * Create a new discarding thread pool. A "thread pool with a bounded work
@@ -114,7 +120,9 @@ public class DipThreadPool {
 	 * the default rejected execution handler/policy).
 	 */
 	public DipThreadPool(String poolName, int poolSize, BlockingQueue<Runnable> workQueue, RejectedExecutionHandler handler) {
+		this.poolName = poolName;
 		this.poolSize = poolSize;
+		this.workers = new Semaphore(Math.max(1, poolSize));
 		this.executor = new ThreadPoolExecutor(
 				this.poolSize,
 				this.poolSize,
@@ -143,6 +151,11 @@ public class DipThreadPool {
 	 */
 	public void stop() {
 		this.executor.shutdown();
+		synchronized (this) {
+			if (this.forkJoinPool != null) {
+				this.forkJoinPool.shutdown();
+			}
+		}
 	}
 
 	/**
@@ -151,14 +164,24 @@ public class DipThreadPool {
 	 * down in time.
 	 */
 	public void waitForStop() {
+		final ForkJoinPool fjp;
+		synchronized (this) {
+			fjp = this.forkJoinPool;
+		}
 		try {
 			this.executor.awaitTermination(5, TimeUnit.SECONDS);
+			if (fjp != null) {
+				fjp.awaitTermination(5, TimeUnit.SECONDS);
+			}
 		} catch (InterruptedException ex) {
 			Thread.currentThread().interrupt();
 		} finally {
 			if (!this.executor.isTerminated()) {
 				this.executor.shutdownNow();
 			}
+			if (fjp != null && !fjp.isTerminated()) {
+				fjp.shutdownNow();
+			}
 		}
 	}
 
@@ -180,6 +203,72 @@ public class DipThreadPool {
 		return this.executor;
 	}
 
+	/**
+	 * Returns a work-stealing pool with as many threads as this thread pool.
+	 * The work-stealing pool is created lazily, and shut down together with
+	 * this thread pool. Meant for fine-grained, data parallel work (e.g. tiles
+	 * of an image) that is submitted from tasks running on this thread pool,
+	 * s.t. such tasks don't have to wait for workers of their own pool.
+	 *
+	 * @return the work-stealing pool.
+	 */
+	public synchronized ForkJoinPool getForkJoinPool() {
+		if (this.forkJoinPool == null) {
+			final String prefix = this.poolName + "-fj-";
+			final AtomicInteger number = new AtomicInteger(1);
+			this.forkJoinPool = new ForkJoinPool(
+					Math.max(1, this.poolSize),
+					(pool) -> {
+						final ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+						t.setName(prefix + number.getAndIncrement());
+						return t;
+					},
+					null,
+					false
+			);
+		}
+		return this.forkJoinPool;
+	}
+
+	/**
+	 * Takes a worker permit, waiting for one to be released if needed. There
+	 * are as many worker permits as threads in the pool. Permits are taken by
+	 * whoever keeps a core busy on behalf of this pool (e.g. a processor run by
+	 * a pipeline executor, or the workers of a data parallel filter), s.t.
+	 * nested parallelism never keeps more threads busy than there are threads
+	 * in the pool.
+	 *
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public void acquireWorker() throws InterruptedException {
+		this.workers.acquire();
+	}
+
+	/**
+	 * Takes up to the given number of worker permits, without waiting.
+	 *
+	 * @param n the number of worker permits wanted.
+	 * @return the number of worker permits taken, between 0 and {@code n}.
+	 */
+	public int tryAcquireWorkers(int n) {
+		int acquired = 0;
+		while (acquired < n && this.workers.tryAcquire()) {
+			acquired++;
+		}
+		return acquired;
+	}
+
+	/**
+	 * Releases worker permits.
+	 *
+	 * @param n the number of worker permits to release.
+	 */
+	public void releaseWorkers(int n) {
+		if (n > 0) {
+			this.workers.release(n);
+		}
+	}
+
 	@Override
 	public String toString() {
 		final StringBuilder sb = new StringBuilder();
@@ -0,0 +1,277 @@
+package ch.unifr.diva.dip.api.utils;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A multi-resolution (mip-mapped) image pyramid, cut into square tiles. Level
+ * 0 is the image itself, and each following level halves the width and height
+ * of the previous one, down to a level that fits into a single tile. Levels
+ * are only computed on first access, and kept from then on.
+ *
+ * <p>
+ * Thread-safe. Tiles are usually requested from background threads (see
+ * {@code TiledImageView}). Levels already computed are read without locking,
+ * and a level that still needs to be computed is locked on its own, s.t.
+ * it's computed only once.
+ */
+public class ImagePyramid {
+
+	/**
+	 * The default tile size in pixels.
+	 */
+	public final static int DEFAULT_TILE_SIZE = 256;
+
+	private final static AtomicLong nextId = new AtomicLong();
+
+	private final long id;
+	private final int tileSize;
+	private final int[] widths;
+	private final int[] heights;
+	private final AtomicReferenceArray<BufferedImage> levels;
+	private final Object[] locks;
+
+	/**
+	 * Creates a new image pyramid with the default tile size.
+	 *
+	 * @param image the image (level 0).
+	 */
+	public ImagePyramid(BufferedImage image) {
+		this(image, DEFAULT_TILE_SIZE);
+	}
+
+	/**
+	 * Creates a new image pyramid.
+	 *
+	 * @param image the image (level 0).
+	 * @param tileSize the width and height of the tiles in pixels.
+	 */
+	public ImagePyramid(BufferedImage image, int tileSize) {
+		if (tileSize < 1) {
+			throw new IllegalArgumentException("invalid tile size: " + tileSize);
+		}
+		this.id = nextId.getAndIncrement();
+		this.tileSize = tileSize;
+
+		int n = 1;
+		int w = image.getWidth();
+		int h = image.getHeight();
+		while (w > tileSize || h > tileSize) {
+			w = (w + 1) / 2;
+			h = (h + 1) / 2;
+			n++;
+		}
+
+		this.widths = new int[n];
+		this.heights = new int[n];
+		this.levels = new AtomicReferenceArray<>(n);
+		this.locks = new Object[n];
+		this.widths[0] = image.getWidth();
+		this.heights[0] = image.getHeight();
+		this.levels.set(0, image);
+		for (int i = 1; i < n; i++) {
+			this.widths[i] = (this.widths[i - 1] + 1) / 2;
+			this.heights[i] = (this.heights[i - 1] + 1) / 2;
+			this.locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Returns the id of the image pyramid. Unique within the JVM, s.t. tiles
+	 * can be identified (e.g. in a cache) without holding on to the pyramid.
+	 *
+	 * @return the id of the image pyramid.
+	 */
+	public long getId() {
+		return this.id;
+	}
+
+	/**
+	 * Returns the width of the image.
+	 *
+	 * @return the width of the image (level 0).
+	 */
+	public int getWidth() {
+		return this.widths[0];
+	}
+
+	/**
+	 * Returns the height of the image.
+	 *
+	 * @return the height of the image (level 0).
+	 */
+	public int getHeight() {
+		return this.heights[0];
+	}
+
+	/**
+	 * Returns the tile size.
+	 *
+	 * @return the width and height of the tiles in pixels.
+	 */
+	public int getTileSize() {
+		return this.tileSize;
+	}
+
+	/**
+	 * Returns the number of levels. The last level fits into a single tile.
+	 *
+	 * @return the number of levels.
+	 */
+	public int getNumLevels() {
+		return this.levels.length();
+	}
+
+	/**
+	 * Returns the width of a level.
+	 *
+	 * @param level the level.
+	 * @return the width of the level in pixels.
+	 */
+	public int getLevelWidth(int level) {
+		return this.widths[level];
+	}
+
+	/**
+	 * Returns the height of a level.
+	 *
+	 * @param level the level.
+	 * @return the height of the level in pixels.
+	 */
+	public int getLevelHeight(int level) {
+		return this.heights[level];
+	}
+
+	/**
+	 * Returns the horizontal scale factor of a level. This is the factor a
+	 * level needs to be scaled by to cover the image again (roughly a power of
+	 * two).
+	 *
+	 * @param level the level.
+	 * @return the horizontal scale factor.
+	 */
+	public double getScaleX(int level) {
+		return this.widths[0] / (double) this.widths[level];
+	}
+
+	/**
+	 * Returns the vertical scale factor of a level. This is the factor a level
+	 * needs to be scaled by to cover the image again (roughly a power of two).
+	 *
+	 * @param level the level.
+	 * @return the vertical scale factor.
+	 */
+	public double getScaleY(int level) {
+		return this.heights[0] / (double) this.heights[level];
+	}
+
+	/**
+	 * Returns the number of tile columns of a level.
+	 *
+	 * @param level the level.
+	 * @return the number of tile columns.
+	 */
+	public int getColumns(int level) {
+		return (this.widths[level] + this.tileSize - 1) / this.tileSize;
+	}
+
+	/**
+	 * Returns the number of tile rows of a level.
+	 *
+	 * @param level the level.
+	 * @return the number of tile rows.
+	 */
+	public int getRows(int level) {
+		return (this.heights[level] + this.tileSize - 1) / this.tileSize;
+	}
+
+	/**
+	 * Returns the level to be displayed at the given zoom factor. This is the
+	 * coarsest level that still has at least the resolution of the screen.
+	 *
+	 * @param zoom the zoom factor (1.0 for 100%).
+	 * @return the level.
+	 */
+	public int levelOf(double zoom) {
+		if (!(zoom > 0) || zoom >= 1) {
+			return 0;
+		}
+		final int level = (int) Math.floor(Math.log(1 / zoom) / Math.log(2) + 1e-9);
+		return Math.min(level, this.levels.length() - 1);
+	}
+
+	/**
+	 * Returns a level of the pyramid. Computes the level (and all levels in
+	 * between) if not done already.
+	 *
+	 * @param level the level.
+	 * @return the image of the level.
+	 */
+	public BufferedImage getLevel(int level) {
+		final BufferedImage image = this.levels.get(level);
+		if (image != null) {
+			return image;
+		}
+
+		// up from the finest level computed so far, one level at a time
+		int i = level - 1;
+		while (this.levels.get(i) == null) {
+			i--;
+		}
+		BufferedImage previous = this.levels.get(i);
+		for (i = i + 1; i <= level; i++) {
+			synchronized (this.locks[i]) {
+				BufferedImage current = this.levels.get(i);
+				if (current == null) {
+					current = downscale(previous, this.widths[i], this.heights[i]);
+					this.levels.set(i, current);
+				}
+				previous = current;
+			}
+		}
+		return previous;
+	}
+
+	/**
+	 * Returns a tile of a level. The tile shares its data with the level, and
+	 * is smaller than the tile size at the right and bottom border.
+	 *
+	 * @param level the level.
+	 * @param column the column of the tile.
+	 * @param row the row of the tile.
+	 * @return the tile.
+	 */
+	public BufferedImage getTile(int level, int column, int row) {
+		final BufferedImage image = getLevel(level);
+		final int x = column * this.tileSize;
+		final int y = row * this.tileSize;
+		return image.getSubimage(
+				x,
+				y,
+				Math.min(this.tileSize, this.widths[level] - x),
+				Math.min(this.tileSize, this.heights[level] - y)
+		);
+	}
+
+	protected static BufferedImage downscale(BufferedImage src, int width, int height) {
+		final BufferedImage dst = new BufferedImage(
+				width,
+				height,
+				src.getColorModel().hasAlpha()
+						? BufferedImage.TYPE_INT_ARGB
+						: BufferedImage.TYPE_INT_RGB
+		);
+		final Graphics2D g = dst.createGraphics();
+		g.setRenderingHint(
+				RenderingHints.KEY_INTERPOLATION,
+				RenderingHints.VALUE_INTERPOLATION_BILINEAR
+		);
+		g.drawImage(src, 0, 0, width, height, null);
+		g.dispose();
+		return dst;
+	}
+
+}
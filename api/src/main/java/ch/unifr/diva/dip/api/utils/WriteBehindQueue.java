@@ -0,0 +1,361 @@
+package ch.unifr.diva.dip.api.utils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-behind queue. Files are written by a background thread, while their
+ * values stay available in memory until written, s.t. writing (and encoding)
+ * persistent data isn't on the critical path of the pipeline anymore.
+ *
+ * <p>
+ * Values still waiting to be written should be read with {@code get()}
+ * first, before falling back to read the file. If the pending values exceed
+ * the memory limit, the oldest ones (least likely needed by processors
+ * further down the pipeline) are written on the calling thread right away.
+ * All pending writes need to be flushed before the files are read by other
+ * means (e.g. before saving a project), or discarded before the files are
+ * deleted.
+ *
+ * <p>
+ * This class is thread-safe.
+ */
+public class WriteBehindQueue {
+
+	private static final Logger log = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+	/**
+	 * A write of some value to a file.
+	 */
+	@FunctionalInterface
+	public interface Writer {
+
+		/**
+		 * Writes the value to the file.
+		 *
+		 * @throws IOException in case of an I/O error.
+		 */
+		public void write() throws IOException;
+	}
+
+	private static class Entry {
+
+		final Path file;
+		final Object value;
+		final long bytes;
+		final Writer writer;
+
+		Entry(Path file, Object value, long bytes, Writer writer) {
+			this.file = file;
+			this.value = value;
+			this.bytes = bytes;
+			this.writer = writer;
+		}
+	}
+
+	private final String name;
+	// pending writes, oldest first
+	private final LinkedHashMap<Path, Entry> pending;
+	// files currently being written
+	private final Set<Path> writing;
+	private volatile long maxBytes;
+	private long pendingBytes;
+	private Thread thread;
+
+	/**
+	 * Creates a new write-behind queue.
+	 *
+	 * @param name the name of the queue (used to name its thread).
+	 * @param maxBytes the maximum number of bytes of pending values.
+	 */
+	public WriteBehindQueue(String name, long maxBytes) {
+		this.name = name;
+		this.pending = new LinkedHashMap<>();
+		this.writing = new HashSet<>();
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Sets the maximum number of bytes of pending values.
+	 *
+	 * @param maxBytes the maximum number of bytes of pending values.
+	 */
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the maximum number of bytes of pending values.
+	 *
+	 * @return the maximum number of bytes of pending values.
+	 */
+	public long getMaxBytes() {
+		return this.maxBytes;
+	}
+
+	/**
+	 * Returns the number of bytes of pending values.
+	 *
+	 * @return the number of bytes of pending values.
+	 */
+	public synchronized long getPendingBytes() {
+		return this.pendingBytes;
+	}
+
+	/**
+	 * Returns the number of pending writes.
+	 *
+	 * @return the number of pending writes.
+	 */
+	public synchronized int size() {
+		return this.pending.size();
+	}
+
+	/**
+	 * Queues a write. A pending write to the same file is replaced.
+	 *
+	 * @param file the file to write to.
+	 * @param value the value to be written.
+	 * @param bytes the (estimated) size of the value in memory.
+	 * @param writer the writer writing the value to the file.
+	 */
+	public void write(Path file, Object value, long bytes, Writer writer) {
+		final Path key = toKey(file);
+		synchronized (this) {
+			final Entry old = this.pending.remove(key);
+			if (old != null) {
+				this.pendingBytes -= old.bytes;
+			}
+			this.pending.put(key, new Entry(key, value, bytes, writer));
+			this.pendingBytes += bytes;
+			startThread();
+			notifyAll();
+		}
+
+		// spill the oldest values if over the limit
+		while (getPendingBytes() > this.maxBytes) {
+			if (!writeNext((p) -> true, false)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Returns the pending value of a file.
+	 *
+	 * @param file the file.
+	 * @return the value still waiting to be written to the file, or
+	 * {@code null}.
+	 */
+	public synchronized Object get(Path file) {
+		final Entry entry = this.pending.get(toKey(file));
+		return (entry == null) ? null : entry.value;
+	}
+
+	/**
+	 * Returns the pending value of a file.
+	 *
+	 * @param <T> type of the value.
+	 * @param file the file.
+	 * @param clazz class of the value.
+	 * @return the value still waiting to be written to the file, or
+	 * {@code null} (also if not of the given class).
+	 */
+	public <T> T get(Path file, Class<T> clazz) {
+		final Object value = get(file);
+		if (clazz.isInstance(value)) {
+			return clazz.cast(value);
+		}
+		return null;
+	}
+
+	/**
+	 * Writes all pending values, and waits until done.
+	 */
+	public void flush() {
+		flush((p) -> true);
+	}
+
+	/**
+	 * Writes all pending values of files in a directory (or its
+	 * subdirectories), and waits until done.
+	 *
+	 * @param directory the directory.
+	 */
+	public void flush(Path directory) {
+		final Path key = toKey(directory);
+		flush((p) -> isIn(p, key));
+	}
+
+	private void flush(Predicate<Path> filter) {
+		while (writeNext(filter, true)) {
+			// keep going
+		}
+	}
+
+	/**
+	 * Discards all pending values of files in a directory (or its
+	 * subdirectories), and waits for writes in progress to be done. Call this
+	 * before deleting the files.
+	 *
+	 * @param directory the directory.
+	 */
+	public synchronized void discard(Path directory) {
+		final Path key = toKey(directory);
+		final Iterator<Map.Entry<Path, Entry>> it = this.pending.entrySet().iterator();
+		while (it.hasNext()) {
+			final Entry entry = it.next().getValue();
+			if (isIn(entry.file, key)) {
+				this.pendingBytes -= entry.bytes;
+				it.remove();
+			}
+		}
+		try {
+			while (isWriting(key)) {
+				wait();
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private boolean isWriting(Path directory) {
+		for (Path file : this.writing) {
+			if (isIn(file, directory)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// writes the oldest pending value accepted by the filter on the calling
+	// thread. Returns false if there is nothing (left) to write. Waits for
+	// writes of other threads if block is true, or returns false otherwise.
+	private boolean writeNext(Predicate<Path> filter, boolean block) {
+		final Entry entry;
+		synchronized (this) {
+			Entry next = null;
+			while (next == null) {
+				boolean waiting = false;
+				for (Entry e : this.pending.values()) {
+					if (!filter.test(e.file)) {
+						continue;
+					}
+					if (this.writing.contains(e.file)) {
+						waiting = true;
+						continue;
+					}
+					next = e;
+					break;
+				}
+				if (next == null) {
+					if (!waiting && !isWriting(filter)) {
+						return false;
+					}
+					if (!block) {
+						return false;
+					}
+					try {
+						wait();
+					} catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+						return false;
+					}
+				}
+			}
+			entry = next;
+			this.writing.add(entry.file);
+		}
+
+		try {
+			entry.writer.write();
+		} catch (IOException | RuntimeException ex) {
+			log.warn("failed to write file: {}", entry.file, ex);
+		} finally {
+			synchronized (this) {
+				this.writing.remove(entry.file);
+				// unless replaced by a newer value in the meantime
+				if (this.pending.get(entry.file) == entry) {
+					this.pending.remove(entry.file);
+					this.pendingBytes -= entry.bytes;
+				}
+				notifyAll();
+			}
+		}
+		return true;
+	}
+
+	private boolean isWriting(Predicate<Path> filter) {
+		for (Path file : this.writing) {
+			if (filter.test(file)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void startThread() {
+		if (this.thread != null) {
+			return;
+		}
+		this.thread = new Thread(() -> {
+			while (true) {
+				synchronized (this) {
+					while (!hasWritable()) {
+						try {
+							wait();
+						} catch (InterruptedException ex) {
+							this.thread = null;
+							return;
+						}
+					}
+				}
+				writeNext((p) -> true, false);
+			}
+		});
+		this.thread.setName(this.name + "-thread");
+		this.thread.setPriority(Thread.NORM_PRIORITY - 1);
+		// must not keep the JVM alive; pending writes need to be flushed
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	private boolean hasWritable() {
+		for (Path file : this.pending.keySet()) {
+			if (!this.writing.contains(file)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Path toKey(Path file) {
+		return file.toAbsolutePath().normalize();
+	}
+
+	// paths of distinct (zip) file systems may start with the same names
+	private static boolean isIn(Path file, Path directory) {
+		return file.getFileSystem() == directory.getFileSystem()
+				&& file.startsWith(directory);
+	}
+
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName()
+				+ "@"
+				+ Integer.toHexString(this.hashCode())
+				+ "{"
+				+ "name=" + this.name
+				+ ", max-bytes=" + this.maxBytes
+				+ "}";
+	}
+
+}
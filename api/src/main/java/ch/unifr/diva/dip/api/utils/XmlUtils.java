@@ -6,8 +6,9 @@ import java.io.OutputStream;
 import java.io.StringWriter;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
@@ -39,6 +40,12 @@ public class XmlUtils {
 	private static final Logger log = LoggerFactory.getLogger(XmlUtils.class);
 	private static final String DIP_API_DS_PACKAGE = "ch.unifr.diva.dip.api.datastructures";
 
+	/**
+	 * The format name of XML (e.g. to write objects with, as opposed to
+	 * {@code BinaryCodec.FORMAT}).
+	 */
+	public static final String XML_FORMAT = "XML";
+
 	/**
 	 * Additional classes for JAXB contexts. Add all data structures in the DIP
 	 * API s.t. they can be easily marshalled to XML (e.g. in a HashMap). While
@@ -83,18 +90,104 @@ public class XmlUtils {
 		return classes;
 	}
 
+	/**
+	 * Maximum number of idle (un-)marshallers pooled per class.
+	 */
+	private static final int MAX_POOLED = 16;
+
+	/**
+	 * JAXB context of a class, created once (and only once) upon first use,
+	 * and pools of idle (un-)marshallers. JAXB contexts are thread-safe, while
+	 * (un-)marshallers are not, but they're cheap to reuse (as opposed to
+	 * creating new ones), so each thread borrows one of its own from the pool
+	 * and returns it once done.
+	 */
+	private static class ContextHolder {
+
+		private final Class<?> clazz;
+		private final ConcurrentLinkedQueue<Marshaller> marshallers = new ConcurrentLinkedQueue<>();
+		private final ConcurrentLinkedQueue<Unmarshaller> unmarshallers = new ConcurrentLinkedQueue<>();
+		private volatile JAXBContext context;
+
+		public ContextHolder(Class<?> clazz) {
+			this.clazz = clazz;
+		}
+
+		public JAXBContext getContext() throws JAXBException {
+			JAXBContext c = this.context;
+			if (c == null) {
+				synchronized (this) {
+					c = this.context;
+					if (c == null) {
+						c = JAXBContext.newInstance(getClasses(this.clazz));
+						this.context = c;
+					}
+				}
+			}
+			return c;
+		}
+
+		public Marshaller borrowMarshaller() throws JAXBException {
+			final Marshaller m = this.marshallers.poll();
+			return (m == null) ? newMarshaller(getContext()) : m;
+		}
+
+		public void returnMarshaller(Marshaller m) {
+			if (this.marshallers.size() < MAX_POOLED) {
+				this.marshallers.offer(m);
+			}
+		}
+
+		public Unmarshaller borrowUnmarshaller() throws JAXBException {
+			final Unmarshaller m = this.unmarshallers.poll();
+			return (m == null) ? getContext().createUnmarshaller() : m;
+		}
+
+		public void returnUnmarshaller(Unmarshaller m) {
+			if (this.unmarshallers.size() < MAX_POOLED) {
+				this.unmarshallers.offer(m);
+			}
+		}
+
+	}
+
 	/**
 	 * Creating JAXB contexts is considered quite expensive, so we store them
-	 * statically. And yes, they're completely thread-safe.
+	 * statically. Contexts are attached to their class (instead of being put
+	 * in a map), s.t. the classes of a bundle (and its class loader) can still
+	 * be unloaded once the bundle is gone, while a context for the class of a
+	 * reloaded bundle gets created anew.
 	 */
-	private static final HashMap<Class<?>, JAXBContext> jaxbContexts = new HashMap<>();
+	private static final ClassValue<ContextHolder> jaxbContexts = new ClassValue<ContextHolder>() {
+		@Override
+		protected ContextHolder computeValue(Class<?> type) {
+			// cheap; concurrently computed holders get discarded, and only
+			// the holder that made it creates the context
+			return new ContextHolder(type);
+		}
+	};
 
 	private static JAXBContext getContext(Class<?> clazz) throws JAXBException {
-		if (!jaxbContexts.containsKey(clazz)) {
-			final JAXBContext context = JAXBContext.newInstance(getClasses(clazz));
-			jaxbContexts.put(clazz, context);
+		return jaxbContexts.get(clazz).getContext();
+	}
+
+	/**
+	 * Creates the JAXB contexts of the given classes, s.t. they're ready once
+	 * needed. Contexts are created in the background, on the given executor.
+	 *
+	 * @param executor the executor to create the JAXB contexts on.
+	 * @param classes the classes.
+	 */
+	public static void warmUp(Executor executor, Class<?>... classes) {
+		for (Class<?> clazz : classes) {
+			executor.execute(() -> {
+				try {
+					getContext(clazz);
+				} catch (JAXBException ex) {
+					log.warn("failed to create JAXB context: {}", clazz, ex);
+				}
+			});
 		}
-		return jaxbContexts.get(clazz);
 	}
 
 	/**
@@ -108,8 +201,13 @@ public class XmlUtils {
 	 */
 	@SuppressWarnings("unchecked")
 	public static <T> T unmarshal(Class<T> clazz, Path file) throws JAXBException {
-		final Unmarshaller m = getUnmarshaller(clazz);
-		return (T) m.unmarshal(file.toFile());
+		final ContextHolder holder = jaxbContexts.get(clazz);
+		final Unmarshaller m = holder.borrowUnmarshaller();
+		try {
+			return (T) m.unmarshal(file.toFile());
+		} finally {
+			holder.returnUnmarshaller(m);
+		}
 	}
 
 	/**
@@ -123,12 +221,18 @@ public class XmlUtils {
 	 */
 	@SuppressWarnings("unchecked")
 	public static <T> T unmarshal(Class<T> clazz, InputStream stream) throws JAXBException {
-		final Unmarshaller m = getUnmarshaller(clazz);
-		return (T) m.unmarshal(stream);
+		final ContextHolder holder = jaxbContexts.get(clazz);
+		final Unmarshaller m = holder.borrowUnmarshaller();
+		try {
+			return (T) m.unmarshal(stream);
+		} finally {
+			holder.returnUnmarshaller(m);
+		}
 	}
 
 	/**
-	 * Returns an unmarshaller for the specified class.
+	 * Returns a new unmarshaller for the specified class. The unmarshaller is
+	 * owned by the caller (and may be configured at will).
 	 *
 	 * @param clazz Class of the Java object to be unmarshalled.
 	 * @return an unmarshaller for objects of type clazz.
@@ -147,8 +251,13 @@ public class XmlUtils {
 	 * @throws JAXBException
 	 */
 	public static void marshal(Object obj, Path file) throws JAXBException {
-		final Marshaller m = getMarshaller(obj);
-		m.marshal(obj, file.toFile());
+		final ContextHolder holder = jaxbContexts.get(obj.getClass());
+		final Marshaller m = holder.borrowMarshaller();
+		try {
+			m.marshal(obj, file.toFile());
+		} finally {
+			holder.returnMarshaller(m);
+		}
 	}
 
 	/**
@@ -159,20 +268,29 @@ public class XmlUtils {
 	 * @throws JAXBException
 	 */
 	public static void marshal(Object obj, OutputStream stream) throws JAXBException {
-		final Marshaller m = getMarshaller(obj);
-		m.marshal(obj, stream);
+		final ContextHolder holder = jaxbContexts.get(obj.getClass());
+		final Marshaller m = holder.borrowMarshaller();
+		try {
+			m.marshal(obj, stream);
+		} finally {
+			holder.returnMarshaller(m);
+		}
 	}
 
 	/**
-	 * Returns a marshaller for the class of the given object.
+	 * Returns a new marshaller for the class of the given object. The
+	 * marshaller is owned by the caller (and may be configured at will).
 	 *
 	 * @param obj Java object to be marshalled to an XML file.
 	 * @return a marshaller for the class of the given object.
 	 * @throws JAXBException
 	 */
 	public static Marshaller getMarshaller(Object obj) throws JAXBException {
-		final JAXBContext c = getContext(obj.getClass());
-		final Marshaller m = c.createMarshaller();
+		return newMarshaller(getContext(obj.getClass()));
+	}
+
+	private static Marshaller newMarshaller(JAXBContext context) throws JAXBException {
+		final Marshaller m = context.createMarshaller();
 		m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
 		return m;
 	}
@@ -2,10 +2,18 @@ package ch.unifr.diva.dip.api.datastructures;
 
 import ch.unifr.diva.dip.api.utils.BufferedIO;
 import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Random;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -127,4 +135,125 @@ public class BufferedMatrixTest {
 		assertArrayEquals("toDouble2D equals original 2D array", samples, ret);
 	}
 
+	public BufferedMatrix newRandomMatrix(int width, int height, int bands, BufferedMatrix.DataType type, BufferedMatrix.Interleave interleave) {
+		final BufferedMatrix mat = new BufferedMatrix(width, height, bands, type, interleave);
+		final Random random = new Random(42);
+		final WritableRaster raster = mat.getRaster();
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				for (int b = 0; b < bands; b++) {
+					raster.setSample(x, y, b, random.nextGaussian() * 1000);
+				}
+			}
+		}
+		return mat;
+	}
+
+	public void assertMatrixEquals(String msg, BufferedMatrix expected, BufferedMatrix actual) {
+		assertEquals(msg + ", equal width", expected.getWidth(), actual.getWidth());
+		assertEquals(msg + ", equal height", expected.getHeight(), actual.getHeight());
+		assertEquals(msg + ", equal num. bands", expected.getNumBands(), actual.getNumBands());
+		assertEquals(msg + ", equal sample precision", expected.getSampleDataType(), actual.getSampleDataType());
+		assertEquals(msg + ", equal interleave", expected.getInterleave(), actual.getInterleave());
+		assertArrayEquals(msg + ", equal samples", expected.getPixelsDouble(), actual.getPixelsDouble(), 0);
+	}
+
+	@Test
+	public void testWriteAndReadbackBands() throws IOException {
+		for (BufferedMatrix.DataType type : BufferedMatrix.DataType.values()) {
+			for (BufferedMatrix.Interleave interleave : BufferedMatrix.Interleave.values()) {
+				final String msg = "type=" + type + ", interleave=" + interleave;
+				// large enough to be streamed in multiple chunks
+				final BufferedMatrix mat = newRandomMatrix(131, 97, 3, type, interleave);
+
+				// memory-mapped
+				final Path file = parent.newFile().toPath();
+				BufferedIO.writeMat(mat, file);
+				assertMatrixEquals(msg, mat, BufferedIO.readMat(file));
+
+				// streamed
+				final ByteArrayOutputStream os = new ByteArrayOutputStream();
+				BufferedIO.writeMat(mat, os);
+				assertMatrixEquals(msg, mat, BufferedIO.readMat(new ByteArrayInputStream(os.toByteArray())));
+				assertMatrixEquals(msg, mat, BufferedIO.readMat(Files.newInputStream(file)));
+			}
+		}
+	}
+
+	@Test
+	public void testReadVersion1() throws IOException {
+		final int width = 5;
+		final int height = 3;
+		final BufferedMatrix mat = newRandomMatrix(width, height, 2, BufferedMatrix.DataType.FLOAT, BufferedMatrix.Interleave.BSQ);
+
+		// header without version and byte order, samples in big endian
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.write("BMAT".getBytes(StandardCharsets.US_ASCII));
+			out.writeInt(width);
+			out.writeInt(height);
+			out.writeInt(2);
+			out.writeInt(5);
+			out.write("FLOAT".getBytes(StandardCharsets.US_ASCII));
+			out.writeInt(3);
+			out.write("BSQ".getBytes(StandardCharsets.US_ASCII));
+			for (int b = 0; b < 2; b++) {
+				for (float sample : mat.getSamplesFloat(b)) {
+					out.writeFloat(sample);
+				}
+			}
+		}
+		final Path file = parent.newFile().toPath();
+		Files.write(file, bytes.toByteArray());
+
+		assertMatrixEquals("version 1", mat, BufferedIO.readMat(file));
+		assertMatrixEquals("version 1", mat, BufferedIO.readMat(new ByteArrayInputStream(bytes.toByteArray())));
+	}
+
+	@Test
+	public void testMappedMatrix() throws IOException {
+		for (BufferedMatrix.DataType type : BufferedMatrix.DataType.values()) {
+			for (BufferedMatrix.Interleave interleave : BufferedMatrix.Interleave.values()) {
+				final String msg = "type=" + type + ", interleave=" + interleave;
+				final BufferedMatrix mat = newRandomMatrix(61, 43, 3, type, interleave);
+
+				// samples written to a mapped matrix end up in the file
+				final Path file = parent.newFile().toPath();
+				final BufferedMatrix mapped = BufferedIO.createMappedMat(file, 61, 43, 3, type, interleave);
+				assertTrue(msg, mapped.isOutOfCore());
+				mapped.getRaster().setRect(mat.getRaster());
+				assertMatrixEquals(msg, mat, mapped);
+				assertMatrixEquals(msg, mat, BufferedIO.readMat(file));
+
+				// ...and regular files can be mapped
+				final Path other = parent.newFile().toPath();
+				BufferedIO.writeMat(mat, other);
+				assertMatrixEquals(msg, mat, BufferedIO.mapMat(other, false));
+			}
+		}
+	}
+
+	@Test
+	public void testOutOfCoreThreshold() {
+		final long threshold = BufferedMatrix.getOutOfCoreThreshold();
+		try {
+			BufferedMatrix.setOutOfCoreThreshold(Long.MAX_VALUE);
+			assertFalse(BufferedMatrix.createBufferedMatrix(8, 8, 2, BufferedMatrix.DataType.FLOAT, BufferedMatrix.Interleave.BSQ).isOutOfCore());
+			BufferedMatrix.setOutOfCoreThreshold(0);
+			final BufferedMatrix mat = BufferedMatrix.createBufferedMatrix(8, 8, 2, BufferedMatrix.DataType.FLOAT, BufferedMatrix.Interleave.BSQ);
+			assertTrue(mat.isOutOfCore());
+			mat.getRaster().setSample(7, 7, 1, 4.5f);
+			assertEquals(4.5f, mat.getRaster().getSampleFloat(7, 7, 1), 0);
+			// the temporary file is gone, but the mapping is still valid
+			final Path file = ((MappedDataBuffer) mat.getRaster().getDataBuffer()).getFile();
+			if (!System.getProperty("os.name").toLowerCase().startsWith("windows")) {
+				assertFalse(Files.exists(file));
+			}
+			mat.getRaster().setSample(0, 0, 0, 1.5f);
+			assertEquals(1.5f, mat.getRaster().getSampleFloat(0, 0, 0), 0);
+		} finally {
+			BufferedMatrix.setOutOfCoreThreshold(threshold);
+		}
+	}
+
 }
@@ -0,0 +1,152 @@
+package ch.unifr.diva.dip.api.utils;
+
+import ch.unifr.diva.dip.api.datastructures.Circle2D;
+import ch.unifr.diva.dip.api.datastructures.Circles2D;
+import ch.unifr.diva.dip.api.datastructures.Floats1D;
+import ch.unifr.diva.dip.api.datastructures.Floats2D;
+import ch.unifr.diva.dip.api.datastructures.Lines2D;
+import ch.unifr.diva.dip.api.datastructures.MultiFloats2D;
+import ch.unifr.diva.dip.api.datastructures.NestedRectangle2D;
+import ch.unifr.diva.dip.api.datastructures.NestedRectangles2D;
+import ch.unifr.diva.dip.api.datastructures.NestedShape2D;
+import ch.unifr.diva.dip.api.datastructures.NestedShapes2D;
+import ch.unifr.diva.dip.api.datastructures.Point2D;
+import ch.unifr.diva.dip.api.datastructures.Points2D;
+import ch.unifr.diva.dip.api.datastructures.Polygon2D;
+import ch.unifr.diva.dip.api.datastructures.Polygons2D;
+import ch.unifr.diva.dip.api.datastructures.Polyline2D;
+import ch.unifr.diva.dip.api.datastructures.Polylines2D;
+import ch.unifr.diva.dip.api.datastructures.Rectangle2D;
+import ch.unifr.diva.dip.api.datastructures.Shape2D;
+import ch.unifr.diva.dip.api.datastructures.Shapes2D;
+import ch.unifr.diva.dip.api.datastructures.TestUtils;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * {@code BinaryCodec} unit tests.
+ */
+public class BinaryCodecTest {
+
+	public byte[] write(Object obj) throws IOException {
+		assertTrue("can write: " + obj, BinaryCodec.canWrite(obj));
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BinaryCodec.write(obj, baos);
+		return baos.toByteArray();
+	}
+
+	public <T> T read(Class<T> clazz, byte[] bytes) throws IOException {
+		final InputStream is = new BufferedInputStream(new ByteArrayInputStream(bytes));
+		assertTrue("is binary", BinaryCodec.isBinary(is));
+		return BinaryCodec.read(clazz, is);
+	}
+
+	public <T> void assertRoundTrip(Class<T> clazz, T obj) throws IOException {
+		assertEquals(obj, read(clazz, write(obj)));
+	}
+
+	// a page of text lines, each with some letters, in pixel coordinates
+	public NestedRectangles2D newTextLines(int lines, int letters) {
+		final List<NestedRectangle2D> list = new ArrayList<>();
+		for (int i = 0; i < lines; i++) {
+			final List<NestedRectangle2D> children = new ArrayList<>();
+			for (int j = 0; j < letters; j++) {
+				children.add(new NestedRectangle2D(100 + j * 12, 50 + i * 30, 10, 20));
+			}
+			list.add(new NestedRectangle2D(100, 50 + i * 30, letters * 12, 20, children));
+		}
+		return new NestedRectangles2D(list);
+	}
+
+	@Test
+	public void testShapes() throws IOException {
+		assertRoundTrip(Points2D.class, TestUtils.newPoints2D(64));
+		assertRoundTrip(Point2D.class, TestUtils.newPoint2D());
+		assertRoundTrip(Lines2D.class, TestUtils.newLines2D(64));
+		assertRoundTrip(Rectangle2D.class, TestUtils.newRectangle2D());
+		assertRoundTrip(Circle2D.class, TestUtils.newCircle2D());
+		assertRoundTrip(Circles2D.class, new Circles2D(Arrays.asList(
+				TestUtils.newCircle2D(),
+				new Circle2D(1, 2, 3)
+		)));
+
+		final Polygon2D polygon = new Polygon2D(Arrays.asList(
+				new Point2D(0, 0), new Point2D(10, 0), new Point2D(5, -0.0)
+		));
+		final Polyline2D polyline = new Polyline2D(Arrays.asList(
+				new Point2D(-1e300, Double.NaN), new Point2D(Double.NEGATIVE_INFINITY, 0.5)
+		));
+		assertRoundTrip(Polygon2D.class, polygon);
+		assertRoundTrip(Polygons2D.class, new Polygons2D(Arrays.asList(polygon, polygon)));
+		assertRoundTrip(Polylines2D.class, new Polylines2D(Arrays.asList(polyline, polyline)));
+
+		final Shapes2D shapes = new Shapes2D(Arrays.<Shape2D>asList(
+				polygon, polyline, TestUtils.newRectangle2D(), TestUtils.newCircle2D()
+		));
+		assertRoundTrip(Shapes2D.class, shapes);
+	}
+
+	@Test
+	public void testNestedShapes() throws IOException {
+		final NestedRectangles2D lines = newTextLines(100, 40);
+		final byte[] bytes = write(lines);
+		assertEquals(lines, read(NestedRectangles2D.class, bytes));
+		// 4 columns of (mostly) 1 byte deltas, and a byte for the children
+		assertTrue("compact: " + bytes.length, bytes.length < lines.size() * 41 * 8);
+
+		assertRoundTrip(NestedRectangle2D.class, lines.get(0));
+		assertRoundTrip(NestedRectangle2D.class, new NestedRectangle2D(
+				new Rectangle2D(1.5, 2, 3, 4), null
+		));
+
+		final NestedShape2D nested = new NestedShape2D(
+				TestUtils.newCircle2D(),
+				Arrays.asList(
+						new NestedShape2D(TestUtils.newRectangle2D()),
+						new NestedShape2D(lines.get(1), null)
+				)
+		);
+		assertRoundTrip(NestedShape2D.class, nested);
+		assertRoundTrip(NestedShapes2D.class, new NestedShapes2D(Arrays.asList(nested, nested)));
+	}
+
+	@Test
+	public void testFloats() throws IOException {
+		assertRoundTrip(Floats1D.class, TestUtils.newFloats1D(17));
+		assertRoundTrip(Floats2D.class, TestUtils.newFloats2D(13, 7));
+		assertRoundTrip(MultiFloats2D.class, TestUtils.newMultiFloats2D(3, 5, 9));
+	}
+
+	@Test
+	public void testUnsupported() throws IOException {
+		assertFalse(BinaryCodec.canWrite("string"));
+		assertFalse(BinaryCodec.canWrite((Object) null));
+		assertFalse("polygons in polylines", BinaryCodec.canWrite(
+				new Polylines2D(Arrays.asList(new Polygon2D(new ArrayList<>())))
+		));
+
+		final InputStream xml = new BufferedInputStream(new ByteArrayInputStream(
+				"<points2D/>".getBytes(StandardCharsets.UTF_8)
+		));
+		assertFalse(BinaryCodec.isBinary(xml));
+		assertEquals("stream is reset", '<', xml.read());
+	}
+
+	@Test(expected = InvalidObjectException.class)
+	public void testUnexpectedType() throws IOException {
+		read(Lines2D.class, write(TestUtils.newPoints2D(3)));
+	}
+
+}
@@ -0,0 +1,104 @@
+package ch.unifr.diva.dip.api.utils;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * {@code BufferedIO} unit tests for the binary BufferedImage format.
+ */
+public class BufferedIOTest {
+
+	@Rule
+	public final TemporaryFolder parent = new TemporaryFolder();
+
+	public final List<Integer> types = Arrays.asList(
+			BufferedImage.TYPE_INT_RGB,
+			BufferedImage.TYPE_INT_ARGB,
+			BufferedImage.TYPE_INT_BGR,
+			BufferedImage.TYPE_3BYTE_BGR,
+			BufferedImage.TYPE_4BYTE_ABGR,
+			BufferedImage.TYPE_BYTE_GRAY,
+			BufferedImage.TYPE_USHORT_GRAY,
+			BufferedImage.TYPE_BYTE_BINARY
+	);
+
+	public BufferedImage newRandomImage(int width, int height, int type) {
+		final BufferedImage image = new BufferedImage(width, height, type);
+		final Random random = new Random(42);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				image.setRGB(x, y, random.nextInt());
+			}
+		}
+		return image;
+	}
+
+	public void assertImageEquals(String msg, BufferedImage expected, BufferedImage actual) {
+		assertEquals(msg + ", equal type", expected.getType(), actual.getType());
+		assertEquals(msg + ", equal width", expected.getWidth(), actual.getWidth());
+		assertEquals(msg + ", equal height", expected.getHeight(), actual.getHeight());
+		for (int b = 0; b < expected.getRaster().getNumBands(); b++) {
+			assertArrayEquals(
+					msg + ", equal samples of band " + b,
+					expected.getRaster().getSamples(0, 0, expected.getWidth(), expected.getHeight(), b, (int[]) null),
+					actual.getRaster().getSamples(0, 0, actual.getWidth(), actual.getHeight(), b, (int[]) null)
+			);
+		}
+	}
+
+	@Test
+	public void testWriteAndReadbackImage() throws IOException {
+		for (int type : types) {
+			for (BufferedIO.Compression compression : BufferedIO.Compression.values()) {
+				final String msg = "type=" + type + ", compression=" + compression;
+				final BufferedImage image = newRandomImage(37, 23, type);
+				final ByteArrayOutputStream os = new ByteArrayOutputStream();
+				BufferedIO.writeImage(image, os, compression);
+
+				final InputStream is = new BufferedInputStream(new ByteArrayInputStream(os.toByteArray()));
+				assertEquals(msg, BufferedIO.BUFFERED_IMAGE_FORMAT, BufferedIO.peekFormat(is));
+				assertImageEquals(msg, image, BufferedIO.readImage(is));
+			}
+		}
+	}
+
+	@Test
+	public void testWriteAndReadbackSubimage() throws IOException {
+		for (int type : types) {
+			final BufferedImage image = newRandomImage(64, 48, type).getSubimage(5, 7, 31, 17);
+			final Path file = parent.newFile().toPath();
+			BufferedIO.writeImage(image, file);
+			assertImageEquals("type=" + type, image, BufferedIO.readImage(file));
+		}
+	}
+
+	@Test
+	public void testUnsupportedImages() throws IOException {
+		assertFalse(BufferedIO.canWriteImage(
+				new BufferedImage(8, 8, BufferedImage.TYPE_BYTE_INDEXED)
+		));
+		final Path file = parent.newFile().toPath();
+		Files.write(file, new byte[]{(byte) 0x89, 'P', 'N', 'G', 0, 0});
+		try (InputStream is = new BufferedInputStream(Files.newInputStream(file))) {
+			assertNull(BufferedIO.peekFormat(is));
+			assertEquals(0x89, is.read());
+		}
+	}
+
+}
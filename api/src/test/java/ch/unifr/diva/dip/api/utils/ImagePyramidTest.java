@@ -0,0 +1,105 @@
+package ch.unifr.diva.dip.api.utils;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ * {@code ImagePyramid} unit tests.
+ */
+public class ImagePyramidTest {
+
+	public BufferedImage newImage(int width, int height) {
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				image.setRGB(x, y, (x * 7 + y * 13) & 0xFFFFFF);
+			}
+		}
+		return image;
+	}
+
+	@Test
+	public void testLevels() {
+		final ImagePyramid pyramid = new ImagePyramid(newImage(1000, 300), 128);
+		assertEquals(4, pyramid.getNumLevels());
+		assertEquals(1000, pyramid.getLevelWidth(0));
+		assertEquals(500, pyramid.getLevelWidth(1));
+		assertEquals(150, pyramid.getLevelHeight(1));
+		assertEquals(125, pyramid.getLevelWidth(3));
+		assertEquals(38, pyramid.getLevelHeight(3));
+		assertEquals(8, pyramid.getColumns(0));
+		assertEquals(3, pyramid.getRows(0));
+		assertEquals(1, pyramid.getColumns(3));
+
+		for (int i = 0; i < pyramid.getNumLevels(); i++) {
+			final BufferedImage level = pyramid.getLevel(i);
+			assertEquals(pyramid.getLevelWidth(i), level.getWidth());
+			assertEquals(pyramid.getLevelHeight(i), level.getHeight());
+		}
+		assertEquals(8.0, pyramid.getScaleX(3), 0);
+		assertEquals(300 / 38.0, pyramid.getScaleY(3), 1e-9);
+	}
+
+	@Test
+	public void testLevelOf() {
+		final ImagePyramid pyramid = new ImagePyramid(newImage(1000, 300), 128);
+		assertEquals(0, pyramid.levelOf(4.0));
+		assertEquals(0, pyramid.levelOf(1.0));
+		assertEquals(0, pyramid.levelOf(0.6));
+		assertEquals(1, pyramid.levelOf(0.5));
+		assertEquals(1, pyramid.levelOf(0.3));
+		assertEquals(2, pyramid.levelOf(0.25));
+		assertEquals(3, pyramid.levelOf(0.01));
+	}
+
+	@Test
+	public void testTiles() {
+		final BufferedImage image = newImage(300, 200);
+		final ImagePyramid pyramid = new ImagePyramid(image, 128);
+		final BufferedImage tile = pyramid.getTile(0, 2, 1);
+		assertEquals(300 - 256, tile.getWidth());
+		assertEquals(200 - 128, tile.getHeight());
+		for (int y = 0; y < tile.getHeight(); y++) {
+			for (int x = 0; x < tile.getWidth(); x++) {
+				assertEquals(image.getRGB(256 + x, 128 + y), tile.getRGB(x, y));
+			}
+		}
+		assertEquals(128, pyramid.getTile(1, 0, 0).getWidth());
+		assertEquals(150 - 128, pyramid.getTile(1, 1, 0).getWidth());
+	}
+
+	@Test
+	public void testConcurrentLevels() throws Exception {
+		final ImagePyramid pyramid = new ImagePyramid(newImage(1000, 300), 16);
+		final int last = pyramid.getNumLevels() - 1;
+		final int[] levels = new int[16];
+		final List<Future<BufferedImage>> futures = new ArrayList<>();
+		final ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			for (int i = 0; i < levels.length; i++) {
+				levels[i] = (i % 2 == 0) ? last : last - 1 - i % 3;
+				final int level = levels[i];
+				futures.add(pool.submit(() -> pyramid.getLevel(level)));
+			}
+			// each level is computed only once
+			for (int i = 0; i < levels.length; i++) {
+				assertSame(pyramid.getLevel(levels[i]), futures.get(i).get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+		for (int i = 0; i <= last; i++) {
+			assertEquals(pyramid.getLevelWidth(i), pyramid.getLevel(i).getWidth());
+		}
+		assertNotEquals(pyramid.getId(), new ImagePyramid(newImage(8, 8)).getId());
+	}
+
+}
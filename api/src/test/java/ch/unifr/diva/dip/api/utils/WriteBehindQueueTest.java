@@ -0,0 +1,138 @@
+package ch.unifr.diva.dip.api.utils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Write-behind queue unit tests.
+ */
+public class WriteBehindQueueTest {
+
+	@Rule
+	public final TemporaryFolder parent = new TemporaryFolder();
+
+	public void write(WriteBehindQueue queue, Path file, String value) {
+		queue.write(file, value, value.length(), () -> {
+			Files.write(file, value.getBytes(StandardCharsets.UTF_8));
+		});
+	}
+
+	public String read(Path file) throws IOException {
+		return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testFlush() throws IOException {
+		final WriteBehindQueue queue = new WriteBehindQueue("test-queue", 1024);
+		final Path dir = parent.newFolder().toPath();
+		final Path other = parent.newFolder().toPath();
+		for (int i = 0; i < 16; i++) {
+			write(queue, dir.resolve("file-" + i), "value-" + i);
+			write(queue, other.resolve("file-" + i), "other-" + i);
+		}
+
+		queue.flush(dir);
+		for (int i = 0; i < 16; i++) {
+			final Path file = dir.resolve("file-" + i);
+			assertNull(queue.get(file));
+			assertEquals("value-" + i, read(file));
+		}
+
+		queue.flush();
+		assertEquals(0, queue.size());
+		assertEquals(0, queue.getPendingBytes());
+		assertEquals("other-15", read(other.resolve("file-15")));
+	}
+
+	@Test
+	public void testPendingValues() throws IOException, InterruptedException {
+		final WriteBehindQueue queue = new WriteBehindQueue("test-queue", 1024);
+		final Path dir = parent.newFolder().toPath();
+		final Path file = dir.resolve("file");
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		// block the writer thread on a first write
+		queue.write(dir.resolve("blocker"), "blocker", 7, () -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		started.await();
+
+		write(queue, file, "first");
+		write(queue, file, "second");
+		assertEquals("second", queue.get(file, String.class));
+		assertNull(queue.get(file, Integer.class));
+		assertFalse(Files.exists(file));
+
+		release.countDown();
+		queue.flush();
+		assertEquals("second", read(file));
+		assertNull(queue.get(file));
+	}
+
+	@Test
+	public void testDiscardAndSpill() throws IOException {
+		final WriteBehindQueue queue = new WriteBehindQueue("test-queue", 0);
+		final Path dir = parent.newFolder().toPath();
+
+		// nothing may be pending over the limit, so this is written right away
+		write(queue, dir.resolve("spilled"), "spilled");
+		assertTrue(queue.getPendingBytes() <= 7);
+		queue.flush();
+		assertEquals("spilled", read(dir.resolve("spilled")));
+
+		queue.setMaxBytes(1024);
+		final Path discarded = parent.newFolder().toPath();
+		for (int i = 0; i < 16; i++) {
+			write(queue, discarded.resolve("file-" + i), "value-" + i);
+		}
+		queue.discard(discarded);
+		queue.flush();
+		assertEquals(0, queue.getPendingBytes());
+		assertArrayEquals(new String[]{"spilled"}, dir.toFile().list());
+	}
+
+	@Test
+	public void testDistinctFileSystems() throws IOException {
+		final WriteBehindQueue queue = new WriteBehindQueue("test-queue", 1024);
+		final Map<String, String> env = new HashMap<>();
+		env.put("create", "true");
+		final Path dir = parent.newFolder().toPath();
+		try (FileSystem a = FileSystems.newFileSystem(URI.create("jar:" + dir.resolve("a.zip").toUri()), env);
+				FileSystem b = FileSystems.newFileSystem(URI.create("jar:" + dir.resolve("b.zip").toUri()), env)) {
+			write(queue, a.getPath("/file"), "a");
+			write(queue, b.getPath("/file"), "b");
+
+			// same path, but another file system
+			queue.discard(a.getPath("/"));
+			assertNull(queue.get(a.getPath("/file")));
+			assertEquals("b", queue.get(b.getPath("/file"), String.class));
+
+			queue.flush(b.getPath("/"));
+			assertFalse(Files.exists(a.getPath("/file")));
+			assertEquals("b", read(b.getPath("/file")));
+		}
+	}
+
+}
@@ -186,6 +186,11 @@ public class ApplicationDataManager {
 		 */
 		public final Path tmpDir;
 
+		/**
+		 * Directory of the processor result cache.
+		 */
+		public final Path resultCacheDir;
+
 		/**
 		 * Directory for log files.
 		 */
@@ -215,6 +220,7 @@ public class ApplicationDataManager {
 			this.presetsDir = getRealDirectory(path.resolve("presets"));
 			this.processorPresetsDir = getRealDirectory(this.presetsDir.resolve("processors"));
 			this.tmpDir = getRealDirectory(path.resolve("tmp"));
+			this.resultCacheDir = getRealDirectory(path.resolve("result-cache"));
 			this.logDir = getRealDirectory(path.resolve("log"));
 
 			this.settingsFile = path.resolve("settings.xml");
@@ -1,8 +1,14 @@
 package ch.unifr.diva.dip.core;
 
 import ch.unifr.diva.dip.api.utils.DipThreadPool;
+import ch.unifr.diva.dip.api.utils.WriteBehindQueue;
+import ch.unifr.diva.dip.api.utils.XmlUtils;
+import ch.unifr.diva.dip.core.model.ObjectMapData;
 import ch.unifr.diva.dip.core.model.PipelineData;
+import ch.unifr.diva.dip.core.model.PipelinePatch;
 import ch.unifr.diva.dip.core.execution.PipelineExecutionLogger;
+import ch.unifr.diva.dip.core.execution.PipelineTiming;
+import ch.unifr.diva.dip.core.execution.ProcessorResultCache;
 import ch.unifr.diva.dip.core.execution.TimingPipelineExecutionLogger;
 import ch.unifr.diva.dip.core.ui.UIStrategy;
 import ch.unifr.diva.dip.core.ui.Localizable;
@@ -14,6 +20,7 @@ import ch.unifr.diva.dip.core.model.Project;
 import ch.unifr.diva.dip.eventbus.events.ProjectRequest;
 import ch.unifr.diva.dip.osgi.OSGiFramework;
 import ch.unifr.diva.dip.utils.BackgroundTask;
+import ch.unifr.diva.dip.utils.IncrementalZipFile;
 import ch.unifr.diva.dip.utils.ZipFileSystem;
 import java.io.BufferedInputStream;
 import java.io.IOException;
@@ -105,6 +112,17 @@ public class ApplicationHandler implements Localizable {
 	 */
 	public final HostServices hostServices;
 
+	/**
+	 * Processor result cache, shared by all projects.
+	 */
+	public final ProcessorResultCache resultCache;
+
+	/**
+	 * Write-behind queue for persistent processor data, shared by all
+	 * projects.
+	 */
+	public final WriteBehindQueue writeBehindQueue;
+
 	// open/current project
 	private Project project = null;
 	// pointers to invalid/corrupt project data; might be fixed and still opened
@@ -154,6 +172,24 @@ public class ApplicationHandler implements Localizable {
 		this.uiStrategy = uiStrategy;
 		this.eventBus = eventBus;
 		this.hostServices = hostServices;
+		this.resultCache = new ProcessorResultCache(
+				this.dataManager.appDataDir.resultCacheDir,
+				this.settings.pipelineEditor.getResultCacheSize()
+		);
+		this.writeBehindQueue = new WriteBehindQueue(
+				"dip-write-behind",
+				this.settings.pipelineEditor.getWriteBehindMemory()
+		);
+
+		// JAXB contexts needed to open a project are ready by the time we do
+		XmlUtils.warmUp(
+				this.threadPool.getExecutorService(),
+				ProjectData.class,
+				PipelineData.class,
+				PipelinePatch.class,
+				PipelineTiming.class,
+				ObjectMapData.class
+		);
 	}
 
 	/**
@@ -386,8 +422,10 @@ public class ApplicationHandler implements Localizable {
 	 * @throws JAXBException
 	 */
 	public ProjectData loadProjectData(Path saveFile) throws IOException, JAXBException {
-		// tmp. working copy
+		// tmp. working copy (recovered if the last save got interrupted; the
+		// savefile itself gets recovered by the next save)
 		final Path zipFile = dataManager.tmpCopy(saveFile);
+		IncrementalZipFile.recover(zipFile);
 
 		final ZipFileSystem zip = ZipFileSystem.open(zipFile);
 		ProjectData data;
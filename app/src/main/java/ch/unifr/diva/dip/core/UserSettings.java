@@ -1,5 +1,7 @@
 package ch.unifr.diva.dip.core;
 
+import ch.unifr.diva.dip.api.utils.BinaryCodec;
+import ch.unifr.diva.dip.api.utils.BufferedIO;
 import ch.unifr.diva.dip.api.utils.FxUtils;
 import ch.unifr.diva.dip.api.utils.XmlUtils;
 import ch.unifr.diva.dip.api.utils.jaxb.BooleanPropertyAdapter;
@@ -356,6 +358,55 @@ public class UserSettings {
 		@XmlAttribute
 		public boolean autoRearrangeOnProcessorFold = false;
 
+		/**
+		 * The number of pages processed concurrently in batch mode. Pages are
+		 * processed one after the other if less than 2.
+		 */
+		@XmlAttribute
+		public int concurrentPages = 1;
+
+		/**
+		 * The memory budget of pages processed concurrently in batch mode, in
+		 * percent of the maximum memory of the JVM.
+		 */
+		@XmlAttribute
+		public int memoryBudget = 50;
+
+		/**
+		 * The maximum size of the processor result cache in megabytes. The
+		 * cache is disabled if less than 1.
+		 */
+		@XmlAttribute
+		public int resultCacheSize = 1024;
+
+		/**
+		 * The maximum size of persistent processor data waiting to be written
+		 * in the background, in megabytes. Persistent data is written right
+		 * away if less than 1.
+		 */
+		@XmlAttribute
+		public int writeBehindMemory = 256;
+
+		/**
+		 * Whether or not processors write their images in the fast binary
+		 * format (instead of PNG, or whatever format they ask for). The
+		 * extension of the binary format gets appended to the filenames asked
+		 * for by the processors (e.g. {@code image.png.bimg}), s.t. the
+		 * extension of a file always matches its format.
+		 */
+		@XmlAttribute
+		public boolean fastImageFormat = true;
+
+		/**
+		 * Whether or not processors write their objects (e.g. shapes) in the
+		 * compact binary format (instead of XML), if supported. The extension
+		 * of the binary format gets appended to the filenames asked for by the
+		 * processors (e.g. {@code lines.xml.dipbin}), s.t. the extension of a
+		 * file always matches its format.
+		 */
+		@XmlAttribute
+		public boolean fastObjectFormat = true;
+
 		/**
 		 * Returns the default pipeline executor.
 		 *
@@ -365,6 +416,67 @@ public class UserSettings {
 			return PipelineExecutor.Type.get(pipelineExecutor);
 		}
 
+		/**
+		 * Returns the number of pages processed concurrently in batch mode.
+		 *
+		 * @return the number of pages processed concurrently (at least 1).
+		 */
+		public int getConcurrentPages() {
+			return Math.max(1, concurrentPages);
+		}
+
+		/**
+		 * Returns the memory budget of pages processed concurrently in batch
+		 * mode.
+		 *
+		 * @return the memory budget in bytes.
+		 */
+		public long getMemoryBudget() {
+			final int percent = Math.max(1, Math.min(100, memoryBudget));
+			return Runtime.getRuntime().maxMemory() / 100 * percent;
+		}
+
+		/**
+		 * Returns the maximum size of the processor result cache.
+		 *
+		 * @return the maximum size of the processor result cache in bytes, or 0
+		 * if the cache is disabled.
+		 */
+		public long getResultCacheSize() {
+			return Math.max(0, resultCacheSize) * 1024L * 1024L;
+		}
+
+		/**
+		 * Returns the maximum size of persistent processor data waiting to be
+		 * written in the background.
+		 *
+		 * @return the maximum size in bytes, or 0 if persistent data is written
+		 * right away.
+		 */
+		public long getWriteBehindMemory() {
+			return Math.max(0, writeBehindMemory) * 1024L * 1024L;
+		}
+
+		/**
+		 * Returns the format of images written by processors.
+		 *
+		 * @return the format of images written by processors, or {@code null}
+		 * if processors get to pick the format.
+		 */
+		public String getImageFormat() {
+			return fastImageFormat ? BufferedIO.BUFFERED_IMAGE_FORMAT : null;
+		}
+
+		/**
+		 * Returns the format of objects written by processors.
+		 *
+		 * @return the format of objects written by processors, or {@code null}
+		 * if processors get to pick the format.
+		 */
+		public String getObjectFormat() {
+			return fastObjectFormat ? BinaryCodec.FORMAT : null;
+		}
+
 		/**
 		 * Returns the connection (or wire) type preferred by the user.
 		 *
@@ -395,7 +507,13 @@ public class UserSettings {
 				"connection-type: " + getDefaultConnectionType(),
 				"pipeline-layout: " + getDefaultPipelineLayout(),
 				"auto-rearrange-on-changed-layout: " + autoRearrangeOnChangedLayout,
-				"auto-rearrange-on-processor-fold: " + autoRearrangeOnProcessorFold
+				"auto-rearrange-on-processor-fold: " + autoRearrangeOnProcessorFold,
+				"concurrent-pages: " + getConcurrentPages(),
+				"memory-budget: " + memoryBudget + "%",
+				"result-cache-size: " + Math.max(0, resultCacheSize) + "MB",
+				"write-behind-memory: " + Math.max(0, writeBehindMemory) + "MB",
+				"fast-image-format: " + fastImageFormat,
+				"fast-object-format: " + fastObjectFormat
 			};
 		}
 
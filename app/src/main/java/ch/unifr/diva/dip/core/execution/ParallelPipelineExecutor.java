@@ -47,13 +47,26 @@ public class ParallelPipelineExecutor extends PipelineExecutor {
 	 * @param logger the pipeline execution logger.
 	 */
 	public ParallelPipelineExecutor(RunnablePipeline runnable, PipelineExecutionLogger logger) {
+		this(
+				runnable,
+				logger,
+				(runnable.processors().size() < POOL_MIN_THREADS)
+						? new ThreadExecutor()
+						: new ThreadPoolExecutor()
+		);
+	}
+
+	/**
+	 * Creates a new parallel pipeline executor.
+	 *
+	 * @param runnable the runnable pipeline.
+	 * @param logger the pipeline execution logger.
+	 * @param executor the parallel executor to submit the processors to.
+	 */
+	protected ParallelPipelineExecutor(RunnablePipeline runnable, PipelineExecutionLogger logger, ParallelExecutor executor) {
 		super(runnable, logger);
 		this.pipelineSize = runnable.processors().size();
-		if (pipelineSize < POOL_MIN_THREADS) {
-			this.executor = new ThreadExecutor();
-		} else {
-			this.executor = new ThreadPoolExecutor();
-		}
+		this.executor = executor;
 		this.executionMap = new HashMap<>();
 		this.executionLock = new Object();
 		this.waitLock = new Object();
@@ -103,7 +116,10 @@ public class ParallelPipelineExecutor extends PipelineExecutor {
 	protected void waitForProcessors() {
 		synchronized (waitLock) {
 			try {
-				waitLock.wait();
+				// the last processor might have arrived already
+				while (counter > 0 && !interrupted) {
+					waitLock.wait();
+				}
 			} catch (InterruptedException ex) {
 				Thread.currentThread().interrupt();
 			}
@@ -138,11 +154,15 @@ public class ParallelPipelineExecutor extends PipelineExecutor {
 			counter++;
 			executionMap.put(
 					processor,
-					executor.submit(new ExecutionWrapper(processor, pipelineStage))
+					executor.submit(newExecutionWrapper(processor, pipelineStage))
 			);
 		}
 	}
 
+	protected Runnable newExecutionWrapper(RunnableProcessor processor, int pipelineStage) {
+		return new ExecutionWrapper(processor, pipelineStage);
+	}
+
 	protected void processDependentProcessors(RunnableProcessor processor, int pipelineStage) {
 		final Set<RunnableProcessor> processing = processor.getDependentProcessors();
 		for (RunnableProcessor p : processing) {
@@ -1,13 +1,25 @@
 package ch.unifr.diva.dip.core.execution;
 
-import ch.unifr.diva.dip.api.utils.FxUtils;
 import ch.unifr.diva.dip.core.ApplicationHandler;
 import ch.unifr.diva.dip.core.model.PipelineState;
 import ch.unifr.diva.dip.core.model.Project;
 import ch.unifr.diva.dip.core.model.ProjectPage;
 import ch.unifr.diva.dip.core.model.RunnablePipeline;
+import ch.unifr.diva.dip.core.model.RunnableProcessor;
 import ch.unifr.diva.dip.eventbus.events.ProjectNotification;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.ObjectProperty;
@@ -18,18 +30,45 @@ import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.stage.Window;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * The pipeline execution controller. A simple controller that just processes
- * one page/pipeline after the other, with an optional dialog to observe
- * progress and cancel execution.
+ * The pipeline execution controller. By default a simple controller that just
+ * processes one page/pipeline after the other, with an optional dialog to
+ * observe progress and cancel execution.
  *
  * <p>
- * There is no parallelization on this level, since we do not want to keep the
- * resources of so and so many pages/pipelines in memory at the same time.
+ * Pages may be processed concurrently in batch mode (see
+ * {@code setConcurrentPages}), s.t. cores aren't left idle by pipelines with
+ * serial stages. Since we do not want to keep the resources of so and so many
+ * pages/pipelines in memory at the same time, a page is only opened once its
+ * (estimated) memory fits into the memory budget, next to all other pages in
+ * flight. In batch mode pages are opened and closed directly, without
+ * selecting them in the project (and the GUI), and the progress is the sum of
+ * the progress of all pages.
+ *
+ * <p>
+ * A page that fails to process doesn't stop the execution of the remaining
+ * pages. Failed pages are collected (see {@code getFailedPages()}), and the
+ * execution ends in the state {@code FAILED} instead of {@code SUCCEEDED}.
  */
 public class PipelineExecutionController {
 
+	private static final Logger log = LoggerFactory.getLogger(PipelineExecutionController.class);
+
+	/**
+	 * Rough estimate of the memory taken by a page (and its pipeline) per
+	 * sample of the page image, in bytes. Accounts for the page image itself,
+	 * and intermediate images of several processors, some with floating point
+	 * samples.
+	 */
+	public static final int PAGE_BYTES_PER_SAMPLE = 16;
+
+	// memory budget is managed in units of 1 KiB
+	private static final int MEMORY_UNIT = 1024;
+	private static final AtomicInteger threadNumber = new AtomicInteger(1);
+
 	protected final ApplicationHandler handler;
 	protected final PipelineExecutionLogger logger;
 	protected final List<ProjectPage> pages;
@@ -40,6 +79,12 @@ public class PipelineExecutionController {
 	protected volatile PipelineExecutor executor;
 	protected volatile boolean interrupted;
 	protected volatile Thread thread;
+	protected final Set<PipelineExecutor> executors;
+	protected final double[] pageProgress;
+	protected final boolean[] pageProcessing;
+	protected final List<ProjectPage> failedPages;
+	protected int concurrentPages;
+	protected long memoryBudget;
 
 	/**
 	 * Creates a new pipeline execution controller.
@@ -66,6 +111,65 @@ public class PipelineExecutionController {
 		this.executionStateProperty = new SimpleObjectProperty<>(ExecutionState.READY);
 		this.currentPageIndexProperty = new SimpleIntegerProperty(0);
 		this.progressProperty = new SimpleDoubleProperty(0.0);
+		this.executors = ConcurrentHashMap.newKeySet();
+		this.pageProgress = new double[this.numPipelines];
+		this.pageProcessing = new boolean[this.numPipelines];
+		this.failedPages = Collections.synchronizedList(new ArrayList<>());
+		this.concurrentPages = handler.settings.pipelineEditor.getConcurrentPages();
+		this.memoryBudget = handler.settings.pipelineEditor.getMemoryBudget();
+	}
+
+	/**
+	 * Sets the number of pages to be processed concurrently. Needs to be set
+	 * before calling {@code process()}.
+	 *
+	 * @param concurrentPages the number of pages to be processed concurrently.
+	 * Pages are processed one after the other (and selected in the project) if
+	 * less than 2.
+	 */
+	public void setConcurrentPages(int concurrentPages) {
+		this.concurrentPages = concurrentPages;
+	}
+
+	/**
+	 * Returns the number of pages to be processed concurrently.
+	 *
+	 * @return the number of pages to be processed concurrently.
+	 */
+	public int getConcurrentPages() {
+		return this.concurrentPages;
+	}
+
+	/**
+	 * Sets the memory budget of pages processed concurrently. Needs to be set
+	 * before calling {@code process()}.
+	 *
+	 * @param memoryBudget the memory budget in bytes.
+	 */
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Returns the memory budget of pages processed concurrently.
+	 *
+	 * @return the memory budget in bytes.
+	 */
+	public long getMemoryBudget() {
+		return this.memoryBudget;
+	}
+
+	/**
+	 * Returns the estimated memory taken by a page (and its pipeline).
+	 *
+	 * @param page the page.
+	 * @return the estimated memory in bytes.
+	 */
+	public static long getEstimatedMemory(ProjectPage page) {
+		return (long) page.getWidth()
+				* page.getHeight()
+				* Math.max(1, page.getNumBands())
+				* PAGE_BYTES_PER_SAMPLE;
 	}
 
 	/**
@@ -79,13 +183,20 @@ public class PipelineExecutionController {
 		this.thread = Thread.currentThread();
 		setState(ExecutionState.RUNNING);
 
-		final int lastIndex = numPipelines - 1;
+		if (concurrentPages > 1 && numPipelines > 1) {
+			processConcurrently();
+		} else {
+			processSequentially(project);
+		}
+	}
+
+	protected void processSequentially(Project project) {
 		for (int i = 0; i < numPipelines; i++) {
 			setCurrentPageIndex(i);
 
 			final ProjectPage page = pages.get(i);
 			if (project.selectPage(page.id)) {
-				FxUtils.run(() -> {
+				handler.uiStrategy.run(() -> {
 					handler.eventBus.post(new ProjectNotification(
 							ProjectNotification.Type.SELECTED,
 							page.id
@@ -97,7 +208,11 @@ public class PipelineExecutionController {
 
 			if (PipelineState.PROCESSING.equals(page.getState())) {
 				executor = pipeline.newPipelineExecutor(logger);
-				executor.processAndWaitForStop();
+				try {
+					executor.processAndWaitForStop();
+				} catch (RuntimeException ex) {
+					onPageFailed(i, ex);
+				}
 			} else {
 				executor = null;
 			}
@@ -115,7 +230,190 @@ public class PipelineExecutionController {
 
 		logger.onStopExecution();
 		executor = null;
-		setState(ExecutionState.SUCCEEDED);
+		setFinalState();
+	}
+
+	protected void processConcurrently() {
+		final int numWorkers = Math.min(concurrentPages, numPipelines);
+		final int maxPermits = (int) Math.max(
+				1,
+				Math.min(Integer.MAX_VALUE, memoryBudget / MEMORY_UNIT)
+		);
+		final Semaphore memory = new Semaphore(maxPermits);
+		final ExecutorService pool = Executors.newFixedThreadPool(numWorkers, (r) -> {
+			final Thread t = new Thread(r);
+			t.setName("dip-page-executor-thread-" + threadNumber.getAndIncrement());
+			t.setDaemon(false);
+			return t;
+		});
+
+		// pages are taken in order, but may finish in any order
+		final List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < numPipelines; i++) {
+			final int index = i;
+			futures.add(pool.submit(() -> processPage(index, memory, maxPermits)));
+		}
+		pool.shutdown();
+
+		try {
+			for (int i = 0; i < numPipelines; i++) {
+				try {
+					futures.get(i).get();
+				} catch (ExecutionException ex) {
+					onPageFailed(i, ex.getCause());
+				}
+			}
+		} catch (InterruptedException ex) {
+			cancel();
+			Thread.currentThread().interrupt();
+		}
+		setCurrentPageIndex(numPipelines);
+
+		if (interrupted) {
+			setState(ExecutionState.CANCELLED);
+			return;
+		}
+
+		logger.onStopExecution();
+		setFinalState();
+	}
+
+	protected void onPageFailed(int index, Throwable cause) {
+		final ProjectPage page = pages.get(index);
+		log.error("failed to process page {}: {}", page.id, page.getName(), cause);
+		failedPages.add(page);
+	}
+
+	// succeeded if all pages could be processed, failed otherwise
+	protected void setFinalState() {
+		final int numFailed = failedPages.size();
+		if (numFailed > 0) {
+			log.error("failed to process {} of {} pages", numFailed, numPipelines);
+			setState(ExecutionState.FAILED);
+		} else {
+			setState(ExecutionState.SUCCEEDED);
+		}
+	}
+
+	/**
+	 * Returns the pages that failed to process. Only complete once the
+	 * execution has finished.
+	 *
+	 * @return the pages that failed to process (in order of failure), or an
+	 * empty list.
+	 */
+	public List<ProjectPage> getFailedPages() {
+		synchronized (failedPages) {
+			return new ArrayList<>(failedPages);
+		}
+	}
+
+	// processes a single page in batch mode, without selecting the page
+	protected void processPage(int index, Semaphore memory, int maxPermits) {
+		if (interrupted) {
+			return;
+		}
+		final ProjectPage page = pages.get(index);
+		final int permits = (int) Math.min(
+				maxPermits,
+				Math.max(1, getEstimatedMemory(page) / MEMORY_UNIT)
+		);
+		try {
+			while (!memory.tryAcquire(permits, 100, TimeUnit.MILLISECONDS)) {
+				if (interrupted) {
+					return;
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		try {
+			if (interrupted) {
+				return;
+			}
+			onStartPage(index);
+
+			// the selected page is opened already, and has to stay that way
+			final boolean opened = page.isOpened();
+			if (!opened) {
+				page.open();
+			}
+			try {
+				final RunnablePipeline pipeline = page.getPipeline();
+				if (pipeline != null && PipelineState.PROCESSING.equals(page.getState())) {
+					final PipelineExecutor pageExecutor = pipeline.newPipelineExecutor(
+							new PageProgressLogger(index, pipeline)
+					);
+					executors.add(pageExecutor);
+					try {
+						// don't start if cancelled in the meantime
+						if (!interrupted) {
+							pageExecutor.processAndWaitForStop();
+						}
+					} finally {
+						executors.remove(pageExecutor);
+					}
+				}
+			} finally {
+				if (!opened) {
+					page.close();
+				}
+			}
+		} finally {
+			memory.release(permits);
+			onStopPage(index);
+		}
+	}
+
+	protected void onStartPage(int index) {
+		synchronized (pageProgress) {
+			pageProcessing[index] = true;
+		}
+		// the index of the last page started (pages are taken in order)
+		synchronized (currentPageIndexProperty) {
+			if (index > currentPageIndexProperty.get()) {
+				currentPageIndexProperty.set(index);
+			}
+		}
+	}
+
+	protected void onStopPage(int index) {
+		synchronized (pageProgress) {
+			pageProcessing[index] = false;
+		}
+		setPageProgress(index, 1.0);
+	}
+
+	protected void setPageProgress(int index, double value) {
+		double sum = 0;
+		synchronized (pageProgress) {
+			pageProgress[index] = value;
+			for (double v : pageProgress) {
+				sum += v;
+			}
+		}
+		setProgress(sum / numPipelines);
+	}
+
+	/**
+	 * Checks whether a page is currently being processed.
+	 *
+	 * @param index the index of the page.
+	 * @return {@code true} if the page is currently being processed,
+	 * {@code false} otherwise.
+	 */
+	public boolean isProcessing(int index) {
+		if (index < 0 || index >= numPipelines) {
+			return false;
+		}
+		if (concurrentPages > 1 && numPipelines > 1) {
+			synchronized (pageProgress) {
+				return pageProcessing[index];
+			}
+		}
+		return index == getCurrentPageIndex();
 	}
 
 	/**
@@ -123,6 +421,11 @@ public class PipelineExecutionController {
 	 */
 	public void cancel() {
 		interrupted = true;
+		for (PipelineExecutor e : executors) {
+			if (!e.isCancelled()) {
+				e.cancel();
+			}
+		}
 		if (executor == null || executor.isCancelled()) {
 			return;
 		}
@@ -142,7 +445,9 @@ public class PipelineExecutionController {
 	}
 
 	protected void setCurrentPageIndex(int value) {
-		currentPageIndexProperty.set(value);
+		synchronized (currentPageIndexProperty) {
+			currentPageIndexProperty.set(value);
+		}
 	}
 
 	/**
@@ -164,7 +469,7 @@ public class PipelineExecutionController {
 	}
 
 	protected void setProgress(double value) {
-		FxUtils.run(() -> {
+		handler.uiStrategy.run(() -> {
 			progressProperty.set(value);
 		});
 	}
@@ -188,7 +493,7 @@ public class PipelineExecutionController {
 	}
 
 	protected void setState(ExecutionState state) {
-		FxUtils.run(() -> {
+		handler.uiStrategy.run(() -> {
 			executionStateProperty.set(state);
 		});
 	}
@@ -231,7 +536,12 @@ public class PipelineExecutionController {
 		/**
 		 * Succeeded. The execution has successfully finished.
 		 */
-		SUCCEEDED
+		SUCCEEDED,
+		/**
+		 * Failed. The execution has finished, but at least one page failed to
+		 * process.
+		 */
+		FAILED
 	}
 
 	/**
@@ -253,4 +563,61 @@ public class PipelineExecutionController {
 		return logger;
 	}
 
+	/**
+	 * Pipeline execution logger of a page in batch mode. Passes everything on
+	 * to the logger of the controller, and updates the progress of the page
+	 * with each processed processor.
+	 */
+	protected class PageProgressLogger implements PipelineExecutionLogger {
+
+		private final int index;
+		private final int numProcessors;
+		private final AtomicInteger numProcessed;
+
+		/**
+		 * Creates a new page progress logger.
+		 *
+		 * @param index the index of the page.
+		 * @param pipeline the pipeline of the page.
+		 */
+		public PageProgressLogger(int index, RunnablePipeline pipeline) {
+			this.index = index;
+			this.numProcessors = Math.max(1, pipeline.processors().size());
+			this.numProcessed = new AtomicInteger();
+		}
+
+		@Override
+		public void onStartPipeline(RunnablePipeline pipeline) {
+			logger.onStartPipeline(pipeline);
+		}
+
+		@Override
+		public void onStopPipeline(RunnablePipeline pipeline) {
+			logger.onStopPipeline(pipeline);
+		}
+
+		@Override
+		public void onStartProcessor(RunnableProcessor processor, int pipelineStage) {
+			logger.onStartProcessor(processor, pipelineStage);
+		}
+
+		@Override
+		public void onStopProcessor(RunnableProcessor processor) {
+			logger.onStopProcessor(processor);
+			final int n = numProcessed.incrementAndGet();
+			setPageProgress(index, Math.min(1.0, n / (double) numProcessors));
+		}
+
+		@Override
+		public void onStopExecution() {
+			logger.onStopExecution();
+		}
+
+		@Override
+		public Map<Integer, PipelineTiming> getPipelineTimingMap() {
+			return logger.getPipelineTimingMap();
+		}
+
+	}
+
 }
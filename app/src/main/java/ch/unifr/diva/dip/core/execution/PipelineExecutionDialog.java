@@ -134,15 +134,24 @@ public class PipelineExecutionDialog extends AbstractDialog {
 					break;
 				case CANCELLED:
 					break;
+				case FAILED:
+					// mark the progress, but the processed pages may still be exported
+					progressBar.getStyleClass().add("dip-cancelled-progress");
+					onFinished();
+					break;
 				case SUCCEEDED:
-					exportOptions.setDisable(false);
-					ok.setDisable(false);
-					cancel.setDisable(true);
+					onFinished();
 					break;
 			}
 		});
 	}
 
+	private void onFinished() {
+		exportOptions.setDisable(false);
+		ok.setDisable(false);
+		cancel.setDisable(true);
+	}
+
 	private void ok() {
 		close();
 	}
@@ -255,6 +264,8 @@ public class PipelineExecutionDialog extends AbstractDialog {
 			this.currentPageIndexListener = (c) -> onCurrentPageIndex();
 			dialog.controller.currentPageIndexProperty().addListener(currentPageIndexListener);
 			dialog.controller.executionStateProperty().addListener(currentPageIndexListener);
+			// pages may finish in any order if processed concurrently
+			dialog.controller.progressProperty().addListener(currentPageIndexListener);
 		}
 
 		private void showGantt() {
@@ -346,9 +357,8 @@ public class PipelineExecutionDialog extends AbstractDialog {
 			}
 			progressBar.setDisable(false);
 
-			final int currentIdx = dialog.controller.getCurrentPageIndex();
 			final int thisIdx = dialog.controller.pages.indexOf(currentPage);
-			if (thisIdx == currentIdx) {
+			if (dialog.controller.isProcessing(thisIdx)) {
 				if (isCancelled()) {
 					setProgress(0);
 					progressBar.setDisable(true);
@@ -50,6 +50,16 @@ public abstract class PipelineExecutor {
 					public PipelineExecutor newInstance(RunnablePipeline runnable, PipelineExecutionLogger logger) {
 						return new ParallelPipelineExecutor(runnable, logger);
 					}
+				},
+		/**
+		 * Priority pipeline executor. Parallel, on a shared and bounded pool,
+		 * critical path first.
+		 */
+		PRIORITY() {
+					@Override
+					public PipelineExecutor newInstance(RunnablePipeline runnable, PipelineExecutionLogger logger) {
+						return new PriorityPipelineExecutor(runnable, logger);
+					}
 				};
 
 		/**
@@ -114,7 +124,12 @@ public abstract class PipelineExecutor {
 					return;
 				}
 				logger.onStartPipeline(rp);
-				doProcess();
+				rp.startFingerprintMemo();
+				try {
+					doProcess();
+				} finally {
+					rp.stopFingerprintMemo();
+				}
 				logger.onStopPipeline(rp);
 			}
 		};
@@ -0,0 +1,335 @@
+package ch.unifr.diva.dip.core.execution;
+
+import ch.unifr.diva.dip.api.utils.DipThreadPool;
+import ch.unifr.diva.dip.core.model.RunnablePipeline;
+import ch.unifr.diva.dip.core.model.RunnableProcessor;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Priority pipeline executor. Executes processors as soon as all their required
+ * inputs are set and satisfied, just like the parallel pipeline executor, but
+ * on a single, bounded pool shared by all pipeline executions (e.g. of pages
+ * processed concurrently), with as many threads as the application wide thread
+ * pool.
+ *
+ * <p>
+ * Processors waiting for a thread are prioritized by the (estimated) length of
+ * the critical path they're on, i.e. the longest chain of processors down to
+ * the end of the pipeline. Durations of processors are estimated from earlier
+ * executions: first the timing of the processor on this page, then the timing
+ * of processors of the same kind on other pages (scaled to the size of this
+ * page).
+ *
+ * <p>
+ * A running processor takes a worker permit of the application wide thread
+ * pool, and so do the workers of filters parallelized by the processor (see
+ * {@code DipThreadPool.acquireWorker()}), s.t. the number of busy threads never
+ * exceeds the size of the thread pool (usually the number of cores).
+ */
+public class PriorityPipelineExecutor extends ParallelPipelineExecutor {
+
+	// average duration in nanoseconds per pixel by processor pid and version
+	private static final Map<String, Double> nanosPerPixel = new ConcurrentHashMap<>();
+	private static final AtomicLong sequenceNumber = new AtomicLong();
+	private static SharedExecutor sharedExecutor;
+
+	protected final DipThreadPool threadPool;
+	protected final Map<RunnableProcessor, Long> priorities;
+	protected final long pagePixels;
+
+	/**
+	 * Creates a new priority pipeline executor.
+	 *
+	 * @param runnable the runnable pipeline.
+	 */
+	public PriorityPipelineExecutor(RunnablePipeline runnable) {
+		this(runnable, new NullPipelineExecutionLogger());
+	}
+
+	/**
+	 * Creates a new priority pipeline executor.
+	 *
+	 * @param runnable the runnable pipeline.
+	 * @param logger the pipeline execution logger.
+	 */
+	public PriorityPipelineExecutor(RunnablePipeline runnable, PipelineExecutionLogger logger) {
+		this(runnable, logger, getThreadPool(runnable));
+	}
+
+	private PriorityPipelineExecutor(RunnablePipeline runnable, PipelineExecutionLogger logger, DipThreadPool threadPool) {
+		super(runnable, logger, getSharedExecutor(threadPool));
+		this.threadPool = threadPool;
+		this.pagePixels = Math.max(1L, (long) runnable.page.getWidth() * runnable.page.getHeight());
+		this.priorities = getPriorities(runnable);
+	}
+
+	private static DipThreadPool getThreadPool(RunnablePipeline runnable) {
+		for (RunnableProcessor p : runnable.processors()) {
+			return p.getProcessorContext().getThreadPool();
+		}
+		return null;
+	}
+
+	private static synchronized SharedExecutor getSharedExecutor(DipThreadPool threadPool) {
+		final int poolSize = (threadPool == null)
+				? Runtime.getRuntime().availableProcessors()
+				: threadPool.poolSize();
+		if (sharedExecutor == null || sharedExecutor.poolSize != poolSize) {
+			sharedExecutor = new SharedExecutor(poolSize);
+		}
+		return sharedExecutor;
+	}
+
+	private static String getKey(RunnableProcessor processor) {
+		return processor.pid() + "@" + processor.version();
+	}
+
+	/**
+	 * Returns the estimated duration of a processor.
+	 *
+	 * @param processor the processor.
+	 * @param timing the pipeline timing of the page, or {@code null}.
+	 * @return the estimated duration in nanoseconds, or -1 if unknown.
+	 */
+	protected long getEstimatedNanos(RunnableProcessor processor, PipelineTiming timing) {
+		if (timing != null) {
+			final ProcessorTiming t = timing.getProcessorTimingMap().get(processor.id);
+			if (t != null && t.hasStopped() && t.getElapsedNanos() > 0) {
+				return t.getElapsedNanos();
+			}
+		}
+		final Double npp = nanosPerPixel.get(getKey(processor));
+		if (npp != null) {
+			return (long) (npp * this.pagePixels);
+		}
+		return -1;
+	}
+
+	// priority = estimated duration of the longest path from a processor down
+	// to the end of the pipeline
+	private Map<RunnableProcessor, Long> getPriorities(RunnablePipeline runnable) {
+		final PipelineTiming timing = runnable.page.getPipelineTiming();
+		final Map<RunnableProcessor, Long> costs = new HashMap<>();
+		long known = 0;
+		int numKnown = 0;
+		for (RunnableProcessor p : runnable.processors()) {
+			final long nanos = getEstimatedNanos(p, timing);
+			costs.put(p, nanos);
+			if (nanos >= 0) {
+				known += nanos;
+				numKnown++;
+			}
+		}
+		// unknown processors are assumed to take the average time
+		final long unknown = (numKnown > 0) ? Math.max(1, known / numKnown) : 1;
+		for (Map.Entry<RunnableProcessor, Long> e : costs.entrySet()) {
+			if (e.getValue() < 0) {
+				e.setValue(unknown);
+			}
+		}
+
+		final Map<RunnableProcessor, Long> ranks = new HashMap<>();
+		for (RunnableProcessor p : runnable.processors()) {
+			getRank(p, costs, ranks);
+		}
+		return ranks;
+	}
+
+	private long getRank(RunnableProcessor p, Map<RunnableProcessor, Long> costs, Map<RunnableProcessor, Long> ranks) {
+		final Long rank = ranks.get(p);
+		if (rank != null) {
+			return rank;
+		}
+		// the pipeline is a DAG, but better safe than sorry
+		ranks.put(p, 0L);
+		long max = 0;
+		for (RunnableProcessor d : p.getDependentProcessors()) {
+			max = Math.max(max, getRank(d, costs, ranks));
+		}
+		final Long cost = costs.get(p);
+		final long r = max + ((cost == null) ? 1 : cost);
+		ranks.put(p, r);
+		return r;
+	}
+
+	/**
+	 * Returns the priority of a processor.
+	 *
+	 * @param processor the processor.
+	 * @return the priority of the processor. Processors with higher priority
+	 * are executed first.
+	 */
+	public long getPriority(RunnableProcessor processor) {
+		final Long priority = this.priorities.get(processor);
+		return (priority == null) ? 0 : priority;
+	}
+
+	@Override
+	protected Runnable newExecutionWrapper(RunnableProcessor processor, int pipelineStage) {
+		return new PriorityExecutionWrapper(processor, pipelineStage);
+	}
+
+	/**
+	 * Priority execution wrapper.
+	 */
+	protected class PriorityExecutionWrapper extends ExecutionWrapper implements Comparable<PriorityExecutionWrapper> {
+
+		protected final long priority;
+		protected final long sequence;
+
+		/**
+		 * Creates a new priority execution wrapper.
+		 *
+		 * @param processor the runnable processor.
+		 * @param pipelineStage the pipeline stage.
+		 */
+		public PriorityExecutionWrapper(RunnableProcessor processor, int pipelineStage) {
+			super(processor, pipelineStage);
+			this.priority = getPriority(processor);
+			this.sequence = sequenceNumber.getAndIncrement();
+		}
+
+		@Override
+		public void run() {
+			boolean acquired = false;
+			try {
+				if (threadPool != null) {
+					threadPool.acquireWorker();
+					acquired = true;
+				}
+				if (!interrupted) {
+					logger.onStartProcessor(processor, pipelineStage);
+					final long start = System.nanoTime();
+					processor.process();
+					updateNanosPerPixel(processor, System.nanoTime() - start);
+					logger.onStopProcessor(processor);
+				}
+				if (acquired) {
+					threadPool.releaseWorkers(1);
+					acquired = false;
+				}
+				if (!interrupted) {
+					processDependentProcessors(processor, pipelineStage + 1);
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			} finally {
+				if (acquired) {
+					threadPool.releaseWorkers(1);
+				}
+				// always arrive, or we'd wait forever
+				arriveProcessor(processor);
+			}
+		}
+
+		@Override
+		public int compareTo(PriorityExecutionWrapper other) {
+			if (this.priority != other.priority) {
+				return (this.priority > other.priority) ? -1 : 1;
+			}
+			return Long.compare(this.sequence, other.sequence);
+		}
+
+	}
+
+	private void updateNanosPerPixel(RunnableProcessor processor, long nanos) {
+		final double npp = nanos / (double) this.pagePixels;
+		// exponential moving average, to follow changes in parameters
+		nanosPerPixel.merge(getKey(processor), npp, (a, b) -> 0.7 * a + 0.3 * b);
+	}
+
+	/**
+	 * Shared executor. A bounded thread pool with a priority queue, shared by
+	 * all priority pipeline executors.
+	 */
+	protected static class SharedExecutor implements ParallelExecutor {
+
+		private final static AtomicInteger threadNumber = new AtomicInteger(1);
+		protected final int poolSize;
+		protected final java.util.concurrent.ThreadPoolExecutor executor;
+
+		/**
+		 * Creates a new shared executor.
+		 *
+		 * @param poolSize the number of threads.
+		 */
+		public SharedExecutor(int poolSize) {
+			this.poolSize = Math.max(1, poolSize);
+			this.executor = new java.util.concurrent.ThreadPoolExecutor(
+					this.poolSize,
+					this.poolSize,
+					30L,
+					TimeUnit.SECONDS,
+					new PriorityBlockingQueue<>(),
+					(r) -> {
+						final Thread thread = new Thread(r);
+						thread.setName(
+								"dip-priority-pipeline-executor-thread-"
+								+ threadNumber.getAndIncrement()
+						);
+						thread.setPriority(Thread.NORM_PRIORITY);
+						// idle threads time out, and must not keep the JVM alive
+						thread.setDaemon(true);
+						return thread;
+					}
+			) {
+				@Override
+				protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+					return new PriorityTask<>(runnable, value);
+				}
+			};
+			this.executor.allowCoreThreadTimeOut(true);
+		}
+
+		@Override
+		public Future<?> submit(Runnable task) {
+			return this.executor.submit(task);
+		}
+
+		// the executor is shared, so there is nothing to shut down
+
+	}
+
+	/**
+	 * A future task ordered by the priority of its execution wrapper.
+	 *
+	 * @param <T> type of the result.
+	 */
+	protected static class PriorityTask<T> extends FutureTask<T> implements Comparable<PriorityTask<?>> {
+
+		private final Runnable runnable;
+
+		/**
+		 * Creates a new priority task.
+		 *
+		 * @param runnable the execution wrapper.
+		 * @param value the result.
+		 */
+		public PriorityTask(Runnable runnable, T value) {
+			super(runnable, value);
+			this.runnable = runnable;
+		}
+
+		@Override
+		public int compareTo(PriorityTask<?> other) {
+			if (this.runnable instanceof PriorityExecutionWrapper
+					&& other.runnable instanceof PriorityExecutionWrapper) {
+				return ((PriorityExecutionWrapper) this.runnable).compareTo(
+						(PriorityExecutionWrapper) other.runnable
+				);
+			}
+			return 0;
+		}
+
+	}
+
+}
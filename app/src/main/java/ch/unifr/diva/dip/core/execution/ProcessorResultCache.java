@@ -0,0 +1,429 @@
+package ch.unifr.diva.dip.core.execution;
+
+import ch.unifr.diva.dip.api.utils.XmlUtils;
+import ch.unifr.diva.dip.core.model.ObjectMapData;
+import ch.unifr.diva.dip.utils.FileFinder;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.xml.bind.JAXBException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Content-addressed processor result cache. Stores the persistent data of
+ * processors (the data directory, and the object map) after processing, keyed
+ * by the fingerprint of the processor (see
+ * {@code RunnableProcessor.getFingerprint()}), s.t. processors with the same
+ * parameters and inputs (on any page, of any project) don't have to be
+ * processed again.
+ *
+ * <p>
+ * The cache lives on disk, one directory per entry, and is limited in size.
+ * Least recently used entries are evicted first, except entries that are
+ * being restored at the moment. This class is thread-safe.
+ */
+public class ProcessorResultCache {
+
+	private static final Logger log = LoggerFactory.getLogger(ProcessorResultCache.class);
+
+	/**
+	 * Name of the directory (of an entry) holding the processor's data
+	 * directory.
+	 */
+	public static final String DATA_DIR = "data";
+
+	/**
+	 * Name of the file (of an entry) holding the processor's object map.
+	 */
+	public static final String DATA_XML = "data.xml";
+
+	private static final String TMP_PREFIX = ".tmp-";
+
+	private final Path directory;
+	// fingerprint -> size in bytes, in access order (least recently used first)
+	private final LinkedHashMap<String, Long> entries;
+	// fingerprint -> number of restores in progress; pinned entries are not
+	// evicted (or cleared)
+	private final Map<String, Integer> pinned;
+	private volatile long maxSize;
+	private long size;
+	private boolean initialized;
+
+	/**
+	 * Creates a new processor result cache.
+	 *
+	 * @param directory the cache directory.
+	 * @param maxSize the maximum size of the cache in bytes. The cache is
+	 * disabled if less than 1.
+	 */
+	public ProcessorResultCache(Path directory, long maxSize) {
+		this.directory = directory;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		this.pinned = new HashMap<>();
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Checks whether the cache is enabled.
+	 *
+	 * @return {@code true} if the cache is enabled, {@code false} otherwise.
+	 */
+	public boolean isEnabled() {
+		return this.maxSize > 0 && this.directory != null;
+	}
+
+	/**
+	 * Sets the maximum size of the cache. Entries are evicted right away if the
+	 * cache is too large.
+	 *
+	 * @param maxSize the maximum size of the cache in bytes. The cache is
+	 * disabled if less than 1.
+	 */
+	public void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+		if (isEnabled()) {
+			evict(null);
+		}
+	}
+
+	/**
+	 * Returns the maximum size of the cache.
+	 *
+	 * @return the maximum size of the cache in bytes.
+	 */
+	public long getMaxSize() {
+		return this.maxSize;
+	}
+
+	/**
+	 * Returns the size of the cache.
+	 *
+	 * @return the size of all entries in bytes.
+	 */
+	public synchronized long getSize() {
+		init();
+		return this.size;
+	}
+
+	/**
+	 * Checks whether the cache has an entry.
+	 *
+	 * @param fingerprint the fingerprint of the processor.
+	 * @return {@code true} if there is an entry for the fingerprint,
+	 * {@code false} otherwise.
+	 */
+	public synchronized boolean contains(String fingerprint) {
+		init();
+		return this.entries.containsKey(fingerprint);
+	}
+
+	// scans the cache directory once; entries are ordered by their last
+	// modified time, which gets updated on every hit
+	private void init() {
+		if (this.initialized || this.directory == null) {
+			return;
+		}
+		this.initialized = true;
+
+		final List<Path> dirs = new ArrayList<>();
+		try {
+			Files.createDirectories(this.directory);
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+				for (Path dir : stream) {
+					if (dir.getFileName().toString().startsWith(TMP_PREFIX)) {
+						// left-over from a crash
+						FileFinder.deleteDirectory(dir);
+					} else if (Files.isDirectory(dir)) {
+						dirs.add(dir);
+					}
+				}
+			}
+		} catch (IOException ex) {
+			log.warn("failed to read the processor result cache: {}", this.directory, ex);
+			return;
+		}
+
+		final Map<Path, Long> modified = new HashMap<>();
+		for (Path dir : dirs) {
+			try {
+				modified.put(dir, Files.getLastModifiedTime(dir).toMillis());
+			} catch (IOException ex) {
+				modified.put(dir, 0L);
+			}
+		}
+		dirs.sort((a, b) -> Long.compare(modified.get(a), modified.get(b)));
+		for (Path dir : dirs) {
+			final long n = sizeOf(dir);
+			this.entries.put(dir.getFileName().toString(), n);
+			this.size += n;
+		}
+	}
+
+	/**
+	 * Restores the results of a processor from the cache.
+	 *
+	 * @param fingerprint the fingerprint of the processor.
+	 * @param dataDirectory the data directory of the processor.
+	 * @param objects the object map of the processor.
+	 * @return {@code true} if the results got restored (cache hit),
+	 * {@code false} otherwise.
+	 */
+	public boolean restore(String fingerprint, Path dataDirectory, Map<String, Object> objects) {
+		if (!isEnabled() || fingerprint == null || dataDirectory == null) {
+			return false;
+		}
+		synchronized (this) {
+			init();
+			if (this.entries.get(fingerprint) == null) {
+				return false;
+			}
+			this.pinned.merge(fingerprint, 1, Integer::sum);
+		}
+
+		final Path entry = this.directory.resolve(fingerprint);
+		final List<Path> copied = new ArrayList<>();
+		boolean restored = false;
+		try {
+			final Path data = entry.resolve(DATA_DIR);
+			if (Files.exists(data)) {
+				copyDirectory(data, dataDirectory, copied);
+			}
+			final Path xml = entry.resolve(DATA_XML);
+			if (Files.exists(xml)) {
+				try (InputStream stream = new BufferedInputStream(Files.newInputStream(xml))) {
+					final ObjectMapData map = XmlUtils.unmarshal(ObjectMapData.class, stream);
+					objects.putAll(map.objects);
+				}
+			}
+			Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+			restored = true;
+		} catch (IOException | JAXBException ex) {
+			// broken entry; drop it, and just process again
+			log.debug("failed to restore processor results from the cache: {}", fingerprint, ex);
+			deleteCopied(copied);
+		}
+
+		boolean remove = false;
+		synchronized (this) {
+			if (unpin(fingerprint) && !restored) {
+				final Long n = this.entries.remove(fingerprint);
+				if (n != null) {
+					this.size -= n;
+					remove = true;
+				}
+			}
+		}
+		if (remove) {
+			deleteQuietly(entry);
+		}
+		return restored;
+	}
+
+	// releases a pin, returns true if the entry isn't pinned anymore
+	private boolean unpin(String fingerprint) {
+		final Integer n = this.pinned.get(fingerprint);
+		if (n == null || n <= 1) {
+			this.pinned.remove(fingerprint);
+			return true;
+		}
+		this.pinned.put(fingerprint, n - 1);
+		return false;
+	}
+
+	/**
+	 * Stores the results of a processor in the cache.
+	 *
+	 * @param fingerprint the fingerprint of the processor.
+	 * @param dataDirectory the data directory of the processor.
+	 * @param objects the object map of the processor.
+	 */
+	public void store(String fingerprint, Path dataDirectory, Map<String, Object> objects) {
+		if (!isEnabled() || fingerprint == null) {
+			return;
+		}
+		synchronized (this) {
+			init();
+			if (this.entries.containsKey(fingerprint)) {
+				return;
+			}
+		}
+
+		// written to a temporary directory first, and then moved in place, s.t.
+		// concurrent lookups never see half an entry
+		final Path tmp = this.directory.resolve(TMP_PREFIX + UUID.randomUUID().toString());
+		final Path entry = this.directory.resolve(fingerprint);
+		try {
+			Files.createDirectories(tmp);
+			if (dataDirectory != null && Files.exists(dataDirectory)) {
+				copyDirectory(dataDirectory, tmp.resolve(DATA_DIR));
+			}
+			if (!objects.isEmpty()) {
+				try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(tmp.resolve(DATA_XML)))) {
+					XmlUtils.marshal(new ObjectMapData(new ConcurrentHashMap<>(objects)), stream);
+				}
+			}
+			final long n = sizeOf(tmp);
+			if (n > this.maxSize) {
+				deleteQuietly(tmp);
+				return;
+			}
+			synchronized (this) {
+				if (this.entries.containsKey(fingerprint)) {
+					deleteQuietly(tmp);
+					return;
+				}
+				Files.move(tmp, entry, StandardCopyOption.ATOMIC_MOVE);
+				this.entries.put(fingerprint, n);
+				this.size += n;
+			}
+			evict(fingerprint);
+		} catch (IOException | JAXBException ex) {
+			log.warn("failed to store processor results in the cache: {}", fingerprint, ex);
+			deleteQuietly(tmp);
+		}
+	}
+
+	/**
+	 * Removes all entries from the cache, except entries that are being
+	 * restored at the moment.
+	 */
+	public void clear() {
+		final List<String> removed = new ArrayList<>();
+		synchronized (this) {
+			init();
+			final Iterator<Map.Entry<String, Long>> it = this.entries.entrySet().iterator();
+			while (it.hasNext()) {
+				final Map.Entry<String, Long> e = it.next();
+				if (this.pinned.containsKey(e.getKey())) {
+					continue;
+				}
+				this.size -= e.getValue();
+				removed.add(e.getKey());
+				it.remove();
+			}
+		}
+		for (String fingerprint : removed) {
+			deleteQuietly(this.directory.resolve(fingerprint));
+		}
+	}
+
+	// evicts least recently used entries until the cache fits, except the
+	// given entry, and pinned ones
+	private void evict(String keep) {
+		final List<String> removed = new ArrayList<>();
+		synchronized (this) {
+			final Iterator<Map.Entry<String, Long>> it = this.entries.entrySet().iterator();
+			while (this.size > this.maxSize && it.hasNext()) {
+				final Map.Entry<String, Long> e = it.next();
+				if (e.getKey().equals(keep) || this.pinned.containsKey(e.getKey())) {
+					continue;
+				}
+				this.size -= e.getValue();
+				removed.add(e.getKey());
+				it.remove();
+			}
+		}
+		for (String fingerprint : removed) {
+			deleteQuietly(this.directory.resolve(fingerprint));
+		}
+	}
+
+	// copies a directory tree, possibly between file systems (e.g. from/to a
+	// zip file system)
+	private static void copyDirectory(Path source, Path target) throws IOException {
+		copyDirectory(source, target, null);
+	}
+
+	// copies a directory tree, and collects the created files and directories
+	// (if not null) in the order they got created
+	private static void copyDirectory(Path source, Path target, List<Path> copied) throws IOException {
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				final Path path = resolve(target, source.relativize(dir));
+				if (!Files.exists(path)) {
+					Files.createDirectories(path);
+					if (copied != null) {
+						copied.add(path);
+					}
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				final Path path = resolve(target, source.relativize(file));
+				Files.copy(file, path, StandardCopyOption.REPLACE_EXISTING);
+				if (copied != null) {
+					copied.add(path);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	// deletes a partial copy, files before the directories they're in
+	private static void deleteCopied(List<Path> copied) {
+		for (int i = copied.size() - 1; i >= 0; i--) {
+			try {
+				Files.deleteIfExists(copied.get(i));
+			} catch (IOException ex) {
+				log.warn("failed to delete: {}", copied.get(i), ex);
+			}
+		}
+	}
+
+	private static Path resolve(Path target, Path relative) {
+		Path path = target;
+		for (Path name : relative) {
+			path = path.resolve(name.toString());
+		}
+		return path;
+	}
+
+	private static long sizeOf(Path dir) {
+		final long[] n = new long[]{0};
+		try {
+			Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					n[0] += attrs.size();
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException ex) {
+			log.warn("failed to determine the size of: {}", dir, ex);
+		}
+		return n[0];
+	}
+
+	private static void deleteQuietly(Path dir) {
+		try {
+			if (Files.exists(dir)) {
+				FileFinder.deleteDirectory(dir);
+			}
+		} catch (IOException ex) {
+			log.warn("failed to delete: {}", dir, ex);
+		}
+	}
+
+}
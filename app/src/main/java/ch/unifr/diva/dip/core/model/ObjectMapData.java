@@ -1,29 +1,170 @@
 package ch.unifr.diva.dip.core.model;
 
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlSeeAlso;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Thread-safe object map. Can be safely accessed from any thread.
+ *
+ * <p>
+ * Large objects can be stored in binary side-car files (see
+ * {@code ObjectSideCar}). Once unmarshalled, such objects are only loaded on
+ * first access (by {@code get}), given the directory of the side-car files
+ * has been set.
  */
 @XmlRootElement(name = "object-map")
 @XmlAccessorType(XmlAccessType.NONE)
+@XmlSeeAlso({ObjectSideCar.class})
 public class ObjectMapData {
 
+	private static final Logger log = LoggerFactory.getLogger(ObjectMapData.class);
+
 	@XmlElement
 	public final Map<String, Object> objects;
 
 	@SuppressWarnings("unused")
 	public ObjectMapData() {
-		this.objects = new ConcurrentHashMap<>();
+		this(new SideCarMap());
 	}
 
 	public ObjectMapData(ConcurrentHashMap<String, Object> objects) {
 		this.objects = objects;
 	}
-	
+
+	/**
+	 * Sets the directory of the side-car files.
+	 *
+	 * @param directory a supplier of the directory of the side-car files.
+	 */
+	public void setSideCarDirectory(Supplier<Path> directory) {
+		if (this.objects instanceof SideCarMap) {
+			((SideCarMap) this.objects).directory = directory;
+		}
+	}
+
+	/**
+	 * Writes large objects to side-car files. Objects that haven't been loaded
+	 * yet are left untouched, while side-car files no longer referenced get
+	 * removed. The object map itself remains unchanged.
+	 *
+	 * @param directory the directory of the side-car files.
+	 * @return a copy of the object map with large objects replaced by
+	 * references to their side-car files, ready to be marshalled.
+	 * @throws IOException in case of an I/O error.
+	 */
+	public ObjectMapData writeSideCars(Path directory) throws IOException {
+		final ConcurrentHashMap<String, Object> copy = new ConcurrentHashMap<>();
+		final Set<String> files = new HashSet<>();
+		for (Map.Entry<String, Object> e : this.objects.entrySet()) {
+			final Object value = e.getValue();
+			final ObjectSideCar.Type type = ObjectSideCar.typeOf(value);
+			if (type != null) {
+				Files.createDirectories(directory);
+				final ObjectSideCar sideCar = ObjectSideCar.write(
+						e.getKey(), value, type, directory
+				);
+				files.add(sideCar.file);
+				copy.put(e.getKey(), sideCar);
+			} else {
+				if (value instanceof ObjectSideCar) {
+					files.add(((ObjectSideCar) value).file);
+				}
+				copy.put(e.getKey(), value);
+			}
+		}
+
+		if (Files.exists(directory)) {
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+				for (Path file : stream) {
+					if (!files.contains(file.getFileName().toString())) {
+						Files.deleteIfExists(file);
+					}
+				}
+			}
+			if (files.isEmpty()) {
+				Files.deleteIfExists(directory);
+			}
+		}
+
+		return new ObjectMapData(copy);
+	}
+
+	/**
+	 * Returns a copy of the object map with all objects loaded from their
+	 * side-car files. Objects that fail to load are omitted.
+	 *
+	 * @return a copy of the object map.
+	 */
+	public ConcurrentHashMap<String, Object> copyLoaded() {
+		final ConcurrentHashMap<String, Object> copy = new ConcurrentHashMap<>();
+		for (String key : this.objects.keySet()) {
+			final Object value = this.objects.get(key);
+			if (value != null) {
+				copy.put(key, value);
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Removes all objects that haven't been loaded from their side-car files
+	 * yet. Used once the side-car files are gone.
+	 */
+	public void removeSideCars() {
+		this.objects.values().removeIf((v) -> v instanceof ObjectSideCar);
+	}
+
+	/**
+	 * Concurrent hash map that replaces references to side-car files with the
+	 * referenced objects on first access.
+	 */
+	private static class SideCarMap extends ConcurrentHashMap<String, Object> {
+
+		private static final long serialVersionUID = 6181637451383306409L;
+
+		private transient volatile Supplier<Path> directory;
+
+		@Override
+		public Object get(Object key) {
+			final Object value = super.get(key);
+			if (value instanceof ObjectSideCar && this.directory != null) {
+				return load(key, (ObjectSideCar) value);
+			}
+			return value;
+		}
+
+		private Object load(Object key, ObjectSideCar sideCar) {
+			synchronized (sideCar) {
+				final Object value = super.get(key);
+				if (value != sideCar) {
+					return value; // loaded (or replaced) in the meantime
+				}
+				try {
+					final Object object = sideCar.read(this.directory.get());
+					replace((String) key, sideCar, object);
+					return object;
+				} catch (IOException ex) {
+					log.error("failed to load object from side-car file: {}", sideCar, ex);
+					remove(key, sideCar);
+					return null;
+				}
+			}
+		}
+
+	}
+
 }
@@ -0,0 +1,365 @@
+package ch.unifr.diva.dip.core.model;
+
+import ch.unifr.diva.dip.api.datastructures.AbstractList;
+import ch.unifr.diva.dip.api.datastructures.BufferedImageContainer;
+import ch.unifr.diva.dip.api.datastructures.BufferedMatrix;
+import ch.unifr.diva.dip.api.datastructures.BufferedMatrixContainer;
+import ch.unifr.diva.dip.api.datastructures.Floats2D;
+import ch.unifr.diva.dip.api.datastructures.JaxbList;
+import ch.unifr.diva.dip.api.datastructures.MultiFloats2D;
+import ch.unifr.diva.dip.api.utils.BinaryCodec;
+import ch.unifr.diva.dip.api.utils.BufferedIO;
+import ch.unifr.diva.dip.api.utils.XmlUtils;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlEnum;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Reference to a large object of an object map stored in a binary side-car
+ * file. Marshalling large objects (matrices, images, float arrays, long lists
+ * of shapes, ...) to XML is slow and bloats the XML file, so these get written
+ * to a file of their own (next to the XML file), and only a reference to that
+ * file ends up in the XML.
+ */
+@XmlRootElement(name = "side-car")
+@XmlAccessorType(XmlAccessType.NONE)
+public class ObjectSideCar {
+
+	/**
+	 * Minimum (estimated) size of an object in bytes to be stored in a
+	 * side-car file.
+	 */
+	public static final long THRESHOLD = 1 << 16;
+
+	// rough estimate of the size of a marshalled list element (e.g. a shape)
+	private static final long BYTES_PER_ELEMENT = 64;
+
+	/**
+	 * Types (or formats) of side-car files.
+	 */
+	@XmlEnum
+	public enum Type {
+
+		/**
+		 * A {@code BufferedMatrix} in the binary BufferedMatrix format.
+		 */
+		BUFFERED_MATRIX(".bmat"),
+		/**
+		 * A {@code BufferedMatrixContainer}. Stored as the wrapped bytes (in
+		 * the binary BufferedMatrix format).
+		 */
+		BUFFERED_MATRIX_CONTAINER(".bmat"),
+		/**
+		 * A {@code BufferedImage} in the binary BufferedImage format.
+		 */
+		BUFFERED_IMAGE(".bimg"),
+		/**
+		 * A {@code BufferedImageContainer}. Stored as the wrapped image (in the
+		 * binary BufferedImage format).
+		 */
+		BUFFERED_IMAGE_CONTAINER(".bimg"),
+		/**
+		 * {@code Floats2D} as raw floats, row by row.
+		 */
+		FLOATS_2D(".f2d"),
+		/**
+		 * {@code MultiFloats2D} as raw floats, band by band, row by row.
+		 */
+		MULTI_FLOATS_2D(".mf2d"),
+		/**
+		 * Objects supported by the binary codec (e.g. lists of shapes).
+		 */
+		BINARY(".bin"),
+		/**
+		 * Any other marshallable object as XML.
+		 */
+		XML(".xml");
+
+		/**
+		 * The file extension.
+		 */
+		public final String extension;
+
+		Type(String extension) {
+			this.extension = extension;
+		}
+
+	}
+
+	@XmlAttribute
+	public final String file;
+
+	@XmlAttribute
+	public final Type type;
+
+	@XmlAttribute(name = "class")
+	public final String className;
+
+	@SuppressWarnings("unused")
+	public ObjectSideCar() {
+		this(null, null, null);
+	}
+
+	/**
+	 * Creates a new side-car reference.
+	 *
+	 * @param file the file name of the side-car file.
+	 * @param type the type of the side-car file.
+	 * @param className the class name of the object.
+	 */
+	public ObjectSideCar(String file, Type type, String className) {
+		this.file = file;
+		this.type = type;
+		this.className = className;
+	}
+
+	/**
+	 * Returns the type of side-car file an object would be stored in.
+	 *
+	 * @param object the object.
+	 * @return the type of side-car file, or {@code null} if the object isn't
+	 * supposed to be stored in a side-car file (unsupported, or too small).
+	 */
+	public static Type typeOf(Object object) {
+		final Type type;
+		final long size;
+		if (object instanceof BufferedMatrix) {
+			final BufferedMatrix mat = (BufferedMatrix) object;
+			type = Type.BUFFERED_MATRIX;
+			size = (long) mat.getWidth() * mat.getHeight()
+					* mat.getNumBands() * mat.getBytesPerSample();
+		} else if (object instanceof BufferedImage) {
+			final BufferedImage image = (BufferedImage) object;
+			if (!BufferedIO.canWriteImage(image)) {
+				return null;
+			}
+			type = Type.BUFFERED_IMAGE;
+			size = (long) image.getWidth() * image.getHeight() * 4;
+		} else if (object instanceof BufferedMatrixContainer) {
+			final BufferedMatrixContainer container = (BufferedMatrixContainer) object;
+			if (container.bytes == null) {
+				return null;
+			}
+			type = Type.BUFFERED_MATRIX_CONTAINER;
+			size = container.bytes.length;
+		} else if (object instanceof BufferedImageContainer) {
+			final BufferedImage image = ((BufferedImageContainer) object).image;
+			if (image == null || !BufferedIO.canWriteImage(image)) {
+				return null;
+			}
+			type = Type.BUFFERED_IMAGE_CONTAINER;
+			size = (long) image.getWidth() * image.getHeight() * 4;
+		} else if (object instanceof Floats2D) {
+			type = Type.FLOATS_2D;
+			size = sizeOf((Floats2D) object);
+		} else if (object instanceof MultiFloats2D) {
+			type = Type.MULTI_FLOATS_2D;
+			long n = 0;
+			for (Floats2D band : (MultiFloats2D) object) {
+				n += sizeOf(band);
+			}
+			size = n;
+		} else if (object instanceof AbstractList) {
+			type = BinaryCodec.canWrite(object) ? Type.BINARY : Type.XML;
+			size = ((AbstractList<?>) object).size() * BYTES_PER_ELEMENT;
+		} else if (object instanceof JaxbList) {
+			final JaxbList<?> list = (JaxbList<?>) object;
+			if (list.getList() == null) {
+				return null;
+			}
+			type = Type.XML;
+			size = list.getList().size() * BYTES_PER_ELEMENT;
+		} else {
+			return null;
+		}
+		return (size < THRESHOLD) ? null : type;
+	}
+
+	private static long sizeOf(Floats2D floats) {
+		long n = 0;
+		for (float[] row : floats.data) {
+			n += row.length;
+		}
+		return n * 4;
+	}
+
+	/**
+	 * Returns the file name of a side-car file.
+	 *
+	 * @param key the key of the object in the object map.
+	 * @param type the type of the side-car file.
+	 * @return the file name of the side-car file.
+	 */
+	public static String fileName(String key, Type type) {
+		try {
+			return URLEncoder.encode(key, "UTF-8") + type.extension;
+		} catch (UnsupportedEncodingException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * Writes an object to a side-car file.
+	 *
+	 * @param key the key of the object in the object map.
+	 * @param object the object.
+	 * @param type the type of the side-car file, as returned by
+	 * {@code typeOf(object)}.
+	 * @param directory the directory of the side-car files.
+	 * @return a reference to the side-car file.
+	 * @throws IOException in case of an I/O error.
+	 */
+	public static ObjectSideCar write(String key, Object object, Type type, Path directory) throws IOException {
+		final ObjectSideCar sideCar = new ObjectSideCar(
+				fileName(key, type),
+				type,
+				object.getClass().getName()
+		);
+		final Path path = directory.resolve(sideCar.file);
+		// BufferedIO's and BinaryCodec's writers close the stream themselves
+		final OutputStream os = new BufferedOutputStream(Files.newOutputStream(path));
+		switch (type) {
+			case BUFFERED_MATRIX:
+				BufferedIO.writeMat((BufferedMatrix) object, os);
+				break;
+			case BUFFERED_MATRIX_CONTAINER:
+				try (OutputStream out = os) {
+					out.write(((BufferedMatrixContainer) object).bytes);
+				}
+				break;
+			case BUFFERED_IMAGE:
+				BufferedIO.writeImage((BufferedImage) object, os);
+				break;
+			case BUFFERED_IMAGE_CONTAINER:
+				BufferedIO.writeImage(((BufferedImageContainer) object).image, os);
+				break;
+			case FLOATS_2D:
+				try (DataOutputStream out = new DataOutputStream(os)) {
+					writeFloats((Floats2D) object, out);
+				}
+				break;
+			case MULTI_FLOATS_2D:
+				try (DataOutputStream out = new DataOutputStream(os)) {
+					final MultiFloats2D bands = (MultiFloats2D) object;
+					out.writeInt(bands.size());
+					for (Floats2D band : bands) {
+						writeFloats(band, out);
+					}
+				}
+				break;
+			case BINARY:
+				BinaryCodec.write(object, os);
+				break;
+			case XML:
+				try (OutputStream out = os) {
+					XmlUtils.marshal(object, out);
+				} catch (JAXBException ex) {
+					throw new IOException(ex);
+				}
+				break;
+		}
+		return sideCar;
+	}
+
+	private static void writeFloats(Floats2D floats, DataOutputStream out) throws IOException {
+		out.writeInt(floats.data.length);
+		for (float[] row : floats.data) {
+			final ByteBuffer buffer = ByteBuffer.allocate(row.length * 4);
+			buffer.asFloatBuffer().put(row);
+			out.writeInt(row.length);
+			out.write(buffer.array());
+		}
+	}
+
+	/**
+	 * Reads the referenced object from its side-car file.
+	 *
+	 * @param directory the directory of the side-car files.
+	 * @return the object.
+	 * @throws IOException in case of an I/O error.
+	 */
+	public Object read(Path directory) throws IOException {
+		final Path path = directory.resolve(this.file);
+		if (this.type == Type.BUFFERED_MATRIX_CONTAINER) {
+			return new BufferedMatrixContainer(Files.readAllBytes(path));
+		}
+
+		// BufferedIO's and BinaryCodec's readers close the stream themselves
+		final InputStream is = new BufferedInputStream(Files.newInputStream(path));
+		switch (this.type) {
+			case BUFFERED_MATRIX:
+				return BufferedIO.readMat(is);
+			case BUFFERED_IMAGE:
+				return BufferedIO.readImage(is);
+			case BUFFERED_IMAGE_CONTAINER:
+				return new BufferedImageContainer(BufferedIO.readImage(is));
+			case FLOATS_2D:
+				try (DataInputStream in = new DataInputStream(is)) {
+					return readFloats(in);
+				}
+			case MULTI_FLOATS_2D:
+				try (DataInputStream in = new DataInputStream(is)) {
+					final int n = in.readInt();
+					final MultiFloats2D bands = new MultiFloats2D();
+					for (int i = 0; i < n; i++) {
+						bands.add(readFloats(in));
+					}
+					return bands;
+				}
+			case BINARY:
+				try {
+					return BinaryCodec.read(Class.forName(this.className), is);
+				} catch (ClassNotFoundException ex) {
+					is.close();
+					throw new IOException(ex);
+				}
+			case XML:
+			default:
+				try (InputStream in = is) {
+					return XmlUtils.unmarshal(Class.forName(this.className), in);
+				} catch (ClassNotFoundException | JAXBException ex) {
+					throw new IOException(ex);
+				}
+		}
+	}
+
+	private static Floats2D readFloats(DataInputStream in) throws IOException {
+		final float[][] data = new float[in.readInt()][];
+		for (int i = 0; i < data.length; i++) {
+			final byte[] bytes = new byte[in.readInt() * 4];
+			in.readFully(bytes);
+			data[i] = new float[bytes.length / 4];
+			ByteBuffer.wrap(bytes).asFloatBuffer().get(data[i]);
+		}
+		return new Floats2D(data);
+	}
+
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName()
+				+ "@"
+				+ Integer.toHexString(this.hashCode())
+				+ "{"
+				+ "file=" + this.file
+				+ ", type=" + this.type
+				+ ", class=" + this.className
+				+ "}";
+	}
+
+}
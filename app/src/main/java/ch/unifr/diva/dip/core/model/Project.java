@@ -8,25 +8,27 @@ import ch.unifr.diva.dip.eventbus.events.ProjectNotification;
 import ch.unifr.diva.dip.utils.Modifiable;
 import ch.unifr.diva.dip.utils.ModifiedProperty;
 import ch.unifr.diva.dip.gui.pe.PipelineEditor;
-import ch.unifr.diva.dip.api.utils.FxUtils;
 import ch.unifr.diva.dip.core.execution.PipelineExecutionDialog;
 import ch.unifr.diva.dip.core.execution.PipelineExecutionLogger;
 import ch.unifr.diva.dip.eventbus.events.StatusMessageEvent;
 import ch.unifr.diva.dip.utils.BackgroundTask;
 import ch.unifr.diva.dip.utils.CursorLock;
+import ch.unifr.diva.dip.utils.IncrementalZipFile;
 import ch.unifr.diva.dip.utils.ZipFileSystem;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.IntegerProperty;
@@ -62,25 +64,21 @@ public class Project implements Modifiable, Localizable {
 	/**
 	 * Original savefile of the project. This file is generally not
 	 * opened/loaded as a zip filesystem. We're working with a temp. working
-	 * copy of this file that gets copied back to this file upon saving the
-	 * project.
+	 * copy of this file that gets synced back to this file upon saving the
+	 * project, writing only what changed since the last save.
+	 *
+	 * @see IncrementalZipFile
 	 */
 	private Path file;
 
 	/**
-	 * Temporary working copy of {@code file}, the original savefile.
-	 */
-	private final Path zipFile;
-
-	/**
-	 * The (opened) zip file system holding the contents of {@code zipFile},
-	 * which is a working copy of {@code file}, the original savefile. This
-	 * means that we can always make this file system dirty, remove and
-	 * overwrite files or what not, without having to fear that we messed up the
-	 * original savefile, e.g. in case the user doesn't really want to save his
-	 * work.
+	 * The (opened) zip file system holding the contents of a temp. working
+	 * copy of {@code file}, the original savefile. This means that we can
+	 * always make this file system dirty, remove and overwrite files or what
+	 * not, without having to fear that we messed up the original savefile,
+	 * e.g. in case the user doesn't really want to save his work.
 	 */
-	private ZipFileSystem zip;
+	private final ZipFileSystem zip;
 
 	/**
 	 * Pipeline manager holding the project's processing pipelines. Each page is
@@ -109,7 +107,7 @@ public class Project implements Modifiable, Localizable {
 		data.zipFile = handler.dataManager.tmpFile(true);
 		final ZipFileSystem zip = ZipFileSystem.create(data.zipFile);
 
-		FxUtils.run(() -> {
+		handler.uiStrategy.run(() -> {
 			handler.settings.recentFiles.setSaveDirectory(data.file);
 		});
 
@@ -131,7 +129,7 @@ public class Project implements Modifiable, Localizable {
 	 * @return a project.
 	 */
 	public static Project openProject(ProjectData data, ApplicationHandler handler) {
-		FxUtils.run(() -> {
+		handler.uiStrategy.run(() -> {
 			handler.settings.recentFiles.setSaveDirectory(data.file);
 		});
 
@@ -147,7 +145,6 @@ public class Project implements Modifiable, Localizable {
 	private Project(ProjectData data, ApplicationHandler handler) {
 		this.handler = handler;
 		this.file = data.file;
-		this.zipFile = data.zipFile;
 		this.zip = data.zip;
 
 		// read/parse project data
@@ -185,7 +182,13 @@ public class Project implements Modifiable, Localizable {
 	public void close() {
 		closePage();
 
+		for (ProjectPage page : pages) {
+			page.shard().close();
+		}
+
 		if (zip != null) {
+			// unsaved changes are lost anyways
+			handler.writeBehindQueue.discard(zip.getPath("/"));
 			try {
 				zip.close();
 			} catch (IOException ex) {
@@ -207,8 +210,8 @@ public class Project implements Modifiable, Localizable {
 
 	private void unbindSelectedPage() {
 		// might run on a background thread, so make sure we only touch props
-		// and bindings on the FX Application thread
-		FxUtils.runAndWait(() -> {
+		// and bindings on the FX Application thread (unless headless)
+		handler.uiStrategy.runAndWait(() -> {
 			selectedPageIdProperty.set(-1);
 			canProcessSelectedPageProperty.unbind();
 			canProcessSelectedPageProperty.set(false);
@@ -236,7 +239,7 @@ public class Project implements Modifiable, Localizable {
 	 */
 	public ProjectData saveAs(Path file) throws Exception {
 		this.file = file;
-		FxUtils.run(() -> {
+		handler.uiStrategy.run(() -> {
 			this.handler.settings.recentFiles.setSaveDirectory(this.file);
 		});
 		return saveInternal();
@@ -249,13 +252,15 @@ public class Project implements Modifiable, Localizable {
 	 * @throws Exception in case of an I/O error.
 	 */
 	private ProjectData saveInternal() throws Exception {
-		final ProjectData data = new ProjectData(this);
-
 		// save current page and its pipeline (e.g. the object map)
 		if (getSelectedPageId() > 0 && getSelectedPage() != null) {
 			getSelectedPage().save();
 		}
 
+		// save page shards first, the project data references them
+		savePageShards();
+		final ProjectData data = new ProjectData(this);
+
 		// write project root xml
 		Files.deleteIfExists(zip.getPath(ProjectData.PROJECT_ROOT_XML));
 
@@ -273,26 +278,48 @@ public class Project implements Modifiable, Localizable {
 			throw (throwable);
 		}
 
-		// copy tmp. working copy back to original file
-		zip.close();
-		Files.copy(zipFile, file, StandardCopyOption.REPLACE_EXISTING);
-		zip = ZipFileSystem.open(zipFile);
+		// write pending processor data to the tmp. working copy
+		handler.writeBehindQueue.flush(zip.getPath("/"));
 
-		// context switch for all open processors (we need to update all refs/
-		// paths to the reopened zip filesystem.
-		final ProjectPage currentPage = getSelectedPage();
-		if (currentPage != null) {
-			final RunnablePipeline currentPipeline = currentPage.getPipeline();
-			if (currentPipeline != null) {
-				currentPipeline.contextSwitch();
-			}
-		}
+		// sync tmp. working copy back to original file (which stays open, so
+		// no need to switch the context of open processors)
+		IncrementalZipFile.sync(zip, file);
 
 		// mark project (and managed modifiables) as clean/unmodified
 		modifiedProjectProperty.set(false);
 		return data;
 	}
 
+	private void savePageShards() throws IOException {
+		final Path directory = zip.getPath(ProjectPageShard.SHARDS_DIRECTORY);
+		final Set<String> shards = new HashSet<>();
+		for (ProjectPage page : pages) {
+			page.shard().save();
+			final String name = page.shard().getName();
+			if (name != null) {
+				shards.add(name);
+			}
+			// synced, so shards of closed pages can be reopened from the
+			// saved ones if needed again
+			if (!page.isOpened()) {
+				page.shard().close();
+			}
+		}
+
+		// remove shards of deleted pages
+		if (Files.isDirectory(directory)) {
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+				for (Path shard : stream) {
+					final String name = shard.getFileName().toString();
+					if (ProjectPageShard.SHARD_PATTERN.matcher(name).matches()
+							&& !shards.contains(name)) {
+						Files.delete(shard);
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * Returns the file (or savefile) of the project.
 	 *
@@ -488,8 +515,8 @@ public class Project implements Modifiable, Localizable {
 		if (page != null) {
 			page.open();
 			// might run on a background thread, so make sure we only touch props
-			// and bindings on the FX Application thread
-			FxUtils.runAndWait(() -> {
+			// and bindings on the FX Application thread (unless headless)
+			handler.uiStrategy.runAndWait(() -> {
 				selectedPageIdProperty.set(id);
 				canProcessSelectedPageProperty.bind(page.canProcessProperty());
 			});
@@ -503,9 +530,9 @@ public class Project implements Modifiable, Localizable {
 	 * @return id of the selected project page.
 	 */
 	public int getSelectedPageId() {
-		if (!Platform.isFxApplicationThread()) {
+		if (handler.uiStrategy.isHeadless() || !Platform.isFxApplicationThread()) {
 			try {
-				return FxUtils.runFutureTask(() -> {
+				return handler.uiStrategy.runFutureTask(() -> {
 					return selectedPageIdProperty.get();
 				});
 			} catch (Exception ex) {
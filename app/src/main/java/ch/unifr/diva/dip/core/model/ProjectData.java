@@ -211,14 +211,16 @@ public class ProjectData {
 
 	// marshal to xml
 	private void addPage(ProjectPage page) {
-		this.pages.list.add(new Page(
+		final Page p = new Page(
 				page.id,
 				page.getName(),
 				page.file,
 				page.checksum,
 				page.getPipelineId(),
 				page.getState().name()
-		));
+		);
+		p.shard = page.shard().getName();
+		this.pages.list.add(p);
 	}
 
 	private int newPageId() {
@@ -553,6 +555,14 @@ public class ProjectData {
 		@XmlAttribute(name = "state")
 		public String pipelineState = PipelineState.getDefault().name();
 
+		/**
+		 * The file name of the page's storage shard in the shards directory of
+		 * the project's zip file system, or {@code null} if the page's data
+		 * (still) lives in the project's zip file system.
+		 */
+		@XmlAttribute(name = "shard")
+		public String shard;
+
 		/**
 		 * The name of the page. Get's initialized to the filename of the image
 		 * file, but can be changed to anything.
@@ -583,6 +593,7 @@ public class ProjectData {
 					+ "id=" + id
 					+ ", pipeline=" + pipelineId
 					+ ", state=" + pipelineState
+					+ ", shard=" + shard
 					+ ", name=" + name
 					+ ", file=" + file
 					+ ", checksum=" + checksum
@@ -1,6 +1,5 @@
 package ch.unifr.diva.dip.core.model;
 
-import ch.unifr.diva.dip.api.utils.FxUtils;
 import ch.unifr.diva.dip.api.utils.SynchronizedObjectProperty;
 import ch.unifr.diva.dip.core.ApplicationHandler;
 import ch.unifr.diva.dip.core.ImageFormat;
@@ -40,35 +39,30 @@ public class ProjectPage implements Modifiable, Localizable {
 	private final ApplicationHandler handler;
 
 	/**
-	 * Root directory dedicated to the page in the zip file system (or
-	 * savefile).
+	 * Root directory of the page in the zip file system of its shard.
 	 */
-	protected final String ROOT_DIR;
-	protected static final String ROOT_DIR_FORMAT = "/pages/%d/";
+	protected static final String ROOT_DIR = "/";
 
 	/**
 	 * XML file containing the page's pipeline delta patch.
 	 */
-	protected final String PIPELINE_PATCH_XML;
-	protected static final String PIPELINE_PATCH_XML_FORMAT = "/pages/%d/patch.xml";
+	protected static final String PIPELINE_PATCH_XML = "/patch.xml";
 
 	/**
 	 * XML file containing the page's pipeline timings.
 	 */
-	protected final String PIPELINE_TIMING_XML;
-	protected static final String PIPELINE_TIMING_XML_FORMAT = "/pages/%d/timing.xml";
+	protected static final String PIPELINE_TIMING_XML = "/timing.xml";
 
 	/**
 	 * Root directory of persitent data of processors.
 	 */
-	protected final String PROCESSORS_ROOT_DIR;
-	protected static final String PROCESSORS_ROOT_DIR_FORMAT = "/pages/%d/processors/";
+	protected static final String PROCESSORS_ROOT_DIR = "/processors/";
 
 	/**
 	 * Directory format for persistent data of a processor. Every runnable
 	 * processor gets a directory all for himself.
 	 */
-	protected static final String PROCESSOR_DATA_DIR_FORMAT = "/pages/%d/processors/%d/data/";
+	protected static final String PROCESSOR_DATA_DIR_FORMAT = "/processors/%d/data/";
 
 	/**
 	 * XML file format for persistent, serialized data of a processor. Every
@@ -76,7 +70,14 @@ public class ProjectPage implements Modifiable, Localizable {
 	 * un-/marshalled by the host application (in addition to the dedicated
 	 * directory, for ease of use).
 	 */
-	protected static final String PROCESSOR_DATA_XML_FORMAT = "/pages/%d/processors/%d/data.xml";
+	protected static final String PROCESSOR_DATA_XML_FORMAT = "/processors/%d/data.xml";
+
+	/**
+	 * Directory format for side-car files of large objects in the
+	 * {@code Map<String, Object>} of a processor (referenced from the data XML
+	 * file).
+	 */
+	protected static final String PROCESSOR_OBJECTS_DIR_FORMAT = "/processors/%d/objects/";
 
 	/**
 	 * Page id. Unique within the project.
@@ -94,6 +95,7 @@ public class ProjectPage implements Modifiable, Localizable {
 	public final String checksum;
 
 	private final Project project;
+	private final ProjectPageShard shard;
 	private final StringProperty nameProperty;
 	private final SynchronizedObjectProperty<PipelineState> stateProperty;
 	private final StringProperty pipelineNameProperty;
@@ -145,10 +147,7 @@ public class ProjectPage implements Modifiable, Localizable {
 		this.handler = project.applicationHandler();
 		this.project = project;
 		this.id = page.id;
-		this.ROOT_DIR = String.format(ROOT_DIR_FORMAT, this.id);
-		this.PIPELINE_PATCH_XML = String.format(PIPELINE_PATCH_XML_FORMAT, this.id);
-		this.PIPELINE_TIMING_XML = String.format(PIPELINE_TIMING_XML_FORMAT, this.id);
-		this.PROCESSORS_ROOT_DIR = String.format(PROCESSORS_ROOT_DIR_FORMAT, this.id);
+		this.shard = new ProjectPageShard(project, page.id, page.shard);
 		this.pipelineIdProperty = new SimpleIntegerProperty(page.pipelineId);
 		this.pipelineNameProperty = new SimpleStringProperty(getPipelineNameFromPrototype());
 		this.nameProperty = new SimpleStringProperty(page.name);
@@ -416,7 +415,7 @@ public class ProjectPage implements Modifiable, Localizable {
 			}
 		}
 		final boolean cp = canProcess;
-		FxUtils.run(() -> {
+		handler.uiStrategy.run(() -> {
 			this.canProcessProperty.set(cp);
 		});
 	}
@@ -485,9 +484,9 @@ public class ProjectPage implements Modifiable, Localizable {
 		synchronized (pageLock) {
 			if (this.pipeline != null) {
 				// might run on a background thread, so make sure we only touch props
-				// and bindings on the FX Application thread
+				// and bindings on the FX Application thread (unless headless)
 				final RunnablePipeline currentPipeline = this.pipeline;
-				FxUtils.run(() -> {
+				handler.uiStrategy.run(() -> {
 					this.modifiedPageProperty.removeManagedProperty(currentPipeline);
 				});
 
@@ -503,6 +502,9 @@ public class ProjectPage implements Modifiable, Localizable {
 				this.image = null;
 				this.bufferedImage = null;
 			}
+
+			// unsaved data stays in the working copy of the shard
+			shard.suspend();
 		}
 	}
 
@@ -515,7 +517,7 @@ public class ProjectPage implements Modifiable, Localizable {
 				getPipeline().save();
 			}
 			writePipelineTimingFile();
-			FxUtils.run(() -> modifiedProperty().set(false));
+			handler.uiStrategy.run(() -> modifiedProperty().set(false));
 		}
 	}
 
@@ -680,14 +682,12 @@ public class ProjectPage implements Modifiable, Localizable {
 	 * Unlike {@code reset} this is a "hard" clearing (or reset) of the page.
 	 */
 	public void clear() {
-		deletePipelineTiming();
-
-		if (!Files.exists(rootDirectory())) {
-			return;
+		synchronized (resourceLock) {
+			this.timing = null;
 		}
 
 		try {
-			FileFinder.deleteDirectory(rootDirectory());
+			shard.clear();
 		} catch (IOException ex) {
 			log.error("failed to clear the project page: {}", this, ex);
 			handler.uiStrategy.showError(ex);
@@ -710,13 +710,22 @@ public class ProjectPage implements Modifiable, Localizable {
 		}
 	}
 
+	/**
+	 * Returns the storage shard of the page.
+	 *
+	 * @return the storage shard of the page.
+	 */
+	public ProjectPageShard shard() {
+		return shard;
+	}
+
 	/**
 	 * Returns a path to the root directory of the page.
 	 *
 	 * @return a path to the root directory of the page.
 	 */
 	protected Path rootDirectory() {
-		return project.zipFileSystem().getPath(ROOT_DIR);
+		return shard.getPath(ROOT_DIR);
 	}
 
 	/**
@@ -726,7 +735,7 @@ public class ProjectPage implements Modifiable, Localizable {
 	 * @return a path to the root directory of processors.
 	 */
 	protected Path processorRootDirectory() {
-		return project.zipFileSystem().getPath(PROCESSORS_ROOT_DIR);
+		return shard.getPath(PROCESSORS_ROOT_DIR);
 	}
 
 	/**
@@ -735,7 +744,7 @@ public class ProjectPage implements Modifiable, Localizable {
 	 * @return the path to the pipeline timing XML file.
 	 */
 	protected Path pipelineTimingXml() {
-		return project.zipFileSystem().getPath(PIPELINE_TIMING_XML);
+		return shard.getPath(PIPELINE_TIMING_XML);
 	}
 
 	protected PipelineTiming readPipelineTimingFile() {
@@ -770,7 +779,7 @@ public class ProjectPage implements Modifiable, Localizable {
 	 * @return the path to the pipeline patch XML file of the page.
 	 */
 	protected Path pipelinePatchXml() {
-		return project.zipFileSystem().getPath(PIPELINE_PATCH_XML);
+		return shard.getPath(PIPELINE_PATCH_XML);
 	}
 
 	/**
@@ -838,6 +847,7 @@ public class ProjectPage implements Modifiable, Localizable {
 	}
 
 	private void resetPipeline() {
+		handler.writeBehindQueue.discard(processorRootDirectory());
 		try {
 			if (Files.exists(processorRootDirectory())) {
 				FileFinder.deleteDirectory(processorRootDirectory());
@@ -912,8 +922,8 @@ public class ProjectPage implements Modifiable, Localizable {
 	 * @return a path to the data directory of a processor.
 	 */
 	private Path processorDataDirectory(int processorId) {
-		final String path = String.format(PROCESSOR_DATA_DIR_FORMAT, this.id, processorId);
-		return project.zipFileSystem().getPath(path);
+		final String path = String.format(PROCESSOR_DATA_DIR_FORMAT, processorId);
+		return shard.getPath(path);
 	}
 
 	@Override
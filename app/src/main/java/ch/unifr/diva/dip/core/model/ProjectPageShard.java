@@ -0,0 +1,327 @@
+package ch.unifr.diva.dip.core.model;
+
+import ch.unifr.diva.dip.core.ApplicationHandler;
+import ch.unifr.diva.dip.utils.FileFinder;
+import ch.unifr.diva.dip.utils.IncrementalZipFile;
+import ch.unifr.diva.dip.utils.ZipFileSystem;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Storage shard of a project page. Each page keeps its data (processor data,
+ * pipeline patch and timing, ...) in a zip file of its own, s.t. pages can be
+ * written concurrently (each zip file system has its own lock), only pages
+ * actually touched get opened, and deleting a page is cheap.
+ *
+ * <p>
+ * Just like the project's savefile, a shard has a saved zip file and a temp.
+ * working copy that is synced back to the saved one upon saving the project.
+ * Saved shards are stored inside the project's zip file system (under
+ * {@code /shards/}), s.t. they are part of the savefile, and get moved or
+ * copied along with it. Pages of projects saved before shards existed keep
+ * their data in the project's zip file system (under {@code /pages/<id>/})
+ * until touched, at which point it is moved to the shard.
+ *
+ * <p>
+ * A saved shard that went missing (e.g. a damaged savefile) can't be opened,
+ * rather than silently starting over with an empty shard. Clearing the page
+ * resets the shard.
+ *
+ * <p>
+ * Shards are opened lazily, and don't stay open for longer than needed: the
+ * zip file system of a shard is closed (suspended) once its page is closed,
+ * keeping the working copy around until the project is saved, and a shard is
+ * closed for good after it got saved, unless its page is opened. Either way
+ * the shard is reopened on demand.
+ */
+public class ProjectPageShard {
+
+	private static final Logger log = LoggerFactory.getLogger(ProjectPageShard.class);
+
+	/**
+	 * File name format of shards.
+	 */
+	public static final String SHARD_FORMAT = "page-%d.zip";
+
+	/**
+	 * Pattern of file names of shards.
+	 */
+	public static final Pattern SHARD_PATTERN = Pattern.compile("page-\\d+\\.zip");
+
+	/**
+	 * Directory of saved shards in the project's zip file system.
+	 */
+	public static final String SHARDS_DIRECTORY = "/shards/";
+
+	/**
+	 * Root directory format of page data in the project's zip file system, as
+	 * used before shards existed.
+	 */
+	protected static final String LEGACY_ROOT_DIR_FORMAT = "/pages/%d/";
+
+	private final ApplicationHandler handler;
+	private final Project project;
+	private final int pageId;
+	private final String name;
+	// page data still lives in the project's zip file system
+	private boolean legacy;
+	// working copy is to be initialized from the saved shard
+	private boolean saved;
+	// the working copy; kept while suspended (zip is null)
+	private Path zipFile;
+	private ZipFileSystem zip;
+
+	/**
+	 * Creates a new shard.
+	 *
+	 * @param project the project.
+	 * @param pageId the id of the page.
+	 * @param name the file name of a saved shard, or {@code null} for new
+	 * pages, or pages with their data still in the project's zip file system.
+	 */
+	public ProjectPageShard(Project project, int pageId, String name) {
+		this.handler = project.applicationHandler();
+		this.project = project;
+		this.pageId = pageId;
+		this.legacy = (name == null);
+		this.saved = (name != null);
+		this.name = (name == null) ? String.format(SHARD_FORMAT, pageId) : name;
+	}
+
+	/**
+	 * Returns the file name of the shard.
+	 *
+	 * @return the file name of the shard, or {@code null} if the page's data
+	 * (still) lives in the project's zip file system.
+	 */
+	public synchronized String getName() {
+		return this.legacy ? null : this.name;
+	}
+
+	/**
+	 * Checks whether the shard is opened.
+	 *
+	 * @return {@code true} if the working copy of the shard is opened,
+	 * {@code false} otherwise.
+	 */
+	public synchronized boolean isOpened() {
+		return this.zip != null;
+	}
+
+	/**
+	 * Returns the zip file system of the shard. Opens the shard if not opened
+	 * yet.
+	 *
+	 * @return the zip file system of the (working copy of the) shard.
+	 * @throws IOException in case of an I/O error.
+	 */
+	public synchronized ZipFileSystem zipFileSystem() throws IOException {
+		if (this.zip == null) {
+			open();
+		}
+		return this.zip;
+	}
+
+	/**
+	 * Returns a path on the zip file system of the shard. Opens the shard if
+	 * not opened yet.
+	 *
+	 * @param path a path in the shard.
+	 * @return a path.
+	 * @throws UncheckedIOException if the shard can't be opened.
+	 */
+	public Path getPath(String path) {
+		try {
+			return zipFileSystem().getPath(path);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private void open() throws IOException {
+		if (this.zipFile != null && Files.exists(this.zipFile)) {
+			// resume a suspended working copy
+			this.zip = ZipFileSystem.open(this.zipFile);
+			log.debug("resumed shard of page {}: {}", this.pageId, this.zipFile);
+			return;
+		}
+
+		if (this.saved) {
+			final Path savedFile = savedFile();
+			if (!Files.exists(savedFile)) {
+				log.error("missing shard of page {}: {}", this.pageId, savedFile);
+				throw new FileNotFoundException(String.format(
+						"missing shard of page %d: %s",
+						this.pageId,
+						savedFile
+				));
+			}
+			this.zipFile = this.handler.dataManager.tmpFile();
+			Files.copy(savedFile, this.zipFile, StandardCopyOption.REPLACE_EXISTING);
+			IncrementalZipFile.recover(this.zipFile);
+			this.zip = ZipFileSystem.open(this.zipFile);
+		} else {
+			this.zipFile = this.handler.dataManager.tmpFile(true);
+			this.zip = ZipFileSystem.create(this.zipFile);
+		}
+
+		if (this.legacy) {
+			moveLegacyData();
+			this.legacy = false;
+		}
+		log.debug("opened shard of page {}: {}", this.pageId, this.zipFile);
+	}
+
+	private void moveLegacyData() throws IOException {
+		final Path legacyRoot = legacyRootDirectory();
+		if (!Files.exists(legacyRoot)) {
+			return;
+		}
+		this.handler.writeBehindQueue.flush(legacyRoot);
+
+		final Path root = this.zip.getPath("/");
+		Files.walkFileTree(legacyRoot, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				Files.createDirectories(root.resolve(legacyRoot.relativize(dir).toString()));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.copy(file, root.resolve(legacyRoot.relativize(file).toString()));
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		FileFinder.deleteDirectory(legacyRoot);
+	}
+
+	private Path legacyRootDirectory() {
+		return this.project.zipFileSystem().getPath(
+				String.format(LEGACY_ROOT_DIR_FORMAT, this.pageId)
+		);
+	}
+
+	private Path savedFile() {
+		return this.project.zipFileSystem().getPath(SHARDS_DIRECTORY + this.name);
+	}
+
+	/**
+	 * Saves the shard to the project's zip file system, which then gets synced
+	 * to the savefile along with the rest of the project. Only an opened (or
+	 * suspended) shard has to be saved, an untouched one is left as is.
+	 *
+	 * @throws IOException in case of an I/O error.
+	 */
+	public synchronized void save() throws IOException {
+		if (this.legacy) {
+			// saved along with the project's zip file system
+			return;
+		}
+
+		final Path file = savedFile();
+		if (this.zip == null && this.zipFile != null) {
+			open();
+		}
+		if (this.zip != null) {
+			this.handler.writeBehindQueue.flush(this.zip.getPath("/"));
+			final Path tmp = this.handler.dataManager.tmpFile(true);
+			try {
+				IncrementalZipFile.sync(this.zip, tmp);
+				Files.createDirectories(file.getParent());
+				Files.copy(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+			this.saved = true;
+		} else if (!this.saved) {
+			// cleared
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Clears the shard. Removes all data of the page; the shard is empty once
+	 * reopened.
+	 *
+	 * @throws IOException in case of an I/O error.
+	 */
+	public synchronized void clear() throws IOException {
+		close();
+		this.saved = false;
+		if (this.legacy) {
+			final Path legacyRoot = legacyRootDirectory();
+			this.handler.writeBehindQueue.discard(legacyRoot);
+			if (Files.exists(legacyRoot)) {
+				FileFinder.deleteDirectory(legacyRoot);
+			}
+			this.legacy = false;
+		}
+	}
+
+	/**
+	 * Suspends the shard. Writes pending data to the working copy, and closes
+	 * its zip file system, but keeps the working copy (and unsaved data). The
+	 * working copy is reopened on demand, or synced upon saving the project.
+	 */
+	public synchronized void suspend() {
+		if (this.zip == null) {
+			return;
+		}
+		this.handler.writeBehindQueue.flush(this.zip.getPath("/"));
+		try {
+			this.zip.close();
+		} catch (IOException ex) {
+			log.warn("suspending shard failed: {}", this.zipFile, ex);
+		}
+		this.zip = null;
+		log.debug("suspended shard of page {}: {}", this.pageId, this.zipFile);
+	}
+
+	/**
+	 * Closes the shard, discarding unsaved data. Reopening the shard starts
+	 * over from the saved shard.
+	 */
+	public synchronized void close() {
+		if (this.zip != null) {
+			this.handler.writeBehindQueue.discard(this.zip.getPath("/"));
+			try {
+				this.zip.close();
+			} catch (IOException ex) {
+				log.warn("closing shard failed: {}", this.zipFile, ex);
+			}
+		}
+		if (this.zipFile != null) {
+			try {
+				Files.deleteIfExists(this.zipFile);
+			} catch (IOException ex) {
+				log.warn("closing shard failed: {}", this.zipFile, ex);
+			}
+		}
+		this.zip = null;
+		this.zipFile = null;
+	}
+
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName()
+				+ "@"
+				+ Integer.toHexString(this.hashCode())
+				+ "{"
+				+ "page=" + this.pageId
+				+ ", name=" + this.name
+				+ ", opened=" + (this.zip != null)
+				+ "}";
+	}
+
+}
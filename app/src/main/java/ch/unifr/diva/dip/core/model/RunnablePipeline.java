@@ -1,7 +1,6 @@
 package ch.unifr.diva.dip.core.model;
 
 import ch.unifr.diva.dip.core.execution.PipelineExecutor;
-import ch.unifr.diva.dip.api.utils.FxUtils;
 import ch.unifr.diva.dip.core.ApplicationHandler;
 import ch.unifr.diva.dip.core.execution.PipelineExecutionLogger;
 import ch.unifr.diva.dip.gui.pe.PipelineLayoutStrategy;
@@ -17,6 +16,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -59,6 +59,9 @@ public class RunnablePipeline extends Pipeline<RunnableProcessor> {
 	private final Object pipelineLock = new Object();
 	private final Object resourceLock = new Object();
 
+	// processor id -> fingerprint, memoized while the pipeline is executed
+	private volatile Map<Integer, String> fingerprints;
+
 	/**
 	 * Creates a new runnable pipeline from pipeline data.
 	 *
@@ -293,7 +296,7 @@ public class RunnablePipeline extends Pipeline<RunnableProcessor> {
 				p.save();
 			}
 			savePipelinePatch();
-			FxUtils.run(() -> modifiedProperty().set(false));
+			handler.uiStrategy.run(() -> modifiedProperty().set(false));
 		}
 	}
 
@@ -319,7 +322,7 @@ public class RunnablePipeline extends Pipeline<RunnableProcessor> {
 				patch.save(stream);
 			} catch (JAXBException | IOException ex) {
 				log.error("failed to save pipeline patch: {}", this, ex);
-				FxUtils.run(() -> handler.uiStrategy.showError(ex));
+				handler.uiStrategy.run(() -> handler.uiStrategy.showError(ex));
 				return false;
 			}
 		}
@@ -338,7 +341,7 @@ public class RunnablePipeline extends Pipeline<RunnableProcessor> {
 			return Files.deleteIfExists(this.page.pipelinePatchXml());
 		} catch (IOException ex) {
 			log.error("failed to clear the pipeline patch: {}", this, ex);
-			FxUtils.run(() -> handler.uiStrategy.showError(ex));
+			handler.uiStrategy.run(() -> handler.uiStrategy.showError(ex));
 		}
 		return false;
 	}
@@ -362,6 +365,33 @@ public class RunnablePipeline extends Pipeline<RunnableProcessor> {
 		}
 	}
 
+	/**
+	 * Starts memoizing the fingerprints of the processors (see
+	 * {@code RunnableProcessor.getFingerprint()}). Parameters and inputs of the
+	 * processors don't change while the pipeline is executed, so each
+	 * fingerprint needs to be computed only once per execution.
+	 */
+	public void startFingerprintMemo() {
+		this.fingerprints = Collections.synchronizedMap(new HashMap<>());
+	}
+
+	/**
+	 * Stops memoizing the fingerprints of the processors, and forgets the
+	 * memoized ones.
+	 */
+	public void stopFingerprintMemo() {
+		this.fingerprints = null;
+	}
+
+	/**
+	 * Returns the memoized fingerprints of the processors.
+	 *
+	 * @return the memoized fingerprints, or {@code null} if not executing.
+	 */
+	Map<Integer, String> getFingerprintMemo() {
+		return this.fingerprints;
+	}
+
 	/**
 	 * Creates a new pipeline executor.
 	 *
@@ -384,10 +414,11 @@ public class RunnablePipeline extends Pipeline<RunnableProcessor> {
 			for (RunnableProcessor p : processors()) {
 				if (p.serviceObject().canReset()) {
 					p.reset();
-					FxUtils.runAndWait(() -> p.updateState(true));
+					handler.uiStrategy.runAndWait(() -> p.updateState(true));
 				}
 			}
 
+			handler.writeBehindQueue.discard(this.page.processorRootDirectory());
 			try {
 				if (Files.exists(this.page.processorRootDirectory())) {
 					FileFinder.deleteDirectory(this.page.processorRootDirectory());
@@ -412,7 +443,7 @@ public class RunnablePipeline extends Pipeline<RunnableProcessor> {
 	 * @throws IOException
 	 */
 	protected Path getProcessorDirectory(String processorDataDirectory) throws IOException {
-		final Path path = page.project().zipFileSystem().getPath(processorDataDirectory);
+		final Path path = page.shard().getPath(processorDataDirectory);
 		synchronized (resourceLock) {
 			final Path directory = IOUtils.getRealDirectories(path);
 			return directory;
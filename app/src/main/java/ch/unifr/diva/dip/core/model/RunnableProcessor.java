@@ -1,9 +1,11 @@
 package ch.unifr.diva.dip.core.model;
 
 import ch.unifr.diva.dip.api.components.InputPort;
+import ch.unifr.diva.dip.api.components.OutputPort;
 import ch.unifr.diva.dip.api.components.ProcessorContext;
 import ch.unifr.diva.dip.api.services.Previewable;
 import ch.unifr.diva.dip.api.services.Processor;
+import ch.unifr.diva.dip.api.utils.WriteBehindQueue;
 import ch.unifr.diva.dip.api.utils.XmlUtils;
 import ch.unifr.diva.dip.core.services.api.HostProcessorContext;
 import ch.unifr.diva.dip.core.ui.Localizable;
@@ -15,8 +17,9 @@ import ch.unifr.diva.dip.gui.layout.Lane;
 import ch.unifr.diva.dip.gui.pe.ProcessorParameterWindow;
 import ch.unifr.diva.dip.utils.BackgroundTask;
 import ch.unifr.diva.dip.utils.FileFinder;
-import ch.unifr.diva.dip.api.utils.FxUtils;
+import ch.unifr.diva.dip.utils.IOUtils;
 import ch.unifr.diva.dip.core.execution.PipelineTiming;
+import ch.unifr.diva.dip.core.execution.ProcessorResultCache;
 import ch.unifr.diva.dip.core.execution.ProcessorTiming;
 import ch.unifr.diva.dip.core.ui.UIStrategyGUI;
 import ch.unifr.diva.dip.utils.CursorLock;
@@ -26,11 +29,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import javafx.beans.InvalidationListener;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -57,6 +66,7 @@ public class RunnableProcessor extends PrototypeProcessor {
 	private final WeakReference<RunnablePipeline> pipeline;
 	private final String PROCESSOR_DATA_DIR;
 	private final String PROCESSOR_DATA_XML;
+	private final String PROCESSOR_OBJECTS_DIR;
 	private final ObjectMapData objectMap;
 	private final LayerGroup layerGroup;
 	private final LayerOverlay layerOverlay;
@@ -82,12 +92,14 @@ public class RunnableProcessor extends PrototypeProcessor {
 
 		this.PROCESSOR_DATA_DIR = String.format(
 				ProjectPage.PROCESSOR_DATA_DIR_FORMAT,
-				page.id,
 				processor.id
 		);
 		this.PROCESSOR_DATA_XML = String.format(
 				ProjectPage.PROCESSOR_DATA_XML_FORMAT,
-				page.id,
+				processor.id
+		);
+		this.PROCESSOR_OBJECTS_DIR = String.format(
+				ProjectPage.PROCESSOR_OBJECTS_DIR_FORMAT,
 				processor.id
 		);
 
@@ -341,17 +353,22 @@ public class RunnableProcessor extends PrototypeProcessor {
 	}
 
 	private ObjectMapData initObjectMap() {
+		ObjectMapData data = null;
 		if (Files.exists(processorDataXML())) {
 			try (InputStream stream = new BufferedInputStream(Files.newInputStream(processorDataXML()))) {
-				final ObjectMapData data = XmlUtils.unmarshal(ObjectMapData.class, stream);
-				return data;
+				data = XmlUtils.unmarshal(ObjectMapData.class, stream);
 			} catch (JAXBException | IOException ex) {
 				log.error("failed to load the processor's data map: {}", this, ex);
 				handler.uiStrategy.showError(ex);
 			}
 		}
 
-		return new ObjectMapData();
+		if (data == null) {
+			data = new ObjectMapData();
+		}
+		// large objects are loaded from their side-car files on first access
+		data.setSideCarDirectory(this::processorObjectsPath);
+		return data;
 	}
 
 	/**
@@ -359,13 +376,13 @@ public class RunnableProcessor extends PrototypeProcessor {
 	 */
 	public void save() {
 		if (!Files.exists(processorDataPath())) {
-			FxUtils.run(() -> modifiedProperty().set(false));
+			handler.uiStrategy.run(() -> modifiedProperty().set(false));
 			return; // there is no pipeline anymore
 		}
 
 		switchContext(true);
 		saveObjectMap();
-		FxUtils.run(() -> modifiedProperty().set(false));
+		handler.uiStrategy.run(() -> modifiedProperty().set(false));
 	}
 
 	private void saveObjectMap() {
@@ -373,15 +390,15 @@ public class RunnableProcessor extends PrototypeProcessor {
 			Files.deleteIfExists(processorDataXML());
 		} catch (IOException ex) {
 			log.error("failed to clear the processor's data map: {}", this, ex);
-			FxUtils.run(() -> handler.uiStrategy.showError(ex));
+			handler.uiStrategy.run(() -> handler.uiStrategy.showError(ex));
 			return;
 		}
 
 		try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(processorDataXML()))) {
-			XmlUtils.marshal(this.objectMap, stream);
+			XmlUtils.marshal(this.objectMap.writeSideCars(processorObjectsPath()), stream);
 		} catch (JAXBException | IOException ex) {
 			log.error("failed to save the processor's data map: {}", this, ex);
-			FxUtils.run(() -> handler.uiStrategy.showError(ex));
+			handler.uiStrategy.run(() -> handler.uiStrategy.showError(ex));
 		}
 	}
 
@@ -430,7 +447,17 @@ public class RunnableProcessor extends PrototypeProcessor {
 	}
 
 	private Path processorDataPath() {
-		return project.zipFileSystem().getPath(PROCESSOR_DATA_DIR);
+		return page.shard().getPath(PROCESSOR_DATA_DIR);
+	}
+
+	/**
+	 * Returns a path to the directory of side-car files of large objects in
+	 * the processor's data XML file.
+	 *
+	 * @return a path to the processor's side-car directory.
+	 */
+	private Path processorObjectsPath() {
+		return page.shard().getPath(PROCESSOR_OBJECTS_DIR);
 	}
 
 	/**
@@ -440,7 +467,7 @@ public class RunnableProcessor extends PrototypeProcessor {
 	 * @return a path to the processor's data XML file.
 	 */
 	private Path processorDataXML() {
-		return project.zipFileSystem().getPath(PROCESSOR_DATA_XML);
+		return page.shard().getPath(PROCESSOR_DATA_XML);
 	}
 
 	/**
@@ -550,10 +577,19 @@ public class RunnableProcessor extends PrototypeProcessor {
 				this.project.getExportDirectory(),
 				objectMap.objects,
 				this.layerGroup,
-				this.layerOverlay
+				this.layerOverlay,
+				getWriteBehindQueue(),
+				this.handler.settings.pipelineEditor.getImageFormat(),
+				this.handler.settings.pipelineEditor.getObjectFormat()
 		);
 	}
 
+	// persistent data is written in the background, unless disabled
+	private WriteBehindQueue getWriteBehindQueue() {
+		final WriteBehindQueue queue = this.handler.writeBehindQueue;
+		return (queue.getMaxBytes() > 0) ? queue : null;
+	}
+
 	/**
 	 * Returns the processor context.
 	 *
@@ -625,14 +661,128 @@ public class RunnableProcessor extends PrototypeProcessor {
 		}
 
 		final ProcessorContext context = newProcessorContext();
+		final ProcessorResultCache cache = handler.resultCache;
+		final String fingerprint = cache.isEnabled() ? getFingerprint() : null;
+		// on a hit the processor finds its persistent data in place, and just
+		// needs to restore its outputs
+		final boolean hit = cache.restore(fingerprint, context.getDirectory(), objectMap.objects);
 		serviceObject().asProcessableProcessor().process(context);
+		if (!hit && !Thread.currentThread().isInterrupted() && fingerprint != null) {
+			// the cache needs the persistent data on disk
+			if (context.getDirectory() != null) {
+				handler.writeBehindQueue.flush(context.getDirectory());
+			}
+			cache.store(fingerprint, context.getDirectory(), objectMap.copyLoaded());
+		}
 
-		FxUtils.runAndWait(() -> {
+		handler.uiStrategy.runAndWait(() -> {
 			this.updateState(true);
 			this.setModified(true);
 		});
 	}
 
+	/**
+	 * Returns the fingerprint of the processor. The fingerprint is computed
+	 * from the PID and version of the processor, its parameters, and the
+	 * fingerprints of the processors connected to its inputs (or the checksum
+	 * of the page, if there are none), and identifies the results of the
+	 * processor in the {@code ProcessorResultCache}.
+	 *
+	 * @return the fingerprint, or {@code null} if the results of the processor
+	 * can't be cached (e.g. if the processor, or some processor it depends on,
+	 * is editable).
+	 */
+	public String getFingerprint() {
+		// memoized during an execution, s.t. upstream processors aren't
+		// fingerprinted again by every processor downstream
+		final RunnablePipeline rp = pipeline.get();
+		final Map<Integer, String> memo = (rp == null) ? null : rp.getFingerprintMemo();
+		return getFingerprint(
+				(memo == null) ? new HashMap<>() : memo,
+				new HashSet<>()
+		);
+	}
+
+	private String getFingerprint(Map<Integer, String> fingerprints, Set<Integer> visiting) {
+		if (fingerprints.containsKey(this.id)) {
+			return fingerprints.get(this.id);
+		}
+		// no cycles in a pipeline, but better safe than sorry
+		if (!visiting.add(this.id)) {
+			return null;
+		}
+		final String fingerprint = computeFingerprint(fingerprints, visiting);
+		fingerprints.put(this.id, fingerprint);
+		return fingerprint;
+	}
+
+	private String computeFingerprint(Map<Integer, String> fingerprints, Set<Integer> visiting) {
+		final RunnablePipeline rp = pipeline.get();
+		if (rp == null || serviceObject() == null || serviceObject().canEdit()) {
+			return null;
+		}
+
+		final MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			return null;
+		}
+
+		final StringBuilder sb = new StringBuilder();
+		sb.append(pid()).append('@').append(version()).append('\n');
+		boolean hasInputs = false;
+		for (Map.Entry<String, InputPort<?>> e : new TreeMap<>(serviceObject().inputs()).entrySet()) {
+			final OutputPort<?> output = e.getValue().connection();
+			if (output == null) {
+				continue;
+			}
+			final PortMapEntry m = rp.outputPortMap().get(output);
+			final RunnableProcessor p = (m == null) ? null : rp.getProcessor(m.id);
+			final String fingerprint = (p == null) ? null : p.getFingerprint(fingerprints, visiting);
+			if (fingerprint == null) {
+				return null;
+			}
+			sb.append(e.getKey()).append('=').append(fingerprint).append(':').append(m.port).append('\n');
+			hasInputs = true;
+		}
+		if (!hasInputs) {
+			sb.append(this.page.checksum).append('\n');
+		}
+		md.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+
+		// parameters as they're persisted, but without layout or id
+		final PipelineData.Processor data = new PipelineData.Processor(this);
+		data.id = 0;
+		data.x = 0;
+		data.y = 0;
+		data.editing = false;
+		data.parameters = new TreeMap<>(data.parameters);
+		try (OutputStream stream = new DigestOutputStream(new NullOutputStream(), md)) {
+			XmlUtils.marshal(data, stream);
+		} catch (JAXBException | IOException ex) {
+			log.warn("failed to compute the fingerprint of the processor: {}", this, ex);
+			return null;
+		}
+
+		return IOUtils.toHexString(md.digest());
+	}
+
+	/**
+	 * Output stream discarding all bytes.
+	 */
+	private static class NullOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+
+	}
+
 	/**
 	 * Resets the processor on a background task.
 	 *
@@ -676,6 +826,7 @@ public class RunnableProcessor extends PrototypeProcessor {
 	 * thread, or something...
 	 */
 	protected void reset() {
+		handler.writeBehindQueue.discard(processorDataPath());
 		try {
 			Files.deleteIfExists(processorDataXML());
 		} catch (IOException ex) {
@@ -683,6 +834,20 @@ public class RunnableProcessor extends PrototypeProcessor {
 			handler.uiStrategy.showError(ex);
 		}
 
+		if (Files.exists(processorObjectsPath())) {
+			try {
+				FileFinder.deleteDirectory(processorObjectsPath());
+			} catch (IOException ex) {
+				log.error(
+						"failed to clear the processors's side-car directory: {}",
+						this, ex
+				);
+				handler.uiStrategy.showError(ex);
+			}
+		}
+		// can't be loaded anymore
+		objectMap.removeSideCars();
+
 		if (Files.exists(processorDataPath())) {
 			try {
 				FileFinder.deleteDirectory(processorDataPath());
@@ -699,7 +864,7 @@ public class RunnableProcessor extends PrototypeProcessor {
 			serviceObject().asResetableProcessor().reset(newProcessorContext());
 		}
 
-		FxUtils.runAndWait(() -> {
+		handler.uiStrategy.runAndWait(() -> {
 			this.updateState(true);
 			this.setModified(true);
 		});
@@ -4,6 +4,7 @@ import ch.unifr.diva.dip.api.components.EditorLayerGroup;
 import ch.unifr.diva.dip.api.components.EditorLayerOverlay;
 import ch.unifr.diva.dip.api.components.ProcessorContext;
 import ch.unifr.diva.dip.api.utils.DipThreadPool;
+import ch.unifr.diva.dip.api.utils.WriteBehindQueue;
 import ch.unifr.diva.dip.utils.IOUtils;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -26,6 +27,9 @@ public class RunnableProcessorContext implements ProcessorContext {
 	private final Map<String, Object> objects;
 	private final EditorLayerGroup layer;
 	private final EditorLayerOverlay overlay;
+	private final WriteBehindQueue writeBehindQueue;
+	private final String imageFormat;
+	private final String objectFormat;
 
 	/**
 	 * Creates a new processor context.
@@ -42,6 +46,32 @@ public class RunnableProcessorContext implements ProcessorContext {
 	 * @param overlay the processor's editor layer overlay.
 	 */
 	public RunnableProcessorContext(DipThreadPool threadPool, int pageId, Path directory, Path exportDirectory, Path exportRootDirectory, Map<String, Object> objects, EditorLayerGroup layer, EditorLayerOverlay overlay) {
+		this(threadPool, pageId, directory, exportDirectory, exportRootDirectory, objects, layer, overlay, null, null, null);
+	}
+
+	/**
+	 * Creates a new processor context.
+	 *
+	 * @param threadPool the application wide thread pool/executor service.
+	 * @param pageId the ID of the page.
+	 * @param directory the directory dedicated for persistent data of the
+	 * processor.
+	 * @param exportDirectory the directory the processor may (publicly) export
+	 * files to.
+	 * @param exportRootDirectory the export root directory.
+	 * @param objects the persistent map of objects of the processor.
+	 * @param layer the processor's editor layer.
+	 * @param overlay the processor's editor layer overlay.
+	 * @param writeBehindQueue the write-behind queue for persistent data, or
+	 * {@code null} to write persistent data right away.
+	 * @param imageFormat the format of images written to the directory for
+	 * persistent data, or {@code null} to use the format requested by the
+	 * processor.
+	 * @param objectFormat the format of objects written to the directory for
+	 * persistent data, or {@code null} to use the format requested by the
+	 * processor.
+	 */
+	public RunnableProcessorContext(DipThreadPool threadPool, int pageId, Path directory, Path exportDirectory, Path exportRootDirectory, Map<String, Object> objects, EditorLayerGroup layer, EditorLayerOverlay overlay, WriteBehindQueue writeBehindQueue, String imageFormat, String objectFormat) {
 		this.threadPool = threadPool;
 		this.pageId = pageId;
 		this.directory = directory;
@@ -50,6 +80,9 @@ public class RunnableProcessorContext implements ProcessorContext {
 		this.objects = objects;
 		this.layer = layer;
 		this.overlay = overlay;
+		this.writeBehindQueue = writeBehindQueue;
+		this.imageFormat = imageFormat;
+		this.objectFormat = objectFormat;
 	}
 
 	@Override
@@ -57,6 +90,21 @@ public class RunnableProcessorContext implements ProcessorContext {
 		return threadPool;
 	}
 
+	@Override
+	public WriteBehindQueue getWriteBehindQueue() {
+		return writeBehindQueue;
+	}
+
+	@Override
+	public String getImageFormat() {
+		return imageFormat;
+	}
+
+	@Override
+	public String getObjectFormat() {
+		return objectFormat;
+	}
+
 	@Override
 	public int getPageId() {
 		return pageId;
@@ -1,5 +1,7 @@
 package ch.unifr.diva.dip.core.ui;
 
+import ch.unifr.diva.dip.api.utils.FxUtils;
+import java.util.concurrent.Callable;
 import javafx.stage.Stage;
 
 /**
@@ -52,6 +54,52 @@ public interface UIStrategy {
 		return null;
 	}
 
+	/**
+	 * Checks whether the application runs headless, i.e. without a GUI (and
+	 * without anyone listening on the JavaFX application thread).
+	 *
+	 * @return {@code true} if headless, {@code false} otherwise.
+	 */
+	default boolean isHeadless() {
+		return false;
+	}
+
+	/**
+	 * Applies an update of the (observable) application state. By default the
+	 * update is run on the JavaFX application thread. This method is safe to be
+	 * called from any thread.
+	 *
+	 * @param runnable the update.
+	 */
+	default void run(Runnable runnable) {
+		FxUtils.run(runnable);
+	}
+
+	/**
+	 * Applies an update of the (observable) application state, and waits until
+	 * done before returning. By default the update is run on the JavaFX
+	 * application thread. This method is safe to be called from any thread.
+	 *
+	 * @param runnable the update.
+	 */
+	default void runAndWait(Runnable runnable) {
+		FxUtils.runAndWait(runnable);
+	}
+
+	/**
+	 * Queries the (observable) application state. By default the query is run
+	 * on the JavaFX application thread. This method is safe to be called from
+	 * any thread.
+	 *
+	 * @param <T> class of the result.
+	 * @param callable callable returning T.
+	 * @return the result.
+	 * @throws Exception
+	 */
+	default <T> T runFutureTask(Callable<T> callable) throws Exception {
+		return FxUtils.runFutureTask(callable);
+	}
+
 	/**
 	 * Asks the user a yes/no/cancel question.
 	 *
@@ -1,12 +1,45 @@
 package ch.unifr.diva.dip.core.ui;
 
 import java.util.Scanner;
+import java.util.concurrent.Callable;
 
 /**
  * UI strategy for the command line interface.
+ *
+ * <p>
+ * Without a GUI there is no need to pass updates of the application state to
+ * the JavaFX application thread (and to wait for it to get around to them),
+ * so updates are applied on the calling thread. Updates are still serialized
+ * by a single lock, just like they would be on the JavaFX application thread.
  */
 public class UIStrategyCLI implements UIStrategy, Localizable {
 
+	private final Object updateLock = new Object();
+
+	@Override
+	public boolean isHeadless() {
+		return true;
+	}
+
+	@Override
+	public void run(Runnable runnable) {
+		synchronized (updateLock) {
+			runnable.run();
+		}
+	}
+
+	@Override
+	public void runAndWait(Runnable runnable) {
+		run(runnable);
+	}
+
+	@Override
+	public <T> T runFutureTask(Callable<T> callable) throws Exception {
+		synchronized (updateLock) {
+			return callable.call();
+		}
+	}
+
 	@Override
 	public void showError(Throwable throwable) {
 		System.out.println(
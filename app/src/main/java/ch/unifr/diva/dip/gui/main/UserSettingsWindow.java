@@ -3,6 +3,7 @@ package ch.unifr.diva.dip.gui.main;
 import ch.unifr.diva.dip.api.parameters.BooleanParameter;
 import ch.unifr.diva.dip.api.parameters.CompositeGrid;
 import ch.unifr.diva.dip.api.parameters.EnumParameter;
+import ch.unifr.diva.dip.api.parameters.IntegerParameter;
 import ch.unifr.diva.dip.api.parameters.LabelParameter;
 import ch.unifr.diva.dip.api.parameters.PersistentParameter;
 import ch.unifr.diva.dip.api.utils.L10n;
@@ -219,6 +220,124 @@ public class UserSettingsWindow extends AbstractWindow implements Presenter {
 			}
 		});
 
+		// batch mode: pages processed concurrently, and their memory budget
+		pe.addItem(new Item<CompositeGrid>() {
+			@Override
+			public CompositeGrid parameter() {
+				if (this.parameter == null) {
+					final LabelParameter pagesLabel = new LabelParameter(localize("pipeline.execution.pages") + ": ");
+					final LabelParameter memoryLabel = new LabelParameter(localize("pipeline.execution.memory") + ": ");
+					final IntegerParameter concurrentPages = new IntegerParameter(
+							"",
+							handler.settings.pipelineEditor.getConcurrentPages(),
+							1,
+							Runtime.getRuntime().availableProcessors()
+					);
+					final IntegerParameter memoryBudget = new IntegerParameter(
+							"",
+							handler.settings.pipelineEditor.memoryBudget,
+							1,
+							100
+					);
+					this.parameter = new CompositeGrid(
+							localize("pipeline.execution.batch"),
+							pagesLabel, concurrentPages,
+							memoryLabel, memoryBudget
+					);
+					this.parameter.setColumnConstraints(2);
+					this.parameter.getColumnConstraints().get(0).setHgrow(Priority.ALWAYS);
+				}
+				return this.parameter;
+			}
+
+			@Override
+			public void save() {
+				handler.settings.pipelineEditor.concurrentPages = (int) this.parameter.get().get(0);
+				handler.settings.pipelineEditor.memoryBudget = (int) this.parameter.get().get(1);
+			}
+		});
+
+		// processor result cache
+		pe.addItem(new Item<CompositeGrid>() {
+			@Override
+			public CompositeGrid parameter() {
+				if (this.parameter == null) {
+					final LabelParameter sizeLabel = new LabelParameter(localize("pipeline.execution.cache.size") + ": ");
+					final IntegerParameter size = new IntegerParameter(
+							"",
+							Math.max(0, handler.settings.pipelineEditor.resultCacheSize),
+							0,
+							Integer.MAX_VALUE
+					);
+					final LabelParameter writeBehindLabel = new LabelParameter(localize("pipeline.execution.writebehind") + ": ");
+					final IntegerParameter writeBehind = new IntegerParameter(
+							"",
+							Math.max(0, handler.settings.pipelineEditor.writeBehindMemory),
+							0,
+							Integer.MAX_VALUE
+					);
+					this.parameter = new CompositeGrid(
+							localize("pipeline.execution.cache"),
+							sizeLabel, size,
+							writeBehindLabel, writeBehind
+					);
+					this.parameter.setColumnConstraints(2);
+					this.parameter.getColumnConstraints().get(0).setHgrow(Priority.ALWAYS);
+				}
+				return this.parameter;
+			}
+
+			@Override
+			public void save() {
+				handler.settings.pipelineEditor.resultCacheSize = (int) this.parameter.get().get(0);
+				handler.resultCache.setMaxSize(handler.settings.pipelineEditor.getResultCacheSize());
+				handler.settings.pipelineEditor.writeBehindMemory = (int) this.parameter.get().get(1);
+				handler.writeBehindQueue.setMaxBytes(handler.settings.pipelineEditor.getWriteBehindMemory());
+			}
+		});
+
+		// image format of processor data
+		pe.addItem(new Item<BooleanParameter>() {
+			@Override
+			public BooleanParameter parameter() {
+				if (this.parameter == null) {
+					this.parameter = new BooleanParameter(
+							localize("pipeline.execution.fastformat"),
+							handler.settings.pipelineEditor.fastImageFormat,
+							localize("yes"),
+							localize("no")
+					);
+				}
+				return this.parameter;
+			}
+
+			@Override
+			public void save() {
+				handler.settings.pipelineEditor.fastImageFormat = this.parameter.get();
+			}
+		});
+
+		// object format of processor data
+		pe.addItem(new Item<BooleanParameter>() {
+			@Override
+			public BooleanParameter parameter() {
+				if (this.parameter == null) {
+					this.parameter = new BooleanParameter(
+							localize("pipeline.execution.fastobjectformat"),
+							handler.settings.pipelineEditor.fastObjectFormat,
+							localize("yes"),
+							localize("no")
+					);
+				}
+				return this.parameter;
+			}
+
+			@Override
+			public void save() {
+				handler.settings.pipelineEditor.fastObjectFormat = this.parameter.get();
+			}
+		});
+
 		// connection-view/wire type
 		pe.addItem(new Item<EnumParameter>() {
 			@Override
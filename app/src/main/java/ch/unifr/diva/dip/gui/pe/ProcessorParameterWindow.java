@@ -24,6 +24,7 @@ import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Future;
 import javafx.application.Platform;
 import javafx.beans.InvalidationListener;
 import javafx.beans.binding.Bindings;
@@ -290,6 +291,15 @@ public class ProcessorParameterWindow extends AbstractWindow implements Presente
 
 		private final ChangeListener<Object> scrollListener;
 
+		// scale of the coarse level of progressive previews, and the minimum
+		// size (in pixels) for such a level to be worth it
+		private final static double PROGRESSIVE_SCALE = 0.25;
+		private final static int PROGRESSIVE_MIN_SIZE = 64;
+		private Future<?> progressiveTask;
+		private long previewSeq;
+		private long displayedSeq;
+		private double displayedScale;
+
 		/**
 		 * Creates a new preview widget.
 		 *
@@ -412,22 +422,87 @@ public class ProcessorParameterWindow extends AbstractWindow implements Presente
 			if (!visibleRegion.isEmpty()) {
 				final Pannable.SubpixelRectangle2D sourceRegion = visibleRegion.getUnscaledVisibleSubpixelRegion();
 				final Rectangle region = sourceRegion.getRectangle();
+				final Previewable previewable = previewContext.previewable;
+				final long seq = ++this.previewSeq;
+
+				if (!previewable.isProgressivePreview()) {
+					final Runnable run = () -> {
+						final Image preview = previewable.preview(
+								previewContext.context,
+								region
+						);
+						showPreview(seq, 1.0, preview, region);
+					};
+					this.threadPool.getExecutorService().submit(run);
+					return;
+				}
+
+				// supersede (and interrupt) the preview in progress
+				if (this.progressiveTask != null) {
+					this.progressiveTask.cancel(true);
+				}
+				final double[] scales = getPreviewScales(region);
 				final Runnable run = () -> {
-					final Image preview = previewContext.previewable.preview(
-							previewContext.context,
-							region
-					);
-					if (preview != null) {
-						Platform.runLater(() -> {
-							previewSubImage.setImage(preview);
-							previewSubImage.setLayoutX(region.x);
-							previewSubImage.setLayoutY(region.y);
-							zoomPane.fireContentChange();
-						});
+					for (double scale : scales) {
+						if (Thread.currentThread().isInterrupted()) {
+							return;
+						}
+						final Image preview;
+						try {
+							preview = previewable.preview(
+									previewContext.context,
+									region,
+									scale
+							);
+						} catch (RuntimeException ex) {
+							if (Thread.currentThread().isInterrupted()) {
+								return; // aborted by the previewable
+							}
+							throw ex;
+						}
+						if (Thread.currentThread().isInterrupted()) {
+							return;
+						}
+						showPreview(seq, scale, preview, region);
 					}
 				};
-				this.threadPool.getExecutorService().submit(run);
+				this.progressiveTask = this.threadPool.getExecutorService().submit(run);
+			}
+		}
+
+		// coarse-to-fine, unless the region is small enough to go straight for it
+		private static double[] getPreviewScales(Rectangle region) {
+			final int size = Math.max(region.width, region.height);
+			if (size * PROGRESSIVE_SCALE < PROGRESSIVE_MIN_SIZE) {
+				return new double[]{1.0};
+			}
+			return new double[]{PROGRESSIVE_SCALE, 1.0};
+		}
+
+		/*
+		 * Previews (and refinement levels) are displayed as long as they're not
+		 * older than the one on display, s.t. we always display the latest
+		 * completed refinement level.
+		 */
+		private void showPreview(long seq, double scale, Image preview, Rectangle region) {
+			if (preview == null) {
+				return;
 			}
+			Platform.runLater(() -> {
+				if (seq < this.displayedSeq
+						|| (seq == this.displayedSeq && scale < this.displayedScale)) {
+					return;
+				}
+				this.displayedSeq = seq;
+				this.displayedScale = scale;
+				previewSubImage.setImage(preview);
+				// stretch coarse levels to the region (0 for the image's own size)
+				previewSubImage.setFitWidth((scale < 1) ? region.width : 0);
+				previewSubImage.setFitHeight((scale < 1) ? region.height : 0);
+				previewSubImage.setLayoutX(region.x);
+				previewSubImage.setLayoutY(region.y);
+				zoomPane.fireContentChange();
+			});
 		}
 
 		public void close() {
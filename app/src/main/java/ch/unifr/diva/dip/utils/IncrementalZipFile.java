@@ -0,0 +1,747 @@
+package ch.unifr.diva.dip.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Incrementally updated zip file. Syncs the contents of a zip file system
+ * (e.g. a temp. working copy) to a zip file, s.t. the cost of a sync scales
+ * with what changed since the last sync, rather than with the size of the
+ * zip file.
+ *
+ * <p>
+ * The zip file is treated as an append-only journal: changed entries, and a
+ * new central directory, are appended to the end of the file, while unchanged
+ * entries are referenced where they are. Superseded entries (and central
+ * directories) are left behind as garbage, which is removed by rewriting the
+ * file once it makes up more than half of the file. Either way the result is
+ * a regular zip file, as long as it is read by its central directory (e.g. by
+ * {@code ZipFile}, or a zip file system), and not streamed (e.g. by
+ * {@code ZipInputStream}).
+ *
+ * <p>
+ * Entries are considered unchanged if their size and CRC-32 checksum match
+ * the ones of the entry in the zip file.
+ *
+ * <p>
+ * Failure model: data in the zip file is never overwritten in place. Appended
+ * entries are forced to the disk before the new central directory gets
+ * appended (and forced), so a (valid) end of central directory record never
+ * refers to entries that didn't make it to the disk. If an append gets
+ * interrupted (e.g. by a crash, or a full disk), the zip file doesn't end
+ * with a valid end of central directory record anymore, and can't be read by
+ * its central directory. Such a zip file is recovered by {@code recover},
+ * which truncates it back to the end of its last valid central directory,
+ * i.e. to the state of the last completed sync. A sync recovers the zip file
+ * first. Rewrites go to a temporary file that replaces the zip file once
+ * complete.
+ */
+public class IncrementalZipFile {
+
+	private static final Logger log = LoggerFactory.getLogger(IncrementalZipFile.class);
+
+	private static final int LOC_SIG = 0x04034b50;
+	private static final int CEN_SIG = 0x02014b50;
+	private static final int END_SIG = 0x06054b50;
+	private static final int ZIP64_END_SIG = 0x06064b50;
+	private static final int ZIP64_LOC_SIG = 0x07064b50;
+	private static final int LOC_HEADER = 30;
+	private static final int CEN_HEADER = 46;
+	private static final int END_HEADER = 22;
+	private static final int ZIP64_END_HEADER = 56;
+	private static final int ZIP64_LOC_HEADER = 20;
+	private static final int ZIP64_EXTRA = 0x0001;
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+	private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+	// entries larger than this get a zip64 local header right away, leaving
+	// room for deflate to expand incompressible data
+	private static final long ZIP64_THRESHOLD = 0xF0000000L;
+	private static final int VERSION = 20;
+	private static final int VERSION_ZIP64 = 45;
+	private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+	private static final int FLAG_UTF8 = 0x0800;
+	private static final int STORED = 0;
+	private static final int DEFLATED = 8;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private IncrementalZipFile() {
+		/* nope :) */
+	}
+
+	/**
+	 * An entry of the central directory.
+	 */
+	private static class Entry {
+
+		String name;
+		byte[] nameBytes;
+		int versionMadeBy = VERSION;
+		int flags = FLAG_UTF8;
+		int method = DEFLATED;
+		long dosTime;
+		long crc;
+		long compressedSize;
+		long size;
+		int internalAttributes;
+		long externalAttributes;
+		long offset;
+
+		Entry copy() {
+			final Entry e = new Entry();
+			e.name = this.name;
+			e.nameBytes = this.nameBytes;
+			e.versionMadeBy = this.versionMadeBy;
+			e.flags = this.flags;
+			e.method = this.method;
+			e.dosTime = this.dosTime;
+			e.crc = this.crc;
+			e.compressedSize = this.compressedSize;
+			e.size = this.size;
+			e.internalAttributes = this.internalAttributes;
+			e.externalAttributes = this.externalAttributes;
+			e.offset = this.offset;
+			return e;
+		}
+
+		boolean isZip64() {
+			return this.size >= ZIP64_MAGIC || this.compressedSize >= ZIP64_MAGIC;
+		}
+
+		// (approx.) number of bytes of the entry in the zip file
+		long length() {
+			return LOC_HEADER + this.nameBytes.length + this.compressedSize;
+		}
+	}
+
+	/**
+	 * An entry of the zip file system to be synced, and its (unchanged)
+	 * counterpart in the zip file, if any.
+	 */
+	private static class Source {
+
+		final Path path;
+		final String name;
+		final boolean isDirectory;
+		final long size;
+		final long crc;
+		final long lastModified;
+		Entry entry;
+
+		Source(Path path, String name, BasicFileAttributes attributes, long crc) {
+			this.path = path;
+			this.name = name;
+			this.isDirectory = attributes.isDirectory();
+			this.size = this.isDirectory ? 0 : attributes.size();
+			this.crc = crc;
+			this.lastModified = attributes.lastModifiedTime().toMillis();
+		}
+	}
+
+	/**
+	 * Syncs a zip file system to a zip file. Only changed entries are written
+	 * to the zip file, unless the zip file doesn't exist yet (or isn't a zip
+	 * file), or it's time to get rid of superseded entries, in which case the
+	 * zip file is rewritten (copying unchanged entries as is). The file
+	 * system is left open.
+	 *
+	 * @param zip the zip file system.
+	 * @param file the zip file.
+	 * @return the number of bytes written to the zip file.
+	 * @throws IOException in case of an I/O error. An appended zip file is
+	 * rolled back to its previous state, a rewritten one is left untouched.
+	 */
+	public static long sync(ZipFileSystem zip, Path file) throws IOException {
+		final List<Source> sources = listEntries(zip);
+		final Map<String, Entry> entries = readCentralDirectory(file);
+
+		int unchanged = 0;
+		long unchangedBytes = 0;
+		if (entries != null) {
+			for (Source source : sources) {
+				final Entry entry = entries.get(source.name);
+				if (entry != null
+						&& source.crc >= 0
+						&& source.size == entry.size
+						&& source.crc == entry.crc) {
+					source.entry = entry;
+					unchanged++;
+					unchangedBytes += entry.length();
+				}
+			}
+			if (unchanged == sources.size() && unchanged == entries.size()) {
+				log.debug("zip file already in sync: {}", file);
+				return 0;
+			}
+		}
+
+		final long length = (entries == null) ? 0 : Files.size(file);
+		final long written;
+		if (entries != null && 2 * unchangedBytes >= length) {
+			written = append(file, length, sources);
+		} else {
+			written = rewrite(file, entries != null, sources);
+		}
+		log.debug(
+				"synced zip file: {}, {}/{} entries unchanged, {} bytes written",
+				file, unchanged, sources.size(), written
+		);
+		return written;
+	}
+
+	private static long append(Path file, long length, List<Source> sources) throws IOException {
+		try (FileChannel channel = FileChannel.open(
+				file,
+				StandardOpenOption.READ,
+				StandardOpenOption.WRITE
+		)) {
+			try {
+				channel.position(length);
+				final List<Entry> entries = new ArrayList<>();
+				for (Source source : sources) {
+					entries.add((source.entry == null)
+							? writeEntry(channel, source)
+							: source.entry
+					);
+				}
+				// entries first, s.t. the new central directory never refers
+				// to entries that didn't make it to the disk
+				channel.force(false);
+				writeCentralDirectory(channel, entries);
+				channel.force(false);
+				return channel.size() - length;
+			} catch (IOException | RuntimeException ex) {
+				// roll back to the previous central directory
+				channel.truncate(length);
+				throw ex;
+			}
+		}
+	}
+
+	private static long rewrite(Path file, boolean copy, List<Source> sources) throws IOException {
+		final Path directory = file.toAbsolutePath().getParent();
+		final Path tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		try {
+			final long written;
+			try (FileChannel in = copy ? FileChannel.open(file, StandardOpenOption.READ) : null;
+					FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+				final List<Entry> entries = new ArrayList<>();
+				for (Source source : sources) {
+					entries.add((source.entry == null)
+							? writeEntry(channel, source)
+							: copyEntry(in, channel, source.entry)
+					);
+				}
+				writeCentralDirectory(channel, entries);
+				channel.force(false);
+				written = channel.size();
+			}
+			try {
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			return written;
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	private static List<Source> listEntries(ZipFileSystem zip) throws IOException {
+		final List<Source> sources = new ArrayList<>();
+		final Path root = zip.getPath("/");
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				if (!dir.equals(root)) {
+					sources.add(new Source(dir, toEntryName(dir) + "/", attrs, 0));
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				sources.add(new Source(file, toEntryName(file), attrs, getCrc(file)));
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return sources;
+	}
+
+	private static String toEntryName(Path path) {
+		final String name = path.toString();
+		return name.startsWith("/") ? name.substring(1) : name;
+	}
+
+	// CRC-32 checksum as known by the zip file system, or -1 if not available
+	private static long getCrc(Path file) {
+		try {
+			final Object crc = Files.getAttribute(file, "zip:crc");
+			if (crc instanceof Number) {
+				return ((Number) crc).longValue();
+			}
+		} catch (IOException | UnsupportedOperationException | IllegalArgumentException ex) {
+			// no zip file system, or an unknown implementation
+		}
+		return -1;
+	}
+
+	private static Entry writeEntry(FileChannel channel, Source source) throws IOException {
+		final Entry entry = new Entry();
+		entry.name = source.name;
+		entry.nameBytes = source.name.getBytes(StandardCharsets.UTF_8);
+		entry.method = source.isDirectory ? STORED : DEFLATED;
+		entry.dosTime = toDosTime(source.lastModified);
+		entry.offset = channel.position();
+
+		// sizes and checksum are patched in once known
+		final boolean zip64 = source.size >= ZIP64_THRESHOLD;
+		writeFully(channel, newLocalHeader(entry, zip64));
+		if (!source.isDirectory) {
+			deflate(source.path, channel, entry);
+		}
+		if (!zip64 && entry.isZip64()) {
+			throw new ZipException("entry grew too large: " + source.name);
+		}
+		writeFully(channel, newLocalHeader(entry, zip64), entry.offset);
+
+		return entry;
+	}
+
+	private static void deflate(Path file, FileChannel channel, Entry entry) throws IOException {
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+		final CRC32 crc = new CRC32();
+		final byte[] input = new byte[BUFFER_SIZE];
+		final byte[] output = new byte[BUFFER_SIZE];
+		try (InputStream is = Files.newInputStream(file)) {
+			int n;
+			while ((n = is.read(input)) >= 0) {
+				crc.update(input, 0, n);
+				deflater.setInput(input, 0, n);
+				while (!deflater.needsInput()) {
+					drain(deflater, output, channel);
+				}
+			}
+			deflater.finish();
+			while (!deflater.finished()) {
+				drain(deflater, output, channel);
+			}
+			entry.crc = crc.getValue();
+			entry.size = deflater.getBytesRead();
+			entry.compressedSize = deflater.getBytesWritten();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static void drain(Deflater deflater, byte[] output, FileChannel channel) throws IOException {
+		final int n = deflater.deflate(output);
+		if (n > 0) {
+			writeFully(channel, ByteBuffer.wrap(output, 0, n));
+		}
+	}
+
+	private static Entry copyEntry(FileChannel in, FileChannel channel, Entry entry) throws IOException {
+		// the local header of the original entry may differ from ours (e.g. a
+		// data descriptor, or extra fields), so only the data is copied
+		final ByteBuffer loc = readFully(in, entry.offset, LOC_HEADER);
+		if (loc.getInt(0) != LOC_SIG) {
+			throw new ZipException("invalid local header: " + entry.name);
+		}
+		final long data = entry.offset
+				+ LOC_HEADER
+				+ (loc.getShort(26) & 0xFFFF)
+				+ (loc.getShort(28) & 0xFFFF);
+
+		final Entry copy = entry.copy();
+		copy.flags &= ~FLAG_DATA_DESCRIPTOR;
+		copy.offset = channel.position();
+		writeFully(channel, newLocalHeader(copy, copy.isZip64()));
+
+		long position = data;
+		final long end = data + entry.compressedSize;
+		while (position < end) {
+			final long n = in.transferTo(position, end - position, channel);
+			if (n <= 0) {
+				throw new EOFException("unexpected end of entry: " + entry.name);
+			}
+			position += n;
+		}
+		return copy;
+	}
+
+	private static ByteBuffer newLocalHeader(Entry entry, boolean zip64) {
+		final ByteBuffer b = ByteBuffer.allocate(
+				LOC_HEADER + entry.nameBytes.length + (zip64 ? 20 : 0)
+		).order(ByteOrder.LITTLE_ENDIAN);
+		b.putInt(LOC_SIG);
+		b.putShort((short) (zip64 ? VERSION_ZIP64 : VERSION));
+		b.putShort((short) entry.flags);
+		b.putShort((short) entry.method);
+		b.putInt((int) entry.dosTime);
+		b.putInt((int) entry.crc);
+		b.putInt((int) (zip64 ? ZIP64_MAGIC : entry.compressedSize));
+		b.putInt((int) (zip64 ? ZIP64_MAGIC : entry.size));
+		b.putShort((short) entry.nameBytes.length);
+		b.putShort((short) (zip64 ? 20 : 0));
+		b.put(entry.nameBytes);
+		if (zip64) {
+			b.putShort((short) ZIP64_EXTRA);
+			b.putShort((short) 16);
+			b.putLong(entry.size);
+			b.putLong(entry.compressedSize);
+		}
+		b.flip();
+		return b;
+	}
+
+	private static void writeCentralDirectory(FileChannel channel, List<Entry> entries) throws IOException {
+		final long offset = channel.position();
+		for (Entry entry : entries) {
+			writeFully(channel, newCentralHeader(entry));
+		}
+		final long size = channel.position() - offset;
+		final long count = entries.size();
+
+		final boolean zip64 = count >= ZIP64_MAGIC_COUNT
+				|| size >= ZIP64_MAGIC
+				|| offset >= ZIP64_MAGIC;
+		if (zip64) {
+			final long end64 = channel.position();
+			final ByteBuffer b = ByteBuffer.allocate(
+					ZIP64_END_HEADER + ZIP64_LOC_HEADER
+			).order(ByteOrder.LITTLE_ENDIAN);
+			b.putInt(ZIP64_END_SIG);
+			b.putLong(ZIP64_END_HEADER - 12);
+			b.putShort((short) VERSION_ZIP64);
+			b.putShort((short) VERSION_ZIP64);
+			b.putInt(0);
+			b.putInt(0);
+			b.putLong(count);
+			b.putLong(count);
+			b.putLong(size);
+			b.putLong(offset);
+			b.putInt(ZIP64_LOC_SIG);
+			b.putInt(0);
+			b.putLong(end64);
+			b.putInt(1);
+			b.flip();
+			writeFully(channel, b);
+		}
+
+		final ByteBuffer b = ByteBuffer.allocate(END_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+		b.putInt(END_SIG);
+		b.putShort((short) 0);
+		b.putShort((short) 0);
+		b.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+		b.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+		b.putInt((int) Math.min(size, ZIP64_MAGIC));
+		b.putInt((int) Math.min(offset, ZIP64_MAGIC));
+		b.putShort((short) 0);
+		b.flip();
+		writeFully(channel, b);
+	}
+
+	private static ByteBuffer newCentralHeader(Entry entry) {
+		final boolean size64 = entry.size >= ZIP64_MAGIC;
+		final boolean compressedSize64 = entry.compressedSize >= ZIP64_MAGIC;
+		final boolean offset64 = entry.offset >= ZIP64_MAGIC;
+		int extra = (size64 ? 8 : 0) + (compressedSize64 ? 8 : 0) + (offset64 ? 8 : 0);
+		if (extra > 0) {
+			extra += 4;
+		}
+
+		final ByteBuffer b = ByteBuffer.allocate(
+				CEN_HEADER + entry.nameBytes.length + extra
+		).order(ByteOrder.LITTLE_ENDIAN);
+		b.putInt(CEN_SIG);
+		b.putShort((short) entry.versionMadeBy);
+		b.putShort((short) ((extra > 0) ? VERSION_ZIP64 : VERSION));
+		b.putShort((short) entry.flags);
+		b.putShort((short) entry.method);
+		b.putInt((int) entry.dosTime);
+		b.putInt((int) entry.crc);
+		b.putInt((int) Math.min(entry.compressedSize, ZIP64_MAGIC));
+		b.putInt((int) Math.min(entry.size, ZIP64_MAGIC));
+		b.putShort((short) entry.nameBytes.length);
+		b.putShort((short) extra);
+		b.putShort((short) 0);
+		b.putShort((short) 0);
+		b.putShort((short) entry.internalAttributes);
+		b.putInt((int) entry.externalAttributes);
+		b.putInt((int) Math.min(entry.offset, ZIP64_MAGIC));
+		b.put(entry.nameBytes);
+		if (extra > 0) {
+			b.putShort((short) ZIP64_EXTRA);
+			b.putShort((short) (extra - 4));
+			if (size64) {
+				b.putLong(entry.size);
+			}
+			if (compressedSize64) {
+				b.putLong(entry.compressedSize);
+			}
+			if (offset64) {
+				b.putLong(entry.offset);
+			}
+		}
+		b.flip();
+		return b;
+	}
+
+	/**
+	 * Recovers a zip file from an interrupted sync. A zip file that doesn't
+	 * end with a valid end of central directory record (e.g. due to a crash
+	 * while appending entries) is truncated back to the end of its last valid
+	 * central directory, i.e. to the state of the last completed sync. Zip
+	 * files that can be read by their central directory are left untouched.
+	 *
+	 * @param file the zip file.
+	 * @return {@code true} if the zip file got truncated, {@code false} if
+	 * there was nothing to recover.
+	 * @throws IOException in case of an I/O error, or if the file has no
+	 * valid central directory at all (i.e. isn't a zip file).
+	 */
+	public static boolean recover(Path file) throws IOException {
+		final long length;
+		final long recovered;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			length = channel.size();
+			try {
+				readCentralDirectory(channel);
+				return false;
+			} catch (IOException | RuntimeException ex) {
+				// interrupted append, or not a zip file at all
+			}
+			recovered = findLastEnd(channel, length);
+		}
+		if (recovered < 0) {
+			throw new ZipException("no valid central directory found: " + file);
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(recovered);
+			channel.force(true);
+		}
+		log.warn(
+				"recovered zip file from an interrupted sync, {} bytes truncated: {}",
+				length - recovered, file
+		);
+		return true;
+	}
+
+	// the end of the last end of central directory record (and its comment)
+	// that refers to a valid central directory, or -1 if there is none
+	private static long findLastEnd(FileChannel channel, long length) throws IOException {
+		long chunkEnd = length;
+		while (chunkEnd > 0) {
+			final long chunkStart = Math.max(0, chunkEnd - BUFFER_SIZE);
+			// overlap by 3 bytes to find signatures across chunks
+			final int n = (int) (Math.min(length, chunkEnd + 3) - chunkStart);
+			final ByteBuffer b = readFully(channel, chunkStart, n);
+			for (int i = (int) (chunkEnd - chunkStart) - 1; i >= 0; i--) {
+				final long position = chunkStart + i;
+				if (i + 4 > n || b.getInt(i) != END_SIG || position + END_HEADER > length) {
+					continue;
+				}
+				try {
+					readCentralDirectory(channel, position);
+				} catch (IOException | RuntimeException ex) {
+					continue; // not the one
+				}
+				final ByteBuffer end = readFully(channel, position, END_HEADER);
+				final long endOfComment = position + END_HEADER + (end.getShort(20) & 0xFFFF);
+				if (endOfComment <= length) {
+					return endOfComment;
+				}
+			}
+			chunkEnd = chunkStart;
+		}
+		return -1;
+	}
+
+	// entries of the central directory by name, or null if not a zip file
+	private static Map<String, Entry> readCentralDirectory(Path file) {
+		if (!Files.exists(file)) {
+			return null;
+		}
+		try {
+			recover(file);
+		} catch (IOException ex) {
+			log.warn("failed to recover zip file, rewriting: {}", file, ex);
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return readCentralDirectory(channel);
+		} catch (IOException ex) {
+			log.warn("failed to read zip file, rewriting: {}", file, ex);
+			return null;
+		}
+	}
+
+	private static Map<String, Entry> readCentralDirectory(FileChannel channel) throws IOException {
+		final long length = channel.size();
+		final int tail = (int) Math.min(length, END_HEADER + 0xFFFF);
+		final ByteBuffer b = readFully(channel, length - tail, tail);
+		int end = -1;
+		for (int i = tail - END_HEADER; i >= 0; i--) {
+			if (b.getInt(i) == END_SIG
+					&& i + END_HEADER + (b.getShort(i + 20) & 0xFFFF) == tail) {
+				end = i;
+				break;
+			}
+		}
+		if (end < 0) {
+			throw new ZipException("end of central directory not found");
+		}
+		return readCentralDirectory(channel, length - tail + end);
+	}
+
+	// reads the central directory of the end of central directory record at
+	// the given position
+	private static Map<String, Entry> readCentralDirectory(FileChannel channel, long endPosition) throws IOException {
+		final ByteBuffer b = readFully(channel, endPosition, END_HEADER);
+		if (b.getInt(0) != END_SIG) {
+			throw new ZipException("invalid end of central directory");
+		}
+		long count = b.getShort(10) & 0xFFFF;
+		long size = b.getInt(12) & ZIP64_MAGIC;
+		long offset = b.getInt(16) & ZIP64_MAGIC;
+
+		if ((count == ZIP64_MAGIC_COUNT || size == ZIP64_MAGIC || offset == ZIP64_MAGIC)
+				&& endPosition >= ZIP64_LOC_HEADER) {
+			final ByteBuffer loc = readFully(channel, endPosition - ZIP64_LOC_HEADER, ZIP64_LOC_HEADER);
+			if (loc.getInt(0) == ZIP64_LOC_SIG) {
+				final ByteBuffer end64 = readFully(channel, loc.getLong(8), ZIP64_END_HEADER);
+				if (end64.getInt(0) != ZIP64_END_SIG) {
+					throw new ZipException("invalid zip64 end of central directory");
+				}
+				count = end64.getLong(32);
+				size = end64.getLong(40);
+				offset = end64.getLong(48);
+			}
+		}
+		if (size < 0 || offset < 0 || size > Integer.MAX_VALUE || offset + size > endPosition) {
+			throw new ZipException("invalid central directory");
+		}
+
+		final ByteBuffer cd = readFully(channel, offset, (int) size);
+		final Map<String, Entry> entries = new LinkedHashMap<>();
+		int p = 0;
+		for (long i = 0; i < count; i++) {
+			if (p + CEN_HEADER > size || cd.getInt(p) != CEN_SIG) {
+				throw new ZipException("invalid central directory header");
+			}
+			final Entry entry = new Entry();
+			entry.versionMadeBy = cd.getShort(p + 4) & 0xFFFF;
+			entry.flags = cd.getShort(p + 8) & 0xFFFF;
+			entry.method = cd.getShort(p + 10) & 0xFFFF;
+			entry.dosTime = cd.getInt(p + 12) & ZIP64_MAGIC;
+			entry.crc = cd.getInt(p + 16) & ZIP64_MAGIC;
+			entry.compressedSize = cd.getInt(p + 20) & ZIP64_MAGIC;
+			entry.size = cd.getInt(p + 24) & ZIP64_MAGIC;
+			final int nameLength = cd.getShort(p + 28) & 0xFFFF;
+			final int extraLength = cd.getShort(p + 30) & 0xFFFF;
+			final int commentLength = cd.getShort(p + 32) & 0xFFFF;
+			entry.internalAttributes = cd.getShort(p + 36) & 0xFFFF;
+			entry.externalAttributes = cd.getInt(p + 38) & ZIP64_MAGIC;
+			entry.offset = cd.getInt(p + 42) & ZIP64_MAGIC;
+			entry.nameBytes = new byte[nameLength];
+			cd.position(p + CEN_HEADER);
+			cd.get(entry.nameBytes);
+			entry.name = new String(entry.nameBytes, StandardCharsets.UTF_8);
+			readZip64Extra(cd, p + CEN_HEADER + nameLength, extraLength, entry);
+			entries.put(entry.name, entry);
+			p += CEN_HEADER + nameLength + extraLength + commentLength;
+		}
+		return entries;
+	}
+
+	private static void readZip64Extra(ByteBuffer b, int offset, int length, Entry entry) {
+		int p = offset;
+		final int end = offset + length;
+		while (p + 4 <= end) {
+			final int id = b.getShort(p) & 0xFFFF;
+			final int size = b.getShort(p + 2) & 0xFFFF;
+			if (id == ZIP64_EXTRA) {
+				int q = p + 4;
+				if (entry.size == ZIP64_MAGIC) {
+					entry.size = b.getLong(q);
+					q += 8;
+				}
+				if (entry.compressedSize == ZIP64_MAGIC) {
+					entry.compressedSize = b.getLong(q);
+					q += 8;
+				}
+				if (entry.offset == ZIP64_MAGIC) {
+					entry.offset = b.getLong(q);
+				}
+				return;
+			}
+			p += 4 + size;
+		}
+	}
+
+	private static long toDosTime(long millis) {
+		final LocalDateTime t = LocalDateTime.ofInstant(
+				Instant.ofEpochMilli(millis),
+				ZoneId.systemDefault()
+		);
+		if (t.getYear() < 1980) {
+			return (1 << 21) | (1 << 16);
+		}
+		return ((long) (t.getYear() - 1980) << 25)
+				| ((long) t.getMonthValue() << 21)
+				| ((long) t.getDayOfMonth() << 16)
+				| ((long) t.getHour() << 11)
+				| ((long) t.getMinute() << 5)
+				| ((long) t.getSecond() >> 1);
+	}
+
+	private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+		final ByteBuffer b = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (b.hasRemaining()) {
+			if (channel.read(b, position + b.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+		b.flip();
+		return b;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer b) throws IOException {
+		while (b.hasRemaining()) {
+			channel.write(b);
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer b, long position) throws IOException {
+		final int start = b.position();
+		while (b.hasRemaining()) {
+			channel.write(b, position + b.position() - start);
+		}
+	}
+
+}
@@ -10,6 +10,7 @@ import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * ZIP File System. Mounts a zip file as a filesystem, on which any methods of
@@ -48,7 +49,7 @@ public class ZipFileSystem implements AutoCloseable {
 	 * @see #open(java.nio.file.Path)
 	 */
 	public ZipFileSystem(URI uri) throws IOException {
-		this(uri, new HashMap<>());
+		this(uri, newEnv());
 	}
 
 	/**
@@ -64,7 +65,7 @@ public class ZipFileSystem implements AutoCloseable {
 	 * @see #open(java.io.File)
 	 * @see #open(java.nio.file.Path)
 	 */
-	public ZipFileSystem(URI uri, HashMap<String, String> env) throws IOException {
+	public ZipFileSystem(URI uri, Map<String, ?> env) throws IOException {
 		fs = FileSystems.newFileSystem(uri, env);
 	}
 
@@ -120,12 +121,21 @@ public class ZipFileSystem implements AutoCloseable {
 	 * @throws IOException
 	 */
 	public static ZipFileSystem create(URI uri) throws IOException {
-		final HashMap<String, String> env = new HashMap<>();
+		final Map<String, Object> env = newEnv();
 		env.put("create", "true");
 		env.put("encoding", "UTF-8");
 		return new ZipFileSystem(uri, env);
 	}
 
+	// Modified entries are kept in temp. files rather than on the heap until
+	// the file system is closed, which might be a while (e.g. the working
+	// copy of a project).
+	private static Map<String, Object> newEnv() {
+		final Map<String, Object> env = new HashMap<>();
+		env.put("useTempFile", Boolean.TRUE);
+		return env;
+	}
+
 	/**
 	 * Returns a path on the virtual/zip file system.
 	 *
@@ -0,0 +1,154 @@
+package ch.unifr.diva.dip.benchmarks;
+
+import ch.unifr.diva.dip.api.datastructures.Point2D;
+import ch.unifr.diva.dip.api.datastructures.Points2D;
+import ch.unifr.diva.dip.api.utils.XmlUtils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import javax.xml.bind.JAXBException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * XmlUtils benchmark. Marshal/unmarshal throughput with pooled
+ * (un-)marshallers, compared to new (un-)marshallers for each call (as
+ * obtained by {@code getMarshaller} and {@code getUnmarshaller}), with a
+ * single thread, and under contention (as many threads as there are
+ * processors).
+ */
+public class XmlUtilsBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Resources {
+
+		@Param({"16", "256", "4096"})
+		int size;
+
+		Points2D points;
+		byte[] xml;
+
+		@Setup
+		public void setup() throws JAXBException {
+			points = new Points2D();
+			for (int i = 0; i < size; i++) {
+				points.add(new Point2D(Math.random() * 1000, Math.random() * 1000));
+			}
+			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			XmlUtils.marshal(points, baos);
+			xml = baos.toByteArray();
+		}
+	}
+
+	public static byte[] marshalPooled(Resources r) throws JAXBException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		XmlUtils.marshal(r.points, baos);
+		return baos.toByteArray();
+	}
+
+	public static byte[] marshalNew(Resources r) throws JAXBException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		XmlUtils.getMarshaller(r.points).marshal(r.points, baos);
+		return baos.toByteArray();
+	}
+
+	public static Points2D unmarshalPooled(Resources r) throws JAXBException {
+		return XmlUtils.unmarshal(Points2D.class, new ByteArrayInputStream(r.xml));
+	}
+
+	public static Points2D unmarshalNew(Resources r) throws JAXBException {
+		return (Points2D) XmlUtils.getUnmarshaller(Points2D.class).unmarshal(
+				new ByteArrayInputStream(r.xml)
+		);
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.Throughput})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public byte[] marshalPooledSingle(Resources r) throws JAXBException {
+		return marshalPooled(r);
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.Throughput})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public byte[] marshalNewSingle(Resources r) throws JAXBException {
+		return marshalNew(r);
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.Throughput})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Threads(Threads.MAX)
+	public byte[] marshalPooledContended(Resources r) throws JAXBException {
+		return marshalPooled(r);
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.Throughput})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Threads(Threads.MAX)
+	public byte[] marshalNewContended(Resources r) throws JAXBException {
+		return marshalNew(r);
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.Throughput})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Points2D unmarshalPooledSingle(Resources r) throws JAXBException {
+		return unmarshalPooled(r);
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.Throughput})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Points2D unmarshalNewSingle(Resources r) throws JAXBException {
+		return unmarshalNew(r);
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.Throughput})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Threads(Threads.MAX)
+	public Points2D unmarshalPooledContended(Resources r) throws JAXBException {
+		return unmarshalPooled(r);
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.Throughput})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Threads(Threads.MAX)
+	public Points2D unmarshalNewContended(Resources r) throws JAXBException {
+		return unmarshalNew(r);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(XmlUtilsBenchmark.class.getSimpleName())
+				.warmupIterations(5)
+				.measurementIterations(5)
+				.forks(1)
+				.build();
+
+		Collection<RunResult> results = new Runner(opt).run();
+
+		BenchmarkUtils.printRunResults(
+				results,
+				XmlUtilsBenchmark.class.getSimpleName()
+		);
+	}
+
+}
@@ -0,0 +1,114 @@
+package ch.unifr.diva.dip.core.execution;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Processor result cache unit tests.
+ */
+public class ProcessorResultCacheTest {
+
+	@Rule
+	public final TemporaryFolder parent = new TemporaryFolder();
+
+	public Path newDataDirectory(String content, int size) throws IOException {
+		final Path dir = parent.newFolder().toPath();
+		Files.write(dir.resolve("output.txt"), content.getBytes(StandardCharsets.UTF_8));
+		final Path sub = Files.createDirectories(dir.resolve("sub"));
+		Files.write(sub.resolve("output.bin"), new byte[size]);
+		return dir;
+	}
+
+	@Test
+	public void testStoreAndRestore() throws IOException {
+		final Path cacheDir = parent.newFolder().toPath();
+		final ProcessorResultCache cache = new ProcessorResultCache(cacheDir, 1024 * 1024);
+		final Map<String, Object> objects = new HashMap<>();
+
+		assertFalse(cache.restore("a", parent.newFolder().toPath(), objects));
+		cache.store("a", newDataDirectory("first", 100), objects);
+		assertTrue(cache.contains("a"));
+		assertEquals(105, cache.getSize());
+
+		final Path restored = parent.newFolder().toPath();
+		assertTrue(cache.restore("a", restored, objects));
+		assertArrayEquals(
+				"first".getBytes(StandardCharsets.UTF_8),
+				Files.readAllBytes(restored.resolve("output.txt"))
+		);
+		assertEquals(100, Files.size(restored.resolve("sub").resolve("output.bin")));
+
+		// entries are found again by a new cache on the same directory
+		final ProcessorResultCache other = new ProcessorResultCache(cacheDir, 1024 * 1024);
+		assertTrue(other.contains("a"));
+		assertEquals(105, other.getSize());
+	}
+
+	@Test
+	public void testEviction() throws IOException {
+		final ProcessorResultCache cache = new ProcessorResultCache(parent.newFolder().toPath(), 3000);
+		final Map<String, Object> objects = new HashMap<>();
+
+		cache.store("a", newDataDirectory("a", 999), objects);
+		cache.store("b", newDataDirectory("b", 999), objects);
+		cache.store("c", newDataDirectory("c", 999), objects);
+		// touch a, s.t. b is the least recently used entry
+		assertTrue(cache.restore("a", parent.newFolder().toPath(), objects));
+		cache.store("d", newDataDirectory("d", 999), objects);
+
+		assertTrue(cache.contains("a"));
+		assertFalse(cache.contains("b"));
+		assertTrue(cache.contains("c"));
+		assertTrue(cache.contains("d"));
+		assertTrue(cache.getSize() <= 3000);
+
+		// entries larger than the cache aren't stored at all
+		cache.store("e", newDataDirectory("e", 5000), objects);
+		assertFalse(cache.contains("e"));
+
+		cache.setMaxSize(0);
+		assertFalse(cache.isEnabled());
+		cache.setMaxSize(1500);
+		cache.clear();
+		assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	public void testBrokenEntry() throws IOException {
+		final Path cacheDir = parent.newFolder().toPath();
+		final ProcessorResultCache cache = new ProcessorResultCache(cacheDir, 1024 * 1024);
+		final Map<String, Object> objects = new HashMap<>();
+
+		cache.store("a", newDataDirectory("a", 100), objects);
+		assertTrue(cache.contains("a"));
+		Files.write(
+				cacheDir.resolve("a").resolve(ProcessorResultCache.DATA_XML),
+				"not an object map".getBytes(StandardCharsets.UTF_8)
+		);
+
+		// the partial copy is removed again, but existing files are left alone
+		final Path restored = parent.newFolder().toPath();
+		Files.write(restored.resolve("existing.txt"), new byte[10]);
+		assertFalse(cache.restore("a", restored, objects));
+		assertTrue(Files.exists(restored.resolve("existing.txt")));
+		assertFalse(Files.exists(restored.resolve("output.txt")));
+		assertFalse(Files.exists(restored.resolve("sub")));
+
+		// and the broken entry is dropped
+		assertFalse(cache.contains("a"));
+		assertFalse(Files.exists(cacheDir.resolve("a")));
+		assertEquals(0, cache.getSize());
+	}
+
+}
@@ -0,0 +1,106 @@
+package ch.unifr.diva.dip.core.model;
+
+import ch.unifr.diva.dip.api.datastructures.BufferedMatrix;
+import ch.unifr.diva.dip.api.datastructures.Floats2D;
+import ch.unifr.diva.dip.api.datastructures.MultiFloats2D;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * ObjectMapData unit tests.
+ */
+public class ObjectMapDataTest {
+
+	@Rule
+	public final TemporaryFolder parent = new TemporaryFolder();
+
+	public Floats2D newFloats2D(int m, int n, long seed) {
+		final Random random = new Random(seed);
+		final Floats2D floats = new Floats2D(m, n);
+		for (float[] row : floats.data) {
+			for (int i = 0; i < row.length; i++) {
+				row[i] = random.nextFloat();
+			}
+		}
+		return floats;
+	}
+
+	// simulates marshalling and unmarshalling the object map
+	public ObjectMapData reload(ObjectMapData data, Path directory) throws IOException {
+		final ObjectMapData copy = data.writeSideCars(directory);
+		final ObjectMapData reloaded = new ObjectMapData();
+		reloaded.objects.putAll(copy.objects);
+		reloaded.setSideCarDirectory(() -> directory);
+		return reloaded;
+	}
+
+	@Test
+	public void testSideCars() throws IOException {
+		final Path directory = parent.newFolder().toPath().resolve("objects");
+		final Floats2D floats = newFloats2D(256, 128, 1);
+		final MultiFloats2D bands = new MultiFloats2D(Arrays.asList(
+				newFloats2D(128, 64, 2),
+				newFloats2D(128, 64, 3)
+		));
+		final BufferedMatrix mat = new BufferedMatrix(128, 128, 3);
+		mat.getRaster().setSample(7, 11, 2, 0.5f);
+
+		final ObjectMapData data = new ObjectMapData();
+		data.objects.put("floats", floats);
+		data.objects.put("bands", bands);
+		data.objects.put("mat", mat);
+		data.objects.put("small", newFloats2D(2, 2, 4));
+		data.objects.put("width", 128);
+
+		final ObjectMapData copy = data.writeSideCars(directory);
+		assertTrue(copy.objects.get("floats") instanceof ObjectSideCar);
+		assertTrue(copy.objects.get("bands") instanceof ObjectSideCar);
+		assertTrue(copy.objects.get("mat") instanceof ObjectSideCar);
+		assertTrue("small objects stay inline", copy.objects.get("small") instanceof Floats2D);
+		assertEquals(128, copy.objects.get("width"));
+		assertTrue("the object map remains unchanged", data.objects.get("floats") == floats);
+
+		final ObjectMapData reloaded = reload(data, directory);
+		assertEquals(floats, reloaded.objects.get("floats"));
+		assertEquals(bands, reloaded.objects.get("bands"));
+		final BufferedMatrix m = (BufferedMatrix) reloaded.objects.get("mat");
+		assertEquals(0.5f, m.getRaster().getSampleFloat(7, 11, 2), 0);
+		assertTrue("loaded only once", reloaded.objects.get("floats") == reloaded.objects.get("floats"));
+	}
+
+	@Test
+	public void testLazyLoading() throws IOException {
+		final Path directory = parent.newFolder().toPath().resolve("objects");
+		final ObjectMapData data = new ObjectMapData();
+		data.objects.put("a", newFloats2D(256, 128, 5));
+		data.objects.put("b", newFloats2D(256, 128, 6));
+
+		final ObjectMapData reloaded = reload(data, directory);
+		reloaded.objects.put("b", newFloats2D(1, 1, 7));
+		final ObjectMapData saved = reloaded.writeSideCars(directory);
+		assertTrue("untouched objects aren't loaded", saved.objects.get("a") instanceof ObjectSideCar);
+		assertFalse("stale side-car files get removed", Files.exists(
+				directory.resolve(ObjectSideCar.fileName("b", ObjectSideCar.Type.FLOATS_2D))
+		));
+		assertArrayEquals(
+				((Floats2D) data.objects.get("a")).flatten(),
+				((Floats2D) reloaded.objects.get("a")).flatten(),
+				0
+		);
+
+		reloaded.objects.remove("a");
+		reloaded.writeSideCars(directory);
+		assertFalse("empty side-car directory gets removed", Files.exists(directory));
+	}
+
+}
@@ -0,0 +1,191 @@
+package ch.unifr.diva.dip.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * IncrementalZipFile unit tests.
+ */
+public class IncrementalZipFileTest {
+
+	@Rule
+	public final TemporaryFolder parent = new TemporaryFolder();
+
+	public byte[] newRandomBytes(int n, long seed) {
+		final byte[] bytes = new byte[n];
+		new Random(seed).nextBytes(bytes);
+		return bytes;
+	}
+
+	public void write(ZipFileSystem zip, String path, byte[] bytes) throws IOException {
+		final Path file = zip.getPath(path);
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		Files.write(file, bytes);
+	}
+
+	public byte[] read(ZipFile zip, String name) throws IOException {
+		final ZipEntry entry = zip.getEntry(name);
+		assertTrue("entry exists: " + name, entry != null);
+		final byte[] bytes = new byte[(int) entry.getSize()];
+		try (InputStream is = zip.getInputStream(entry)) {
+			int n = 0;
+			while (n < bytes.length) {
+				n += is.read(bytes, n, bytes.length - n);
+			}
+		}
+		return bytes;
+	}
+
+	@Test
+	public void testSync() throws IOException {
+		final Path file = parent.newFolder().toPath().resolve("project.zip");
+		final byte[] large = newRandomBytes(1 << 20, 1);
+		final byte[] small = "<project/>".getBytes(StandardCharsets.UTF_8);
+
+		try (ZipFileSystem zip = ZipFileSystem.create(parent.newFolder().toPath().resolve("tmp.zip"))) {
+			write(zip, "/project.xml", small);
+			write(zip, "/pages/1/data.bin", large);
+			write(zip, "/pages/2/data.bin", large);
+			write(zip, "/pages/2/notes.xml", small);
+
+			// new file
+			assertTrue(IncrementalZipFile.sync(zip, file) > large.length);
+			try (ZipFile z = new ZipFile(file.toFile())) {
+				assertArrayEquals(small, read(z, "project.xml"));
+				assertArrayEquals(large, read(z, "pages/1/data.bin"));
+				assertArrayEquals(large, read(z, "pages/2/data.bin"));
+			}
+			assertEquals("nothing changed", 0, IncrementalZipFile.sync(zip, file));
+
+			// only changed entries are written
+			final long length = Files.size(file);
+			final byte[] changed = "<project name=\"changed\"/>".getBytes(StandardCharsets.UTF_8);
+			write(zip, "/project.xml", changed);
+			Files.delete(zip.getPath("/pages/2/notes.xml"));
+			final long written = IncrementalZipFile.sync(zip, file);
+			assertTrue("written: " + written, written > 0 && written < 4096);
+			assertEquals(length + written, Files.size(file));
+
+			try (ZipFile z = new ZipFile(file.toFile())) {
+				assertArrayEquals(changed, read(z, "project.xml"));
+				assertArrayEquals(large, read(z, "pages/2/data.bin"));
+				assertNull(z.getEntry("pages/2/notes.xml"));
+			}
+			try (ZipFileSystem z = ZipFileSystem.open(file)) {
+				assertArrayEquals(changed, Files.readAllBytes(z.getPath("/project.xml")));
+				assertArrayEquals(large, Files.readAllBytes(z.getPath("/pages/2/data.bin")));
+				assertFalse(z.exists("/pages/2/notes.xml"));
+			}
+		}
+	}
+
+	@Test
+	public void testSyncExistingFile() throws IOException {
+		// a project as written by the zip file system, opened from a copy
+		final Path file = parent.newFolder().toPath().resolve("project.zip");
+		final byte[] large = newRandomBytes(1 << 20, 2);
+		try (ZipFileSystem zip = ZipFileSystem.create(file)) {
+			write(zip, "/project.xml", large);
+			write(zip, "/pages/1/data.bin", large);
+		}
+		final Path tmp = parent.newFolder().toPath().resolve("tmp.zip");
+		Files.copy(file, tmp);
+
+		try (ZipFileSystem zip = ZipFileSystem.open(tmp)) {
+			assertEquals("nothing changed", 0, IncrementalZipFile.sync(zip, file));
+			write(zip, "/pages/1/more.bin", large);
+			final long written = IncrementalZipFile.sync(zip, file);
+			assertTrue("written: " + written, written < 2 * large.length);
+			try (ZipFile z = new ZipFile(file.toFile())) {
+				assertArrayEquals(large, read(z, "project.xml"));
+				assertArrayEquals(large, read(z, "pages/1/data.bin"));
+				assertArrayEquals(large, read(z, "pages/1/more.bin"));
+			}
+		}
+	}
+
+	@Test
+	public void testCompaction() throws IOException {
+		final Path file = parent.newFolder().toPath().resolve("project.zip");
+		try (ZipFileSystem zip = ZipFileSystem.create(parent.newFolder().toPath().resolve("tmp.zip"))) {
+			write(zip, "/unchanged.bin", newRandomBytes(1 << 16, 3));
+			byte[] bytes = null;
+			for (int i = 0; i < 16; i++) {
+				bytes = newRandomBytes(1 << 18, 4 + i);
+				write(zip, "/changed.bin", bytes);
+				IncrementalZipFile.sync(zip, file);
+				// superseded entries don't pile up
+				assertTrue("file size: " + Files.size(file), Files.size(file) < 3 * (1 << 18) + (1 << 17));
+			}
+			try (ZipFile z = new ZipFile(file.toFile())) {
+				assertArrayEquals(bytes, read(z, "changed.bin"));
+				assertArrayEquals(newRandomBytes(1 << 16, 3), read(z, "unchanged.bin"));
+			}
+		}
+	}
+
+	@Test
+	public void testRecover() throws IOException {
+		final Path file = parent.newFolder().toPath().resolve("project.zip");
+		final byte[] large = newRandomBytes(1 << 18, 20);
+		final byte[] small = "<project/>".getBytes(StandardCharsets.UTF_8);
+
+		try (ZipFileSystem zip = ZipFileSystem.create(parent.newFolder().toPath().resolve("tmp.zip"))) {
+			write(zip, "/project.xml", small);
+			write(zip, "/pages/1/data.bin", large);
+			IncrementalZipFile.sync(zip, file);
+			assertFalse("nothing to recover", IncrementalZipFile.recover(file));
+			final long length = Files.size(file);
+
+			// interrupted append: a changed entry, and half of the new central
+			// directory made it to the disk
+			final byte[] changed = "<project name=\"changed\"/>".getBytes(StandardCharsets.UTF_8);
+			write(zip, "/project.xml", changed);
+			write(zip, "/pages/2/data.bin", large);
+			IncrementalZipFile.sync(zip, file);
+			final long appended = Files.size(file);
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				channel.truncate(appended - 40);
+			}
+
+			assertTrue(IncrementalZipFile.recover(file));
+			assertEquals("state of the last completed sync", length, Files.size(file));
+			try (ZipFile z = new ZipFile(file.toFile())) {
+				assertArrayEquals(small, read(z, "project.xml"));
+				assertArrayEquals(large, read(z, "pages/1/data.bin"));
+				assertNull(z.getEntry("pages/2/data.bin"));
+			}
+
+			// a sync recovers the zip file on its own
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+				channel.write(ByteBuffer.wrap(newRandomBytes(1 << 17, 21)));
+			}
+			final long written = IncrementalZipFile.sync(zip, file);
+			assertEquals("appended", length + written, Files.size(file));
+			try (ZipFile z = new ZipFile(file.toFile())) {
+				assertArrayEquals(changed, read(z, "project.xml"));
+				assertArrayEquals(large, read(z, "pages/2/data.bin"));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,666 @@
+package ch.unifr.diva.dip.awt.imaging;
+
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Direct access to the sample arrays backing a raster. A direct raster
+ * bypasses the {@code SampleModel} and {@code DataBuffer} indirection of
+ * {@code Raster.getSample} and {@code WritableRaster.setSample}, and reads or
+ * writes whole runs of samples with a single, tight loop over the backing
+ * array instead.
+ *
+ * <p>
+ * Supported are rasters with a {@code ComponentSampleModel} (this includes
+ * {@code PixelInterleavedSampleModel} and {@code BandedSampleModel}, hence
+ * {@code BufferedMatrix}, and most byte images like {@code TYPE_BYTE_GRAY} or
+ * {@code TYPE_3BYTE_BGR}) backed by any of the standard data buffers, and
+ * rasters with a {@code SinglePixelPackedSampleModel} backed by a
+ * {@code DataBufferInt} (e.g. {@code TYPE_INT_RGB}, or
+ * {@code TYPE_INT_ARGB}). Rasters with sub-byte samples (e.g.
+ * {@code TYPE_BYTE_BINARY}) are not supported. Check with
+ * {@code isSupported(raster)} first.
+ *
+ * <p>
+ * Conversions follow the rules of {@code Raster.getSampleFloat} and
+ * {@code WritableRaster.setSample}, i.e. samples are read as unsigned values
+ * (except for {@code TYPE_SHORT}), and floating point samples are truncated
+ * (not clamped!) if written to an integral raster.
+ *
+ * <p>
+ * Note that asking a {@code DataBuffer} for its backing array marks the buffer
+ * as untrackable, which disables the acceleration of managed images (not an
+ * issue for images that are processed, rather than displayed).
+ */
+public class DirectRaster {
+
+	private final Raster raster;
+	private final int dataType;
+	private final int numBands;
+	private final boolean isPacked;
+	private final Object[] data;
+	private final int[] offsets;
+	private final int[] masks;
+	private final int[] shifts;
+	private final int pixelStride;
+	private final int scanlineStride;
+
+	/**
+	 * Creates a new direct raster.
+	 *
+	 * @param raster the raster. Needs to be supported, see
+	 * {@code isSupported(raster)}.
+	 * @throws IllegalArgumentException if the raster is not supported.
+	 */
+	public DirectRaster(Raster raster) {
+		if (!isSupported(raster)) {
+			throw new IllegalArgumentException(
+					"unsupported raster: " + raster.getSampleModel()
+			);
+		}
+
+		this.raster = raster;
+		final SampleModel sm = raster.getSampleModel();
+		final DataBuffer buffer = raster.getDataBuffer();
+		this.dataType = buffer.getDataType();
+		this.numBands = raster.getNumBands();
+		this.data = new Object[this.numBands];
+		this.offsets = new int[this.numBands];
+
+		// raster coordinates (x, y) map to (x - tx, y - ty) in the sample model,
+		// which is not necessarily (0, 0) based for child rasters/subimages
+		final int tx = raster.getSampleModelTranslateX();
+		final int ty = raster.getSampleModelTranslateY();
+
+		if (sm instanceof ComponentSampleModel) {
+			final ComponentSampleModel csm = (ComponentSampleModel) sm;
+			final int[] bankIndices = csm.getBankIndices();
+			final int[] bandOffsets = csm.getBandOffsets();
+			this.isPacked = false;
+			this.masks = null;
+			this.shifts = null;
+			this.pixelStride = csm.getPixelStride();
+			this.scanlineStride = csm.getScanlineStride();
+			for (int b = 0; b < this.numBands; b++) {
+				final int bank = bankIndices[b];
+				this.data[b] = getBank(buffer, bank);
+				this.offsets[b] = buffer.getOffsets()[bank]
+						+ bandOffsets[b]
+						- ty * this.scanlineStride
+						- tx * this.pixelStride;
+			}
+		} else {
+			final SinglePixelPackedSampleModel spp = (SinglePixelPackedSampleModel) sm;
+			this.isPacked = true;
+			this.masks = spp.getBitMasks();
+			this.shifts = spp.getBitOffsets();
+			this.pixelStride = 1;
+			this.scanlineStride = spp.getScanlineStride();
+			final int[] bank = ((DataBufferInt) buffer).getData();
+			for (int b = 0; b < this.numBands; b++) {
+				this.data[b] = bank;
+				this.offsets[b] = buffer.getOffset()
+						- ty * this.scanlineStride
+						- tx;
+			}
+		}
+	}
+
+	/**
+	 * Checks whether a raster can be accessed directly.
+	 *
+	 * @param raster the raster.
+	 * @return {@code true} if the raster is supported, {@code false}
+	 * otherwise.
+	 */
+	public static boolean isSupported(Raster raster) {
+		final SampleModel sm = raster.getSampleModel();
+		final DataBuffer buffer = raster.getDataBuffer();
+		if (sm instanceof ComponentSampleModel) {
+			// not just the data type; custom data buffers (e.g. out-of-core
+			// ones) have no backing arrays
+			return buffer instanceof DataBufferByte
+					|| buffer instanceof DataBufferUShort
+					|| buffer instanceof DataBufferShort
+					|| buffer instanceof DataBufferInt
+					|| buffer instanceof DataBufferFloat
+					|| buffer instanceof DataBufferDouble;
+		}
+		if (sm instanceof SinglePixelPackedSampleModel) {
+			return buffer instanceof DataBufferInt;
+		}
+		return false;
+	}
+
+	private static Object getBank(DataBuffer buffer, int bank) {
+		switch (buffer.getDataType()) {
+			case DataBuffer.TYPE_BYTE:
+				return ((DataBufferByte) buffer).getData(bank);
+			case DataBuffer.TYPE_USHORT:
+				return ((DataBufferUShort) buffer).getData(bank);
+			case DataBuffer.TYPE_SHORT:
+				return ((DataBufferShort) buffer).getData(bank);
+			case DataBuffer.TYPE_INT:
+				return ((DataBufferInt) buffer).getData(bank);
+			case DataBuffer.TYPE_FLOAT:
+				return ((DataBufferFloat) buffer).getData(bank);
+			case DataBuffer.TYPE_DOUBLE:
+			default:
+				return ((DataBufferDouble) buffer).getData(bank);
+		}
+	}
+
+	/**
+	 * Returns the wrapped raster.
+	 *
+	 * @return the raster.
+	 */
+	public Raster getRaster() {
+		return this.raster;
+	}
+
+	/**
+	 * Returns the data type of the backing array(s). This is one of the
+	 * {@code DataBuffer.TYPE_*} constants.
+	 *
+	 * @return the data type.
+	 */
+	public int getDataType() {
+		return this.dataType;
+	}
+
+	/**
+	 * Returns the number of bands.
+	 *
+	 * @return the number of bands.
+	 */
+	public int getNumBands() {
+		return this.numBands;
+	}
+
+	/**
+	 * Checks whether all samples of a pixel are packed into a single int.
+	 *
+	 * @return {@code true} if samples are packed (see {@code getMask} and
+	 * {@code getShift}), {@code false} otherwise.
+	 */
+	public boolean isPacked() {
+		return this.isPacked;
+	}
+
+	/**
+	 * Returns the array backing the given band. This is a {@code byte[]},
+	 * {@code short[]}, {@code int[]}, {@code float[]}, or {@code double[]},
+	 * depending on the data type.
+	 *
+	 * @param band the band.
+	 * @return the backing array.
+	 */
+	public Object getData(int band) {
+		return this.data[band];
+	}
+
+	/**
+	 * Returns the distance (in array elements) between two samples of the same
+	 * band on the same row.
+	 *
+	 * @return the pixel stride.
+	 */
+	public int getPixelStride() {
+		return this.pixelStride;
+	}
+
+	/**
+	 * Returns the distance (in array elements) between two samples of the same
+	 * band in the same column.
+	 *
+	 * @return the scanline stride.
+	 */
+	public int getScanlineStride() {
+		return this.scanlineStride;
+	}
+
+	/**
+	 * Returns the bit mask of a band of a packed raster.
+	 *
+	 * @param band the band.
+	 * @return the bit mask.
+	 */
+	public int getMask(int band) {
+		return this.masks[band];
+	}
+
+	/**
+	 * Returns the bit offset of a band of a packed raster.
+	 *
+	 * @param band the band.
+	 * @return the bit offset.
+	 */
+	public int getShift(int band) {
+		return this.shifts[band];
+	}
+
+	/**
+	 * Returns the index into the backing array of a sample.
+	 *
+	 * @param x the X coordinate in the raster.
+	 * @param y the Y coordinate in the raster.
+	 * @param band the band.
+	 * @return the index into the array returned by {@code getData(band)}.
+	 */
+	public int getIndex(int x, int y, int band) {
+		return this.offsets[band] + y * this.scanlineStride + x * this.pixelStride;
+	}
+
+	/**
+	 * Reads a run of samples of a single band on a single row.
+	 *
+	 * @param x the X coordinate of the first sample.
+	 * @param y the Y coordinate of the row.
+	 * @param n the number of samples.
+	 * @param band the band.
+	 * @param dst the destination array.
+	 * @param offset the offset into the destination array.
+	 */
+	public void getSamples(int x, int y, int n, int band, int[] dst, int offset) {
+		final int ps = this.pixelStride;
+		final int end = offset + n;
+		int i = getIndex(x, y, band);
+		if (this.isPacked) {
+			final int[] d = (int[]) this.data[band];
+			final int mask = this.masks[band];
+			final int shift = this.shifts[band];
+			for (int k = offset; k < end; k++, i++) {
+				dst[k] = (d[i] & mask) >>> shift;
+			}
+			return;
+		}
+		switch (this.dataType) {
+			case DataBuffer.TYPE_BYTE: {
+				final byte[] d = (byte[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					dst[k] = d[i] & 0xFF;
+				}
+				break;
+			}
+			case DataBuffer.TYPE_USHORT: {
+				final short[] d = (short[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					dst[k] = d[i] & 0xFFFF;
+				}
+				break;
+			}
+			case DataBuffer.TYPE_SHORT: {
+				final short[] d = (short[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					dst[k] = d[i];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_INT: {
+				final int[] d = (int[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					dst[k] = d[i];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_FLOAT: {
+				final float[] d = (float[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					dst[k] = (int) d[i];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_DOUBLE:
+			default: {
+				final double[] d = (double[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					dst[k] = (int) d[i];
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Reads a run of samples of a single band on a single row.
+	 *
+	 * @param x the X coordinate of the first sample.
+	 * @param y the Y coordinate of the row.
+	 * @param n the number of samples.
+	 * @param band the band.
+	 * @param dst the destination array.
+	 * @param offset the offset into the destination array.
+	 */
+	public void getSamples(int x, int y, int n, int band, float[] dst, int offset) {
+		final int ps = this.pixelStride;
+		final int end = offset + n;
+		int i = getIndex(x, y, band);
+		if (this.isPacked) {
+			final int[] d = (int[]) this.data[band];
+			final int mask = this.masks[band];
+			final int shift = this.shifts[band];
+			for (int k = offset; k < end; k++, i++) {
+				dst[k] = (d[i] & mask) >>> shift;
+			}
+			return;
+		}
+		switch (this.dataType) {
+			case DataBuffer.TYPE_BYTE: {
+				final byte[] d = (byte[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					dst[k] = d[i] & 0xFF;
+				}
+				break;
+			}
+			case DataBuffer.TYPE_USHORT: {
+				final short[] d = (short[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					dst[k] = d[i] & 0xFFFF;
+				}
+				break;
+			}
+			case DataBuffer.TYPE_SHORT: {
+				final short[] d = (short[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					dst[k] = d[i];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_INT: {
+				final int[] d = (int[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					dst[k] = d[i];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_FLOAT: {
+				final float[] d = (float[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					dst[k] = d[i];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_DOUBLE:
+			default: {
+				final double[] d = (double[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					dst[k] = (float) d[i];
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Reads a run of samples of a single band on a single row.
+	 *
+	 * @param x the X coordinate of the first sample.
+	 * @param y the Y coordinate of the row.
+	 * @param n the number of samples.
+	 * @param band the band.
+	 * @param dst the destination array.
+	 * @param offset the offset into the destination array.
+	 */
+	public void getSamples(int x, int y, int n, int band, double[] dst, int offset) {
+		final int ps = this.pixelStride;
+		final int end = offset + n;
+		int i = getIndex(x, y, band);
+		if (this.isPacked) {
+			final int[] d = (int[]) this.data[band];
+			final int mask = this.masks[band];
+			final int shift = this.shifts[band];
+			for (int k = offset; k < end; k++, i++) {
+				dst[k] = (d[i] & mask) >>> shift;
+			}
+			return;
+		}
+		switch (this.dataType) {
+			case DataBuffer.TYPE_BYTE: {
+				final byte[] d = (byte[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					dst[k] = d[i] & 0xFF;
+				}
+				break;
+			}
+			case DataBuffer.TYPE_USHORT: {
+				final short[] d = (short[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					dst[k] = d[i] & 0xFFFF;
+				}
+				break;
+			}
+			case DataBuffer.TYPE_SHORT: {
+				final short[] d = (short[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					dst[k] = d[i];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_INT: {
+				final int[] d = (int[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					dst[k] = d[i];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_FLOAT: {
+				final float[] d = (float[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					dst[k] = d[i];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_DOUBLE:
+			default: {
+				final double[] d = (double[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					dst[k] = d[i];
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Writes a run of samples of a single band on a single row.
+	 *
+	 * @param x the X coordinate of the first sample.
+	 * @param y the Y coordinate of the row.
+	 * @param n the number of samples.
+	 * @param band the band.
+	 * @param src the source array.
+	 * @param offset the offset into the source array.
+	 */
+	public void setSamples(int x, int y, int n, int band, int[] src, int offset) {
+		final int ps = this.pixelStride;
+		final int end = offset + n;
+		int i = getIndex(x, y, band);
+		if (this.isPacked) {
+			final int[] d = (int[]) this.data[band];
+			final int mask = this.masks[band];
+			final int shift = this.shifts[band];
+			for (int k = offset; k < end; k++, i++) {
+				d[i] = (d[i] & ~mask) | ((src[k] << shift) & mask);
+			}
+			return;
+		}
+		switch (this.dataType) {
+			case DataBuffer.TYPE_BYTE: {
+				final byte[] d = (byte[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					d[i] = (byte) src[k];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_USHORT:
+			case DataBuffer.TYPE_SHORT: {
+				final short[] d = (short[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					d[i] = (short) src[k];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_INT: {
+				final int[] d = (int[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					d[i] = src[k];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_FLOAT: {
+				final float[] d = (float[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					d[i] = src[k];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_DOUBLE:
+			default: {
+				final double[] d = (double[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					d[i] = src[k];
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Writes a run of samples of a single band on a single row.
+	 *
+	 * @param x the X coordinate of the first sample.
+	 * @param y the Y coordinate of the row.
+	 * @param n the number of samples.
+	 * @param band the band.
+	 * @param src the source array.
+	 * @param offset the offset into the source array.
+	 */
+	public void setSamples(int x, int y, int n, int band, float[] src, int offset) {
+		final int ps = this.pixelStride;
+		final int end = offset + n;
+		int i = getIndex(x, y, band);
+		if (this.isPacked) {
+			final int[] d = (int[]) this.data[band];
+			final int mask = this.masks[band];
+			final int shift = this.shifts[band];
+			for (int k = offset; k < end; k++, i++) {
+				d[i] = (d[i] & ~mask) | ((((int) src[k]) << shift) & mask);
+			}
+			return;
+		}
+		switch (this.dataType) {
+			case DataBuffer.TYPE_BYTE: {
+				final byte[] d = (byte[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					d[i] = (byte) (int) src[k];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_USHORT:
+			case DataBuffer.TYPE_SHORT: {
+				final short[] d = (short[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					d[i] = (short) (int) src[k];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_INT: {
+				final int[] d = (int[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					d[i] = (int) src[k];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_FLOAT: {
+				final float[] d = (float[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					d[i] = src[k];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_DOUBLE:
+			default: {
+				final double[] d = (double[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					d[i] = src[k];
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Writes a run of samples of a single band on a single row.
+	 *
+	 * @param x the X coordinate of the first sample.
+	 * @param y the Y coordinate of the row.
+	 * @param n the number of samples.
+	 * @param band the band.
+	 * @param src the source array.
+	 * @param offset the offset into the source array.
+	 */
+	public void setSamples(int x, int y, int n, int band, double[] src, int offset) {
+		final int ps = this.pixelStride;
+		final int end = offset + n;
+		int i = getIndex(x, y, band);
+		if (this.isPacked) {
+			final int[] d = (int[]) this.data[band];
+			final int mask = this.masks[band];
+			final int shift = this.shifts[band];
+			for (int k = offset; k < end; k++, i++) {
+				d[i] = (d[i] & ~mask) | ((((int) src[k]) << shift) & mask);
+			}
+			return;
+		}
+		switch (this.dataType) {
+			case DataBuffer.TYPE_BYTE: {
+				final byte[] d = (byte[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					d[i] = (byte) (int) src[k];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_USHORT:
+			case DataBuffer.TYPE_SHORT: {
+				final short[] d = (short[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					d[i] = (short) (int) src[k];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_INT: {
+				final int[] d = (int[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					d[i] = (int) src[k];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_FLOAT: {
+				final float[] d = (float[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					d[i] = (float) src[k];
+				}
+				break;
+			}
+			case DataBuffer.TYPE_DOUBLE:
+			default: {
+				final double[] d = (double[]) this.data[band];
+				for (int k = offset; k < end; k++, i += ps) {
+					d[i] = src[k];
+				}
+				break;
+			}
+		}
+	}
+
+}
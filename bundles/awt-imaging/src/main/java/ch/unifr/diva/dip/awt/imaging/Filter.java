@@ -3,7 +3,7 @@ package ch.unifr.diva.dip.awt.imaging;
 import ch.unifr.diva.dip.api.components.ProcessorContext;
 import ch.unifr.diva.dip.api.utils.DipThreadPool;
 import ch.unifr.diva.dip.api.utils.MathUtils;
-import ch.unifr.diva.dip.awt.imaging.ops.ConcurrentTileOp;
+import ch.unifr.diva.dip.awt.imaging.ops.IntegralImageOp;
 import ch.unifr.diva.dip.awt.imaging.ops.Parallelizable;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
@@ -87,32 +87,33 @@ public class Filter {
 	 * @param dest the destination image, or {@code null}.
 	 * @return the filtered image.
 	 */
-	@SuppressWarnings({"rawtypes", "unchecked"})
 	public static BufferedImage filter(DipThreadPool threadPool, BufferedImageOp op, BufferedImage src, BufferedImage dest) {
+		// integral images are computed in parallel too, for this call only
+		if (op instanceof IntegralImageOp) {
+			final IntegralImageOp iop = (IntegralImageOp) op;
+			iop.prepare(threadPool, src, dest);
+			try {
+				return doFilter(threadPool, op, src, dest);
+			} finally {
+				iop.release(src, dest);
+			}
+		}
+		return doFilter(threadPool, op, src, dest);
+	}
+
+	private static BufferedImage doFilter(DipThreadPool threadPool, BufferedImageOp op, BufferedImage src, BufferedImage dest) {
 		// get parallelizable mode of the op...
 		final Parallelizable.Mode mode = Parallelizable.getMode(op, threadPool.poolSize());
 		// ...and maybe have some further checks, if we not rather fall back to
 		// single-threaded execution.
 		switch (mode) {
 			case TILE: {
-				// do not parallelize super small images/tiles at all
-				final int samples = src.getWidth() * src.getHeight() * src.getRaster().getNumBands();
-				// TODO: find optimal threshold, this here is just a wild guess
-				if (samples < (64 * 64 * 3)) {
+				// do not parallelize small images (w.r.t. the cost of the op)
+				final TileScheduler scheduler = new TileScheduler(threadPool);
+				if (!scheduler.isParallel(op, src)) {
 					break;
 				}
-
-				final Rectangle tileSize = getOptimalTileSize(threadPool.poolSize(), src);
-				if (tileSize.width > 0 && tileSize.height > 0) {
-					final ConcurrentTileOp cop = new ConcurrentTileOp(
-							op,
-							tileSize.width,
-							tileSize.height,
-							threadPool
-					);
-					return cop.filter(src, dest);
-				}
-				break;
+				return scheduler.filter(op, src, dest);
 			}
 
 			case SINGLE_THREADED:
@@ -0,0 +1,354 @@
+package ch.unifr.diva.dip.awt.imaging;
+
+import ch.unifr.diva.dip.api.utils.DipThreadPool;
+import ch.unifr.diva.dip.api.utils.MathUtils;
+import ch.unifr.diva.dip.awt.imaging.ops.CostHint;
+import ch.unifr.diva.dip.awt.imaging.ops.InverseMappedTileParallelizable;
+import ch.unifr.diva.dip.awt.imaging.ops.TileParallelizable;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.DataBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tile scheduler. Runs {@code TileParallelizable} image filters on a
+ * work-stealing pool.
+ *
+ * <p>
+ * All tiles are laid out up front, and then claimed by the workers with an
+ * atomic cursor, s.t. workers never wait on each other (or a lock) to get
+ * their next tile. The calling thread takes part as a worker too, instead of
+ * just waiting for the others.
+ *
+ * <p>
+ * The tile geometry is chosen from the cost hints of the filter (see
+ * {@code CostHint}) and the cache size: tiles are full-width strips of rows,
+ * unless such a strip doesn't fit into the cache, and there are more tiles
+ * for expensive filters (to balance the load), and at least enough rows to
+ * keep the padding of filters with a kernel cheap. Filters on images below a
+ * minimum number of samples (again depending on the cost hints) are run
+ * single threaded.
+ *
+ * <p>
+ * If running on a {@code DipThreadPool}, the workers (other than the calling
+ * thread) take worker permits of the thread pool, s.t. filters run from
+ * processors that run in parallel themselves only use the cores left idle.
+ */
+public class TileScheduler {
+
+	/**
+	 * Default cache size per worker in bytes (a typical L2 cache).
+	 */
+	public final static int DEFAULT_CACHE_SIZE = 256 * 1024;
+
+	/**
+	 * Minimum tile width (or height).
+	 */
+	public final static int MIN_TILE_SIZE = 8;
+
+	private final DipThreadPool threadPool;
+	private final ForkJoinPool pool;
+	private final int parallelism;
+	private int cacheSize;
+
+	/**
+	 * Creates a new tile scheduler running on the work-stealing pool of a
+	 * thread pool.
+	 *
+	 * @param threadPool the thread pool.
+	 */
+	public TileScheduler(DipThreadPool threadPool) {
+		this(threadPool, threadPool.getForkJoinPool(), threadPool.poolSize());
+	}
+
+	/**
+	 * Creates a new tile scheduler.
+	 *
+	 * @param pool the work-stealing pool.
+	 * @param parallelism the number of workers (including the calling thread).
+	 */
+	public TileScheduler(ForkJoinPool pool, int parallelism) {
+		this(null, pool, parallelism);
+	}
+
+	private TileScheduler(DipThreadPool threadPool, ForkJoinPool pool, int parallelism) {
+		this.threadPool = threadPool;
+		this.pool = pool;
+		this.parallelism = Math.max(1, parallelism);
+		this.cacheSize = DEFAULT_CACHE_SIZE;
+	}
+
+	/**
+	 * Returns the number of workers.
+	 *
+	 * @return the number of workers.
+	 */
+	public int getParallelism() {
+		return this.parallelism;
+	}
+
+	/**
+	 * Sets the cache size per worker.
+	 *
+	 * @param cacheSize the cache size per worker in bytes.
+	 */
+	public void setCacheSize(int cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * Returns the cache size per worker.
+	 *
+	 * @return the cache size per worker in bytes.
+	 */
+	public int getCacheSize() {
+		return this.cacheSize;
+	}
+
+	/**
+	 * Returns the per-pixel cost class of a filter.
+	 *
+	 * @param op the filter.
+	 * @return the per-pixel cost class.
+	 */
+	public static CostHint.CostClass getCostClass(BufferedImageOp op) {
+		if (op instanceof CostHint) {
+			return ((CostHint) op).getCostClass();
+		}
+		return CostHint.CostClass.MEDIUM;
+	}
+
+	/**
+	 * Returns the kernel radius of a filter.
+	 *
+	 * @param op the filter.
+	 * @return the kernel radius.
+	 */
+	public static int getKernelRadius(BufferedImageOp op) {
+		if (op instanceof CostHint) {
+			return Math.max(0, ((CostHint) op).getKernelRadius());
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the minimum number of samples to run a filter of some cost class
+	 * in parallel. Below that, handing tiles to other threads takes longer than
+	 * filtering the whole image on the calling thread.
+	 *
+	 * @param costClass the per-pixel cost class.
+	 * @return the minimum number of samples.
+	 */
+	public static int getMinSamples(CostHint.CostClass costClass) {
+		switch (costClass) {
+			case LOW:
+				return 256 * 256 * 3;
+			case HIGH:
+				return 32 * 32 * 3;
+			case MEDIUM:
+			default:
+				return 64 * 64 * 3;
+		}
+	}
+
+	/**
+	 * Checks whether a filter should be run in parallel.
+	 *
+	 * @param op the filter.
+	 * @param src the source image.
+	 * @return {@code true} if the filter is tile parallelizable, there is more
+	 * than a single worker, and the image is large enough, {@code false}
+	 * otherwise.
+	 */
+	public boolean isParallel(BufferedImageOp op, BufferedImage src) {
+		if (this.parallelism < 2 || !(op instanceof TileParallelizable)) {
+			return false;
+		}
+		final long samples = (long) src.getWidth() * src.getHeight() * src.getRaster().getNumBands();
+		return samples >= getMinSamples(getCostClass(op));
+	}
+
+	/**
+	 * Returns the tile size to run a filter in parallel.
+	 *
+	 * @param op the filter.
+	 * @param src the source image.
+	 * @param dst the destination image.
+	 * @return the tile size. The width is either the width of the tiled image,
+	 * or a power of two (and at least 8), s.t. tiles of binary images don't
+	 * share any bytes.
+	 */
+	public Rectangle getTileSize(BufferedImageOp op, BufferedImage src, BufferedImage dst) {
+		// tiles over the destination image with inverse mapped filters
+		final BufferedImage image = (op instanceof InverseMappedTileParallelizable) ? dst : src;
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final CostHint.CostClass costClass = getCostClass(op);
+		final int radius = getKernelRadius(op);
+		final int bytesPerPixel = Math.max(1, getBytesPerPixel(src) + getBytesPerPixel(dst));
+
+		// padding costs at most 50% more rows
+		final int minRows = Math.max(MIN_TILE_SIZE, 4 * radius);
+
+		// full-width strips, or narrower columns if a strip doesn't fit
+		int tileWidth = width;
+		if ((long) width * minRows * bytesPerPixel > this.cacheSize) {
+			final int fit = this.cacheSize / (minRows * bytesPerPixel);
+			tileWidth = Math.max(
+					MathUtils.nextPowerOfTwo(Math.max(MIN_TILE_SIZE, 4 * radius)),
+					Integer.highestOneBit(Math.max(MIN_TILE_SIZE, fit))
+			);
+			if (tileWidth >= width) {
+				tileWidth = width;
+			}
+		}
+		final int cols = Math.max(1, width / tileWidth);
+
+		// enough tiles to balance the load, small enough to fit into the cache
+		final int numTiles = this.parallelism * costClass.tilesPerWorker;
+		final int rows = Math.max(1, (numTiles + cols - 1) / cols);
+		final int maxRows = Math.max(minRows, this.cacheSize / (tileWidth * bytesPerPixel));
+		final int tileHeight = Math.max(minRows, Math.min(maxRows, height / rows));
+
+		return new Rectangle(tileWidth, Math.min(tileHeight, Math.max(1, height)));
+	}
+
+	private static int getBytesPerPixel(BufferedImage image) {
+		if (image == null) {
+			return 0;
+		}
+		final int type = image.getRaster().getSampleModel().getDataType();
+		final int bytes = Math.max(1, DataBuffer.getDataTypeSize(type) / 8);
+		return bytes * image.getRaster().getNumBands();
+	}
+
+	/**
+	 * Filters an image in parallel (if worth it), or single threaded.
+	 *
+	 * @param op the filter.
+	 * @param src the source image.
+	 * @param dst the destination image, or {@code null}.
+	 * @return the filtered image, or {@code null} if interrupted.
+	 */
+	public BufferedImage filter(BufferedImageOp op, BufferedImage src, BufferedImage dst) {
+		if (!isParallel(op, src)) {
+			return op.filter(src, dst);
+		}
+		if (dst == null) {
+			dst = op.createCompatibleDestImage(src, src.getColorModel());
+		}
+		final Rectangle tileSize = getTileSize(op, src, dst);
+		return filter((TileParallelizable<?>) op, src, dst, tileSize.width, tileSize.height);
+	}
+
+	/**
+	 * Filters an image in parallel, with the given tile size.
+	 *
+	 * @param op the filter.
+	 * @param src the source image.
+	 * @param dst the destination image.
+	 * @param tileWidth the width of the tiles.
+	 * @param tileHeight the height of the tiles.
+	 * @return the filtered image, or {@code null} if interrupted.
+	 */
+	public BufferedImage filter(TileParallelizable<?> op, BufferedImage src, BufferedImage dst, int tileWidth, int tileHeight) {
+		final List<? extends Rectangle> tiles = op.getImageTiler(src, dst, tileWidth, tileHeight).getTiles();
+		op.prepare(src, dst);
+		final int numWorkers = 1 + acquireWorkers(Math.min(this.parallelism, tiles.size()) - 1);
+		try {
+			return filter(op, src, dst, tiles, numWorkers);
+		} finally {
+			releaseWorkers(numWorkers - 1);
+			op.release(src, dst);
+		}
+	}
+
+	private int acquireWorkers(int n) {
+		if (n < 1) {
+			return 0;
+		}
+		return (this.threadPool == null) ? n : this.threadPool.tryAcquireWorkers(n);
+	}
+
+	private void releaseWorkers(int n) {
+		if (this.threadPool != null) {
+			this.threadPool.releaseWorkers(n);
+		}
+	}
+
+	private BufferedImage filter(TileParallelizable<?> op, BufferedImage src, BufferedImage dst, List<? extends Rectangle> tiles, int numWorkers) {
+		final AtomicInteger cursor = new AtomicInteger();
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		final Runnable worker = () -> {
+			int i;
+			while (!cancelled.get() && (i = cursor.getAndIncrement()) < tiles.size()) {
+				op.processTile(tiles.get(i), src, dst);
+				if (Thread.currentThread().isInterrupted()) {
+					cancelled.set(true);
+				}
+			}
+		};
+
+		final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		for (int i = 1; i < numWorkers; i++) {
+			tasks.add(this.pool.submit(worker));
+		}
+
+		try {
+			worker.run();
+			for (ForkJoinTask<?> task : tasks) {
+				task.get();
+			}
+		} catch (InterruptedException ex) {
+			cancelled.set(true);
+			joinQuietly(tasks);
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException ex) {
+			cancelled.set(true);
+			joinQuietly(tasks);
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			throw new RuntimeException(ex.getCause());
+		} catch (RuntimeException ex) {
+			cancelled.set(true);
+			joinQuietly(tasks);
+			throw ex;
+		}
+
+		if (Thread.currentThread().isInterrupted()) {
+			return null;
+		}
+		return dst;
+	}
+
+	// waits for all tasks to be done, s.t. no tile is still being processed
+	// once the workers and the op get released. Results (and failures) are
+	// ignored, and so are interrupts (restored once all tasks are done).
+	private static void joinQuietly(List<ForkJoinTask<?>> tasks) {
+		boolean interrupted = Thread.interrupted();
+		for (ForkJoinTask<?> task : tasks) {
+			while (!task.isDone()) {
+				try {
+					task.get();
+				} catch (InterruptedException ex) {
+					interrupted = true;
+				} catch (ExecutionException | RuntimeException ex) {
+					// ignored
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
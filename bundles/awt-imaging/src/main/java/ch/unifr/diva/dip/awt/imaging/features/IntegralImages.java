@@ -0,0 +1,348 @@
+package ch.unifr.diva.dip.awt.imaging.features;
+
+import ch.unifr.diva.dip.api.datastructures.IntegralImage;
+import ch.unifr.diva.dip.api.utils.DipThreadPool;
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpan;
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpanScanner;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes integral images (or summed-area tables) of the samples, and of the
+ * squared samples of an image.
+ *
+ * <p>
+ * Integral images are computed in parallel by splitting each band into strips
+ * of rows. First each strip is integrated on its own, then the last row of
+ * each strip is carried over (a prefix sum over the strips), and finally the
+ * carry is added to all rows of the following strip.
+ */
+public class IntegralImages {
+
+	/**
+	 * Minimum number of rows per strip.
+	 */
+	public final static int MIN_STRIP_HEIGHT = 64;
+
+	/**
+	 * Maximum number of bits of integral samples to be summed up in
+	 * {@code long}s. With 16 bits, the squared samples of up to
+	 * {@code 2^31} pixels (the maximum size of the tables) sum up to less
+	 * than {@code 2^63}.
+	 */
+	public final static int MAX_INTEGRAL_BITS = 16;
+
+	private IntegralImages() {
+		// nope :)
+	}
+
+	/**
+	 * Computes the integral image of an image.
+	 *
+	 * @param src the image.
+	 * @return the integral image.
+	 */
+	public static IntegralImage compute(BufferedImage src) {
+		final IntegralImage ii = newIntegralImage(src);
+		final Raster raster = src.getRaster();
+		for (int band = 0; band < ii.numBands; band++) {
+			integrateStrip(raster, ii, band, 0, ii.height);
+		}
+		return ii;
+	}
+
+	/**
+	 * Computes the integral image of an image in parallel. Runs on the calling
+	 * thread, and on as many workers of the work-stealing pool of the thread
+	 * pool as worker permits are available (without waiting for any), s.t.
+	 * concurrent callers never keep more threads busy than there are threads
+	 * in the pool.
+	 *
+	 * @param threadPool the thread pool.
+	 * @param src the image.
+	 * @return the integral image, or {@code null} if interrupted.
+	 */
+	public static IntegralImage compute(DipThreadPool threadPool, BufferedImage src) {
+		final int numWorkers = 1 + threadPool.tryAcquireWorkers(threadPool.poolSize() - 1);
+		try {
+			return compute(threadPool.getForkJoinPool(), numWorkers, src);
+		} finally {
+			threadPool.releaseWorkers(numWorkers - 1);
+		}
+	}
+
+	/**
+	 * Computes the integral image of an image in parallel. Runs on the calling
+	 * thread, and on up to {@code numThreads - 1} threads of the executor
+	 * service.
+	 *
+	 * @param executor the executor service.
+	 * @param numThreads the number of threads to run on.
+	 * @param src the image.
+	 * @return the integral image, or {@code null} if interrupted.
+	 */
+	public static IntegralImage compute(ExecutorService executor, int numThreads, BufferedImage src) {
+		final IntegralImage ii = newIntegralImage(src);
+		final Raster raster = src.getRaster();
+		final int stripHeight = Math.max(
+				MIN_STRIP_HEIGHT,
+				(ii.height + numThreads - 1) / Math.max(1, numThreads)
+		);
+		final int numStrips = (ii.height + stripHeight - 1) / stripHeight;
+		if (numStrips * ii.numBands <= 1) {
+			return compute(src);
+		}
+
+		final List<Runnable> integrate = new ArrayList<>();
+		final List<Runnable> carry = new ArrayList<>();
+		for (int band = 0; band < ii.numBands; band++) {
+			final int b = band;
+			for (int s = 0; s < numStrips; s++) {
+				final int y0 = s * stripHeight;
+				final int y1 = Math.min(ii.height, y0 + stripHeight);
+				integrate.add(() -> integrateStrip(raster, ii, b, y0, y1));
+			}
+		}
+
+		try {
+			invokeAll(executor, numThreads, integrate);
+
+			// prefix sum over the (local) last rows of all strips
+			for (int band = 0; band < ii.numBands; band++) {
+				final int b = band;
+				Object previous = null;
+				for (int s = 1; s < numStrips; s++) {
+					final int y0 = s * stripHeight;
+					final int y1 = Math.min(ii.height, y0 + stripHeight);
+					final Object row = getCarry(ii, b, y0, previous);
+					carry.add(() -> addCarry(ii, b, y0, y1, row));
+					previous = row;
+				}
+			}
+
+			invokeAll(executor, numThreads, carry);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+
+		return ii;
+	}
+
+	// runs the tasks on the calling thread and on up to numThreads - 1 workers,
+	// and waits for all workers to be done (even if interrupted or failed)
+	private static void invokeAll(ExecutorService executor, int numThreads, List<Runnable> tasks) throws InterruptedException {
+		final AtomicInteger cursor = new AtomicInteger();
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		final Runnable worker = () -> {
+			int i;
+			while (!cancelled.get() && (i = cursor.getAndIncrement()) < tasks.size()) {
+				tasks.get(i).run();
+			}
+		};
+
+		final List<Future<?>> futures = new ArrayList<>();
+		for (int i = 1; i < Math.min(numThreads, tasks.size()); i++) {
+			futures.add(executor.submit(worker));
+		}
+
+		RuntimeException failure = null;
+		boolean interrupted = false;
+		try {
+			worker.run();
+		} catch (RuntimeException ex) {
+			cancelled.set(true);
+			failure = ex;
+		}
+		for (Future<?> f : futures) {
+			while (true) {
+				try {
+					f.get();
+					break;
+				} catch (InterruptedException ex) {
+					cancelled.set(true);
+					interrupted = true;
+				} catch (ExecutionException ex) {
+					cancelled.set(true);
+					if (failure == null) {
+						failure = new RuntimeException(ex.getCause());
+					}
+					break;
+				}
+			}
+		}
+
+		if (failure != null) {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			throw failure;
+		}
+		if (interrupted) {
+			throw new InterruptedException();
+		}
+	}
+
+	/**
+	 * Creates a new, zeroed integral image for an image.
+	 *
+	 * @param src the image.
+	 * @return a zeroed integral image.
+	 */
+	public static IntegralImage newIntegralImage(BufferedImage src) {
+		return new IntegralImage(
+				src.getWidth(),
+				src.getHeight(),
+				src.getRaster().getNumBands(),
+				isIntegral(src.getRaster())
+		);
+	}
+
+	/**
+	 * Checks whether a raster has integral samples of at most
+	 * {@code MAX_INTEGRAL_BITS} bits. Only then the sums of the squared
+	 * samples are guaranteed to fit into {@code long}s, otherwise (e.g. 32-bit
+	 * samples of {@code TYPE_INT} rasters) sums are computed in
+	 * {@code double}s.
+	 *
+	 * @param raster the raster.
+	 * @return {@code true} if the raster has integral samples, {@code false}
+	 * otherwise.
+	 */
+	public static boolean isIntegral(Raster raster) {
+		switch (raster.getSampleModel().getDataType()) {
+			case DataBuffer.TYPE_BYTE:
+			case DataBuffer.TYPE_USHORT:
+			case DataBuffer.TYPE_SHORT:
+			case DataBuffer.TYPE_INT:
+				for (int bits : raster.getSampleModel().getSampleSize()) {
+					if (bits > MAX_INTEGRAL_BITS) {
+						return false;
+					}
+				}
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	// integrates the rows y0..y1-1 of a band, on their own (i.e. as if the
+	// strip started at the first row)
+	private static void integrateStrip(Raster raster, IntegralImage ii, int band, int y0, int y1) {
+		final int w = ii.width;
+		final Rectangle region = new Rectangle(
+				raster.getMinX(),
+				raster.getMinY() + y0,
+				w,
+				y1 - y0
+		);
+		if (ii.isIntegral()) {
+			final long[] sums = ii.sums;
+			final long[] squares = ii.squaredSums;
+			final int[] samples = new int[w];
+			int y = y0;
+			for (RowSpan span : new RowSpanScanner(raster, region, band, 1)) {
+				span.getSamples(samples);
+				final int i = ii.index(1, y + 1, band);
+				final int above = ii.index(1, y, band);
+				final boolean first = (y == y0);
+				long sum = 0;
+				long square = 0;
+				for (int x = 0; x < w; x++) {
+					final long v = samples[x];
+					sum += v;
+					square += v * v;
+					sums[i + x] = first ? sum : sums[above + x] + sum;
+					squares[i + x] = first ? square : squares[above + x] + square;
+				}
+				y++;
+			}
+		} else {
+			final double[] sums = ii.doubleSums;
+			final double[] squares = ii.doubleSquaredSums;
+			final double[] samples = new double[w];
+			int y = y0;
+			for (RowSpan span : new RowSpanScanner(raster, region, band, 1)) {
+				span.getSamples(samples);
+				final int i = ii.index(1, y + 1, band);
+				final int above = ii.index(1, y, band);
+				final boolean first = (y == y0);
+				double sum = 0;
+				double square = 0;
+				for (int x = 0; x < w; x++) {
+					final double v = samples[x];
+					sum += v;
+					square += v * v;
+					sums[i + x] = first ? sum : sums[above + x] + sum;
+					squares[i + x] = first ? square : squares[above + x] + square;
+				}
+				y++;
+			}
+		}
+	}
+
+	// returns the carry of the strip starting at row y0: the carry of the
+	// previous strip plus its (local) last row, as {sums, squares}
+	private static Object getCarry(IntegralImage ii, int band, int y0, Object previous) {
+		final int w = ii.width;
+		final int last = ii.index(1, y0, band);
+		if (ii.isIntegral()) {
+			final long[][] carry = new long[2][w];
+			System.arraycopy(ii.sums, last, carry[0], 0, w);
+			System.arraycopy(ii.squaredSums, last, carry[1], 0, w);
+			if (previous != null) {
+				final long[][] p = (long[][]) previous;
+				for (int x = 0; x < w; x++) {
+					carry[0][x] += p[0][x];
+					carry[1][x] += p[1][x];
+				}
+			}
+			return carry;
+		}
+		final double[][] carry = new double[2][w];
+		System.arraycopy(ii.doubleSums, last, carry[0], 0, w);
+		System.arraycopy(ii.doubleSquaredSums, last, carry[1], 0, w);
+		if (previous != null) {
+			final double[][] p = (double[][]) previous;
+			for (int x = 0; x < w; x++) {
+				carry[0][x] += p[0][x];
+				carry[1][x] += p[1][x];
+			}
+		}
+		return carry;
+	}
+
+	// adds the carry to all rows of a strip
+	private static void addCarry(IntegralImage ii, int band, int y0, int y1, Object carry) {
+		final int w = ii.width;
+		if (ii.isIntegral()) {
+			final long[][] c = (long[][]) carry;
+			for (int y = y0; y < y1; y++) {
+				final int i = ii.index(1, y + 1, band);
+				for (int x = 0; x < w; x++) {
+					ii.sums[i + x] += c[0][x];
+					ii.squaredSums[i + x] += c[1][x];
+				}
+			}
+		} else {
+			final double[][] c = (double[][]) carry;
+			for (int y = y0; y < y1; y++) {
+				final int i = ii.index(1, y + 1, band);
+				for (int x = 0; x < w; x++) {
+					ii.doubleSums[i + x] += c[0][x];
+					ii.doubleSquaredSums[i + x] += c[1][x];
+				}
+			}
+		}
+	}
+
+}
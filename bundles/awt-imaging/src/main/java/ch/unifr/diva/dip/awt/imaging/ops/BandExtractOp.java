@@ -1,8 +1,9 @@
 package ch.unifr.diva.dip.awt.imaging.ops;
 
 import ch.unifr.diva.dip.api.datastructures.BufferedMatrix;
-import ch.unifr.diva.dip.awt.imaging.scanners.Location;
-import ch.unifr.diva.dip.awt.imaging.scanners.RasterScanner;
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpan;
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpanScanner;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.WritableRaster;
@@ -57,9 +58,12 @@ public class BandExtractOp extends NullOp implements SimpleTileParallelizable {
 		final WritableRaster srcRaster = src.getRaster();
 		final WritableRaster dstRaster = dst.getRaster();
 
-		for (Location pt : new RasterScanner(src, false)) {
-			final int sample = srcRaster.getSample(pt.col, pt.row, this.band);
-			dstRaster.setSample(pt.col, pt.row, 0, sample);
+		final Rectangle region = new Rectangle(src.getWidth(), src.getHeight());
+		final RowSpanScanner dstSpans = new RowSpanScanner(dstRaster, region, 0, 1);
+		final int[] samples = new int[region.width];
+
+		for (RowSpan span : new RowSpanScanner(srcRaster, region, this.band, 1)) {
+			dstSpans.next().setSamples(span.getSamples(samples));
 		}
 
 		return dst;
@@ -69,7 +73,7 @@ public class BandExtractOp extends NullOp implements SimpleTileParallelizable {
 	public BufferedImage createCompatibleDestImage(BufferedImage src, ColorModel dstCM) {
 		if (src instanceof BufferedMatrix) {
 			final BufferedMatrix mat = (BufferedMatrix) src;
-			return new BufferedMatrix(
+			return BufferedMatrix.createBufferedMatrix(
 					mat.getWidth(),
 					mat.getHeight(),
 					1,
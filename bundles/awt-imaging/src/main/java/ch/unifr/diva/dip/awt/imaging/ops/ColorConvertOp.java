@@ -3,8 +3,8 @@ package ch.unifr.diva.dip.awt.imaging.ops;
 import ch.unifr.diva.dip.api.datastructures.BufferedMatrix;
 import ch.unifr.diva.dip.awt.imaging.ImagingUtils;
 import ch.unifr.diva.dip.awt.imaging.SimpleColorModel;
-import ch.unifr.diva.dip.awt.imaging.scanners.Location;
-import ch.unifr.diva.dip.awt.imaging.scanners.RasterScanner;
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpanScanner;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.WritableRaster;
 
@@ -33,18 +33,50 @@ public class ColorConvertOp extends NullOp implements SimpleTileParallelizable {
 			dst = createCompatibleDestImage(src, dstCm);
 		}
 
+		filterRegion(src, dst, new Rectangle(src.getWidth(), src.getHeight()));
+
+		return dst;
+	}
+
+	@Override
+	public void filterRegion(BufferedImage src, BufferedImage dst, Rectangle region) {
 		final WritableRaster srcRaster = src.getRaster();
 		final WritableRaster dstRaster = dst.getRaster();
 
-		final float[] srcPx = new float[ImagingUtils.numBands(src)];
-		final float[] dstPx = new float[ImagingUtils.numBands(dst)];
+		final int srcBands = ImagingUtils.numBands(src);
+		final int dstBands = ImagingUtils.numBands(dst);
+		final float[] srcPx = new float[srcBands];
+		final float[] dstPx = new float[dstBands];
 
-		for (Location pt : new RasterScanner(src, false)) {
-			srcRaster.getPixel(pt.col, pt.row, srcPx);
-			dstRaster.setPixel(pt.col, pt.row, srcCm.convertTo(dstCm, srcPx, dstPx));
-		}
+		// pixels are converted as a whole, so spans of all bands of a row are
+		// gathered (and scattered) through pixel-interleaved row buffers
+		final RowSpanScanner dstSpans = new RowSpanScanner(dstRaster, region, 0, dstBands);
+		final RowSpanScanner srcSpans = new RowSpanScanner(srcRaster, region, 0, srcBands);
+		final float[] samples = new float[region.width];
+		final float[] srcRow = new float[region.width * srcBands];
+		final float[] dstRow = new float[region.width * dstBands];
 
-		return dst;
+		for (int y = 0; y < region.height; y++) {
+			for (int b = 0; b < srcBands; b++) {
+				srcSpans.next().getSamples(samples);
+				for (int i = 0, j = b; i < region.width; i++, j += srcBands) {
+					srcRow[j] = samples[i];
+				}
+			}
+
+			for (int i = 0; i < region.width; i++) {
+				System.arraycopy(srcRow, i * srcBands, srcPx, 0, srcBands);
+				srcCm.convertTo(dstCm, srcPx, dstPx);
+				System.arraycopy(dstPx, 0, dstRow, i * dstBands, dstBands);
+			}
+
+			for (int b = 0; b < dstBands; b++) {
+				for (int i = 0, j = b; i < region.width; i++, j += dstBands) {
+					samples[i] = dstRow[j];
+				}
+				dstSpans.next().setSamples(samples);
+			}
+		}
 	}
 
 	/**
@@ -56,7 +88,13 @@ public class ColorConvertOp extends NullOp implements SimpleTileParallelizable {
 	 */
 	public BufferedImage createCompatibleDestImage(BufferedImage src, SimpleColorModel cm) {
 		if (cm.dataType().type().equals(BufferedMatrix.class)) {
-			return new BufferedMatrix(src.getWidth(), src.getHeight(), cm.numBands());
+			return BufferedMatrix.createBufferedMatrix(
+					src.getWidth(),
+					src.getHeight(),
+					cm.numBands(),
+					BufferedMatrix.DataType.FLOAT,
+					BufferedMatrix.Interleave.BSQ
+			);
 		}
 		return new BufferedImage(src.getWidth(), src.getHeight(), getCompatibleBufferdImageType(cm));
 	}
@@ -85,6 +85,7 @@ public class ConcurrentTileOp<T extends BufferedImageOp & TileParallelizable<S>,
 			dst = this.op.createCompatibleDestImage(src, src.getColorModel());
 		}
 
+		this.op.prepare(src, dst);
 		try {
 			if (this.threadPool == null) {
 				runOnThreads(src, dst);
@@ -94,6 +95,8 @@ public class ConcurrentTileOp<T extends BufferedImageOp & TileParallelizable<S>,
 		} catch (InterruptedException ex) {
 			Thread.currentThread().interrupt();
 			return null;
+		} finally {
+			this.op.release(src, dst);
 		}
 
 		return dst;
@@ -149,9 +152,7 @@ public class ConcurrentTileOp<T extends BufferedImageOp & TileParallelizable<S>,
 	public static <T extends TileParallelizable<S>, S extends ImageTiler<? extends Rectangle>> void processTiles(T op, S tiler, BufferedImage src, BufferedImage dst) {
 		Rectangle tile;
 		while ((tile = tiler.next()) != null) {
-			final BufferedImage srcTile = src.getSubimage(tile.x, tile.y, tile.width, tile.height);
-			final BufferedImage dstTile = dst.getSubimage(tile.x, tile.y, tile.width, tile.height);
-			op.filter(srcTile, dstTile);
+			op.processTile(tile, src, dst);
 		}
 	}
 
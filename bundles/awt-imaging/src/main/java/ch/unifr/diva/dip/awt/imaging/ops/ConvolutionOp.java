@@ -3,6 +3,7 @@ package ch.unifr.diva.dip.awt.imaging.ops;
 import ch.unifr.diva.dip.api.datastructures.DoubleMatrix;
 import ch.unifr.diva.dip.api.datastructures.Kernel;
 import ch.unifr.diva.dip.api.datastructures.Matrix;
+import ch.unifr.diva.dip.awt.imaging.DirectRaster;
 import ch.unifr.diva.dip.awt.imaging.ImagingUtils;
 import ch.unifr.diva.dip.awt.imaging.padders.ImagePadder;
 import ch.unifr.diva.dip.awt.imaging.scanners.Location;
@@ -11,18 +12,36 @@ import ch.unifr.diva.dip.awt.imaging.scanners.RasterScanner;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.WritableRaster;
+import java.util.Arrays;
 
 /**
  * Convolution filter.
  *
+ * <p>
+ * By default the convolution is computed by direct access to the arrays
+ * backing the source (and destination) raster, if supported (see
+ * {@code DirectRaster}). The direct access mode convolves the inner region of
+ * the image (or tile), where the kernel never reaches beyond the source image,
+ * row by row with cached, converted source rows, and only falls back to the
+ * image padder for the samples in the (padded) border band. Images that can't
+ * be accessed directly (e.g. {@code TYPE_BYTE_BINARY}) are convolved sample by
+ * sample, with the image padder for all samples.
+ *
+ * <p>
+ * Separable kernels (given by a row and a column vector) are convolved in two
+ * passes, but row by row: each row of the column pass is kept in a small
+ * buffer (sized to the width of the image or tile plus the halo of the row
+ * vector) and immediately convolved with the row vector. Hence no intermediate
+ * image is needed, rescaling is only applied to the final result, and the
+ * separable convolution is safe to be run in parallel with padded tiles.
+ *
  * @param <T> class of the matrix backing the used kernel.
  */
-public class ConvolutionOp<T extends Matrix<T>> extends NullOp implements PaddedTileParallelizable {
+public class ConvolutionOp<T extends Matrix<T>> extends NullOp implements PaddedTileParallelizable, CostHint {
 
 	private final ImagePadder padder;
 	private final Kernel<T> kernel; // *the* kernel, or just the row vector if separable
 	private final Kernel<T> columnVector; // ...or, null if not separable
-	private final ConvolutionOp<T>[] convolutionPasses; // 1st and 2nd pass, null if not separable
 	private final boolean isDoublePrecision;
 	private final boolean[] abs;
 	private final double[] gain;
@@ -30,45 +49,16 @@ public class ConvolutionOp<T extends Matrix<T>> extends NullOp implements Padded
 	private final double[] min;
 	private final double[] max;
 	private final SamplePrecision precision;
-
-	/**
-	 * Creates the single-pass convolution filter for a double-pass convolution
-	 * with a separable kernel.
-	 *
-	 * @param kernel the row or column vector.
-	 * @param op the parent double-pass convolution filter.
-	 */
-	private ConvolutionOp(Kernel<T> kernel, ConvolutionOp<T> op) {
-		this.padder = op.padder;
-		this.kernel = kernel;
-		this.isDoublePrecision = this.kernel.matrix() instanceof DoubleMatrix;
-		this.columnVector = null;
-		this.convolutionPasses = null;
-
-		this.abs = op.abs;
-		this.gain = op.gain;
-		this.bias = op.bias;
-		this.min = op.min;
-		this.max = op.max;
-		this.precision = op.precision;
-	}
+	private boolean directAccess;
 
 	/**
 	 * Creates a new convolution filter.
 	 *
-	 * <p>
-	 * <em>Warning:</em> while this {@code BufferedImageOp} implements the
-	 * {@code PaddedTileParallelizable} interface, errors will be produced if
-	 * using a separable kernel (i.e. a row and a column vector) that is run
-	 * concurrently with a tile approach. <br />
-	 *
-	 * To work around this limitation just do the two passes (in parallel)
-	 * manually one after the other.
-	 *
 	 * @param rowVector the kernel (single-pass convolution), or the row vector
-	 * for double-pass convolution with a separable kernel.
+	 * (a single row) for double-pass convolution with a separable kernel.
 	 * @param columnVector {@code null} (single-pass convolution), or the column
-	 * vector for double-pass convolution with a separable kernel.
+	 * vector (a single column) for double-pass convolution with a separable
+	 * kernel.
 	 * @param padder an image padder for edge handling.
 	 * @param abs take the absolute value of the sample first (per band). Can be
 	 * {@code null}.
@@ -77,8 +67,9 @@ public class ConvolutionOp<T extends Matrix<T>> extends NullOp implements Padded
 	 * @param min minimum value per band used for clamping.
 	 * @param max maximum value per band used for clamping.
 	 * @param precision desired output sample precision.
+	 * @throws IllegalArgumentException if the vectors of a separable kernel
+	 * aren't a row and a column vector.
 	 */
-	@SuppressWarnings({"rawtypes", "unchecked"})
 	public ConvolutionOp(Kernel<T> rowVector, Kernel<T> columnVector, ImagePadder padder,
 			boolean[] abs, double[] gain, double[] bias, double[] min, double[] max, SamplePrecision precision) {
 		this.padder = padder;
@@ -86,12 +77,12 @@ public class ConvolutionOp<T extends Matrix<T>> extends NullOp implements Padded
 		this.isDoublePrecision = this.kernel.matrix() instanceof DoubleMatrix;
 
 		this.columnVector = columnVector;
-		if (this.columnVector == null) {
-			this.convolutionPasses = null;
-		} else {
-			this.convolutionPasses = new ConvolutionOp[2];
-			this.convolutionPasses[0] = new ConvolutionOp<>(this.columnVector, this);
-			this.convolutionPasses[1] = new ConvolutionOp<>(this.kernel, this);
+		if (this.columnVector != null) {
+			if (this.kernel.height() != 1 || this.columnVector.width() != 1) {
+				throw new IllegalArgumentException(
+						"a separable kernel needs a row and a column vector"
+				);
+			}
 		}
 
 		this.abs = abs;
@@ -100,6 +91,30 @@ public class ConvolutionOp<T extends Matrix<T>> extends NullOp implements Padded
 		this.min = min;
 		this.max = max;
 		this.precision = precision;
+		this.directAccess = true;
+	}
+
+	/**
+	 * Enables or disables the direct access mode. The direct access mode is
+	 * enabled by default, and only used with supported images anyways, so
+	 * there is little reason to disable it (other than benchmarking).
+	 *
+	 * @param enable {@code true} to enable the direct access mode,
+	 * {@code false} to always convolve sample by sample (or to read and write
+	 * rows through the raster with a separable kernel).
+	 */
+	public void setDirectAccess(boolean enable) {
+		this.directAccess = enable;
+	}
+
+	/**
+	 * Checks whether the direct access mode is enabled.
+	 *
+	 * @return {@code true} if the direct access mode is enabled, {@code false}
+	 * otherwise.
+	 */
+	public boolean isDirectAccess() {
+		return this.directAccess;
 	}
 
 	private float convolveAtFloat(BufferedImage src, Location pt) {
@@ -160,6 +175,24 @@ public class ConvolutionOp<T extends Matrix<T>> extends NullOp implements Padded
 		return abs[band] ? Math.abs(value) : value;
 	}
 
+	@Override
+	public CostClass getCostClass() {
+		final int taps = (this.columnVector == null)
+				? this.kernel.width() * this.kernel.height()
+				: this.kernel.width() + this.columnVector.height();
+		return (taps > 25) ? CostClass.HIGH : CostClass.MEDIUM;
+	}
+
+	@Override
+	public int getKernelRadius() {
+		return Math.max(
+				this.kernel.width() / 2,
+				(this.columnVector == null)
+						? this.kernel.height() / 2
+						: this.columnVector.height() / 2
+		);
+	}
+
 	@Override
 	public PaddedImageTiler getImageTiler(BufferedImage src, BufferedImage dst, int width, int height) {
 		return new PaddedImageTiler(
@@ -167,7 +200,9 @@ public class ConvolutionOp<T extends Matrix<T>> extends NullOp implements Padded
 				width,
 				height,
 				this.kernel.width() / 2,
-				this.kernel.height() / 2
+				(this.columnVector == null)
+						? this.kernel.height() / 2
+						: this.columnVector.height() / 2
 		);
 	}
 
@@ -182,23 +217,28 @@ public class ConvolutionOp<T extends Matrix<T>> extends NullOp implements Padded
 			dst = createCompatibleDestImage(src, this.precision);
 		}
 
-		// separable double-pass convolution?
-		// BUG/FEAUTRE: this produces errors if run in parallel (with padded-tiles)
+		final WritableRaster dstRaster = dst.getRaster();
+		final int numBands = Math.min(src.getRaster().getNumBands(), dstRaster.getNumBands());
+
+		// separable double-pass convolution
 		if (this.columnVector != null) {
-			return this.convolutionPasses[1].filter(
-					this.convolutionPasses[0].filter(
-							src,
-							null,
-							writableRegion
-					),
-					dst,
-					writableRegion
-			);
+			if (this.isDoublePrecision) {
+				filterSeparableDouble(src, dstRaster, writableRegion, numBands);
+			} else {
+				filterSeparableFloat(src, dstRaster, writableRegion, numBands);
+			}
+			return dst;
 		}
 
 		// non-separable/single-pass convolution
-		final WritableRaster dstRaster = dst.getRaster();
-		final int numBands = Math.min(src.getRaster().getNumBands(), dstRaster.getNumBands());
+		if (this.directAccess && DirectRaster.isSupported(src.getRaster())) {
+			if (this.isDoublePrecision) {
+				filterDirectDouble(src, dstRaster, writableRegion, numBands);
+			} else {
+				filterDirectFloat(src, dstRaster, writableRegion, numBands);
+			}
+			return dst;
+		}
 
 		// things get a bit messy here to not have a thousand conditionals
 		// withing the main loop, so:
@@ -294,4 +334,483 @@ public class ConvolutionOp<T extends Matrix<T>> extends NullOp implements Padded
 		return dst;
 	}
 
+	/*
+	 * Direct access mode
+	 * ------------------
+	 * The writable region is split into an inner region, where the kernel
+	 * never reaches beyond the source image, and the border band around it.
+	 * The inner region is convolved row by row: the needed source rows are
+	 * converted once into a ring buffer of kernel-height lines, and each kernel
+	 * coefficient is then multiplied with a (shifted) line and added to an
+	 * accumulator row. Kernel coefficients are added in the same order as in
+	 * the sample by sample mode (row-major), so both modes produce identical
+	 * results. The border band is convolved sample by sample with the image
+	 * padder, and nothing gets allocated within the loops.
+	 */
+	private Rectangle getInnerRegion(BufferedImage src, Rectangle writableRegion) {
+		final Rectangle kb = this.kernel.bounds();
+		final int x0 = Math.max(writableRegion.x, kb.x + kb.width - 1);
+		final int x1 = Math.min(writableRegion.x + writableRegion.width, src.getWidth() + kb.x);
+		final int y0 = Math.max(writableRegion.y, kb.y + kb.height - 1);
+		final int y1 = Math.min(writableRegion.y + writableRegion.height, src.getHeight() + kb.y);
+		if (x0 >= x1 || y0 >= y1) {
+			return new Rectangle(writableRegion.x, writableRegion.y, 0, 0);
+		}
+		return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+	}
+
+	private boolean isInside(Rectangle inner, int col, int row) {
+		return col >= inner.x && col < inner.x + inner.width
+				&& row >= inner.y && row < inner.y + inner.height;
+	}
+
+	private float[][] getCoefficientsFloat() {
+		final Rectangle kb = this.kernel.bounds();
+		final float[][] k = new float[kb.height][kb.width];
+		for (int r = 0; r < kb.height; r++) {
+			for (int c = 0; c < kb.width; c++) {
+				k[r][c] = this.kernel.getValueFloat(kb.x + c, kb.y + r);
+			}
+		}
+		return k;
+	}
+
+	private double[][] getCoefficientsDouble() {
+		final Rectangle kb = this.kernel.bounds();
+		final double[][] k = new double[kb.height][kb.width];
+		for (int r = 0; r < kb.height; r++) {
+			for (int c = 0; c < kb.width; c++) {
+				k[r][c] = this.kernel.getValueDouble(kb.x + c, kb.y + r);
+			}
+		}
+		return k;
+	}
+
+	private float convolveBorderFloat(BufferedImage src, float[][] k, int col, int row, int band) {
+		final Rectangle kb = this.kernel.bounds();
+		float sum = 0;
+		for (int r = 0; r < kb.height; r++) {
+			final float[] kr = k[r];
+			final int y = row - kb.y - r;
+			for (int c = 0; c < kb.width; c++) {
+				sum += kr[c] * this.padder.getSampleFloat(src, col - kb.x - c, y, band);
+			}
+		}
+		return sum;
+	}
+
+	private double convolveBorderDouble(BufferedImage src, double[][] k, int col, int row, int band) {
+		final Rectangle kb = this.kernel.bounds();
+		double sum = 0;
+		for (int r = 0; r < kb.height; r++) {
+			final double[] kr = k[r];
+			final int y = row - kb.y - r;
+			for (int c = 0; c < kb.width; c++) {
+				sum += kr[c] * this.padder.getSampleDouble(src, col - kb.x - c, y, band);
+			}
+		}
+		return sum;
+	}
+
+	private double postProcess(double value, int band, boolean rescale, boolean abs) {
+		if (abs) {
+			value = abs(band, value);
+		}
+		if (rescale) {
+			return ImagingUtils.clamp(gain[band] * value + bias[band], min[band], max[band]);
+		}
+		return value;
+	}
+
+	private void filterDirectFloat(BufferedImage src, WritableRaster dstRaster, Rectangle writableRegion, int numBands) {
+		final DirectRaster in = new DirectRaster(src.getRaster());
+		final DirectRaster out = DirectRaster.isSupported(dstRaster)
+				? new DirectRaster(dstRaster)
+				: null;
+		final boolean rescale = doRescale();
+		final boolean takeAbs = takeAbsValue();
+		final Rectangle kb = this.kernel.bounds();
+		final float[][] k = getCoefficientsFloat();
+		final Rectangle inner = getInnerRegion(src, writableRegion);
+		final int n = inner.width;
+
+		// border band, sample by sample
+		for (int b = 0; b < numBands; b++) {
+			for (int y = writableRegion.y; y < writableRegion.y + writableRegion.height; y++) {
+				for (int x = writableRegion.x; x < writableRegion.x + writableRegion.width; x++) {
+					if (isInside(inner, x, y)) {
+						// skip the inner region
+						x = inner.x + inner.width - 1;
+						continue;
+					}
+					final float v = convolveBorderFloat(src, k, x, y, b);
+					if (rescale) {
+						dstRaster.setSample(x, y, b, postProcess(v, b, true, takeAbs));
+					} else {
+						dstRaster.setSample(x, y, b, takeAbs && abs[b] ? Math.abs(v) : v);
+					}
+				}
+			}
+		}
+
+		if (n < 1 || inner.height < 1) {
+			return;
+		}
+
+		// inner region, row by row
+		final int lineLength = n + kb.width - 1;
+		final int x0 = inner.x - kb.x - kb.width + 1; // first source column
+		final float[][] lines = new float[kb.height][lineLength];
+		final float[] acc = new float[n];
+		final double[] rescaled = rescale ? new double[n] : null;
+
+		for (int b = 0; b < numBands; b++) {
+			int loaded = Integer.MIN_VALUE;
+			for (int y = inner.y; y < inner.y + inner.height; y++) {
+				// source rows y - kb.y - kb.height + 1 to y - kb.y
+				final int last = y - kb.y;
+				for (int r = Math.max(loaded + 1, last - kb.height + 1); r <= last; r++) {
+					in.getSamples(x0, r, lineLength, b, lines[r % kb.height], 0);
+				}
+				loaded = last;
+
+				Arrays.fill(acc, 0);
+				for (int r = 0; r < kb.height; r++) {
+					final float[] kr = k[r];
+					final float[] line = lines[(last - r) % kb.height];
+					for (int c = 0; c < kb.width; c++) {
+						final float kc = kr[c];
+						final int shift = kb.width - 1 - c;
+						for (int i = 0; i < n; i++) {
+							acc[i] += kc * line[i + shift];
+						}
+					}
+				}
+
+				if (rescale) {
+					for (int i = 0; i < n; i++) {
+						rescaled[i] = postProcess(acc[i], b, true, takeAbs);
+					}
+					if (out != null) {
+						out.setSamples(inner.x, y, n, b, rescaled, 0);
+					} else {
+						dstRaster.setSamples(inner.x, y, n, 1, b, rescaled);
+					}
+				} else {
+					if (takeAbs && abs[b]) {
+						for (int i = 0; i < n; i++) {
+							acc[i] = Math.abs(acc[i]);
+						}
+					}
+					if (out != null) {
+						out.setSamples(inner.x, y, n, b, acc, 0);
+					} else {
+						dstRaster.setSamples(inner.x, y, n, 1, b, acc);
+					}
+				}
+			}
+		}
+	}
+
+	private void filterDirectDouble(BufferedImage src, WritableRaster dstRaster, Rectangle writableRegion, int numBands) {
+		final DirectRaster in = new DirectRaster(src.getRaster());
+		final DirectRaster out = DirectRaster.isSupported(dstRaster)
+				? new DirectRaster(dstRaster)
+				: null;
+		final boolean rescale = doRescale();
+		final boolean takeAbs = takeAbsValue();
+		final Rectangle kb = this.kernel.bounds();
+		final double[][] k = getCoefficientsDouble();
+		final Rectangle inner = getInnerRegion(src, writableRegion);
+		final int n = inner.width;
+
+		// border band, sample by sample
+		for (int b = 0; b < numBands; b++) {
+			for (int y = writableRegion.y; y < writableRegion.y + writableRegion.height; y++) {
+				for (int x = writableRegion.x; x < writableRegion.x + writableRegion.width; x++) {
+					if (isInside(inner, x, y)) {
+						// skip the inner region
+						x = inner.x + inner.width - 1;
+						continue;
+					}
+					dstRaster.setSample(x, y, b, postProcess(
+							convolveBorderDouble(src, k, x, y, b),
+							b, rescale, takeAbs
+					));
+				}
+			}
+		}
+
+		if (n < 1 || inner.height < 1) {
+			return;
+		}
+
+		// inner region, row by row
+		final int lineLength = n + kb.width - 1;
+		final int x0 = inner.x - kb.x - kb.width + 1; // first source column
+		final double[][] lines = new double[kb.height][lineLength];
+		final double[] acc = new double[n];
+
+		for (int b = 0; b < numBands; b++) {
+			int loaded = Integer.MIN_VALUE;
+			for (int y = inner.y; y < inner.y + inner.height; y++) {
+				// source rows y - kb.y - kb.height + 1 to y - kb.y
+				final int last = y - kb.y;
+				for (int r = Math.max(loaded + 1, last - kb.height + 1); r <= last; r++) {
+					in.getSamples(x0, r, lineLength, b, lines[r % kb.height], 0);
+				}
+				loaded = last;
+
+				Arrays.fill(acc, 0);
+				for (int r = 0; r < kb.height; r++) {
+					final double[] kr = k[r];
+					final double[] line = lines[(last - r) % kb.height];
+					for (int c = 0; c < kb.width; c++) {
+						final double kc = kr[c];
+						final int shift = kb.width - 1 - c;
+						for (int i = 0; i < n; i++) {
+							acc[i] += kc * line[i + shift];
+						}
+					}
+				}
+
+				if (rescale || takeAbs) {
+					for (int i = 0; i < n; i++) {
+						acc[i] = postProcess(acc[i], b, rescale, takeAbs);
+					}
+				}
+				if (out != null) {
+					out.setSamples(inner.x, y, n, b, acc, 0);
+				} else {
+					dstRaster.setSamples(inner.x, y, n, 1, b, acc);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Separable convolution
+	 * ---------------------
+	 * Source rows are converted (with padding) into a ring buffer of
+	 * column-vector-height lines, spanning the writable region plus the halo
+	 * of the row vector. Each row of the column pass is accumulated from these
+	 * lines, and then right away convolved with the row vector. Only the
+	 * source gets padded, the halo of the column pass is computed just like
+	 * any other column (as if the full kernel was applied to the padded
+	 * source).
+	 */
+	private void loadLine(BufferedImage src, DirectRaster in, float[] line, float[] tmp, int x, int row, int band) {
+		final int length = line.length;
+		if (row < 0 || row >= src.getHeight()) {
+			for (int i = 0; i < length; i++) {
+				line[i] = this.padder.getSampleFloat(src, x + i, row, band);
+			}
+			return;
+		}
+
+		final int start = Math.max(0, x);
+		final int end = Math.min(src.getWidth(), x + length);
+		for (int i = 0; i < start - x; i++) {
+			line[i] = this.padder.getSampleFloat(src, x + i, row, band);
+		}
+		if (end > start) {
+			if (in != null) {
+				in.getSamples(start, row, end - start, band, line, start - x);
+			} else {
+				src.getRaster().getSamples(start, row, end - start, 1, band, tmp);
+				System.arraycopy(tmp, 0, line, start - x, end - start);
+			}
+		}
+		for (int i = Math.max(0, end - x); i < length; i++) {
+			line[i] = this.padder.getSampleFloat(src, x + i, row, band);
+		}
+	}
+
+	private void loadLine(BufferedImage src, DirectRaster in, double[] line, double[] tmp, int x, int row, int band) {
+		final int length = line.length;
+		if (row < 0 || row >= src.getHeight()) {
+			for (int i = 0; i < length; i++) {
+				line[i] = this.padder.getSampleDouble(src, x + i, row, band);
+			}
+			return;
+		}
+
+		final int start = Math.max(0, x);
+		final int end = Math.min(src.getWidth(), x + length);
+		for (int i = 0; i < start - x; i++) {
+			line[i] = this.padder.getSampleDouble(src, x + i, row, band);
+		}
+		if (end > start) {
+			if (in != null) {
+				in.getSamples(start, row, end - start, band, line, start - x);
+			} else {
+				src.getRaster().getSamples(start, row, end - start, 1, band, tmp);
+				System.arraycopy(tmp, 0, line, start - x, end - start);
+			}
+		}
+		for (int i = Math.max(0, end - x); i < length; i++) {
+			line[i] = this.padder.getSampleDouble(src, x + i, row, band);
+		}
+	}
+
+	private void filterSeparableFloat(BufferedImage src, WritableRaster dstRaster, Rectangle writableRegion, int numBands) {
+		final int n = writableRegion.width;
+		if (n < 1 || writableRegion.height < 1) {
+			return;
+		}
+
+		final DirectRaster in = (this.directAccess && DirectRaster.isSupported(src.getRaster()))
+				? new DirectRaster(src.getRaster())
+				: null;
+		final DirectRaster out = (this.directAccess && DirectRaster.isSupported(dstRaster))
+				? new DirectRaster(dstRaster)
+				: null;
+		final boolean rescale = doRescale();
+		final boolean takeAbs = takeAbsValue();
+		final Rectangle rb = this.kernel.bounds();
+		final Rectangle cb = this.columnVector.bounds();
+		final float[] rk = new float[rb.width];
+		for (int c = 0; c < rb.width; c++) {
+			rk[c] = this.kernel.getValueFloat(rb.x + c, rb.y);
+		}
+		final float[] ck = new float[cb.height];
+		for (int r = 0; r < cb.height; r++) {
+			ck[r] = this.columnVector.getValueFloat(cb.x, cb.y + r);
+		}
+
+		final int lineLength = n + rb.width - 1;
+		final int x0 = writableRegion.x - rb.x - rb.width + 1; // first source column
+		final float[][] lines = new float[cb.height][lineLength];
+		final float[] tmp = new float[lineLength];
+		final float[] columnPass = new float[lineLength];
+		final float[] acc = new float[n];
+		final double[] rescaled = rescale ? new double[n] : null;
+
+		for (int b = 0; b < numBands; b++) {
+			int loaded = Integer.MIN_VALUE;
+			for (int y = writableRegion.y; y < writableRegion.y + writableRegion.height; y++) {
+				// source rows y - cb.y - cb.height + 1 to y - cb.y
+				final int last = y - cb.y;
+				for (int r = Math.max(loaded + 1, last - cb.height + 1); r <= last; r++) {
+					loadLine(src, in, lines[Math.floorMod(r, cb.height)], tmp, x0, r, b);
+				}
+				loaded = last;
+
+				Arrays.fill(columnPass, 0);
+				for (int r = 0; r < cb.height; r++) {
+					final float kr = ck[r];
+					final float[] line = lines[Math.floorMod(last - r, cb.height)];
+					for (int i = 0; i < lineLength; i++) {
+						columnPass[i] += kr * line[i];
+					}
+				}
+
+				Arrays.fill(acc, 0);
+				for (int c = 0; c < rb.width; c++) {
+					final float kc = rk[c];
+					final int shift = rb.width - 1 - c;
+					for (int i = 0; i < n; i++) {
+						acc[i] += kc * columnPass[i + shift];
+					}
+				}
+
+				if (rescale) {
+					for (int i = 0; i < n; i++) {
+						rescaled[i] = postProcess(acc[i], b, true, takeAbs);
+					}
+					if (out != null) {
+						out.setSamples(writableRegion.x, y, n, b, rescaled, 0);
+					} else {
+						dstRaster.setSamples(writableRegion.x, y, n, 1, b, rescaled);
+					}
+				} else {
+					if (takeAbs && abs[b]) {
+						for (int i = 0; i < n; i++) {
+							acc[i] = Math.abs(acc[i]);
+						}
+					}
+					if (out != null) {
+						out.setSamples(writableRegion.x, y, n, b, acc, 0);
+					} else {
+						dstRaster.setSamples(writableRegion.x, y, n, 1, b, acc);
+					}
+				}
+			}
+		}
+	}
+
+	private void filterSeparableDouble(BufferedImage src, WritableRaster dstRaster, Rectangle writableRegion, int numBands) {
+		final int n = writableRegion.width;
+		if (n < 1 || writableRegion.height < 1) {
+			return;
+		}
+
+		final DirectRaster in = (this.directAccess && DirectRaster.isSupported(src.getRaster()))
+				? new DirectRaster(src.getRaster())
+				: null;
+		final DirectRaster out = (this.directAccess && DirectRaster.isSupported(dstRaster))
+				? new DirectRaster(dstRaster)
+				: null;
+		final boolean rescale = doRescale();
+		final boolean takeAbs = takeAbsValue();
+		final Rectangle rb = this.kernel.bounds();
+		final Rectangle cb = this.columnVector.bounds();
+		final double[] rk = new double[rb.width];
+		for (int c = 0; c < rb.width; c++) {
+			rk[c] = this.kernel.getValueDouble(rb.x + c, rb.y);
+		}
+		final double[] ck = new double[cb.height];
+		for (int r = 0; r < cb.height; r++) {
+			ck[r] = this.columnVector.getValueDouble(cb.x, cb.y + r);
+		}
+
+		final int lineLength = n + rb.width - 1;
+		final int x0 = writableRegion.x - rb.x - rb.width + 1; // first source column
+		final double[][] lines = new double[cb.height][lineLength];
+		final double[] tmp = new double[lineLength];
+		final double[] columnPass = new double[lineLength];
+		final double[] acc = new double[n];
+
+		for (int b = 0; b < numBands; b++) {
+			int loaded = Integer.MIN_VALUE;
+			for (int y = writableRegion.y; y < writableRegion.y + writableRegion.height; y++) {
+				// source rows y - cb.y - cb.height + 1 to y - cb.y
+				final int last = y - cb.y;
+				for (int r = Math.max(loaded + 1, last - cb.height + 1); r <= last; r++) {
+					loadLine(src, in, lines[Math.floorMod(r, cb.height)], tmp, x0, r, b);
+				}
+				loaded = last;
+
+				Arrays.fill(columnPass, 0);
+				for (int r = 0; r < cb.height; r++) {
+					final double kr = ck[r];
+					final double[] line = lines[Math.floorMod(last - r, cb.height)];
+					for (int i = 0; i < lineLength; i++) {
+						columnPass[i] += kr * line[i];
+					}
+				}
+
+				Arrays.fill(acc, 0);
+				for (int c = 0; c < rb.width; c++) {
+					final double kc = rk[c];
+					final int shift = rb.width - 1 - c;
+					for (int i = 0; i < n; i++) {
+						acc[i] += kc * columnPass[i + shift];
+					}
+				}
+
+				if (rescale || takeAbs) {
+					for (int i = 0; i < n; i++) {
+						acc[i] = postProcess(acc[i], b, rescale, takeAbs);
+					}
+				}
+				if (out != null) {
+					out.setSamples(writableRegion.x, y, n, b, acc, 0);
+				} else {
+					dstRaster.setSamples(writableRegion.x, y, n, 1, b, acc);
+				}
+			}
+		}
+	}
+
 }
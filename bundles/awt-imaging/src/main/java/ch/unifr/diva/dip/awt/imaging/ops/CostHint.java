@@ -0,0 +1,63 @@
+package ch.unifr.diva.dip.awt.imaging.ops;
+
+/**
+ * Cost hints of a {@code BufferedImageOp}. Used by the {@code TileScheduler}
+ * to choose the tile geometry, and whether to run an op in parallel at all.
+ * Ops that don't implement this interface are assumed to be of
+ * {@code MEDIUM} cost per pixel, with a kernel radius of zero.
+ */
+public interface CostHint {
+
+	/**
+	 * Per-pixel cost classes.
+	 */
+	public enum CostClass {
+
+		/**
+		 * A few operations per sample, e.g. point operations applied by a
+		 * lookup table.
+		 */
+		LOW(2),
+		/**
+		 * Some dozen operations per sample, e.g. small kernels, or simple
+		 * color conversions.
+		 */
+		MEDIUM(4),
+		/**
+		 * Many operations per sample, e.g. large kernels, rank filters, or
+		 * interpolation.
+		 */
+		HIGH(8);
+
+		/**
+		 * Number of tiles per worker. The more expensive (and uneven) the work
+		 * per tile, the more (and smaller) tiles are needed to balance the
+		 * load among the workers.
+		 */
+		public final int tilesPerWorker;
+
+		CostClass(int tilesPerWorker) {
+			this.tilesPerWorker = tilesPerWorker;
+		}
+	}
+
+	/**
+	 * Returns the per-pixel cost class.
+	 *
+	 * @return the per-pixel cost class.
+	 */
+	default CostClass getCostClass() {
+		return CostClass.MEDIUM;
+	}
+
+	/**
+	 * Returns the kernel radius, i.e. the number of pixels read around each
+	 * pixel of a tile (e.g. the padding of a {@code PaddedImageTiler}).
+	 *
+	 * @return the kernel radius.
+	 */
+	default int getKernelRadius() {
+		return 0;
+	}
+
+}
@@ -22,7 +22,7 @@ import java.awt.image.WritableRaster;
  *
  * @param <M> class of the inverse mapper.
  */
-public class GeometricTransformOp<M extends InverseMapper> extends NullOp implements InverseMappedTileParallelizable {
+public class GeometricTransformOp<M extends InverseMapper> extends NullOp implements InverseMappedTileParallelizable, CostHint {
 
 	protected final static double PIXEL_SHIFT = -0.5;
 
@@ -76,6 +76,11 @@ public class GeometricTransformOp<M extends InverseMapper> extends NullOp implem
 		return min != null && max != null;
 	}
 
+	@Override
+	public CostClass getCostClass() {
+		return CostClass.HIGH;
+	}
+
 	@Override
 	public BufferedImage createCompatibleDestImage(BufferedImage src, ColorModel dstCM) {
 		return createCompatibleDestImage(
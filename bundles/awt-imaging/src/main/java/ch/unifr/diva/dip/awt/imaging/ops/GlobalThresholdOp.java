@@ -1,19 +1,23 @@
 package ch.unifr.diva.dip.awt.imaging.ops;
 
 import ch.unifr.diva.dip.awt.imaging.features.Histogram;
-import ch.unifr.diva.dip.awt.imaging.scanners.Location;
-import ch.unifr.diva.dip.awt.imaging.scanners.RasterScanner;
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpan;
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpanScanner;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.WritableRaster;
 
 /**
  * Global threshold filter. This filter operates on a single band in the source
- * image.
+ * image. Images with integral samples of at most 16 bits are thresholded by a
+ * lookup table.
  */
-public class GlobalThresholdOp extends NullOp implements SimpleTileParallelizable {
+public class GlobalThresholdOp extends NullOp implements SimpleTileParallelizable, PointOp {
 
 	private int band;
 	private int threshold;
+	private boolean tableLookup;
+	private volatile SampleLookupTable lookupTable;
 
 	/**
 	 * Creates a new, global threshold filter.
@@ -30,6 +34,7 @@ public class GlobalThresholdOp extends NullOp implements SimpleTileParallelizabl
 	public GlobalThresholdOp(int band) {
 		setBand(band);
 		setThreshold(127);
+		this.tableLookup = true;
 	}
 
 	/**
@@ -39,6 +44,7 @@ public class GlobalThresholdOp extends NullOp implements SimpleTileParallelizabl
 	 */
 	public final void setBand(int band) {
 		this.band = band;
+		this.lookupTable = null;
 	}
 
 	/**
@@ -57,6 +63,7 @@ public class GlobalThresholdOp extends NullOp implements SimpleTileParallelizabl
 	 */
 	public final void setThreshold(int threshold) {
 		this.threshold = threshold;
+		this.lookupTable = null;
 	}
 
 	/**
@@ -68,6 +75,28 @@ public class GlobalThresholdOp extends NullOp implements SimpleTileParallelizabl
 		return this.threshold;
 	}
 
+	/**
+	 * Enables or disables thresholding by a lookup table. Enabled by default.
+	 * Samples are thresholded one by one if disabled, or if the samples of the
+	 * source image can't be looked up.
+	 *
+	 * @param tableLookup {@code true} to threshold by a lookup table,
+	 * {@code false} otherwise.
+	 */
+	public void setTableLookup(boolean tableLookup) {
+		this.tableLookup = tableLookup;
+	}
+
+	/**
+	 * Checks whether thresholding by a lookup table is enabled.
+	 *
+	 * @return {@code true} if thresholding by a lookup table is enabled,
+	 * {@code false} otherwise.
+	 */
+	public boolean isTableLookup() {
+		return this.tableLookup;
+	}
+
 	/**
 	 * Creates a compatible, binary destination image.
 	 *
@@ -84,20 +113,51 @@ public class GlobalThresholdOp extends NullOp implements SimpleTileParallelizabl
 			dst = createBinaryDestImage(src);
 		}
 
+		filterRegion(src, dst, new Rectangle(src.getWidth(), src.getHeight()));
+
+		return dst;
+	}
+
+	@Override
+	public void filterRegion(BufferedImage src, BufferedImage dst, Rectangle region) {
 		final WritableRaster srcRaster = src.getRaster();
 		final WritableRaster dstRaster = dst.getRaster();
+		final SampleLookupTable table = this.tableLookup ? getLookupTable(src) : null;
+		if (table != null) {
+			table.apply(srcRaster, dstRaster, region);
+			return;
+		}
 
-		for (Location pt : new RasterScanner(src, false)) {
-			final int sample = srcRaster.getSample(pt.col, pt.row, this.band);
-			dstRaster.setSample(
-					pt.col,
-					pt.row,
-					0,
-					(sample > this.threshold) ? 1 : 0
-			);
+		final RowSpanScanner dstSpans = new RowSpanScanner(dstRaster, region, 0, 1);
+		final int[] samples = new int[region.width];
+
+		for (RowSpan span : new RowSpanScanner(srcRaster, region, this.band, 1)) {
+			span.getSamples(samples);
+			for (int i = 0; i < samples.length; i++) {
+				samples[i] = (samples[i] > this.threshold) ? 1 : 0;
+			}
+			dstSpans.next().setSamples(samples);
 		}
+	}
 
-		return dst;
+	@Override
+	public SampleLookupTable getLookupTable(BufferedImage src) {
+		final int bits = SampleLookupTable.getBits(src.getRaster());
+		if (bits < 0) {
+			return null;
+		}
+
+		SampleLookupTable table = this.lookupTable;
+		if (table == null || table.getBits() != bits) {
+			final int t = this.threshold;
+			table = new SampleLookupTable(
+					bits,
+					new int[]{this.band},
+					(b, v) -> (v > t) ? 1 : 0
+			);
+			this.lookupTable = table;
+		}
+		return table;
 	}
 
 	/**
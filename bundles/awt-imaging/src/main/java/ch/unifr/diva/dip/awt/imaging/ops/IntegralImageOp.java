@@ -0,0 +1,313 @@
+package ch.unifr.diva.dip.awt.imaging.ops;
+
+import ch.unifr.diva.dip.api.datastructures.IntegralImage;
+import ch.unifr.diva.dip.api.utils.DipThreadPool;
+import ch.unifr.diva.dip.awt.imaging.features.IntegralImages;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.lang.ref.WeakReference;
+
+/**
+ * Base class of local (or windowed) filters based on an integral image. The
+ * mean and variance of the samples in a rectangular window are computed in
+ * constant time, no matter the size of the window, from the integral image
+ * (and the squared integral image) of the source image.
+ *
+ * <p>
+ * The integral image is computed once per source image, in parallel on the
+ * work-stealing pool of the thread pool of the op (if set, see
+ * {@code setThreadPool}) or of the thread pool passed to
+ * {@code prepare(threadPool, src, dst)}, and then shared by all tiles if run
+ * in parallel (see {@code prepare}). Such a computed integral image is
+ * released once all tiles are done, or right after filtering if not run in
+ * parallel. An integral
+ * image computed beforehand (e.g. with
+ * {@code IntegralImages.compute(threadPool, src)}, or by some other processor)
+ * can be handed to the op with {@code setIntegralImage}, and is kept until
+ * replaced.
+ *
+ * <p>
+ * Windows are centered at the current pixel and clipped to the image, i.e.
+ * there is no padding, and windows at the border of the image simply contain
+ * less samples.
+ */
+public abstract class IntegralImageOp extends NullOp implements InverseMappedTileParallelizable {
+
+	protected final int windowWidth;
+	protected final int windowHeight;
+	private DipThreadPool threadPool;
+	private IntegralImage integralImage;
+	private WeakReference<BufferedImage> integralSource;
+	private IntegralImage preparedImage;
+	private BufferedImage preparedSource;
+
+	/**
+	 * Creates a new integral image op.
+	 *
+	 * @param windowWidth width of the window.
+	 * @param windowHeight height of the window.
+	 */
+	public IntegralImageOp(int windowWidth, int windowHeight) {
+		if (windowWidth < 1 || windowHeight < 1) {
+			throw new IllegalArgumentException(
+					"invalid window size: " + windowWidth + "x" + windowHeight
+			);
+		}
+		this.windowWidth = windowWidth;
+		this.windowHeight = windowHeight;
+	}
+
+	/**
+	 * Returns the width of the window.
+	 *
+	 * @return the width of the window.
+	 */
+	public int getWindowWidth() {
+		return this.windowWidth;
+	}
+
+	/**
+	 * Returns the height of the window.
+	 *
+	 * @return the height of the window.
+	 */
+	public int getWindowHeight() {
+		return this.windowHeight;
+	}
+
+	/**
+	 * Sets the thread pool used to compute integral images in parallel.
+	 *
+	 * @param threadPool the thread pool, or {@code null} to compute integral
+	 * images on the calling thread.
+	 */
+	public synchronized void setThreadPool(DipThreadPool threadPool) {
+		this.threadPool = threadPool;
+	}
+
+	/**
+	 * Returns the thread pool used to compute integral images in parallel.
+	 *
+	 * @return the thread pool, or {@code null}.
+	 */
+	public synchronized DipThreadPool getThreadPool() {
+		return this.threadPool;
+	}
+
+	/**
+	 * Sets the integral image of the next source image. The integral image is
+	 * used if it has the size and number of bands of the next source image,
+	 * and then for that very source image only.
+	 *
+	 * @param integralImage the integral image of the source image, or
+	 * {@code null} to compute it from the source image.
+	 */
+	public synchronized void setIntegralImage(IntegralImage integralImage) {
+		this.integralImage = integralImage;
+		this.integralSource = null;
+	}
+
+	/**
+	 * Returns the integral image of a source image. This is the integral image
+	 * set beforehand, or prepared for the tiles of the source image, otherwise
+	 * the integral image is computed (without being kept).
+	 *
+	 * @param src the source image.
+	 * @return the integral image of the source image.
+	 */
+	public IntegralImage getIntegralImage(BufferedImage src) {
+		final IntegralImage ii = getAvailableIntegralImage(src);
+		if (ii != null) {
+			return ii;
+		}
+		return IntegralImages.compute(src);
+	}
+
+	private synchronized IntegralImage getAvailableIntegralImage(BufferedImage src) {
+		final IntegralImage ii = this.integralImage;
+		final BufferedImage bound = (this.integralSource == null)
+				? null
+				: this.integralSource.get();
+		if (ii != null && (this.integralSource == null || bound == src)
+				&& ii.width == src.getWidth()
+				&& ii.height == src.getHeight()
+				&& ii.numBands == src.getRaster().getNumBands()) {
+			// a given integral image is bound to the first source image
+			if (this.integralSource == null) {
+				this.integralSource = new WeakReference<>(src);
+			}
+			return ii;
+		}
+		if (this.preparedSource == src) {
+			return this.preparedImage;
+		}
+		return null;
+	}
+
+	// computes the integral image in parallel if a thread pool is given. Must
+	// not be called by a tile, since the other tiles would block the workers.
+	private IntegralImage computeIntegralImage(DipThreadPool pool, BufferedImage src) {
+		if (pool == null) {
+			return IntegralImages.compute(src);
+		}
+		return IntegralImages.compute(pool, src);
+	}
+
+	/**
+	 * Prepares the integral image of the source image, shared by all tiles.
+	 *
+	 * @param src the source image.
+	 * @param dst the destination image.
+	 */
+	@Override
+	public void prepare(BufferedImage src, BufferedImage dst) {
+		prepare(null, src, dst);
+	}
+
+	/**
+	 * Prepares the integral image of the source image, shared by all tiles
+	 * (or by a following call to {@code filter} with the same source image),
+	 * until released. The integral image is computed in parallel on the given
+	 * thread pool, unless the op has a thread pool of its own. The op keeps no
+	 * reference to the given thread pool.
+	 *
+	 * @param threadPool the thread pool, or {@code null}.
+	 * @param src the source image.
+	 * @param dst the destination image.
+	 */
+	public void prepare(DipThreadPool threadPool, BufferedImage src, BufferedImage dst) {
+		if (getAvailableIntegralImage(src) != null) {
+			return;
+		}
+		final DipThreadPool pool = getThreadPool();
+		final IntegralImage ii = computeIntegralImage((pool == null) ? threadPool : pool, src);
+		synchronized (this) {
+			this.preparedImage = ii;
+			this.preparedSource = (ii == null) ? null : src;
+		}
+	}
+
+	/**
+	 * Releases the integral image prepared for the tiles.
+	 *
+	 * @param src the source image.
+	 * @param dst the destination image.
+	 */
+	@Override
+	public synchronized void release(BufferedImage src, BufferedImage dst) {
+		this.preparedImage = null;
+		this.preparedSource = null;
+	}
+
+	@Override
+	public BufferedImage filter(BufferedImage src, BufferedImage dst) {
+		if (dst == null) {
+			dst = createCompatibleDestImage(src, src.getColorModel());
+		}
+
+		final WritableRaster raster = dst.getRaster();
+		// tile offset if run in parallel
+		final int offsetX;
+		final int offsetY;
+		if (raster.getParent() == null) {
+			offsetX = 0;
+			offsetY = 0;
+		} else {
+			offsetX = -raster.getSampleModelTranslateX();
+			offsetY = -raster.getSampleModelTranslateY();
+		}
+
+		final IntegralImage ii;
+		if (raster.getParent() == null) {
+			// not a tile: compute (in parallel) if not available
+			final IntegralImage available = getAvailableIntegralImage(src);
+			ii = (available == null) ? computeIntegralImage(getThreadPool(), src) : available;
+			if (ii == null) {
+				return null; // interrupted
+			}
+		} else {
+			ii = getIntegralImage(src);
+		}
+
+		filter(src.getRaster(), ii, raster, offsetX, offsetY);
+		return dst;
+	}
+
+	/**
+	 * Filters a destination raster (or tile).
+	 *
+	 * @param src the source raster.
+	 * @param ii the integral image of the source image.
+	 * @param dst the destination raster.
+	 * @param offsetX offset of the destination raster in the source image.
+	 * @param offsetY offset of the destination raster in the source image.
+	 */
+	protected abstract void filter(Raster src, IntegralImage ii, WritableRaster dst, int offsetX, int offsetY);
+
+	/**
+	 * Computes the means (and variances) of the windows centered at a run of
+	 * pixels on a row.
+	 *
+	 * @param ii the integral image.
+	 * @param band the band.
+	 * @param x0 the first column of the run.
+	 * @param y the row of the run.
+	 * @param mean the means of the windows, of the length of the run.
+	 * @param variance the (population) variances of the windows, or
+	 * {@code null} if not needed.
+	 */
+	protected void getStatistics(IntegralImage ii, int band, int x0, int y, double[] mean, double[] variance) {
+		final int n = mean.length;
+		final int ya = Math.max(0, y - this.windowHeight / 2);
+		final int yb = Math.min(ii.height, y - this.windowHeight / 2 + this.windowHeight);
+		final int rows = yb - ya;
+		final int ra = ii.index(0, ya, band);
+		final int rb = ii.index(0, yb, band);
+		final int left = this.windowWidth / 2;
+		final int right = this.windowWidth - left;
+
+		for (int i = 0; i < n; i++) {
+			final int x = x0 + i;
+			final int xa = Math.max(0, x - left);
+			final int xb = Math.min(ii.width, x + right);
+			final int area = (xb - xa) * rows;
+			if (area <= 0) {
+				mean[i] = 0;
+				if (variance != null) {
+					variance[i] = 0;
+				}
+				continue;
+			}
+
+			final double sum;
+			final double squares;
+			if (ii.isIntegral()) {
+				final long[] s = ii.sums;
+				sum = s[rb + xb] - s[rb + xa] - s[ra + xb] + s[ra + xa];
+				if (variance != null) {
+					final long[] q = ii.squaredSums;
+					squares = q[rb + xb] - q[rb + xa] - q[ra + xb] + q[ra + xa];
+				} else {
+					squares = 0;
+				}
+			} else {
+				final double[] s = ii.doubleSums;
+				sum = s[rb + xb] - s[rb + xa] - s[ra + xb] + s[ra + xa];
+				if (variance != null) {
+					final double[] q = ii.doubleSquaredSums;
+					squares = q[rb + xb] - q[rb + xa] - q[ra + xb] + q[ra + xa];
+				} else {
+					squares = 0;
+				}
+			}
+
+			mean[i] = sum / area;
+			if (variance != null) {
+				// no negative variance due to rounding errors
+				variance[i] = Math.max(0, (squares - sum * mean[i]) / area);
+			}
+		}
+	}
+
+}
@@ -44,6 +44,14 @@ public interface InverseMappedTileParallelizable extends TileParallelizable<Imag
 		);
 	}
 
+	@Override
+	default void processTile(Rectangle tile, BufferedImage src, BufferedImage dst) {
+		filter(
+				src,
+				dst.getSubimage(tile.x, tile.y, tile.width, tile.height)
+		);
+	}
+
 	@Override
 	default ImageTiler<Rectangle> getImageTiler(BufferedImage src, BufferedImage dst, int width, int height) {
 		// tiles over the destination instead of the source image!
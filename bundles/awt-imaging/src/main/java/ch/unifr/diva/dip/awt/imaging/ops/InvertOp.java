@@ -1,8 +1,9 @@
 package ch.unifr.diva.dip.awt.imaging.ops;
 
 import ch.unifr.diva.dip.awt.imaging.ImagingUtils;
-import ch.unifr.diva.dip.awt.imaging.scanners.Location;
-import ch.unifr.diva.dip.awt.imaging.scanners.RasterScanner;
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpan;
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpanScanner;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.WritableRaster;
 
@@ -11,13 +12,16 @@ import java.awt.image.WritableRaster;
  * custom sample range.
  *
  * <pre>I_inverted(x,y) = M - I(x,y)</pre>, where
- * <pre>M</pre> is the maximum value (e.g. 255 for an 8-bit sample).
+ * <pre>M</pre> is the maximum value (e.g. 255 for an 8-bit sample). Images
+ * with integral samples of at most 16 bits are inverted by a lookup table.
  */
-public class InvertOp extends NullOp implements SimpleTileParallelizable {
+public class InvertOp extends NullOp implements SimpleTileParallelizable, PointOp {
 
 	// given range [a, b] then x' = b - x + a, so the rangeOffset is a + b, from
 	// which we can substract x to get x'
 	private double[] rangeOffset;
+	private boolean tableLookup;
+	private volatile SampleLookupTable lookupTable;
 
 	/**
 	 * Creates a default inversion filter {@literal w.r.t.} the whole sample
@@ -25,6 +29,7 @@ public class InvertOp extends NullOp implements SimpleTileParallelizable {
 	 */
 	public InvertOp() {
 		this.rangeOffset = null;
+		this.tableLookup = true;
 	}
 
 	/**
@@ -40,6 +45,29 @@ public class InvertOp extends NullOp implements SimpleTileParallelizable {
 		for (int i = 0; i < min.length; i++) {
 			this.rangeOffset[i] = min[i] + max[i];
 		}
+		this.tableLookup = true;
+	}
+
+	/**
+	 * Enables or disables inversion by a lookup table. Enabled by default.
+	 * Samples are inverted one by one if disabled, or if the samples of the
+	 * source image can't be looked up.
+	 *
+	 * @param tableLookup {@code true} to invert by a lookup table,
+	 * {@code false} otherwise.
+	 */
+	public void setTableLookup(boolean tableLookup) {
+		this.tableLookup = tableLookup;
+	}
+
+	/**
+	 * Checks whether inversion by a lookup table is enabled.
+	 *
+	 * @return {@code true} if inversion by a lookup table is enabled,
+	 * {@code false} otherwise.
+	 */
+	public boolean isTableLookup() {
+		return this.tableLookup;
 	}
 
 	private boolean hasRange() {
@@ -55,36 +83,94 @@ public class InvertOp extends NullOp implements SimpleTileParallelizable {
 		return values[values.length - 1];
 	}
 
+	// number of colour components, but not more than bands in the raster (e.g.
+	// a single band of a binary image with an index colour model)
+	private int getNumBands(BufferedImage src) {
+		return Math.min(
+				ImagingUtils.numBands(src),
+				src.getRaster().getNumBands()
+		);
+	}
+
 	@Override
 	public BufferedImage filter(BufferedImage src, BufferedImage dst) {
 		if (dst == null) {
 			dst = createCompatibleDestImage(src, src.getColorModel());
 		}
 
+		filterRegion(src, dst, new Rectangle(src.getWidth(), src.getHeight()));
+
+		return dst;
+	}
+
+	@Override
+	public void filterRegion(BufferedImage src, BufferedImage dst, Rectangle region) {
 		final WritableRaster srcRaster = src.getRaster();
 		final WritableRaster dstRaster = dst.getRaster();
+		final SampleLookupTable table = this.tableLookup ? getLookupTable(src) : null;
+		if (table != null) {
+			table.apply(srcRaster, dstRaster, region);
+			return;
+		}
+
+		final int numBands = getNumBands(src);
+		final RowSpanScanner dstSpans = new RowSpanScanner(dstRaster, region, 0, numBands);
+		final int[] samples = new int[region.width];
 
 		if (hasRange()) {
-			for (Location pt : new RasterScanner(src, true)) {
-				final int sample = srcRaster.getSample(pt.col, pt.row, pt.band);
-				dstRaster.setSample(
-						pt.col, pt.row, pt.band,
-						get(pt.band, this.rangeOffset) - sample
-				);
+			final double[] inverted = new double[region.width];
+			for (RowSpan span : new RowSpanScanner(srcRaster, region, 0, numBands)) {
+				span.getSamples(samples);
+				final double offset = get(span.band, this.rangeOffset);
+				for (int i = 0; i < samples.length; i++) {
+					inverted[i] = offset - samples[i];
+				}
+				dstSpans.next().setSamples(inverted);
 			}
 		} else {
 			final int maxValue = ImagingUtils.maxSampleValue(src);
 
-			for (Location pt : new RasterScanner(src, true)) {
-				final int sample = srcRaster.getSample(pt.col, pt.row, pt.band);
-				dstRaster.setSample(
-						pt.col, pt.row, pt.band,
-						maxValue - sample
-				);
+			for (RowSpan span : new RowSpanScanner(srcRaster, region, 0, numBands)) {
+				span.getSamples(samples);
+				for (int i = 0; i < samples.length; i++) {
+					samples[i] = maxValue - samples[i];
+				}
+				dstSpans.next().setSamples(samples);
 			}
 		}
+	}
 
-		return dst;
+	@Override
+	public SampleLookupTable getLookupTable(BufferedImage src) {
+		final int bits = SampleLookupTable.getBits(src.getRaster());
+		if (bits < 0) {
+			return null;
+		}
+		final int numBands = getNumBands(src);
+
+		// the maximum value is the inverse of 0, and depends on the sample size
+		final int maxValue = hasRange() ? 0 : ImagingUtils.maxSampleValue(src);
+		SampleLookupTable table = this.lookupTable;
+		if (table == null
+				|| table.getBits() != bits
+				|| table.getNumBands() != numBands
+				|| (!hasRange() && table.getValue(0, 0) != maxValue)) {
+			if (hasRange()) {
+				table = SampleLookupTable.newInstance(
+						bits,
+						numBands,
+						(b, v) -> get(b, this.rangeOffset) - v
+				);
+			} else {
+				table = SampleLookupTable.newInstance(
+						bits,
+						numBands,
+						(b, v) -> maxValue - v
+				);
+			}
+			this.lookupTable = table;
+		}
+		return table;
 	}
 
 }
@@ -0,0 +1,130 @@
+package ch.unifr.diva.dip.awt.imaging.ops;
+
+import ch.unifr.diva.dip.api.datastructures.IntegralImage;
+import ch.unifr.diva.dip.awt.imaging.ImagingUtils;
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpan;
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpanScanner;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+/**
+ * Local statistics filter. Computes the mean, variance, or standard deviation
+ * of the samples in a window centered at each pixel, band by band, in
+ * constant time per pixel (see {@code IntegralImageOp}).
+ *
+ * <p>
+ * Values are clamped to {@code [0, 255]} for destination images with integral
+ * samples, hence variances should be computed with {@code FLOAT} sample
+ * precision (the default).
+ */
+public class LocalStatisticsOp extends IntegralImageOp {
+
+	/**
+	 * Available local statistics.
+	 */
+	public enum Statistic {
+
+		/**
+		 * The mean of the samples in the window.
+		 */
+		MEAN,
+		/**
+		 * The (population) variance of the samples in the window.
+		 */
+		VARIANCE,
+		/**
+		 * The (population) standard deviation of the samples in the window.
+		 */
+		STANDARD_DEVIATION
+	}
+
+	private final Statistic statistic;
+	private final SamplePrecision precision;
+
+	/**
+	 * Creates a new local statistics filter with {@code FLOAT} sample
+	 * precision.
+	 *
+	 * @param statistic the local statistic.
+	 * @param windowWidth width of the window.
+	 * @param windowHeight height of the window.
+	 */
+	public LocalStatisticsOp(Statistic statistic, int windowWidth, int windowHeight) {
+		this(statistic, windowWidth, windowHeight, SamplePrecision.FLOAT);
+	}
+
+	/**
+	 * Creates a new local statistics filter.
+	 *
+	 * @param statistic the local statistic.
+	 * @param windowWidth width of the window.
+	 * @param windowHeight height of the window.
+	 * @param precision sample precision of the destination image.
+	 */
+	public LocalStatisticsOp(Statistic statistic, int windowWidth, int windowHeight, SamplePrecision precision) {
+		super(windowWidth, windowHeight);
+		this.statistic = statistic;
+		this.precision = precision;
+	}
+
+	/**
+	 * Returns the local statistic.
+	 *
+	 * @return the local statistic.
+	 */
+	public Statistic getStatistic() {
+		return this.statistic;
+	}
+
+	@Override
+	public BufferedImage createCompatibleDestImage(BufferedImage src, ColorModel dstCM) {
+		return createCompatibleDestImage(src, this.precision);
+	}
+
+	@Override
+	protected void filter(Raster src, IntegralImage ii, WritableRaster dst, int offsetX, int offsetY) {
+		final int width = dst.getWidth();
+		final int numBands = Math.min(ii.numBands, dst.getNumBands());
+		final Rectangle region = new Rectangle(dst.getMinX(), dst.getMinY(), width, dst.getHeight());
+		final boolean clamp = !isFloatingPoint(dst);
+		final double[] mean = new double[width];
+		final double[] variance = (this.statistic == Statistic.MEAN) ? null : new double[width];
+
+		for (RowSpan span : new RowSpanScanner(dst, region, 0, numBands)) {
+			final int y = span.row - dst.getMinY() + offsetY;
+			getStatistics(ii, span.band, offsetX, y, mean, variance);
+			final double[] values;
+			switch (this.statistic) {
+				case VARIANCE:
+					values = variance;
+					break;
+				case STANDARD_DEVIATION:
+					for (int i = 0; i < width; i++) {
+						variance[i] = Math.sqrt(variance[i]);
+					}
+					values = variance;
+					break;
+				case MEAN:
+				default:
+					values = mean;
+					break;
+			}
+			if (clamp) {
+				for (int i = 0; i < width; i++) {
+					values[i] = ImagingUtils.clamp(values[i], 0.0, 255.0);
+				}
+			}
+			span.setSamples(values);
+		}
+	}
+
+	private static boolean isFloatingPoint(WritableRaster raster) {
+		final int type = raster.getSampleModel().getDataType();
+		return type == DataBuffer.TYPE_FLOAT || type == DataBuffer.TYPE_DOUBLE;
+	}
+
+}
@@ -0,0 +1,190 @@
+package ch.unifr.diva.dip.awt.imaging.ops;
+
+import ch.unifr.diva.dip.api.datastructures.IntegralImage;
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpan;
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpanScanner;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+/**
+ * Local (or adaptive) threshold filter. This filter operates on a single band
+ * in the source image, and computes a threshold for each pixel from the mean
+ * and standard deviation of the samples in a window centered at the pixel, in
+ * constant time per pixel (see {@code IntegralImageOp}).
+ */
+public class LocalThresholdOp extends IntegralImageOp {
+
+	/**
+	 * Available local thresholding methods.
+	 */
+	public enum Method {
+
+		/**
+		 * Niblack's method: {@code T = m + k * s}, with the local mean
+		 * {@code m}, and standard deviation {@code s}. Usually with a negative
+		 * {@code k} (e.g. {@code -0.2}) for dark text on a bright background.
+		 *
+		 * <p>
+		 * Niblack, Wayne: "An introduction to Digital Image Processing", 1986.
+		 */
+		NIBLACK() {
+					@Override
+					public double getThreshold(double mean, double deviation, double k, double r) {
+						return mean + k * deviation;
+					}
+				},
+		/**
+		 * Sauvola's method: {@code T = m * (1 + k * (s / R - 1))}, with the
+		 * local mean {@code m}, and standard deviation {@code s}, and the
+		 * dynamic range {@code R} of the standard deviation (e.g. {@code 128}
+		 * for 8-bit samples). Usually with {@code k} in {@code [0.2, 0.5]}.
+		 *
+		 * <p>
+		 * Sauvola, Jaakko, and Pietikäinen, Matti: "Adaptive document image
+		 * binarization", 2000.
+		 */
+		SAUVOLA() {
+					@Override
+					public double getThreshold(double mean, double deviation, double k, double r) {
+						return mean * (1 + k * (deviation / r - 1));
+					}
+				};
+
+		/**
+		 * Computes the local threshold.
+		 *
+		 * @param mean the local mean.
+		 * @param deviation the local standard deviation.
+		 * @param k the parameter {@code k}.
+		 * @param r the dynamic range of the standard deviation.
+		 * @return the local threshold.
+		 */
+		public abstract double getThreshold(double mean, double deviation, double k, double r);
+	}
+
+	private final Method method;
+	private int band;
+	private double k;
+	private double r;
+
+	/**
+	 * Creates a new local threshold filter, with {@code k = -0.2} for
+	 * {@code NIBLACK}, or {@code k = 0.5} for {@code SAUVOLA}, and
+	 * {@code R = 128}.
+	 *
+	 * @param method the thresholding method.
+	 * @param windowWidth width of the window.
+	 * @param windowHeight height of the window.
+	 */
+	public LocalThresholdOp(Method method, int windowWidth, int windowHeight) {
+		this(method, windowWidth, windowHeight, (method == Method.NIBLACK) ? -0.2 : 0.5, 128);
+	}
+
+	/**
+	 * Creates a new local threshold filter.
+	 *
+	 * @param method the thresholding method.
+	 * @param windowWidth width of the window.
+	 * @param windowHeight height of the window.
+	 * @param k the parameter {@code k}.
+	 * @param r the dynamic range of the standard deviation (only used by
+	 * {@code SAUVOLA}).
+	 */
+	public LocalThresholdOp(Method method, int windowWidth, int windowHeight, double k, double r) {
+		super(windowWidth, windowHeight);
+		this.method = method;
+		this.k = k;
+		this.r = r;
+	}
+
+	/**
+	 * Returns the thresholding method.
+	 *
+	 * @return the thresholding method.
+	 */
+	public Method getMethod() {
+		return this.method;
+	}
+
+	/**
+	 * Sets the band to threshold.
+	 *
+	 * @param band the band.
+	 */
+	public void setBand(int band) {
+		this.band = band;
+	}
+
+	/**
+	 * Returns the band to threshold.
+	 *
+	 * @return the band.
+	 */
+	public int getBand() {
+		return this.band;
+	}
+
+	/**
+	 * Returns the parameter {@code k}.
+	 *
+	 * @return the parameter {@code k}.
+	 */
+	public double getK() {
+		return this.k;
+	}
+
+	/**
+	 * Returns the dynamic range of the standard deviation.
+	 *
+	 * @return the dynamic range of the standard deviation.
+	 */
+	public double getR() {
+		return this.r;
+	}
+
+	/**
+	 * Creates a compatible, binary destination image.
+	 *
+	 * @param src the source image.
+	 * @return a compatible, binary destination image.
+	 */
+	public BufferedImage createBinaryDestImage(BufferedImage src) {
+		return new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_BYTE_BINARY);
+	}
+
+	@Override
+	public BufferedImage createCompatibleDestImage(BufferedImage src, ColorModel dstCM) {
+		return createBinaryDestImage(src);
+	}
+
+	@Override
+	protected void filter(Raster src, IntegralImage ii, WritableRaster dst, int offsetX, int offsetY) {
+		final int width = dst.getWidth();
+		final Rectangle region = new Rectangle(dst.getMinX(), dst.getMinY(), width, dst.getHeight());
+		final RowSpanScanner srcSpans = new RowSpanScanner(
+				src,
+				new Rectangle(src.getMinX() + offsetX, src.getMinY() + offsetY, width, dst.getHeight()),
+				this.band,
+				1
+		);
+		final double[] samples = new double[width];
+		final double[] mean = new double[width];
+		final double[] variance = new double[width];
+		final int[] bits = new int[width];
+
+		for (RowSpan span : new RowSpanScanner(dst, region, 0, 1)) {
+			final int y = span.row - dst.getMinY() + offsetY;
+			srcSpans.next().getSamples(samples);
+			getStatistics(ii, this.band, offsetX, y, mean, variance);
+			for (int i = 0; i < width; i++) {
+				final double t = this.method.getThreshold(mean[i], Math.sqrt(variance[i]), this.k, this.r);
+				bits[i] = (samples[i] > t) ? 1 : 0;
+			}
+			span.setSamples(bits);
+		}
+	}
+
+}
@@ -0,0 +1,723 @@
+package ch.unifr.diva.dip.awt.imaging.ops;
+
+import ch.unifr.diva.dip.api.datastructures.Mask;
+import ch.unifr.diva.dip.awt.imaging.DirectRaster;
+import ch.unifr.diva.dip.awt.imaging.padders.ImagePadder;
+import ch.unifr.diva.dip.awt.imaging.scanners.PaddedImageTiler;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Morphological erosion and dilation. The erosion (dilation) of a pixel is the
+ * minimum (maximum) sample of its neighbourhood, as marked by the mask (or
+ * structuring element). The neighbourhood is sampled just like with a
+ * {@code RankOp}, hence an erosion (dilation) equals a rank filter of rank
+ * {@code MIN} ({@code MAX}), just a lot faster.
+ *
+ * <p>
+ * The mask is decomposed into line segments (horizontal, vertical, or
+ * diagonal) s.t. the mask is the union of Minkowski sums of such segments
+ * (e.g. a rectangle is the sum of a horizontal and a vertical line, and a
+ * diamond is the union of two sums of diagonal lines). Masks that can't be
+ * decomposed otherwise are split up into their horizontal (or vertical) runs.
+ * The minimum (maximum) over a line segment is computed with the van
+ * Herk/Gil-Werman algorithm, which needs about 3 comparisons per pixel,
+ * regardless of the length of the segment.
+ *
+ * <p>
+ * Binary images (1 bit per pixel, e.g. {@code TYPE_BYTE_BINARY}) and
+ * rectangular masks (incl. horizontal or vertical lines) are processed
+ * bit-packed, 64 pixels per {@code long} word at a time.
+ *
+ * <p>
+ * Opening (closing) is an erosion (dilation) followed by a dilation (erosion)
+ * with the same mask, e.g. by filtering the result of the first op with the
+ * second one.
+ */
+public class MorphologyOp extends NullOp implements PaddedTileParallelizable, CostHint {
+
+	/**
+	 * Morphological operations.
+	 */
+	public enum Operation {
+
+		/**
+		 * The erosion, or minimum of the neighbourhood.
+		 */
+		EROSION,
+		/**
+		 * The dilation, or maximum of the neighbourhood.
+		 */
+		DILATION;
+
+	}
+
+	/**
+	 * Maximum number of samples of a line buffer. Larger regions are
+	 * processed in strips.
+	 */
+	private final static int MAX_BUFFER_SIZE = 1 << 20;
+
+	private final Operation operation;
+	private final Mask mask;
+	private final ImagePadder padder;
+	private final Line[][] decomposition;
+	private final boolean isRectangle;
+	private boolean bitPacked;
+
+	/**
+	 * Creates a new morphological filter.
+	 *
+	 * @param operation the morphological operation.
+	 * @param mask the mask, or structuring element.
+	 * @param padder the image padder.
+	 * @throws IllegalArgumentException if the mask is empty.
+	 */
+	public MorphologyOp(Operation operation, Mask mask, ImagePadder padder) {
+		if (mask.cardinality() < 1) {
+			throw new IllegalArgumentException("empty mask");
+		}
+		this.operation = operation;
+		this.mask = mask;
+		this.padder = padder;
+		this.isRectangle = mask.cardinality() == mask.width() * mask.height();
+		this.decomposition = decompose(mask, this.isRectangle);
+		this.bitPacked = true;
+	}
+
+	/**
+	 * Enables or disables the bit-packed processing of binary images. The
+	 * bit-packed processing is enabled by default, and only used with
+	 * supported images and masks anyways, so there is little reason to
+	 * disable it (other than benchmarking).
+	 *
+	 * @param enable {@code true} to enable the bit-packed processing,
+	 * {@code false} to process binary images like any other image.
+	 */
+	public void setBitPacked(boolean enable) {
+		this.bitPacked = enable;
+	}
+
+	/**
+	 * Checks whether the bit-packed processing of binary images is enabled.
+	 *
+	 * @return {@code true} if the bit-packed processing is enabled,
+	 * {@code false} otherwise.
+	 */
+	public boolean isBitPacked() {
+		return this.bitPacked;
+	}
+
+	/**
+	 * Returns the morphological operation.
+	 *
+	 * @return the morphological operation.
+	 */
+	public Operation getOperation() {
+		return this.operation;
+	}
+
+	@Override
+	public BufferedImage filter(BufferedImage src, BufferedImage dst) {
+		return filter(src, dst, new Rectangle(src.getWidth(), src.getHeight()));
+	}
+
+	@Override
+	public BufferedImage filter(BufferedImage src, BufferedImage dst, Rectangle writableRegion) {
+		if (dst == null) {
+			dst = this.createCompatibleDestImage(src);
+		}
+
+		if (writableRegion.width < 1 || writableRegion.height < 1) {
+			return dst;
+		}
+
+		final WritableRaster dstRaster = dst.getRaster();
+		if (this.bitPacked
+				&& this.isRectangle
+				&& isPackedBinary(src.getRaster())
+				&& isPackedBinary(dstRaster)) {
+			filterBitPacked(src, dstRaster, writableRegion);
+			return dst;
+		}
+
+		final int numBands = Math.min(src.getRaster().getNumBands(), dstRaster.getNumBands());
+		final Rectangle mb = this.mask.bounds();
+		final int stripHeight = Math.max(
+				mb.height,
+				MAX_BUFFER_SIZE / (writableRegion.width + mb.width - 1)
+		);
+		for (int y = writableRegion.y; y < writableRegion.y + writableRegion.height; y += stripHeight) {
+			filterLines(
+					src,
+					dstRaster,
+					new Rectangle(
+							writableRegion.x,
+							y,
+							writableRegion.width,
+							Math.min(stripHeight, writableRegion.y + writableRegion.height - y)
+					),
+					numBands
+			);
+		}
+
+		return dst;
+	}
+
+	/**
+	 * A line segment, given by the offset of its first cell, its direction,
+	 * and its length.
+	 */
+	private static class Line {
+
+		public final int x;
+		public final int y;
+		public final int dx;
+		public final int dy;
+		public final int length;
+
+		public Line(int x, int y, int dx, int dy, int length) {
+			this.x = x;
+			this.y = y;
+			this.dx = dx;
+			this.dy = dy;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * Decomposes a mask into line segments. The mask is the union of all
+	 * parts (first index), and each part is the Minkowski sum of its line
+	 * segments (second index). Segments are applied in order, hence the cells
+	 * of the last segment (of a part) need to lie within the bounds of the
+	 * mask, s.t. intermediate results are never read outside of the buffer.
+	 *
+	 * @param mask the mask.
+	 * @param isRectangle whether all cells of the mask are set.
+	 * @return the decomposition of the mask.
+	 */
+	private static Line[][] decompose(Mask mask, boolean isRectangle) {
+		final Rectangle mb = mask.bounds();
+		final int w = mb.width;
+		final int h = mb.height;
+
+		// rectangle, or horizontal/vertical line
+		if (isRectangle) {
+			if (h == 1) {
+				return new Line[][]{{new Line(mb.x, mb.y, 1, 0, w)}};
+			}
+			if (w == 1) {
+				return new Line[][]{{new Line(mb.x, mb.y, 0, 1, h)}};
+			}
+			return new Line[][]{{
+				new Line(0, 0, 1, 0, w),
+				new Line(mb.x, mb.y, 0, 1, h)
+			}};
+		}
+
+		if (w == h) {
+			// diagonal, or anti-diagonal line
+			if (matches(mask, (c, r) -> c == r)) {
+				return new Line[][]{{new Line(mb.x, mb.y, 1, 1, w)}};
+			}
+			if (matches(mask, (c, r) -> c + r == w - 1)) {
+				return new Line[][]{{new Line(mb.x, mb.y + h - 1, 1, -1, w)}};
+			}
+
+			// diamond of radius n: the cells with the parity of n are the sum
+			// of a diagonal and an anti-diagonal line of length n + 1, the
+			// other ones those of a diamond of radius n - 1
+			final int n = w / 2;
+			if ((w & 1) == 1 && matches(mask, (c, r) -> Math.abs(c - n) + Math.abs(r - n) <= n)) {
+				final int cx = mb.x + n;
+				final int cy = mb.y + n;
+				return new Line[][]{
+					{
+						new Line(cx - n, cy, 1, 1, n + 1),
+						new Line(0, 0, 1, -1, n + 1)
+					},
+					{
+						new Line(cx - n + 1, cy, 1, 1, n),
+						new Line(0, 0, 1, -1, n)
+					}
+				};
+			}
+		}
+
+		// horizontal or vertical runs, whatever needs fewer segments
+		final List<Line[]> rows = new ArrayList<>();
+		for (int r = 0; r < h; r++) {
+			int c = 0;
+			while (c < w) {
+				if (!mask.get(r * w + c)) {
+					c++;
+					continue;
+				}
+				final int start = c;
+				while (c < w && mask.get(r * w + c)) {
+					c++;
+				}
+				rows.add(new Line[]{new Line(mb.x + start, mb.y + r, 1, 0, c - start)});
+			}
+		}
+		final List<Line[]> columns = new ArrayList<>();
+		for (int c = 0; c < w; c++) {
+			int r = 0;
+			while (r < h) {
+				if (!mask.get(r * w + c)) {
+					r++;
+					continue;
+				}
+				final int start = r;
+				while (r < h && mask.get(r * w + c)) {
+					r++;
+				}
+				columns.add(new Line[]{new Line(mb.x + c, mb.y + start, 0, 1, r - start)});
+			}
+		}
+		final List<Line[]> runs = (columns.size() < rows.size()) ? columns : rows;
+		return runs.toArray(new Line[runs.size()][]);
+	}
+
+	/**
+	 * A predicate on the cells of a mask.
+	 */
+	private interface CellPredicate {
+
+		boolean test(int column, int row);
+	}
+
+	private static boolean matches(Mask mask, CellPredicate predicate) {
+		final int w = mask.width();
+		for (int r = 0; r < mask.height(); r++) {
+			for (int c = 0; c < w; c++) {
+				if (mask.get(r * w + c) != predicate.test(c, r)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Line segments
+	 * -------------
+	 * The source region (the writable region plus the halo of the mask) is
+	 * loaded (with padding) into a buffer. The buffer position p of the
+	 * output pixel (x, y) is (x - x0 - mb.x, y - y0 - mb.y), s.t. the cell o
+	 * of the mask is found at p + o. Each line segment then turns a buffer
+	 * into a new one, that holds the minimum (maximum) of all samples at
+	 * p + o + t * d, for t = 0, ..., length - 1. Buffer samples outside of
+	 * the buffer are never needed for the writable region, and ignored.
+	 */
+	private void filterLines(BufferedImage src, WritableRaster dstRaster, Rectangle writableRegion, int numBands) {
+		final Rectangle mb = this.mask.bounds();
+		final boolean isErosion = this.operation.equals(Operation.EROSION);
+		final double identity = isErosion ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+		final Raster srcRaster = src.getRaster();
+		final DirectRaster in = DirectRaster.isSupported(srcRaster)
+				? new DirectRaster(srcRaster)
+				: null;
+		final DirectRaster out = DirectRaster.isSupported(dstRaster)
+				? new DirectRaster(dstRaster)
+				: null;
+
+		final int n = writableRegion.width;
+		final int m = writableRegion.height;
+		final int bx = writableRegion.x + mb.x; // source column of buffer column 0
+		final int by = writableRegion.y + mb.y; // source row of buffer row 0
+		final int bw = n + mb.width - 1;
+		final int bh = m + mb.height - 1;
+		final double[] buffer = new double[bw * bh];
+		final double[][] tmp = new double[][]{
+			new double[bw * bh],
+			new double[bw * bh]
+		};
+		final double[] result = new double[n * m];
+
+		int maxLength = 1;
+		for (Line[] part : this.decomposition) {
+			for (Line line : part) {
+				maxLength = Math.max(maxLength, line.length);
+			}
+		}
+		final int scratchLength = Math.max(bw, bh) + maxLength - 1;
+		final double[] f = new double[scratchLength];
+		final double[] g = new double[scratchLength];
+		final double[] s = new double[scratchLength];
+		final double[] row = new double[bw];
+
+		for (int b = 0; b < numBands; b++) {
+			for (int r = 0; r < bh; r++) {
+				loadLine(src, in, buffer, r * bw, row, bx, by + r, b);
+			}
+
+			for (int k = 0; k < this.decomposition.length; k++) {
+				double[] current = buffer;
+				int t = 0;
+				for (Line line : this.decomposition[k]) {
+					final double[] next = tmp[t];
+					t ^= 1;
+					filterLine(current, next, bw, bh, line, isErosion, identity, f, g, s);
+					current = next;
+				}
+
+				for (int j = 0; j < m; j++) {
+					final int offset = (j - mb.y) * bw - mb.x;
+					final int rj = j * n;
+					if (k == 0) {
+						System.arraycopy(current, offset, result, rj, n);
+					} else if (isErosion) {
+						for (int i = 0; i < n; i++) {
+							final double v = current[offset + i];
+							if (v < result[rj + i]) {
+								result[rj + i] = v;
+							}
+						}
+					} else {
+						for (int i = 0; i < n; i++) {
+							final double v = current[offset + i];
+							if (v > result[rj + i]) {
+								result[rj + i] = v;
+							}
+						}
+					}
+				}
+			}
+
+			for (int j = 0; j < m; j++) {
+				final int y = writableRegion.y + j;
+				if (out != null) {
+					out.setSamples(writableRegion.x, y, n, b, result, j * n);
+				} else {
+					System.arraycopy(result, j * n, row, 0, n);
+					dstRaster.setSamples(writableRegion.x, y, n, 1, b, row);
+				}
+			}
+		}
+	}
+
+	private void loadLine(BufferedImage src, DirectRaster in, double[] buffer, int offset, double[] tmp, int x, int row, int band) {
+		final int length = tmp.length;
+		if (row < 0 || row >= src.getHeight()) {
+			for (int i = 0; i < length; i++) {
+				buffer[offset + i] = this.padder.getSampleDouble(src, x + i, row, band);
+			}
+			return;
+		}
+
+		final int start = Math.max(0, x);
+		final int end = Math.min(src.getWidth(), x + length);
+		for (int i = 0; i < start - x; i++) {
+			buffer[offset + i] = this.padder.getSampleDouble(src, x + i, row, band);
+		}
+		if (end > start) {
+			if (in != null) {
+				in.getSamples(start, row, end - start, band, buffer, offset + start - x);
+			} else {
+				src.getRaster().getSamples(start, row, end - start, 1, band, tmp);
+				System.arraycopy(tmp, 0, buffer, offset + start - x, end - start);
+			}
+		}
+		for (int i = Math.max(0, end - x); i < length; i++) {
+			buffer[offset + i] = this.padder.getSampleDouble(src, x + i, row, band);
+		}
+	}
+
+	/**
+	 * Applies a line segment to a buffer. All lines of the buffer in the
+	 * direction of the segment are processed one after the other: the samples
+	 * at p + o + t * d of a line of output positions p are gathered first, and
+	 * then the sliding minimum (maximum) of the segment length is computed
+	 * with the van Herk/Gil-Werman algorithm.
+	 */
+	private static void filterLine(double[] in, double[] out, int w, int h, Line line, boolean isErosion, double identity, double[] f, double[] g, double[] s) {
+		final int dx = line.dx;
+		final int dy = line.dy;
+
+		if (dy == 0) {
+			for (int y = 0; y < h; y++) {
+				filterLine(in, out, w, h, line, isErosion, identity, 0, y, w, f, g, s);
+			}
+		} else if (dx == 0) {
+			for (int x = 0; x < w; x++) {
+				filterLine(in, out, w, h, line, isErosion, identity, x, 0, h, f, g, s);
+			}
+		} else if (dy > 0) {
+			for (int x = 0; x < w; x++) {
+				filterLine(in, out, w, h, line, isErosion, identity, x, 0, Math.min(w - x, h), f, g, s);
+			}
+			for (int y = 1; y < h; y++) {
+				filterLine(in, out, w, h, line, isErosion, identity, 0, y, Math.min(w, h - y), f, g, s);
+			}
+		} else {
+			for (int x = 0; x < w; x++) {
+				filterLine(in, out, w, h, line, isErosion, identity, x, h - 1, Math.min(w - x, h), f, g, s);
+			}
+			for (int y = 0; y < h - 1; y++) {
+				filterLine(in, out, w, h, line, isErosion, identity, 0, y, Math.min(w, y + 1), f, g, s);
+			}
+		}
+	}
+
+	private static void filterLine(double[] in, double[] out, int w, int h, Line line, boolean isErosion, double identity, int x0, int y0, int count, double[] f, double[] g, double[] s) {
+		final int k = line.length;
+		final int length = count + k - 1;
+
+		// gather samples along the line
+		int x = x0 + line.x;
+		int y = y0 + line.y;
+		for (int i = 0; i < length; i++) {
+			f[i] = (x >= 0 && x < w && y >= 0 && y < h)
+					? in[y * w + x]
+					: identity;
+			x += line.dx;
+			y += line.dy;
+		}
+
+		// prefix (g) and suffix (s) extrema within blocks of length k
+		for (int start = 0; start < length; start += k) {
+			final int end = Math.min(start + k, length) - 1;
+			g[start] = f[start];
+			s[end] = f[end];
+			if (isErosion) {
+				for (int i = start + 1; i <= end; i++) {
+					g[i] = (f[i] < g[i - 1]) ? f[i] : g[i - 1];
+				}
+				for (int i = end - 1; i >= start; i--) {
+					s[i] = (f[i] < s[i + 1]) ? f[i] : s[i + 1];
+				}
+			} else {
+				for (int i = start + 1; i <= end; i++) {
+					g[i] = (f[i] > g[i - 1]) ? f[i] : g[i - 1];
+				}
+				for (int i = end - 1; i >= start; i--) {
+					s[i] = (f[i] > s[i + 1]) ? f[i] : s[i + 1];
+				}
+			}
+		}
+
+		// a window of length k spans at most two blocks
+		x = x0;
+		y = y0;
+		for (int i = 0; i < count; i++) {
+			final double a = s[i];
+			final double b = g[i + k - 1];
+			out[y * w + x] = isErosion
+					? ((a < b) ? a : b)
+					: ((a > b) ? a : b);
+			x += line.dx;
+			y += line.dy;
+		}
+	}
+
+	/**
+	 * Checks whether a raster is a binary raster with bit-packed pixels.
+	 *
+	 * @param raster the raster.
+	 * @return {@code true} if the raster is a single band raster with one bit
+	 * per pixel, packed into a byte buffer, {@code false} otherwise.
+	 */
+	private static boolean isPackedBinary(Raster raster) {
+		if (!(raster.getSampleModel() instanceof MultiPixelPackedSampleModel)) {
+			return false;
+		}
+		final MultiPixelPackedSampleModel sm = (MultiPixelPackedSampleModel) raster.getSampleModel();
+		return sm.getPixelBitStride() == 1
+				&& raster.getNumBands() == 1
+				&& raster.getDataBuffer() instanceof DataBufferByte;
+	}
+
+	/*
+	 * Bit-packed rectangles
+	 * ---------------------
+	 * Rows (plus the halo of the mask) are packed into long words, the most
+	 * significant bit being the leftmost pixel. The horizontal segment is
+	 * computed by repeatedly combining a row with itself shifted by a doubling
+	 * number of bits (AND for erosion, OR for dilation), the vertical segment
+	 * with the van Herk/Gil-Werman algorithm on whole rows of words.
+	 */
+	private void filterBitPacked(BufferedImage src, WritableRaster dstRaster, Rectangle writableRegion) {
+		final Rectangle mb = this.mask.bounds();
+		final boolean isErosion = this.operation.equals(Operation.EROSION);
+		final Raster srcRaster = src.getRaster();
+		final byte[] srcData = ((DataBufferByte) srcRaster.getDataBuffer()).getData();
+		final byte[] dstData = ((DataBufferByte) dstRaster.getDataBuffer()).getData();
+
+		final int n = writableRegion.width;
+		final int m = writableRegion.height;
+		final int bx = writableRegion.x + mb.x;
+		final int by = writableRegion.y + mb.y;
+		final int bw = n + mb.width - 1;
+		final int bh = m + mb.height - 1;
+		final int words = (bw + 63) >>> 6;
+		final long[][] rows = new long[bh][words];
+		final long[][] prefix = new long[bh][];
+
+		// load and filter rows with the horizontal segment
+		for (int r = 0; r < bh; r++) {
+			final long[] row = rows[r];
+			loadBits(src, srcRaster, srcData, row, bx, by + r, bw);
+			int span = 1;
+			while (span * 2 <= mb.width) {
+				combineShifted(row, span, isErosion);
+				span *= 2;
+			}
+			if (span < mb.width) {
+				combineShifted(row, mb.width - span, isErosion);
+			}
+		}
+
+		// vertical segment: prefix and suffix (in place) within blocks
+		final int k = mb.height;
+		for (int start = 0; start < bh; start += k) {
+			final int end = Math.min(start + k, bh) - 1;
+			prefix[start] = rows[start].clone();
+			for (int r = start + 1; r <= end; r++) {
+				prefix[r] = combine(prefix[r - 1].clone(), rows[r], isErosion);
+			}
+			for (int r = end - 1; r >= start; r--) {
+				combine(rows[r], rows[r + 1], isErosion);
+			}
+		}
+
+		for (int j = 0; j < m; j++) {
+			final long[] row = combine(rows[j], prefix[j + k - 1], isErosion);
+			storeBits(dstRaster, dstData, row, writableRegion.x, writableRegion.y + j, n);
+		}
+	}
+
+	private static long[] combine(long[] a, long[] b, boolean isErosion) {
+		if (isErosion) {
+			for (int i = 0; i < a.length; i++) {
+				a[i] &= b[i];
+			}
+		} else {
+			for (int i = 0; i < a.length; i++) {
+				a[i] |= b[i];
+			}
+		}
+		return a;
+	}
+
+	private static void combineShifted(long[] row, int shift, boolean isErosion) {
+		final int q = shift >>> 6;
+		final int r = shift & 63;
+		for (int i = 0; i < row.length; i++) {
+			final long hi = (i + q < row.length) ? row[i + q] : 0;
+			final long lo = (i + q + 1 < row.length) ? row[i + q + 1] : 0;
+			final long v = (r == 0) ? hi : (hi << r) | (lo >>> (64 - r));
+			if (isErosion) {
+				row[i] &= v;
+			} else {
+				row[i] |= v;
+			}
+		}
+	}
+
+	private static long getBitIndex(Raster raster, int x, int y) {
+		final MultiPixelPackedSampleModel sm = (MultiPixelPackedSampleModel) raster.getSampleModel();
+		final int sx = x - raster.getSampleModelTranslateX();
+		final int sy = y - raster.getSampleModelTranslateY();
+		return 8L * (raster.getDataBuffer().getOffset() + sm.getOffset(sx, sy))
+				+ sm.getBitOffset(sx);
+	}
+
+	private void loadBits(BufferedImage src, Raster raster, byte[] data, long[] row, int x, int y, int length) {
+		final int start;
+		final int end;
+		if (y < 0 || y >= src.getHeight()) {
+			start = 0;
+			end = 0;
+		} else {
+			start = Math.max(0, x) - x;
+			end = Math.max(start, Math.min(src.getWidth(), x + length) - x);
+		}
+
+		// 8 pixels at a time
+		if (end > start) {
+			final long bit = getBitIndex(raster, x + start, y);
+			for (int i = start; i < end; i += 8) {
+				final long p = bit + i - start;
+				final int b = (int) (p >>> 3);
+				final int o = (int) (p & 7);
+				int v = (data[b] & 0xFF) << 8;
+				if (o != 0 && b + 1 < data.length) {
+					v |= data[b + 1] & 0xFF;
+				}
+				v = (v >>> (8 - o)) & 0xFF;
+				final int c = Math.min(8, end - i);
+				v &= (0xFF << (8 - c)) & 0xFF;
+				if ((i & 7) == 0) {
+					row[i >>> 6] |= (long) v << (56 - (i & 63));
+				} else {
+					setBits(row, i, v, c);
+				}
+			}
+		}
+
+		// padding
+		for (int i = 0; i < length; i++) {
+			if (i == start && end > start) {
+				i = end - 1;
+				continue;
+			}
+			if (this.padder.getSample(src, x + i, y, 0) != 0) {
+				row[i >>> 6] |= 1L << (63 - (i & 63));
+			}
+		}
+	}
+
+	// sets c <= 8 pixels from the top bits of v, at an arbitrary bit position
+	private static void setBits(long[] row, int i, int v, int c) {
+		for (int j = 0; j < c; j++) {
+			if ((v & (0x80 >>> j)) != 0) {
+				final int p = i + j;
+				row[p >>> 6] |= 1L << (63 - (p & 63));
+			}
+		}
+	}
+
+	private static void storeBits(WritableRaster raster, byte[] data, long[] row, int x, int y, int length) {
+		final long bit = getBitIndex(raster, x, y);
+		for (int i = 0; i < length; i += 8) {
+			// 8 pixels from the row, written at an arbitrary bit position
+			final int c = Math.min(8, length - i);
+			final int keep = (0xFF << (8 - c)) & 0xFF;
+			final int v = (int) (row[i >>> 6] >>> (56 - (i & 63))) & keep;
+
+			final long p = bit + i;
+			final int b = (int) (p >>> 3);
+			final int shift = 8 - (int) (p & 7);
+			final int value = v << shift;
+			final int mask = keep << shift;
+			data[b] = (byte) ((data[b] & ~(mask >>> 8)) | (value >>> 8));
+			if ((mask & 0xFF) != 0) {
+				data[b + 1] = (byte) ((data[b + 1] & ~mask) | (value & 0xFF));
+			}
+		}
+	}
+
+	@Override
+	public int getKernelRadius() {
+		return Math.max(this.mask.width(), this.mask.height()) / 2;
+	}
+
+	@Override
+	public PaddedImageTiler getImageTiler(BufferedImage src, BufferedImage dst, int width, int height) {
+		return new PaddedImageTiler(
+				src,
+				width,
+				height,
+				this.mask.width() / 2,
+				this.mask.height() / 2
+		);
+	}
+
+}
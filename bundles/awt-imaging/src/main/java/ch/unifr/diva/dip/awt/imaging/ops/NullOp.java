@@ -65,7 +65,7 @@ public class NullOp implements BufferedImageOp {
 		// buffered matrix?
 		if (src instanceof BufferedMatrix) {
 			final BufferedMatrix mat = (BufferedMatrix) src;
-			return new BufferedMatrix(
+			return BufferedMatrix.createBufferedMatrix(
 					mat.getWidth(),
 					mat.getHeight(),
 					mat.getNumBands(),
@@ -96,7 +96,7 @@ public class NullOp implements BufferedImageOp {
 		// buffered matrix?
 		if (src instanceof BufferedMatrix) {
 			final BufferedMatrix mat = (BufferedMatrix) src;
-			return new BufferedMatrix(
+			return BufferedMatrix.createBufferedMatrix(
 					bounds.width,
 					bounds.height,
 					mat.getNumBands(),
@@ -163,7 +163,13 @@ public class NullOp implements BufferedImageOp {
 	public BufferedImage createCompatibleDestImage(int width, int height, SamplePrecision precision, int numBands) {
 		switch (precision) {
 			case FLOAT:
-				return new BufferedMatrix(width, height, numBands);
+				return BufferedMatrix.createBufferedMatrix(
+						width,
+						height,
+						numBands,
+						BufferedMatrix.DataType.FLOAT,
+						BufferedMatrix.Interleave.BSQ
+				);
 
 			case BIT:
 				return new BufferedImage(
@@ -192,7 +198,7 @@ public class NullOp implements BufferedImageOp {
 	 * @return the zeroed destination matrix.
 	 */
 	public BufferedMatrix createCompatibleDestMatrix(Rectangle bounds, BufferedMatrix src) {
-		return new BufferedMatrix(
+		return BufferedMatrix.createBufferedMatrix(
 				bounds.width,
 				bounds.height,
 				src.getNumBands(),
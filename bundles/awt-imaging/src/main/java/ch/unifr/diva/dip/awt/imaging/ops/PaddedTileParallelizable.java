@@ -68,6 +68,15 @@ public interface PaddedTileParallelizable extends TileParallelizable<PaddedImage
 		);
 	}
 
+	@Override
+	default void processTile(Rectangle tile, BufferedImage src, BufferedImage dst) {
+		filter(
+				src.getSubimage(tile.x, tile.y, tile.width, tile.height),
+				dst.getSubimage(tile.x, tile.y, tile.width, tile.height),
+				((PaddedImageTiler.PaddedTile) tile).writableRegion
+		);
+	}
+
 	/**
 	 * Returns an appropriate image tiler with as much padding as needed.
 	 *
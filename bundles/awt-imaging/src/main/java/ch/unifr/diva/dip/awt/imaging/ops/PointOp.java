@@ -0,0 +1,29 @@
+package ch.unifr.diva.dip.awt.imaging.ops;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * The point op interface marks a {@code BufferedImageOp} whose output samples
+ * only depend on the input sample at the same location (and band), s.t. it can
+ * be carried out by a sample lookup table for images with integral samples of
+ * low precision.
+ */
+public interface PointOp extends CostHint {
+
+	/**
+	 * Returns the lookup table of the point op for the given source image.
+	 * The lookup table only depends on the type of the source image (i.e. its
+	 * sample model), not on its samples.
+	 *
+	 * @param src the source image.
+	 * @return the lookup table, or {@code null} if the samples of the source
+	 * image can't be looked up (e.g. signed, or floating point samples).
+	 */
+	SampleLookupTable getLookupTable(BufferedImage src);
+
+	@Override
+	default CostClass getCostClass() {
+		return CostClass.LOW;
+	}
+
+}
@@ -1,19 +1,39 @@
 package ch.unifr.diva.dip.awt.imaging.ops;
 
 import ch.unifr.diva.dip.api.datastructures.Mask;
+import ch.unifr.diva.dip.awt.imaging.DirectRaster;
 import ch.unifr.diva.dip.awt.imaging.padders.ImagePadder;
 import ch.unifr.diva.dip.awt.imaging.scanners.Location;
 import ch.unifr.diva.dip.awt.imaging.scanners.PaddedImageTiler;
 import ch.unifr.diva.dip.awt.imaging.scanners.RasterScanner;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
 import java.util.Arrays;
 
 /**
  * A rank filter.
+ *
+ * <p>
+ * Images with integral samples of up to 16 bits (e.g. binary, 8-bit, or
+ * 16-bit images) are filtered with a sliding histogram (Huang's algorithm,
+ * generalized to arbitrarily shaped masks): moving the mask one pixel to the
+ * right only removes the samples that leave the mask on its left edges, and
+ * adds the samples that enter on its right edges, and the sample of the
+ * desired rank is then looked up in a two-level (coarse and fine) histogram.
+ * This costs {@code O(k)} per pixel for a {@code k}-by-{@code k} mask, instead
+ * of {@code O(k^2 log k)} for sorting all samples under the mask. All other
+ * images (e.g. {@code BufferedMatrix}) are filtered by sorting.
+ *
+ * <p>
+ * The ranks {@code MIN} and {@code MAX} of images with integral samples are
+ * computed by a {@code MorphologyOp} (erosion and dilation) instead, which
+ * takes a constant number of comparisons per pixel for rectangular masks.
  */
-public class RankOp extends NullOp implements PaddedTileParallelizable {
+public class RankOp extends NullOp implements PaddedTileParallelizable, CostHint {
 
 	/**
 	 * Ranking methods.
@@ -67,6 +87,10 @@ public class RankOp extends NullOp implements PaddedTileParallelizable {
 	private final Rank rank;
 	private final Mask mask;
 	private final ImagePadder padder;
+	// erosion/dilation for the ranks MIN and MAX, or null
+	private final MorphologyOp morphologyOp;
+	private boolean slidingHistogram;
+	private boolean morphology;
 
 	/**
 	 * Creates a new rank filter.
@@ -79,6 +103,72 @@ public class RankOp extends NullOp implements PaddedTileParallelizable {
 		this.rank = rank;
 		this.mask = mask;
 		this.padder = padder;
+		this.morphologyOp = newMorphologyOp(rank, mask, padder);
+		this.slidingHistogram = true;
+		this.morphology = true;
+	}
+
+	// the structuring element is decomposed only once, and the op is shared
+	// by all tiles (it's immutable)
+	private static MorphologyOp newMorphologyOp(Rank rank, Mask mask, ImagePadder padder) {
+		if (mask.cardinality() < 1) {
+			return null;
+		}
+		switch (rank) {
+			case MIN:
+				return new MorphologyOp(MorphologyOp.Operation.EROSION, mask, padder);
+			case MAX:
+				return new MorphologyOp(MorphologyOp.Operation.DILATION, mask, padder);
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Enables or disables the sliding histogram. The sliding histogram is
+	 * enabled by default, and only used with supported images anyways, so
+	 * there is little reason to disable it (other than benchmarking).
+	 *
+	 * @param enable {@code true} to enable the sliding histogram, {@code false}
+	 * to always sort all samples under the mask.
+	 */
+	public void setSlidingHistogram(boolean enable) {
+		this.slidingHistogram = enable;
+	}
+
+	/**
+	 * Checks whether the sliding histogram is enabled.
+	 *
+	 * @return {@code true} if the sliding histogram is enabled, {@code false}
+	 * otherwise.
+	 */
+	public boolean isSlidingHistogram() {
+		return this.slidingHistogram;
+	}
+
+	/**
+	 * Enables or disables the morphology op for the ranks {@code MIN} and
+	 * {@code MAX}. The morphology op is enabled by default, and only used with
+	 * supported images anyways, so there is little reason to disable it (other
+	 * than benchmarking).
+	 *
+	 * @param enable {@code true} to compute the ranks {@code MIN} and
+	 * {@code MAX} by erosion and dilation, {@code false} to use a sliding
+	 * histogram (or sorting) as with any other rank.
+	 */
+	public void setMorphology(boolean enable) {
+		this.morphology = enable;
+	}
+
+	/**
+	 * Checks whether the morphology op is enabled for the ranks {@code MIN}
+	 * and {@code MAX}.
+	 *
+	 * @return {@code true} if the morphology op is enabled, {@code false}
+	 * otherwise.
+	 */
+	public boolean isMorphology() {
+		return this.morphology;
 	}
 
 	@Override
@@ -95,6 +185,19 @@ public class RankOp extends NullOp implements PaddedTileParallelizable {
 		final int numBands = src.getRaster().getNumBands();
 		final int cardinality = this.mask.cardinality();
 		final int r = this.rank.getRank(cardinality);
+
+		if (this.morphology && this.morphologyOp != null && isIntegral(src)) {
+			return this.morphologyOp.filter(src, dst, writableRegion);
+		}
+
+		if (this.slidingHistogram && cardinality > 0) {
+			final int bits = getHistogramBits(src);
+			if (bits > 0) {
+				filterHistogram(src, dst, writableRegion, numBands, r, bits);
+				return dst;
+			}
+		}
+
 		final int[] samples = new int[cardinality];
 		final WritableRaster raster = dst.getRaster();
 
@@ -127,6 +230,250 @@ public class RankOp extends NullOp implements PaddedTileParallelizable {
 		return samples[rank];
 	}
 
+	/**
+	 * Checks whether an image has integral samples. The morphology op works
+	 * on the actual sample values, which only equal the ranked (integer)
+	 * samples if the samples are integral.
+	 *
+	 * @param src the source image.
+	 * @return {@code true} if the image has integral samples, {@code false}
+	 * otherwise.
+	 */
+	private static boolean isIntegral(BufferedImage src) {
+		switch (src.getSampleModel().getDataType()) {
+			case DataBuffer.TYPE_BYTE:
+			case DataBuffer.TYPE_USHORT:
+			case DataBuffer.TYPE_SHORT:
+			case DataBuffer.TYPE_INT:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Returns the number of bits needed to index the histogram of an image.
+	 *
+	 * @param src the source image.
+	 * @return the number of bits per sample, or -1 if the image can't be
+	 * filtered with a sliding histogram.
+	 */
+	private static int getHistogramBits(BufferedImage src) {
+		final SampleModel sm = src.getSampleModel();
+		switch (sm.getDataType()) {
+			case DataBuffer.TYPE_BYTE:
+			case DataBuffer.TYPE_USHORT:
+			case DataBuffer.TYPE_INT:
+				break;
+			default:
+				// signed, or floating point samples
+				return -1;
+		}
+		int bits = 0;
+		for (int b = 0; b < sm.getNumBands(); b++) {
+			bits = Math.max(bits, sm.getSampleSize(b));
+		}
+		return (bits > 0 && bits <= 16) ? bits : -1;
+	}
+
+	/*
+	 * Sliding histogram
+	 * -----------------
+	 * The mask at column x covers the columns x + c of all cells (c, r) that
+	 * are set in the mask. Moving the mask from x - 1 to x removes the samples
+	 * at x - 1 + c of all set cells whose left neighbour is not set, and adds
+	 * the samples at x + c of all set cells whose right neighbour is not set.
+	 * Source rows are converted once (with padding) into a ring buffer of
+	 * mask-height lines, and the histogram is emptied again at the end of each
+	 * row by removing the samples of the last window (instead of clearing all
+	 * bins).
+	 */
+	private void filterHistogram(BufferedImage src, BufferedImage dst, Rectangle writableRegion, int numBands, int rank, int bits) {
+		if (writableRegion.width < 1 || writableRegion.height < 1) {
+			return;
+		}
+
+		final Rectangle mb = this.mask.bounds();
+		final Raster srcRaster = src.getRaster();
+		final WritableRaster dstRaster = dst.getRaster();
+		final DirectRaster in = DirectRaster.isSupported(srcRaster)
+				? new DirectRaster(srcRaster)
+				: null;
+		final DirectRaster out = DirectRaster.isSupported(dstRaster)
+				? new DirectRaster(dstRaster)
+				: null;
+
+		// mask cells: all, leaving (left edges), and entering (right edges)
+		final int cardinality = this.mask.cardinality();
+		final int[] cellCol = new int[cardinality];
+		final int[] cellRow = new int[cardinality];
+		final int[] leaveCol = new int[cardinality];
+		final int[] leaveRow = new int[cardinality];
+		final int[] enterCol = new int[cardinality];
+		final int[] enterRow = new int[cardinality];
+		int numCells = 0;
+		int numLeave = 0;
+		int numEnter = 0;
+		for (int r = 0; r < mb.height; r++) {
+			for (int c = 0; c < mb.width; c++) {
+				if (!isSet(c, r)) {
+					continue;
+				}
+				cellCol[numCells] = c;
+				cellRow[numCells] = r;
+				numCells++;
+				if (!isSet(c - 1, r)) {
+					leaveCol[numLeave] = c;
+					leaveRow[numLeave] = r;
+					numLeave++;
+				}
+				if (!isSet(c + 1, r)) {
+					enterCol[numEnter] = c;
+					enterRow[numEnter] = r;
+					numEnter++;
+				}
+			}
+		}
+
+		final int x0 = writableRegion.x;
+		final int n = writableRegion.width;
+		final int lineX = x0 + mb.x; // source column of line index 0
+		final int lineLength = n + mb.width - 1;
+		final int[][] lines = new int[mb.height][lineLength];
+		final int[] tmp = new int[lineLength];
+		final int[] result = new int[n];
+		final RankHistogram histogram = new RankHistogram(bits);
+
+		for (int b = 0; b < numBands; b++) {
+			int loaded = Integer.MIN_VALUE;
+			for (int y = writableRegion.y; y < writableRegion.y + writableRegion.height; y++) {
+				// source rows y + mb.y to y + mb.y + mb.height - 1
+				final int first = y + mb.y;
+				final int last = first + mb.height - 1;
+				for (int r = Math.max(loaded + 1, first); r <= last; r++) {
+					loadLine(src, in, lines[Math.floorMod(r, mb.height)], tmp, lineX, r, b);
+				}
+				loaded = last;
+
+				// line of mask row r
+				final int slot = Math.floorMod(first, mb.height);
+
+				for (int i = 0; i < numCells; i++) {
+					histogram.add(lines[(slot + cellRow[i]) % mb.height][cellCol[i]]);
+				}
+				result[0] = histogram.get(rank);
+
+				for (int x = 1; x < n; x++) {
+					for (int i = 0; i < numLeave; i++) {
+						histogram.remove(lines[(slot + leaveRow[i]) % mb.height][x - 1 + leaveCol[i]]);
+					}
+					for (int i = 0; i < numEnter; i++) {
+						histogram.add(lines[(slot + enterRow[i]) % mb.height][x + enterCol[i]]);
+					}
+					result[x] = histogram.get(rank);
+				}
+
+				for (int i = 0; i < numCells; i++) {
+					histogram.remove(lines[(slot + cellRow[i]) % mb.height][n - 1 + cellCol[i]]);
+				}
+
+				if (out != null) {
+					out.setSamples(x0, y, n, b, result, 0);
+				} else {
+					dstRaster.setSamples(x0, y, n, 1, b, result);
+				}
+			}
+		}
+	}
+
+	private boolean isSet(int c, int r) {
+		if (c < 0 || c >= this.mask.width()) {
+			return false;
+		}
+		return this.mask.get(r * this.mask.width() + c);
+	}
+
+	private void loadLine(BufferedImage src, DirectRaster in, int[] line, int[] tmp, int x, int row, int band) {
+		final int width = src.getWidth();
+		final int length = line.length;
+		if (row < 0 || row >= src.getHeight()) {
+			for (int i = 0; i < length; i++) {
+				line[i] = this.padder.getSample(src, x + i, row, band);
+			}
+			return;
+		}
+
+		final int start = Math.max(0, x);
+		final int end = Math.min(width, x + length);
+		for (int i = 0; i < start - x; i++) {
+			line[i] = this.padder.getSample(src, x + i, row, band);
+		}
+		if (end > start) {
+			if (in != null) {
+				in.getSamples(start, row, end - start, band, line, start - x);
+			} else {
+				src.getRaster().getSamples(start, row, end - start, 1, band, tmp);
+				System.arraycopy(tmp, 0, line, start - x, end - start);
+			}
+		}
+		for (int i = Math.max(0, end - x); i < length; i++) {
+			line[i] = this.padder.getSample(src, x + i, row, band);
+		}
+	}
+
+	/**
+	 * A two-level histogram to look up the sample of some rank. Fine bins
+	 * count single sample values, coarse bins count a range of sample values,
+	 * s.t. a look-up needs at most {@code 2^(bits/2 + 1)} steps.
+	 */
+	private static class RankHistogram {
+
+		private final int[] fine;
+		private final int[] coarse;
+		private final int shift;
+
+		public RankHistogram(int bits) {
+			this.shift = (bits + 1) / 2;
+			this.fine = new int[1 << bits];
+			this.coarse = new int[1 << (bits - this.shift)];
+		}
+
+		public void add(int value) {
+			this.fine[value]++;
+			this.coarse[value >> this.shift]++;
+		}
+
+		public void remove(int value) {
+			this.fine[value]--;
+			this.coarse[value >> this.shift]--;
+		}
+
+		public int get(int rank) {
+			int count = 0;
+			int i = 0;
+			while (count + this.coarse[i] <= rank) {
+				count += this.coarse[i];
+				i++;
+			}
+			int value = i << this.shift;
+			while (count + this.fine[value] <= rank) {
+				count += this.fine[value];
+				value++;
+			}
+			return value;
+		}
+	}
+
+	@Override
+	public CostClass getCostClass() {
+		return CostClass.HIGH;
+	}
+
+	@Override
+	public int getKernelRadius() {
+		return Math.max(this.mask.width(), this.mask.height()) / 2;
+	}
+
 	@Override
 	public PaddedImageTiler getImageTiler(BufferedImage src, BufferedImage dst, int width, int height) {
 		return new PaddedImageTiler(
@@ -1,14 +1,40 @@
 package ch.unifr.diva.dip.awt.imaging.ops;
 
+import ch.unifr.diva.dip.awt.imaging.DirectRaster;
+import ch.unifr.diva.dip.awt.imaging.ImagingUtils;
 import ch.unifr.diva.dip.awt.imaging.interpolation.Interpolant;
+import ch.unifr.diva.dip.awt.imaging.interpolation.Interpolation;
 import ch.unifr.diva.dip.awt.imaging.mapper.ScalingMapper;
 import ch.unifr.diva.dip.awt.imaging.padders.ImagePadder;
+import ch.unifr.diva.dip.imaging.rescaling.FilterFunction;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
 
 /**
  * Resample filter.
+ *
+ * <p>
+ * Since the source location of a destination pixel only depends on its column
+ * (in X) and its row (in Y), the weights of the contributing source samples
+ * are precomputed per axis, and the image is resampled in two passes: first
+ * each contributing source row is resampled in X, then each destination row is
+ * resampled in Y from those. This is done for the interpolation methods of
+ * {@code Interpolation} (custom interpolants are evaluated per pixel), and for
+ * any {@code FilterFunction} (e.g. {@code ResamplingFilter.LANCZOS3}), whose
+ * support is widened by the inverse scale factor for downscaling (i.e. all
+ * covered source samples contribute, instead of just the ones next to the
+ * source location).
  */
 public class ResampleOp extends GeometricTransformOp<ScalingMapper> {
 
+	private final FilterFunction filterFunction;
+	private boolean separable;
+	private volatile Contributions contribX;
+	private volatile Contributions contribY;
+
 	/**
 	 * Creates a new resample filter with an {@code EXTENDED_BORDER} image
 	 * padder, and without clamping.
@@ -59,6 +85,41 @@ public class ResampleOp extends GeometricTransformOp<ScalingMapper> {
 	 */
 	public ResampleOp(double scaleX, double scaleY, Interpolant interpolant, ImagePadder padder, double[] min, double[] max) {
 		super(getScaleMapper(scaleX, scaleY), interpolant, padder, min, max);
+		this.filterFunction = null;
+		this.separable = true;
+	}
+
+	/**
+	 * Creates a new resample filter with a filter function, an
+	 * {@code EXTENDED_BORDER} image padder, and with clamping.
+	 *
+	 * @param scaleX X scale factor.
+	 * @param scaleY Y scale factor.
+	 * @param filterFunction the filter function (e.g. a
+	 * {@code ResamplingFilter}).
+	 * @param min minimum value per band used for clamping.
+	 * @param max maximum value per band used for clamping.
+	 */
+	public ResampleOp(double scaleX, double scaleY, FilterFunction filterFunction, double[] min, double[] max) {
+		this(scaleX, scaleY, filterFunction, ImagePadder.Type.EXTENDED_BORDER.getInstance(), min, max);
+	}
+
+	/**
+	 * Creates a new resample filter with a filter function, and with
+	 * clamping.
+	 *
+	 * @param scaleX X scale factor.
+	 * @param scaleY Y scale factor.
+	 * @param filterFunction the filter function (e.g. a
+	 * {@code ResamplingFilter}).
+	 * @param padder the image padder.
+	 * @param min minimum value per band used for clamping, or {@code null}.
+	 * @param max maximum value per band used for clamping, or {@code null}.
+	 */
+	public ResampleOp(double scaleX, double scaleY, FilterFunction filterFunction, ImagePadder padder, double[] min, double[] max) {
+		super(getScaleMapper(scaleX, scaleY), null, padder, min, max);
+		this.filterFunction = filterFunction;
+		this.separable = true;
 	}
 
 	/**
@@ -70,6 +131,38 @@ public class ResampleOp extends GeometricTransformOp<ScalingMapper> {
 		return this.mapper;
 	}
 
+	/**
+	 * Returns the filter function.
+	 *
+	 * @return the filter function, or {@code null} if an interpolant is used.
+	 */
+	public FilterFunction getFilterFunction() {
+		return this.filterFunction;
+	}
+
+	/**
+	 * Enables or disables separable resampling with precomputed weights.
+	 * Enabled by default. If disabled, the interpolant is evaluated for each
+	 * destination pixel instead. Resampling with a filter function is always
+	 * separable.
+	 *
+	 * @param separable {@code true} to resample in two passes, {@code false}
+	 * otherwise.
+	 */
+	public void setSeparable(boolean separable) {
+		this.separable = separable;
+	}
+
+	/**
+	 * Checks whether separable resampling is enabled.
+	 *
+	 * @return {@code true} if separable resampling is enabled, {@code false}
+	 * otherwise.
+	 */
+	public boolean isSeparable() {
+		return this.separable;
+	}
+
 	/**
 	 * Returns an appropriate inverse mapper.
 	 *
@@ -81,4 +174,332 @@ public class ResampleOp extends GeometricTransformOp<ScalingMapper> {
 		return new ScalingMapper(scaleX, scaleY);
 	}
 
+	@Override
+	public BufferedImage filter(BufferedImage src, BufferedImage dst) {
+		if (this.filterFunction == null
+				&& !(this.separable && (this.interpolant instanceof Interpolation))) {
+			return super.filter(src, dst);
+		}
+
+		if (dst == null) {
+			dst = createCompatibleDestImage(src, src.getColorModel());
+		}
+
+		// tile offset (see InverseMappedTileParallelizable)
+		final WritableRaster raster = dst.getRaster();
+		final int x0;
+		final int y0;
+		if (raster.getParent() == null) {
+			x0 = 0;
+			y0 = 0;
+		} else {
+			x0 = -raster.getSampleModelTranslateX();
+			y0 = -raster.getSampleModelTranslateY();
+		}
+		final int width = dst.getWidth();
+		final int height = dst.getHeight();
+		if (width < 1 || height < 1) {
+			return dst;
+		}
+
+		// contributions cover the whole destination image, s.t. they get
+		// computed once, not per tile
+		final Rectangle bounds = this.mapper.getDestinationBounds(src);
+		final Contributions cx = getContributions(true, Math.max(bounds.width, x0 + width));
+		final Contributions cy = getContributions(false, Math.max(bounds.height, y0 + height));
+		resample(src, raster, x0, y0, width, height, cx, cy);
+
+		return dst;
+	}
+
+	/*
+	 * Separable resampling
+	 * --------------------
+	 * The source samples contributing to destination column i are the
+	 * (contiguous) columns first[i] to first[i] + taps - 1, weighted by
+	 * weights[i * taps + k]; same for rows. Since first[] is non-decreasing,
+	 * the rows resampled in X needed for consecutive destination rows can be
+	 * kept in a ring buffer of taps rows: a window of taps consecutive source
+	 * rows maps to distinct slots (row mod taps).
+	 */
+	private void resample(BufferedImage src, WritableRaster dstRaster, int x0, int y0, int width, int height, Contributions cx, Contributions cy) {
+		final Raster srcRaster = src.getRaster();
+		final DirectRaster in = DirectRaster.isSupported(srcRaster)
+				? new DirectRaster(srcRaster)
+				: null;
+		final DirectRaster out = DirectRaster.isSupported(dstRaster)
+				? new DirectRaster(dstRaster)
+				: null;
+		final int numBands = dstRaster.getNumBands();
+		final boolean clamp = doClamp();
+
+		// source columns covered by the tile
+		final int sx0 = cx.first[x0];
+		final int length = cx.first[x0 + width - 1] + cx.taps - sx0;
+		final double[] line = new double[length];
+		final double[] tmp = new double[length];
+
+		final int taps = cy.taps;
+		final double[][] rows = new double[taps][width];
+		final int[] loaded = new int[taps];
+		final double[] row = new double[width];
+
+		for (int band = 0; band < numBands; band++) {
+			Arrays.fill(loaded, Integer.MIN_VALUE);
+			final double lo = clamp ? this.min[band] : 0;
+			final double hi = clamp ? this.max[band] : 0;
+
+			for (int y = 0; y < height; y++) {
+				final int first = cy.first[y0 + y];
+				final int wy = (y0 + y) * taps;
+				Arrays.fill(row, 0);
+
+				for (int k = 0; k < taps; k++) {
+					final int sy = first + k;
+					final int slot = Math.floorMod(sy, taps);
+					final double[] resampled = rows[slot];
+					if (loaded[slot] != sy) {
+						loadLine(src, in, line, tmp, sx0, sy, band);
+						resampleRow(line, sx0, resampled, x0, cx);
+						loaded[slot] = sy;
+					}
+					final double w = cy.weights[wy + k];
+					if (w != 0) {
+						for (int i = 0; i < width; i++) {
+							row[i] += w * resampled[i];
+						}
+					}
+				}
+
+				if (clamp) {
+					for (int i = 0; i < width; i++) {
+						row[i] = ImagingUtils.clamp(row[i], lo, hi);
+					}
+				}
+				if (out != null) {
+					out.setSamples(0, y, width, band, row, 0);
+				} else {
+					dstRaster.setSamples(0, y, width, 1, band, row);
+				}
+			}
+		}
+	}
+
+	// resamples a source row in X
+	private void resampleRow(double[] line, int sx0, double[] resampled, int x0, Contributions cx) {
+		final int taps = cx.taps;
+		final double[] weights = cx.weights;
+		for (int i = 0; i < resampled.length; i++) {
+			final int offset = cx.first[x0 + i] - sx0;
+			final int w = (x0 + i) * taps;
+			double sum = 0;
+			for (int k = 0; k < taps; k++) {
+				sum += weights[w + k] * line[offset + k];
+			}
+			resampled[i] = sum;
+		}
+	}
+
+	// reads a source row, padded where out of bounds
+	private void loadLine(BufferedImage src, DirectRaster in, double[] line, double[] tmp, int x, int row, int band) {
+		final int length = line.length;
+		if (row < 0 || row >= src.getHeight()) {
+			for (int i = 0; i < length; i++) {
+				line[i] = this.padder.getSampleDouble(src, x + i, row, band);
+			}
+			return;
+		}
+
+		final int start = Math.max(0, x);
+		final int end = Math.min(src.getWidth(), x + length);
+		for (int i = 0; i < start - x; i++) {
+			line[i] = this.padder.getSampleDouble(src, x + i, row, band);
+		}
+		if (end > start) {
+			if (in != null) {
+				in.getSamples(start, row, end - start, band, line, start - x);
+			} else {
+				src.getRaster().getSamples(start, row, end - start, 1, band, tmp);
+				System.arraycopy(tmp, 0, line, start - x, end - start);
+			}
+		}
+		for (int i = Math.max(0, end - x); i < length; i++) {
+			line[i] = this.padder.getSampleDouble(src, x + i, row, band);
+		}
+	}
+
+	// returns cached contributions, covering at least the given number of
+	// destination columns (or rows)
+	private Contributions getContributions(boolean horizontal, int length) {
+		final double scale = horizontal
+				? this.mapper.getScaleX()
+				: this.mapper.getScaleY();
+		Contributions c = horizontal ? this.contribX : this.contribY;
+		if (c == null || c.scale != scale || c.first.length < length) {
+			c = (this.filterFunction != null)
+					? Contributions.newInstance(this.filterFunction, scale, length)
+					: Contributions.newInstance((Interpolation) this.interpolant, scale, length);
+			if (horizontal) {
+				this.contribX = c;
+			} else {
+				this.contribY = c;
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Source samples contributing to the destination samples along an axis.
+	 */
+	private static class Contributions {
+
+		/**
+		 * The scale factor.
+		 */
+		final double scale;
+
+		/**
+		 * Maximum number of contributing source samples.
+		 */
+		final int taps;
+
+		/**
+		 * First contributing source sample, per destination sample.
+		 */
+		final int[] first;
+
+		/**
+		 * Weights of the contributing source samples, {@code taps} per
+		 * destination sample.
+		 */
+		final double[] weights;
+
+		Contributions(double scale, int taps, int length) {
+			this.scale = scale;
+			this.taps = taps;
+			this.first = new int[length];
+			this.weights = new double[taps * length];
+		}
+
+		/**
+		 * Returns the source location of a destination sample.
+		 *
+		 * @param i the destination sample.
+		 * @param scale the scale factor.
+		 * @return the source location.
+		 */
+		static double center(int i, double scale) {
+			return i / scale + PIXEL_SHIFT;
+		}
+
+		/**
+		 * Computes the contributions of an interpolation method. Same weights
+		 * as used by the interpolation method for a single pixel.
+		 *
+		 * @param interpolation the interpolation method.
+		 * @param scale the scale factor.
+		 * @param length the number of destination samples.
+		 * @return the contributions.
+		 */
+		static Contributions newInstance(Interpolation interpolation, double scale, int length) {
+			final Contributions c;
+			switch (interpolation) {
+				case NEAREST_NEIGHBOR:
+					c = new Contributions(scale, 1, length);
+					for (int i = 0; i < length; i++) {
+						c.first[i] = (int) Math.round(center(i, scale));
+						c.weights[i] = 1;
+					}
+					return c;
+
+				case BILINEAR:
+					c = new Contributions(scale, 2, length);
+					for (int i = 0; i < length; i++) {
+						final double x = center(i, scale);
+						final int x0 = (int) Math.floor(x);
+						final double dx = x - x0;
+						c.first[i] = x0;
+						c.weights[i * 2] = 1 - dx;
+						c.weights[i * 2 + 1] = dx;
+					}
+					return c;
+
+				case BICUBIC:
+				default:
+					// the weights of Interpolation.cubic(x, y0, y1, y2, y3)
+					c = new Contributions(scale, 4, length);
+					for (int i = 0; i < length; i++) {
+						final double x = center(i, scale);
+						final int x0 = (int) Math.floor(x);
+						final double t = x - x0;
+						final double t2 = t * t;
+						final double t3 = t2 * t;
+						final int w = i * 4;
+						c.first[i] = x0 - 1;
+						c.weights[w] = 0.5 * (-t + 2 * t2 - t3);
+						c.weights[w + 1] = 0.5 * (2 - 5 * t2 + 3 * t3);
+						c.weights[w + 2] = 0.5 * (t + 4 * t2 - 3 * t3);
+						c.weights[w + 3] = 0.5 * (-t2 + t3);
+					}
+					return c;
+			}
+		}
+
+		/**
+		 * Computes the contributions of a filter function. Same weights as
+		 * the pixel contributions of {@code AbstractFilteredRescaling}: the
+		 * support of the filter is widened (and normalized) by the inverse
+		 * scale factor for downscaling.
+		 *
+		 * @param filter the filter function.
+		 * @param scale the scale factor.
+		 * @param length the number of destination samples.
+		 * @return the contributions.
+		 */
+		static Contributions newInstance(FilterFunction filter, double scale, int length) {
+			double width = filter.getSupport();
+			double fscale = 1.0;
+			final boolean normalize = scale < 1.0;
+			if (normalize) {
+				width = width / scale;
+				fscale = 1.0 / scale;
+				// reduce to point sampling
+				if (width <= 0.5) {
+					width = 0.5 + 1.0e-6;
+					fscale = 1.0;
+				}
+			}
+
+			int taps = 1;
+			for (int i = 0; i < length; i++) {
+				final double center = center(i, scale);
+				final int left = (int) Math.ceil(center - width);
+				final int right = (int) Math.floor(center + width);
+				taps = Math.max(taps, right - left + 1);
+			}
+
+			final Contributions c = new Contributions(scale, taps, length);
+			for (int i = 0; i < length; i++) {
+				final double center = center(i, scale);
+				final int left = (int) Math.ceil(center - width);
+				final int right = (int) Math.floor(center + width);
+				final int w = i * taps;
+				double density = 0;
+				c.first[i] = left;
+				for (int j = left; j <= right; j++) {
+					final double weight = filter.filter((center - j) / fscale) / fscale;
+					c.weights[w + j - left] = weight;
+					density += weight;
+				}
+				if (normalize && density != 0.0 && density != 1.0) {
+					for (int k = 0; k <= right - left; k++) {
+						c.weights[w + k] /= density;
+					}
+				}
+			}
+			return c;
+		}
+
+	}
+
 }
@@ -1,15 +1,17 @@
 package ch.unifr.diva.dip.awt.imaging.ops;
 
 import ch.unifr.diva.dip.awt.imaging.ImagingUtils;
-import ch.unifr.diva.dip.awt.imaging.scanners.Location;
-import ch.unifr.diva.dip.awt.imaging.scanners.RasterScanner;
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpan;
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpanScanner;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.WritableRaster;
 
 /**
- * Linear scaling filter.
+ * Linear scaling filter. Images with integral samples of at most 16 bits are
+ * rescaled by a lookup table.
  */
-public class RescaleOp extends NullOp implements SimpleTileParallelizable {
+public class RescaleOp extends NullOp implements SimpleTileParallelizable, PointOp {
 
 	private final boolean[] abs;
 	private final double[] gain;
@@ -21,6 +23,9 @@ public class RescaleOp extends NullOp implements SimpleTileParallelizable {
 	private final double[][] srcRange; // band -> [min, max]
 	private final double[][] dstRange;
 
+	private boolean tableLookup;
+	private volatile SampleLookupTable lookupTable;
+
 	/**
 	 * Creates a new rescale filter with gain-bias rescaling.
 	 * <pre>I'(x,y) = gain * I(x,y) + bias</pre>
@@ -43,6 +48,7 @@ public class RescaleOp extends NullOp implements SimpleTileParallelizable {
 
 		this.srcRange = null;
 		this.dstRange = null;
+		this.tableLookup = true;
 	}
 
 	/**
@@ -64,6 +70,29 @@ public class RescaleOp extends NullOp implements SimpleTileParallelizable {
 
 		this.srcRange = srcRange;
 		this.dstRange = dstRange;
+		this.tableLookup = true;
+	}
+
+	/**
+	 * Enables or disables rescaling by a lookup table. Enabled by default.
+	 * Samples are rescaled one by one if disabled, or if the samples of the
+	 * source image can't be looked up.
+	 *
+	 * @param tableLookup {@code true} to rescale by a lookup table,
+	 * {@code false} otherwise.
+	 */
+	public void setTableLookup(boolean tableLookup) {
+		this.tableLookup = tableLookup;
+	}
+
+	/**
+	 * Checks whether rescaling by a lookup table is enabled.
+	 *
+	 * @return {@code true} if rescaling by a lookup table is enabled,
+	 * {@code false} otherwise.
+	 */
+	public boolean isTableLookup() {
+		return this.tableLookup;
 	}
 
 	private boolean rescaleByRange() {
@@ -94,67 +123,136 @@ public class RescaleOp extends NullOp implements SimpleTileParallelizable {
 			dst = createCompatibleDestImage(src, precision);
 		}
 
+		filterRegion(src, dst, new Rectangle(src.getWidth(), src.getHeight()));
+
+		return dst;
+	}
+
+	@Override
+	public void filterRegion(BufferedImage src, BufferedImage dst, Rectangle region) {
 		final WritableRaster srcRaster = src.getRaster();
 		final WritableRaster dstRaster = dst.getRaster();
+		final SampleLookupTable table = this.tableLookup ? getLookupTable(src) : null;
 
+		if (table != null) {
+			table.apply(srcRaster, dstRaster, region);
+		} else if (rescaleByRange()) {
+			filterByRange(srcRaster, dstRaster, region);
+		} else {
+			filterByGainBias(srcRaster, dstRaster, region);
+		}
+	}
+
+	@Override
+	public SampleLookupTable getLookupTable(BufferedImage src) {
+		final int bits = SampleLookupTable.getBits(src.getRaster());
+		if (bits < 0) {
+			return null;
+		}
+		final int numBands;
 		if (rescaleByRange()) {
-			filterByRange(srcRaster, dstRaster);
+			numBands = min(src.getRaster().getNumBands(), this.srcRange.length, this.dstRange.length);
 		} else {
-			filterByGainBias(srcRaster, dstRaster);
+			numBands = min(
+					src.getRaster().getNumBands(),
+					min(this.gain.length, this.bias.length, this.min.length),
+					this.max.length
+			);
 		}
 
-		return dst;
+		SampleLookupTable table = this.lookupTable;
+		if (table == null || table.getBits() != bits || table.getNumBands() != numBands) {
+			table = rescaleByRange()
+					? newRangeLookupTable(bits, numBands)
+					: newGainBiasLookupTable(bits, numBands);
+			this.lookupTable = table;
+		}
+		return table;
 	}
 
-	private void filterByGainBias(WritableRaster srcRaster, WritableRaster dstRaster) {
-		if (takeAbsValue()) {
-			for (Location pt : new RasterScanner(getRasterWithLeastBands(srcRaster, dstRaster))) {
-				dstRaster.setSample(
-						pt.col,
-						pt.row,
-						pt.band,
-						ImagingUtils.clamp(
-								this.gain[pt.band] * abs(pt.band, srcRaster.getSampleFloat(pt.col, pt.row, pt.band)) + this.bias[pt.band],
-								this.min[pt.band],
-								this.max[pt.band]
-						)
-				);
-			}
-		} else {
-			for (Location pt : new RasterScanner(getRasterWithLeastBands(srcRaster, dstRaster))) {
-				dstRaster.setSample(
-						pt.col,
-						pt.row,
-						pt.band,
-						ImagingUtils.clamp(
-								this.gain[pt.band] * srcRaster.getSampleFloat(pt.col, pt.row, pt.band) + this.bias[pt.band],
-								this.min[pt.band],
-								this.max[pt.band]
-						)
-				);
+	private static int min(int a, int b, int c) {
+		return Math.min(a, Math.min(b, c));
+	}
+
+	// same arithmetic as filterByGainBias, on float samples
+	private SampleLookupTable newGainBiasLookupTable(int bits, int numBands) {
+		final boolean takeAbs = takeAbsValue();
+		return SampleLookupTable.newInstance(bits, numBands, (b, v) -> {
+			final float sample = v;
+			return ImagingUtils.clamp(
+					this.gain[b] * ((takeAbs && b < this.abs.length && this.abs[b]) ? Math.abs(sample) : sample) + this.bias[b],
+					this.min[b],
+					this.max[b]
+			);
+		});
+	}
+
+	// same arithmetic as filterByRange, on float samples
+	private SampleLookupTable newRangeLookupTable(int bits, int numBands) {
+		return SampleLookupTable.newInstance(bits, numBands, (b, v) -> {
+			final double ratio = (this.dstRange[b][1] - this.dstRange[b][0]) / (this.srcRange[b][1] - this.srcRange[b][0]);
+			final float sample = v;
+			return ImagingUtils.rescale(
+					sample,
+					ratio,
+					this.srcRange[b][1],
+					this.dstRange[b][1]
+			);
+		});
+	}
+
+	private void filterByGainBias(WritableRaster srcRaster, WritableRaster dstRaster, Rectangle region) {
+		final WritableRaster raster = getRasterWithLeastBands(srcRaster, dstRaster);
+		final int numBands = raster.getNumBands();
+		final RowSpanScanner dstSpans = new RowSpanScanner(dstRaster, region, 0, numBands);
+		final float[] samples = new float[region.width];
+		final double[] rescaled = new double[region.width];
+		final boolean takeAbs = takeAbsValue();
+
+		for (RowSpan span : new RowSpanScanner(srcRaster, region, 0, numBands)) {
+			span.getSamples(samples);
+			final int b = span.band;
+			final double g = this.gain[b];
+			final double o = this.bias[b];
+			final double lo = this.min[b];
+			final double hi = this.max[b];
+			if (takeAbs && this.abs[b]) {
+				for (int i = 0; i < samples.length; i++) {
+					rescaled[i] = ImagingUtils.clamp(g * Math.abs(samples[i]) + o, lo, hi);
+				}
+			} else {
+				for (int i = 0; i < samples.length; i++) {
+					rescaled[i] = ImagingUtils.clamp(g * samples[i] + o, lo, hi);
+				}
 			}
+			dstSpans.next().setSamples(rescaled);
 		}
 	}
 
-	private void filterByRange(WritableRaster srcRaster, WritableRaster dstRaster) {
+	private void filterByRange(WritableRaster srcRaster, WritableRaster dstRaster, Rectangle region) {
 		final WritableRaster raster = getRasterWithLeastBands(srcRaster, dstRaster);
 		final double[] ratio = new double[raster.getNumBands()];
 		for (int i = 0; i < ratio.length; i++) {
 			ratio[i] = (this.dstRange[i][1] - this.dstRange[i][0]) / (this.srcRange[i][1] - this.srcRange[i][0]);
 		}
 
-		for (Location pt : new RasterScanner(raster)) {
-			dstRaster.setSample(
-					pt.col,
-					pt.row,
-					pt.band,
-					ImagingUtils.rescale(
-							srcRaster.getSampleFloat(pt.col, pt.row, pt.band),
-							ratio[pt.band],
-							this.srcRange[pt.band][1],
-							this.dstRange[pt.band][1]
-					)
-			);
+		final int numBands = raster.getNumBands();
+		final RowSpanScanner dstSpans = new RowSpanScanner(dstRaster, region, 0, numBands);
+		final float[] samples = new float[region.width];
+		final double[] rescaled = new double[region.width];
+
+		for (RowSpan span : new RowSpanScanner(srcRaster, region, 0, numBands)) {
+			span.getSamples(samples);
+			final int b = span.band;
+			for (int i = 0; i < samples.length; i++) {
+				rescaled[i] = ImagingUtils.rescale(
+						samples[i],
+						ratio[b],
+						this.srcRange[b][1],
+						this.dstRange[b][1]
+				);
+			}
+			dstSpans.next().setSamples(rescaled);
 		}
 	}
 
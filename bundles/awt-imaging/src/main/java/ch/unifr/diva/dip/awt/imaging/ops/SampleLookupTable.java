@@ -0,0 +1,296 @@
+package ch.unifr.diva.dip.awt.imaging.ops;
+
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpan;
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpanScanner;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * A sample lookup table of a point operation. Holds the output value for each
+ * possible input sample of a source band, for images with unsigned, integral
+ * samples of at most 16 bits (i.e. 256 entries per band for 8-bit, or 65536
+ * entries for 16-bit samples).
+ *
+ * <p>
+ * Output values are stored as doubles, s.t. writing them to the destination
+ * raster yields the exact same samples as the point operation would (e.g.
+ * truncated and wrapped by a byte raster). If both, source and destination,
+ * are backed by byte or (unsigned) short arrays, the table is applied with a
+ * single array load per sample, using tables of the destination type.
+ */
+public class SampleLookupTable {
+
+	/**
+	 * Maximum number of bits per sample.
+	 */
+	public final static int MAX_BITS = 16;
+
+	/**
+	 * A point operation on a single sample.
+	 */
+	public interface SampleFunction {
+
+		/**
+		 * Returns the output value of a sample.
+		 *
+		 * @param band the (output) band.
+		 * @param sample the input sample.
+		 * @return the output value.
+		 */
+		double apply(int band, int sample);
+	}
+
+	private final int bits;
+	private final int[] srcBands;
+	private final double[][] values;
+	private volatile byte[][] byteTables;
+	private volatile short[][] shortTables;
+
+	/**
+	 * Creates a new sample lookup table.
+	 *
+	 * @param bits the number of bits per (input) sample.
+	 * @param srcBands the source band of each output band.
+	 * @param function the point operation.
+	 */
+	public SampleLookupTable(int bits, int[] srcBands, SampleFunction function) {
+		this(bits, srcBands, new double[srcBands.length][]);
+		final int n = 1 << bits;
+		for (int b = 0; b < srcBands.length; b++) {
+			this.values[b] = new double[n];
+			for (int v = 0; v < n; v++) {
+				this.values[b][v] = function.apply(b, v);
+			}
+		}
+	}
+
+	private SampleLookupTable(int bits, int[] srcBands, double[][] values) {
+		if (bits < 1 || bits > MAX_BITS) {
+			throw new IllegalArgumentException("invalid number of bits: " + bits);
+		}
+		this.bits = bits;
+		this.srcBands = srcBands;
+		this.values = values;
+	}
+
+	/**
+	 * Creates a new sample lookup table with an output band for each source
+	 * band.
+	 *
+	 * @param bits the number of bits per (input) sample.
+	 * @param numBands the number of bands.
+	 * @param function the point operation.
+	 * @return the sample lookup table.
+	 */
+	public static SampleLookupTable newInstance(int bits, int numBands, SampleFunction function) {
+		final int[] srcBands = new int[numBands];
+		for (int b = 0; b < numBands; b++) {
+			srcBands[b] = b;
+		}
+		return new SampleLookupTable(bits, srcBands, function);
+	}
+
+	/**
+	 * Returns the number of bits per sample of a raster that can be looked up.
+	 *
+	 * @param raster the raster.
+	 * @return the number of bits per sample, or -1 if the samples of the
+	 * raster are signed, floating point, or have more than {@code MAX_BITS}
+	 * bits.
+	 */
+	public static int getBits(Raster raster) {
+		final SampleModel sm = raster.getSampleModel();
+		switch (sm.getDataType()) {
+			case DataBuffer.TYPE_BYTE:
+			case DataBuffer.TYPE_USHORT:
+			case DataBuffer.TYPE_INT:
+				break;
+			default:
+				return -1;
+		}
+		int bits = 0;
+		for (int b = 0; b < sm.getNumBands(); b++) {
+			bits = Math.max(bits, sm.getSampleSize(b));
+		}
+		return (bits > 0 && bits <= MAX_BITS) ? bits : -1;
+	}
+
+	/**
+	 * Returns the number of bits per (input) sample.
+	 *
+	 * @return the number of bits per sample.
+	 */
+	public int getBits() {
+		return this.bits;
+	}
+
+	/**
+	 * Returns the number of (output) bands.
+	 *
+	 * @return the number of bands.
+	 */
+	public int getNumBands() {
+		return this.srcBands.length;
+	}
+
+	/**
+	 * Returns the source band of an output band.
+	 *
+	 * @param band the output band.
+	 * @return the source band.
+	 */
+	public int getSourceBand(int band) {
+		return this.srcBands[band];
+	}
+
+	/**
+	 * Returns the output value of a sample.
+	 *
+	 * @param band the output band.
+	 * @param sample the input sample of the source band.
+	 * @return the output value.
+	 */
+	public double getValue(int band, int sample) {
+		return this.values[band][sample];
+	}
+
+	/**
+	 * Applies the lookup table. Writes the output bands of the lookup table,
+	 * or as many as the destination raster has.
+	 *
+	 * @param src the source raster.
+	 * @param dst the destination raster of the same size.
+	 */
+	public void apply(Raster src, WritableRaster dst) {
+		apply(src, dst, new Rectangle(src.getWidth(), src.getHeight()));
+	}
+
+	/**
+	 * Applies the lookup table to a region of the rasters. Writes the output
+	 * bands of the lookup table, or as many as the destination raster has.
+	 *
+	 * @param src the source raster.
+	 * @param dst the destination raster of the same size.
+	 * @param region the region, relative to the upper left corner of the
+	 * rasters.
+	 */
+	public void apply(Raster src, WritableRaster dst, Rectangle region) {
+		final int srcBits = getBits(src);
+		if (srcBits < 0 || srcBits > this.bits) {
+			throw new IllegalArgumentException(
+					"can't look up samples of the raster in a "
+					+ this.bits + "-bit table"
+			);
+		}
+
+		final Rectangle srcRegion = new Rectangle(src.getMinX() + region.x, src.getMinY() + region.y, region.width, region.height);
+		final Rectangle dstRegion = new Rectangle(dst.getMinX() + region.x, dst.getMinY() + region.y, region.width, region.height);
+		final int numBands = Math.min(getNumBands(), dst.getNumBands());
+		final int[] samples = new int[srcRegion.width];
+		final double[] looked = new double[srcRegion.width];
+
+		for (int b = 0; b < numBands; b++) {
+			final double[] table = this.values[b];
+			final RowSpanScanner dstSpans = new RowSpanScanner(dst, dstRegion, b, 1);
+			for (RowSpan span : new RowSpanScanner(src, srcRegion, this.srcBands[b], 1)) {
+				final RowSpan dstSpan = dstSpans.next();
+				if (!applyDirect(span, dstSpan, b)) {
+					span.getSamples(samples);
+					for (int i = 0; i < samples.length; i++) {
+						looked[i] = table[samples[i]];
+					}
+					dstSpan.setSamples(looked);
+				}
+			}
+		}
+	}
+
+	// looks up the samples of a span in the backing arrays, given unpacked
+	// byte or (unsigned) short arrays. Returns false if the span has to be
+	// looked up in bulk instead.
+	private boolean applyDirect(RowSpan src, RowSpan dst, int band) {
+		if (src.mask != -1 || dst.mask != -1) {
+			return false;
+		}
+		final boolean byteSrc = (src.array instanceof byte[]) && (this.bits == 8);
+		final boolean shortSrc = (src.array instanceof short[]) && (this.bits == 16);
+		if (!byteSrc && !shortSrc) {
+			return false;
+		}
+
+		final int n = src.length();
+		final int ss = src.stride;
+		final int ds = dst.stride;
+		if (dst.array instanceof byte[]) {
+			final byte[] out = (byte[]) dst.array;
+			final byte[] table = getByteTables()[band];
+			if (byteSrc) {
+				final byte[] in = (byte[]) src.array;
+				for (int i = 0, j = src.offset, k = dst.offset; i < n; i++, j += ss, k += ds) {
+					out[k] = table[in[j] & 0xFF];
+				}
+			} else {
+				final short[] in = (short[]) src.array;
+				for (int i = 0, j = src.offset, k = dst.offset; i < n; i++, j += ss, k += ds) {
+					out[k] = table[in[j] & 0xFFFF];
+				}
+			}
+			return true;
+		}
+		if (dst.array instanceof short[]) {
+			final short[] out = (short[]) dst.array;
+			final short[] table = getShortTables()[band];
+			if (byteSrc) {
+				final byte[] in = (byte[]) src.array;
+				for (int i = 0, j = src.offset, k = dst.offset; i < n; i++, j += ss, k += ds) {
+					out[k] = table[in[j] & 0xFF];
+				}
+			} else {
+				final short[] in = (short[]) src.array;
+				for (int i = 0, j = src.offset, k = dst.offset; i < n; i++, j += ss, k += ds) {
+					out[k] = table[in[j] & 0xFFFF];
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	// the values as stored by a byte raster (truncated, and wrapped)
+	private byte[][] getByteTables() {
+		byte[][] tables = this.byteTables;
+		if (tables == null) {
+			tables = new byte[this.values.length][];
+			for (int b = 0; b < tables.length; b++) {
+				final double[] v = this.values[b];
+				tables[b] = new byte[v.length];
+				for (int i = 0; i < v.length; i++) {
+					tables[b][i] = (byte) (int) v[i];
+				}
+			}
+			this.byteTables = tables;
+		}
+		return tables;
+	}
+
+	// the values as stored by a short raster (truncated, and wrapped)
+	private short[][] getShortTables() {
+		short[][] tables = this.shortTables;
+		if (tables == null) {
+			tables = new short[this.values.length][];
+			for (int b = 0; b < tables.length; b++) {
+				final double[] v = this.values[b];
+				tables[b] = new short[v.length];
+				for (int i = 0; i < v.length; i++) {
+					tables[b][i] = (short) (int) v[i];
+				}
+			}
+			this.shortTables = tables;
+		}
+		return tables;
+	}
+
+}
@@ -1,11 +1,18 @@
 package ch.unifr.diva.dip.awt.imaging.ops;
 
 import ch.unifr.diva.dip.awt.imaging.scanners.SimpleImageTiler;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 /**
  * The simple tile parallelizable interface marks a {@code BufferedImageOp} to
  * be compatible with being wrapped and run by {@code ConcurrentOp}.
+ *
+ * <p>
+ * Tiles are processed by {@code filterRegion(src, dst, region)}, which by default
+ * filters sub-images of the tile. Filters that can work on a region of the
+ * full images directly should override it, s.t. no sub-images (and rasters)
+ * need to be created for each tile.
  */
 public interface SimpleTileParallelizable extends TileParallelizable<SimpleImageTiler> {
 
@@ -19,6 +26,26 @@ public interface SimpleTileParallelizable extends TileParallelizable<SimpleImage
 		);
 	}
 
+	@Override
+	default void processTile(Rectangle tile, BufferedImage src, BufferedImage dst) {
+		filterRegion(src, dst, tile);
+	}
+
+	/**
+	 * Filters a region of the source image. Samples of the destination image
+	 * outside of the region are left untouched.
+	 *
+	 * @param src the source image.
+	 * @param dst the destination image of the same size.
+	 * @param region the region (not to be modified).
+	 */
+	default void filterRegion(BufferedImage src, BufferedImage dst, Rectangle region) {
+		filter(
+				src.getSubimage(region.x, region.y, region.width, region.height),
+				dst.getSubimage(region.x, region.y, region.width, region.height)
+		);
+	}
+
 	@Override
 	default SimpleImageTiler getImageTiler(BufferedImage src, BufferedImage dst, int width, int height) {
 		return new SimpleImageTiler(src, width, height);
@@ -47,6 +47,15 @@ public interface TileParallelizable<S extends ImageTiler<? extends Rectangle>> e
 	 */
 	public void process(S tiler, BufferedImage src, BufferedImage dst);
 
+	/**
+	 * Processes a single tile.
+	 *
+	 * @param tile the tile, as returned by the image tiler.
+	 * @param src the source image.
+	 * @param dst the destination image.
+	 */
+	public void processTile(Rectangle tile, BufferedImage src, BufferedImage dst);
+
 	/**
 	 * Returns an appropriate image tiler.
 	 *
@@ -58,4 +67,27 @@ public interface TileParallelizable<S extends ImageTiler<? extends Rectangle>> e
 	 */
 	public S getImageTiler(BufferedImage src, BufferedImage dst, int width, int height);
 
+	/**
+	 * Prepares the processing of the tiles of an image. Called once on the
+	 * calling thread, before any tile gets processed (e.g. to compute data
+	 * shared by all tiles).
+	 *
+	 * @param src the source image.
+	 * @param dst the destination image.
+	 */
+	default void prepare(BufferedImage src, BufferedImage dst) {
+
+	}
+
+	/**
+	 * Releases whatever got prepared for the tiles of an image. Called once
+	 * all tiles are processed (or cancelled).
+	 *
+	 * @param src the source image.
+	 * @param dst the destination image.
+	 */
+	default void release(BufferedImage src, BufferedImage dst) {
+
+	}
+
 }
@@ -2,11 +2,22 @@ package ch.unifr.diva.dip.awt.imaging.scanners;
 
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Image tiler base class.
  *
+ * <p>
+ * An image tiler can be shared by multiple threads. All tiles are laid out at
+ * once (the first time a tile is requested), and then handed out by an atomic
+ * cursor, s.t. threads never block each other (nor allocate anything) to get
+ * their next tile. Tiles are not to be modified, since the same tiles are
+ * returned by {@code getTiles()}.
+ *
  * @param <T> type of the tile.
  */
 public abstract class ImageTiler<T extends Rectangle> implements Iterator<T>, Iterable<T> {
@@ -18,7 +29,8 @@ public abstract class ImageTiler<T extends Rectangle> implements Iterator<T>, It
 	protected final int rows;
 	protected final int cols;
 	protected final int last;
-	protected int index;
+	protected final AtomicInteger cursor;
+	private volatile List<T> tiles;
 
 	/**
 	 * Creates a new image tiler with quadratic/square tiles. Returned tiles may
@@ -46,7 +58,7 @@ public abstract class ImageTiler<T extends Rectangle> implements Iterator<T>, It
 		this.imageHeight = src.getHeight();
 		this.width = width;
 		this.height = height;
-		this.index = -1;
+		this.cursor = new AtomicInteger(-1);
 
 		// in cases of remainding pixels we want to end up with larger tiles
 		// than specified, not smaller ones (see note below)!
@@ -66,12 +78,12 @@ public abstract class ImageTiler<T extends Rectangle> implements Iterator<T>, It
 	}
 
 	@Override
-	public synchronized boolean hasNext() {
-		return this.index < last;
+	public boolean hasNext() {
+		return this.cursor.get() < last;
 	}
 
 	@Override
-	public synchronized T next() {
+	public T next() {
 		if (!hasNext()) {
 			return null;
 		}
@@ -81,20 +93,59 @@ public abstract class ImageTiler<T extends Rectangle> implements Iterator<T>, It
 			return null;
 		}
 
-		this.index++;
-		final int x = getX();
-		final int y = getY();
-		return getTile(x, y, getWidth(x), getHeight(y));
+		final int index = this.cursor.incrementAndGet();
+		if (index > last) {
+			return null;
+		}
+
+		return getTiles().get(index);
+	}
+
+	/**
+	 * Returns the number of tiles.
+	 *
+	 * @return the number of tiles.
+	 */
+	public int getNumTiles() {
+		return this.last + 1;
+	}
+
+	/**
+	 * Returns all tiles, no matter how many have been handed out by
+	 * {@code next()} already.
+	 *
+	 * @return an unmodifiable list of all tiles, in row-major order.
+	 */
+	public List<T> getTiles() {
+		List<T> t = this.tiles;
+		if (t == null) {
+			synchronized (this) {
+				t = this.tiles;
+				if (t == null) {
+					// can't be done in the constructor, since subclasses may
+					// need to initialize their fields first
+					final List<T> list = new ArrayList<>(this.last + 1);
+					for (int i = 0; i <= this.last; i++) {
+						final int x = getX(i);
+						final int y = getY(i);
+						list.add(getTile(x, y, getWidth(x), getHeight(y)));
+					}
+					t = Collections.unmodifiableList(list);
+					this.tiles = t;
+				}
+			}
+		}
+		return t;
 	}
 
 	protected abstract T getTile(int x, int y, int width, int height);
 
-	protected int getX() {
-		return this.index % this.cols * this.width;
+	protected int getX(int index) {
+		return index % this.cols * this.width;
 	}
 
-	protected int getY() {
-		return this.index / this.cols * this.height;
+	protected int getY(int index) {
+		return index / this.cols * this.height;
 	}
 
 	/*
@@ -115,7 +166,7 @@ public abstract class ImageTiler<T extends Rectangle> implements Iterator<T>, It
 	}
 
 	@Override
-	public synchronized Iterator<T> iterator() {
+	public Iterator<T> iterator() {
 		return this;
 	}
 
@@ -0,0 +1,236 @@
+package ch.unifr.diva.dip.awt.imaging.scanners;
+
+import ch.unifr.diva.dip.awt.imaging.DirectRaster;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+/**
+ * A span of samples of a single band on a single row of an image raster. The
+ * samples of the span are found in the backing array at
+ * {@code offset + i * stride}, for {@code i = 0, ..., length() - 1}, unless
+ * the raster can't be accessed directly, in which case there is no backing
+ * array (see {@code hasArray()}), and the samples need to be read (or written)
+ * in bulk with {@code getSamples} (or {@code setSamples}) instead. The latter
+ * works in any case, and still costs just a single, tight loop per span.
+ */
+public class RowSpan {
+
+	/**
+	 * Row (or y-coordinate) of the span in the raster.
+	 */
+	public int row;
+
+	/**
+	 * First column (or x-coordinate) of the span in the raster, inclusive.
+	 */
+	public int x0;
+
+	/**
+	 * Last column (or x-coordinate) of the span in the raster, exclusive.
+	 */
+	public int x1;
+
+	/**
+	 * Band of the span.
+	 */
+	public int band;
+
+	/**
+	 * The array backing the samples of the span (a {@code byte[]},
+	 * {@code short[]}, {@code int[]}, {@code float[]}, or {@code double[]}), or
+	 * {@code null} if the raster can't be accessed directly.
+	 */
+	public Object array;
+
+	/**
+	 * Index of the first sample of the span in the backing array.
+	 */
+	public int offset;
+
+	/**
+	 * Distance between two samples of the span in the backing array.
+	 */
+	public int stride;
+
+	/**
+	 * Bit mask of the samples of the span in a packed backing array, or -1 if
+	 * samples aren't packed.
+	 */
+	public int mask;
+
+	/**
+	 * Bit offset of the samples of the span in a packed backing array, or 0 if
+	 * samples aren't packed.
+	 */
+	public int shift;
+
+	private final Raster raster;
+	private final DirectRaster direct;
+
+	/**
+	 * Creates a new row span.
+	 *
+	 * @param raster the raster.
+	 * @param direct the direct raster, or {@code null} if the raster can't be
+	 * accessed directly.
+	 */
+	RowSpan(Raster raster, DirectRaster direct) {
+		this.raster = raster;
+		this.direct = direct;
+		this.mask = -1;
+	}
+
+	/**
+	 * Moves the span to a new row and band.
+	 *
+	 * @param row the row.
+	 * @param x0 the first column, inclusive.
+	 * @param x1 the last column, exclusive.
+	 * @param band the band.
+	 */
+	void set(int row, int x0, int x1, int band) {
+		this.row = row;
+		this.x0 = x0;
+		this.x1 = x1;
+		this.band = band;
+
+		if (this.direct != null) {
+			this.array = this.direct.getData(band);
+			this.offset = this.direct.getIndex(x0, row, band);
+			this.stride = this.direct.getPixelStride();
+			if (this.direct.isPacked()) {
+				this.mask = this.direct.getMask(band);
+				this.shift = this.direct.getShift(band);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of samples in the span.
+	 *
+	 * @return the number of samples in the span.
+	 */
+	public int length() {
+		return this.x1 - this.x0;
+	}
+
+	/**
+	 * Checks whether the span is backed by an accessible array.
+	 *
+	 * @return {@code true} if the span is backed by an accessible array,
+	 * {@code false} otherwise.
+	 */
+	public boolean hasArray() {
+		return this.array != null;
+	}
+
+	/**
+	 * Returns the scanned raster.
+	 *
+	 * @return the raster.
+	 */
+	public Raster getRaster() {
+		return this.raster;
+	}
+
+	/**
+	 * Reads all samples of the span.
+	 *
+	 * @param dst the destination array of at least length {@code length()}.
+	 * @return the destination array.
+	 */
+	public int[] getSamples(int[] dst) {
+		if (this.direct != null) {
+			this.direct.getSamples(this.x0, this.row, length(), this.band, dst, 0);
+		} else {
+			this.raster.getSamples(this.x0, this.row, length(), 1, this.band, dst);
+		}
+		return dst;
+	}
+
+	/**
+	 * Reads all samples of the span.
+	 *
+	 * @param dst the destination array of at least length {@code length()}.
+	 * @return the destination array.
+	 */
+	public float[] getSamples(float[] dst) {
+		if (this.direct != null) {
+			this.direct.getSamples(this.x0, this.row, length(), this.band, dst, 0);
+		} else {
+			this.raster.getSamples(this.x0, this.row, length(), 1, this.band, dst);
+		}
+		return dst;
+	}
+
+	/**
+	 * Reads all samples of the span.
+	 *
+	 * @param dst the destination array of at least length {@code length()}.
+	 * @return the destination array.
+	 */
+	public double[] getSamples(double[] dst) {
+		if (this.direct != null) {
+			this.direct.getSamples(this.x0, this.row, length(), this.band, dst, 0);
+		} else {
+			this.raster.getSamples(this.x0, this.row, length(), 1, this.band, dst);
+		}
+		return dst;
+	}
+
+	/**
+	 * Writes all samples of the span.
+	 *
+	 * @param src the source array of at least length {@code length()}.
+	 * @throws ClassCastException if the scanned raster isn't writable.
+	 */
+	public void setSamples(int[] src) {
+		if (this.direct != null) {
+			this.direct.setSamples(this.x0, this.row, length(), this.band, src, 0);
+		} else {
+			((WritableRaster) this.raster).setSamples(this.x0, this.row, length(), 1, this.band, src);
+		}
+	}
+
+	/**
+	 * Writes all samples of the span.
+	 *
+	 * @param src the source array of at least length {@code length()}.
+	 * @throws ClassCastException if the scanned raster isn't writable.
+	 */
+	public void setSamples(float[] src) {
+		if (this.direct != null) {
+			this.direct.setSamples(this.x0, this.row, length(), this.band, src, 0);
+		} else {
+			((WritableRaster) this.raster).setSamples(this.x0, this.row, length(), 1, this.band, src);
+		}
+	}
+
+	/**
+	 * Writes all samples of the span.
+	 *
+	 * @param src the source array of at least length {@code length()}.
+	 * @throws ClassCastException if the scanned raster isn't writable.
+	 */
+	public void setSamples(double[] src) {
+		if (this.direct != null) {
+			this.direct.setSamples(this.x0, this.row, length(), this.band, src, 0);
+		} else {
+			((WritableRaster) this.raster).setSamples(this.x0, this.row, length(), 1, this.band, src);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName()
+				+ "{"
+				+ "row=" + row
+				+ ", x0=" + x0
+				+ ", x1=" + x1
+				+ ", band=" + band
+				+ ", offset=" + offset
+				+ ", stride=" + stride
+				+ "}";
+	}
+
+}
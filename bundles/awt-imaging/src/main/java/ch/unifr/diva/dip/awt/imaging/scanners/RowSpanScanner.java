@@ -0,0 +1,120 @@
+package ch.unifr.diva.dip.awt.imaging.scanners;
+
+import ch.unifr.diva.dip.awt.imaging.DirectRaster;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A row span scanner iterates over the rows of a region in an image raster,
+ * and hands out a span of samples per row and band (all bands of a row, then
+ * the next row), instead of a location per sample as the
+ * {@code RasterScanner} does. Ops can then process each span with a tight
+ * loop over its backing array, or over a row buffer filled (and written back)
+ * in bulk.
+ *
+ * <p>
+ * The same {@code RowSpan} object is returned by each call to {@code next()}.
+ * Two scanners over rasters of the same size (e.g. of a source and a
+ * destination image) return spans of the same rows and columns, hence may be
+ * iterated in lockstep.
+ */
+public class RowSpanScanner implements Iterable<RowSpan>, Iterator<RowSpan> {
+
+	protected final static UnsupportedOperationException UNSUPPORTED_OPERATION_EXCEPTION = new UnsupportedOperationException();
+	protected final static NoSuchElementException NO_SUCH_ELEMENT_EXCEPTION = new NoSuchElementException();
+	protected final RowSpan current;
+	protected final Rectangle region;
+	protected final int firstBand;
+	protected final int numBands;
+	protected int index;
+	protected final int maxIndex;
+
+	/**
+	 * Creates a new, banded row span scanner for the given image. Iterates
+	 * over all rows and bands of the image.
+	 *
+	 * @param image the image to scan.
+	 */
+	public RowSpanScanner(BufferedImage image) {
+		this(image.getRaster());
+	}
+
+	/**
+	 * Creates a new, banded row span scanner for the given raster. Iterates
+	 * over all rows and bands of the raster.
+	 *
+	 * @param raster the raster to scan.
+	 */
+	public RowSpanScanner(Raster raster) {
+		this(raster, raster.getBounds(), 0, raster.getNumBands());
+	}
+
+	/**
+	 * Creates a new row span scanner for the given raster. Iterates over all
+	 * rows, and the given number of bands of the raster.
+	 *
+	 * @param raster the raster to scan.
+	 * @param numBands the number of bands to scan, starting with the first
+	 * one.
+	 */
+	public RowSpanScanner(Raster raster, int numBands) {
+		this(raster, raster.getBounds(), 0, numBands);
+	}
+
+	/**
+	 * Creates a new row span scanner for the given region in a raster.
+	 * Iterates over all rows of the region, and the given range of bands.
+	 *
+	 * @param raster the raster to scan.
+	 * @param region the region to scan, in raster coordinates.
+	 * @param firstBand the first band to scan.
+	 * @param numBands the number of bands to scan.
+	 */
+	public RowSpanScanner(Raster raster, Rectangle region, int firstBand, int numBands) {
+		this.region = region;
+		this.firstBand = firstBand;
+		this.numBands = numBands;
+		this.index = -1;
+		this.maxIndex = region.height * numBands;
+		this.current = new RowSpan(
+				raster,
+				DirectRaster.isSupported(raster) ? new DirectRaster(raster) : null
+		);
+	}
+
+	@Override
+	public boolean hasNext() {
+		return index < (maxIndex - 1);
+	}
+
+	@Override
+	public RowSpan next() {
+		if (!hasNext()) {
+			throw NO_SUCH_ELEMENT_EXCEPTION;
+		}
+		index++;
+
+		current.set(
+				region.y + index / numBands,
+				region.x,
+				region.x + region.width,
+				firstBand + index % numBands
+		);
+
+		return current;
+	}
+
+	@Override
+	public void remove() {
+		throw UNSUPPORTED_OPERATION_EXCEPTION;
+	}
+
+	@Override
+	public Iterator<RowSpan> iterator() {
+		return this;
+	}
+
+}
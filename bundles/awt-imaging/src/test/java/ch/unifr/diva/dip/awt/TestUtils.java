@@ -1,10 +1,88 @@
 package ch.unifr.diva.dip.awt;
 
+import ch.unifr.diva.dip.api.datastructures.BufferedMatrix;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+import static org.junit.Assert.*;
+
 /**
  * Utility classes and methods to help testing.
  */
 public class TestUtils {
 
+	/**
+	 * Creates a new image with randomly initialized samples. The random
+	 * generator is seeded, so the same image is returned for the same
+	 * arguments.
+	 *
+	 * @param width width of the image.
+	 * @param height height of the image.
+	 * @param type type of the image, or -1 for a 3-band {@code BufferedMatrix}
+	 * (of floats in the range of 0 to 255).
+	 * @return a random image.
+	 */
+	public static BufferedImage newRandomImage(int width, int height, int type) {
+		final BufferedImage image = (type < 0)
+				? new BufferedMatrix(width, height, 3)
+				: new BufferedImage(width, height, type);
+		final WritableRaster raster = image.getRaster();
+		final int max = (type == BufferedImage.TYPE_BYTE_BINARY) ? 2 : 256;
+		final Random random = new Random(width * 31 + height);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				for (int b = 0; b < raster.getNumBands(); b++) {
+					if (type < 0) {
+						raster.setSample(x, y, b, random.nextFloat() * 255);
+					} else {
+						raster.setSample(x, y, b, random.nextInt(max));
+					}
+				}
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * Asserts that all samples of two images are equal.
+	 *
+	 * @param message the identifying message.
+	 * @param expected the expected image.
+	 * @param actual the actual image.
+	 */
+	public static void assertSamplesEqual(String message, BufferedImage expected, BufferedImage actual) {
+		assertSamplesEqual(message, expected, actual, 0);
+	}
+
+	/**
+	 * Asserts that all samples of two images are equal up to some delta.
+	 *
+	 * @param message the identifying message.
+	 * @param expected the expected image.
+	 * @param actual the actual image.
+	 * @param delta the maximum delta between two samples.
+	 */
+	public static void assertSamplesEqual(String message, BufferedImage expected, BufferedImage actual, double delta) {
+		assertEquals(message + ", width", expected.getWidth(), actual.getWidth());
+		assertEquals(message + ", height", expected.getHeight(), actual.getHeight());
+		final Raster e = expected.getRaster();
+		final Raster a = actual.getRaster();
+		assertEquals(message + ", bands", e.getNumBands(), a.getNumBands());
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				for (int b = 0; b < e.getNumBands(); b++) {
+					assertEquals(
+							message + ", sample at (" + x + ", " + y + ", " + b + ")",
+							e.getSampleDouble(x, y, b),
+							a.getSampleDouble(x, y, b),
+							delta
+					);
+				}
+			}
+		}
+	}
+
 	/**
 	 * A simple shape to test regions, matrices, kernels, and what not.
 	 */
@@ -7,8 +7,16 @@ import java.awt.image.WritableRaster;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.openjdk.jmh.infra.BenchmarkParams;
 import org.openjdk.jmh.results.RunResult;
 import org.openjdk.jmh.results.format.ResultFormatFactory;
 import org.openjdk.jmh.results.format.ResultFormatType;
@@ -60,6 +68,58 @@ public class BenchmarkUtils {
 		).writeOut(results);
 	}
 
+	/**
+	 * Writes the speedup curves of a benchmark in CSV format. Runs are grouped
+	 * by benchmark and all parameters but the number of threads, and the
+	 * speedup of each run is given w.r.t. the run of its group with the least
+	 * number of threads (usually a single one).
+	 *
+	 * @param results the benchmark run results (in average time mode).
+	 * @param threadsParam the name of the parameter holding the number of
+	 * threads.
+	 * @param filename filename of the file to write to the user's home
+	 * directory. Timestamp and file extension will be appended automatically.
+	 */
+	public static void printSpeedups(Collection<RunResult> results, String threadsParam, String filename) {
+		final Map<String, TreeMap<Integer, Double>> curves = new LinkedHashMap<>();
+		for (RunResult result : results) {
+			final BenchmarkParams params = result.getParams();
+			final StringBuilder key = new StringBuilder(params.getBenchmark());
+			for (String name : params.getParamsKeys()) {
+				if (!name.equals(threadsParam)) {
+					key.append(',').append(name).append('=').append(params.getParam(name));
+				}
+			}
+			curves.computeIfAbsent(key.toString(), k -> new TreeMap<>()).put(
+					Integer.parseInt(params.getParam(threadsParam)),
+					result.getPrimaryResult().getScore()
+			);
+		}
+
+		final Path file = home.resolve(
+				filename
+				+ "-speedup-"
+				+ new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date())
+				+ ".csv"
+		);
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+			writer.println("\"Benchmark\",\"Threads\",\"Score\",\"Speedup\"");
+			for (Map.Entry<String, TreeMap<Integer, Double>> curve : curves.entrySet()) {
+				final double baseline = curve.getValue().firstEntry().getValue();
+				for (Map.Entry<Integer, Double> point : curve.getValue().entrySet()) {
+					writer.println(
+							"\"" + curve.getKey() + "\","
+							+ point.getKey() + ","
+							+ point.getValue() + ","
+							+ (baseline / point.getValue())
+					);
+				}
+			}
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
 	/**
 	 * Creates a new BufferedImage with randomly initialized samples.
 	 *
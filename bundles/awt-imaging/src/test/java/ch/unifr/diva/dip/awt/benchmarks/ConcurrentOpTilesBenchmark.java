@@ -1,12 +1,14 @@
 package ch.unifr.diva.dip.awt.benchmarks;
 
 import ch.unifr.diva.dip.awt.imaging.SimpleColorModel;
+import ch.unifr.diva.dip.awt.imaging.TileScheduler;
 import ch.unifr.diva.dip.awt.imaging.ops.ColorConvertOp;
 import ch.unifr.diva.dip.awt.imaging.ops.ConcurrentTileOp;
 import ch.unifr.diva.dip.awt.imaging.ops.NullOp;
 import ch.unifr.diva.dip.api.utils.DipThreadPool;
 import java.awt.image.BufferedImage;
 import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -24,7 +26,11 @@ import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 /**
- * ConcurrentOp tiles benchmark.
+ * ConcurrentOp tiles benchmark. Tiles of fixed size, handed out by the
+ * (synchronized) image tiler to the workers of the thread pool
+ * {@literal vs.} claimed with the atomic cursor of the tile scheduler on a
+ * work-stealing pool. Speedup curves (w.r.t. a single thread) are written
+ * along the run results.
  */
 public class ConcurrentOpTilesBenchmark {
 
@@ -36,22 +42,27 @@ public class ConcurrentOpTilesBenchmark {
 		@Param({"1024", "2048", "4096"})
 		int size;
 
-		@Param({"8"})
+		@Param({"1", "2", "4", "8"})
 		public int numThreads;
 
 		@Param({"64", "128", "256", "512", "1024"})
 		public int tileSize;
 
 		BufferedImage image;
+		ForkJoinPool pool;
+		TileScheduler scheduler;
 
 		@Setup
 		public void setup() {
 			image = BenchmarkUtils.newRandomImage(size, BufferedImage.TYPE_INT_RGB);
+			pool = new ForkJoinPool(numThreads);
+			scheduler = new TileScheduler(pool, numThreads);
 		}
 
 		@TearDown
 		public void shutdown() {
 			dtp.shutdown();
+			pool.shutdown();
 		}
 	}
 
@@ -85,6 +96,20 @@ public class ConcurrentOpTilesBenchmark {
 		return op.filter(r.image, null);
 	}
 
+	@Benchmark
+	@BenchmarkMode({Mode.AverageTime})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public BufferedImage schedulerColorConvertOp(Resources r) {
+		final ColorConvertOp op = new ColorConvertOp(SimpleColorModel.RGB, SimpleColorModel.YCbCr);
+		return r.scheduler.filter(
+				op,
+				r.image,
+				op.createCompatibleDestImage(r.image),
+				r.tileSize,
+				r.tileSize
+		);
+	}
+
 	public static void main(String[] args) throws RunnerException {
 		Options opt = new OptionsBuilder()
 				.include(ConcurrentOpTilesBenchmark.class.getSimpleName())
@@ -99,6 +124,11 @@ public class ConcurrentOpTilesBenchmark {
 				results,
 				ConcurrentOpTilesBenchmark.class.getSimpleName()
 		);
+		BenchmarkUtils.printSpeedups(
+				results,
+				"numThreads",
+				ConcurrentOpTilesBenchmark.class.getSimpleName()
+		);
 	}
 
 }
@@ -1,12 +1,14 @@
 package ch.unifr.diva.dip.awt.benchmarks;
 
 import ch.unifr.diva.dip.awt.imaging.SimpleColorModel;
+import ch.unifr.diva.dip.awt.imaging.TileScheduler;
 import ch.unifr.diva.dip.awt.imaging.ops.ColorConvertOp;
 import ch.unifr.diva.dip.awt.imaging.ops.ConcurrentTileOp;
 import ch.unifr.diva.dip.api.utils.DipThreadPool;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -24,7 +26,10 @@ import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 /**
- * ConcurrentOp tiles fixed {@literal vs.} dynamic tile size benchmark.
+ * ConcurrentOp tiles fixed {@literal vs.} dynamic tile size benchmark, and the
+ * tile scheduler with tile geometry chosen from the cost hints of the op (and
+ * the fallback to single threaded execution). Speedup curves (w.r.t. a single
+ * thread) are written along the run results.
  */
 public class ConcurrentOpTilesDynamicBenchmark {
 	@State(Scope.Benchmark)
@@ -35,22 +40,27 @@ public class ConcurrentOpTilesDynamicBenchmark {
 		@Param({"512", "701", "1024", "1511", "2048", "3313", "4096"})
 		int size;
 
-		@Param({"8"})
+		@Param({"1", "2", "4", "8"})
 		public int numThreads;
 
 		@Param({"256"})
 		public int tileSize;
 
 		BufferedImage image;
+		ForkJoinPool pool;
+		TileScheduler scheduler;
 
 		@Setup
 		public void setup() {
 			image = BenchmarkUtils.newRandomImage(size, BufferedImage.TYPE_INT_RGB);
+			pool = new ForkJoinPool(numThreads);
+			scheduler = new TileScheduler(pool, numThreads);
 		}
 
 		@TearDown
 		public void shutdown() {
 			dtp.shutdown();
+			pool.shutdown();
 		}
 	}
 
@@ -85,6 +95,17 @@ public class ConcurrentOpTilesDynamicBenchmark {
 		return op.filter(r.image, null);
 	}
 
+	@Benchmark
+	@BenchmarkMode({Mode.AverageTime})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public BufferedImage schedulerOp(Resources r) {
+		return r.scheduler.filter(
+				new ColorConvertOp(SimpleColorModel.RGB, SimpleColorModel.Lab),
+				r.image,
+				null
+		);
+	}
+
 	public Rectangle getOptimalTileSize(int numThreads, BufferedImage src) {
 		return new Rectangle(
 				src.getWidth() / numThreads,
@@ -106,6 +127,11 @@ public class ConcurrentOpTilesDynamicBenchmark {
 				results,
 				ConcurrentOpTilesDynamicBenchmark.class.getSimpleName()
 		);
+		BenchmarkUtils.printSpeedups(
+				results,
+				"numThreads",
+				ConcurrentOpTilesDynamicBenchmark.class.getSimpleName()
+		);
 	}
 
 }
@@ -30,13 +30,18 @@ import org.openjdk.jmh.runner.options.OptionsBuilder;
  * convolution.
  *
  * <p>
- * A 1x3 * 3x1 double-pass is actually slower than a 3x3 single-pass. Probably
- * due to the creation time of the temporary buffered image. One would think we
- * could do without that, but that wouldn't work with our (padded) tiling
- * approach to parallelism (neighbour pixels could already be convolved by the
- * second pass - or not we wouldn't know...). <br />
+ * A 1x3 * 3x1 double-pass done manually (two ops, one after the other) is
+ * actually slower than a 3x3 single-pass. Probably due to the creation time of
+ * the temporary buffered image. A separable {@code ConvolutionOp} (given both,
+ * the row and the column vector) does without that: both passes are done row
+ * by row in a small buffer for each (padded) tile. <br />
  *
  * What about a larger kernel though?
+ *
+ * <p>
+ * Each variant is run with the direct access mode of the
+ * {@code ConvolutionOp} enabled, and disabled (sample by sample convolution
+ * with the image padder), over the same image sizes.
  */
 public class ConvolutionBenchmark {
 
@@ -76,6 +81,9 @@ public class ConvolutionBenchmark {
 		@Param({"8"})
 		public int numThreads;
 
+		@Param({"true", "false"})
+		public boolean directAccess;
+
 		BufferedImage image;
 
 		@Setup
@@ -97,6 +105,7 @@ public class ConvolutionBenchmark {
 				kernel, null, padder,
 				null, gain, bias, min, max, precision
 		);
+		op.setDirectAccess(r.directAccess);
 		return Filter.filter(Resources.dtp, op, r.image, null);
 	}
 
@@ -108,14 +117,28 @@ public class ConvolutionBenchmark {
 				columnVector, null, padder,
 				null, gain, bias, min, max, precision
 		);
+		op.setDirectAccess(r.directAccess);
 		BufferedImage tmp = Filter.filter(Resources.dtp, op, r.image, null);
 		op = new ConvolutionOp<>(
 				rowVector, null, padder,
 				null, gain, bias, min, max, precision
 		);
+		op.setDirectAccess(r.directAccess);
 		return Filter.filter(Resources.dtp, op, tmp, null);
 	}
 
+	@Benchmark
+	@BenchmarkMode({Mode.AverageTime})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public BufferedImage separableConvolution(Resources r) {
+		final ConvolutionOp<FloatMatrix> op = new ConvolutionOp<>(
+				rowVector, columnVector, padder,
+				null, gain, bias, min, max, precision
+		);
+		op.setDirectAccess(r.directAccess);
+		return Filter.filter(Resources.dtp, op, r.image, null);
+	}
+
 	public static void main(String[] args) throws RunnerException {
 		Options opt = new OptionsBuilder()
 				.include(ConvolutionBenchmark.class.getSimpleName())
@@ -0,0 +1,95 @@
+package ch.unifr.diva.dip.awt.benchmarks;
+
+import ch.unifr.diva.dip.awt.imaging.interpolation.Interpolation;
+import ch.unifr.diva.dip.awt.imaging.ops.ResampleOp;
+import ch.unifr.diva.dip.imaging.rescaling.ResamplingFilter;
+import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Resampling benchmark (downscaling). Comparing bicubic interpolation per
+ * pixel, separable bicubic interpolation, and separable resampling with a
+ * (widened) Lanczos3 filter.
+ */
+public class DownscalingBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Resources {
+
+		@Param({"1024", "2048", "4096"})
+		int size;
+
+		@Param({"0.5", "0.25", "0.125"})
+		double scale;
+
+		BufferedImage image;
+
+		@Setup
+		public void setup() {
+			image = BenchmarkUtils.newRandomImage(size, BufferedImage.TYPE_INT_RGB);
+		}
+	}
+
+	static double[] min = new double[]{0, 0, 0};
+	static double[] max = new double[]{255, 255, 255};
+
+	@Benchmark
+	@BenchmarkMode({Mode.AverageTime})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public BufferedImage bicubic(Resources r) {
+		final ResampleOp op = new ResampleOp(
+				r.scale, r.scale, Interpolation.BICUBIC, min, max
+		);
+		op.setSeparable(false);
+		return op.filter(r.image, null);
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.AverageTime})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public BufferedImage bicubicSeparable(Resources r) {
+		return new ResampleOp(
+				r.scale, r.scale, Interpolation.BICUBIC, min, max
+		).filter(r.image, null);
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.AverageTime})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public BufferedImage lanczos3(Resources r) {
+		return new ResampleOp(
+				r.scale, r.scale, ResamplingFilter.LANCZOS3, min, max
+		).filter(r.image, null);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(DownscalingBenchmark.class.getSimpleName())
+				.warmupIterations(5)
+				.measurementIterations(5)
+				.forks(1)
+				.build();
+
+		Collection<RunResult> results = new Runner(opt).run();
+
+		BenchmarkUtils.printRunResults(
+				results,
+				DownscalingBenchmark.class.getSimpleName()
+		);
+	}
+
+}
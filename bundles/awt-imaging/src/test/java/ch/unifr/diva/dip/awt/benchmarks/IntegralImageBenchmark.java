@@ -0,0 +1,100 @@
+package ch.unifr.diva.dip.awt.benchmarks;
+
+import ch.unifr.diva.dip.api.datastructures.IntegralImage;
+import ch.unifr.diva.dip.awt.imaging.features.IntegralImages;
+import ch.unifr.diva.dip.awt.imaging.ops.LocalThresholdOp;
+import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Integral images computed sequentially {@literal vs.} in parallel (in
+ * strips), and Sauvola's local threshold for growing windows, which should
+ * take about the same time no matter the size of the window.
+ */
+public class IntegralImageBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Resources {
+
+		@Param({"1024", "2048", "4096"})
+		int size;
+
+		@Param({"15", "63", "255"})
+		int window;
+
+		BufferedImage src;
+		ExecutorService executor;
+		int numThreads;
+		LocalThresholdOp op;
+
+		@Setup
+		public void setup() {
+			src = BenchmarkUtils.newRandomImage(size, BufferedImage.TYPE_BYTE_GRAY);
+			numThreads = Runtime.getRuntime().availableProcessors();
+			executor = Executors.newFixedThreadPool(numThreads);
+			op = new LocalThresholdOp(LocalThresholdOp.Method.SAUVOLA, window, window);
+		}
+
+		@TearDown
+		public void tearDown() {
+			executor.shutdown();
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.AverageTime})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public IntegralImage integralImage(Resources r) {
+		return IntegralImages.compute(r.src);
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.AverageTime})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public IntegralImage integralImageParallel(Resources r) {
+		return IntegralImages.compute(r.executor, r.numThreads, r.src);
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.AverageTime})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public BufferedImage sauvola(Resources r) {
+		// recomputes the integral image each time
+		r.op.setIntegralImage(null);
+		return r.op.filter(r.src, null);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(IntegralImageBenchmark.class.getSimpleName())
+				.warmupIterations(5)
+				.measurementIterations(5)
+				.forks(1)
+				.build();
+
+		Collection<RunResult> results = new Runner(opt).run();
+
+		BenchmarkUtils.printRunResults(
+				results,
+				IntegralImageBenchmark.class.getSimpleName()
+		);
+	}
+
+}
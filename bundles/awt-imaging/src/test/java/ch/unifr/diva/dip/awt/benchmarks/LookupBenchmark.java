@@ -0,0 +1,90 @@
+package ch.unifr.diva.dip.awt.benchmarks;
+
+import ch.unifr.diva.dip.awt.imaging.ops.NullOp;
+import ch.unifr.diva.dip.awt.imaging.ops.RescaleOp;
+import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Point ops with {@literal vs.} without a lookup table.
+ */
+public class LookupBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Resources {
+
+		@Param({"512", "1024", "2048", "4096"})
+		int size;
+
+		@Param({"10", "5"}) // TYPE_BYTE_GRAY, TYPE_3BYTE_BGR
+		public int type;
+
+		BufferedImage src;
+		RescaleOp rescaleOp;
+		RescaleOp directRescaleOp;
+
+		@Setup
+		public void setup() {
+			src = BenchmarkUtils.newRandomImage(size, type);
+			rescaleOp = newRescaleOp();
+			directRescaleOp = newRescaleOp();
+			directRescaleOp.setTableLookup(false);
+		}
+
+		private RescaleOp newRescaleOp() {
+			return new RescaleOp(
+					new boolean[]{false, false, false},
+					new double[]{1.5, 1.5, 1.5},
+					new double[]{-20, -20, -20},
+					new double[]{0, 0, 0},
+					new double[]{255, 255, 255},
+					NullOp.SamplePrecision.BYTE
+			);
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.AverageTime})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public BufferedImage rescale(Resources r) {
+		return r.directRescaleOp.filter(r.src, null);
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.AverageTime})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public BufferedImage rescaleLookup(Resources r) {
+		return r.rescaleOp.filter(r.src, null);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(LookupBenchmark.class.getSimpleName())
+				.warmupIterations(5)
+				.measurementIterations(5)
+				.forks(1)
+				.build();
+
+		Collection<RunResult> results = new Runner(opt).run();
+
+		BenchmarkUtils.printRunResults(
+				results,
+				LookupBenchmark.class.getSimpleName()
+		);
+	}
+
+}
@@ -0,0 +1,118 @@
+package ch.unifr.diva.dip.awt.benchmarks;
+
+import ch.unifr.diva.dip.awt.imaging.scanners.Location;
+import ch.unifr.diva.dip.awt.imaging.scanners.RasterScanner;
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpan;
+import ch.unifr.diva.dip.awt.imaging.scanners.RowSpanScanner;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Scanner throughput: a location per sample ({@code RasterScanner}) with
+ * {@code getSample/setSample} {@literal vs.} a span per row and band
+ * ({@code RowSpanScanner}), read and written in bulk, or accessed through the
+ * backing array. Each variant inverts all (8-bit) samples of an image, which
+ * is about as little work per sample as an op can do, s.t. the overhead of
+ * the scanner dominates.
+ */
+public class ScannerBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Resources {
+
+		@Param({"512", "1024", "2048", "4096"})
+		int size;
+
+		@Param({"10", "5"}) // TYPE_BYTE_GRAY, TYPE_3BYTE_BGR
+		public int type;
+
+		BufferedImage src;
+		BufferedImage dst;
+
+		@Setup
+		public void setup() {
+			src = BenchmarkUtils.newRandomImage(size, type);
+			dst = new BufferedImage(size, size, type);
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.AverageTime})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public BufferedImage rasterScanner(Resources r) {
+		final WritableRaster srcRaster = r.src.getRaster();
+		final WritableRaster dstRaster = r.dst.getRaster();
+		for (Location pt : new RasterScanner(r.src, true)) {
+			dstRaster.setSample(
+					pt.col, pt.row, pt.band,
+					255 - srcRaster.getSample(pt.col, pt.row, pt.band)
+			);
+		}
+		return r.dst;
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.AverageTime})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public BufferedImage rowSpanScanner(Resources r) {
+		final RowSpanScanner dstSpans = new RowSpanScanner(r.dst);
+		final int[] samples = new int[r.src.getWidth()];
+		for (RowSpan span : new RowSpanScanner(r.src)) {
+			span.getSamples(samples);
+			for (int i = 0; i < samples.length; i++) {
+				samples[i] = 255 - samples[i];
+			}
+			dstSpans.next().setSamples(samples);
+		}
+		return r.dst;
+	}
+
+	@Benchmark
+	@BenchmarkMode({Mode.AverageTime})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public BufferedImage rowSpanArray(Resources r) {
+		final RowSpanScanner dstSpans = new RowSpanScanner(r.dst);
+		for (RowSpan span : new RowSpanScanner(r.src)) {
+			final RowSpan dstSpan = dstSpans.next();
+			final byte[] in = (byte[]) span.array;
+			final byte[] out = (byte[]) dstSpan.array;
+			final int n = span.length();
+			for (int i = 0, j = span.offset, k = dstSpan.offset; i < n; i++, j += span.stride, k += dstSpan.stride) {
+				out[k] = (byte) (255 - (in[j] & 0xFF));
+			}
+		}
+		return r.dst;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(ScannerBenchmark.class.getSimpleName())
+				.warmupIterations(5)
+				.measurementIterations(5)
+				.forks(1)
+				.build();
+
+		Collection<RunResult> results = new Runner(opt).run();
+
+		BenchmarkUtils.printRunResults(
+				results,
+				ScannerBenchmark.class.getSimpleName()
+		);
+	}
+
+}
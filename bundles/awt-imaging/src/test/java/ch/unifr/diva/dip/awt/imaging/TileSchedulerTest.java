@@ -0,0 +1,220 @@
+package ch.unifr.diva.dip.awt.imaging;
+
+import ch.unifr.diva.dip.api.datastructures.Mask;
+import ch.unifr.diva.dip.api.utils.DipThreadPool;
+import ch.unifr.diva.dip.awt.TestUtils;
+import ch.unifr.diva.dip.awt.imaging.interpolation.Interpolation;
+import ch.unifr.diva.dip.awt.imaging.ops.CostHint;
+import ch.unifr.diva.dip.awt.imaging.ops.InvertOp;
+import ch.unifr.diva.dip.awt.imaging.ops.LocalThresholdOp;
+import ch.unifr.diva.dip.awt.imaging.ops.MorphologyOp;
+import ch.unifr.diva.dip.awt.imaging.ops.RankOp;
+import ch.unifr.diva.dip.awt.imaging.ops.ResampleOp;
+import ch.unifr.diva.dip.awt.imaging.ops.TileParallelizable;
+import ch.unifr.diva.dip.awt.imaging.padders.ImagePadder;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Tile scheduler unit tests.
+ */
+public class TileSchedulerTest {
+
+	public final List<Integer> types = Arrays.asList(
+			BufferedImage.TYPE_BYTE_GRAY,
+			BufferedImage.TYPE_3BYTE_BGR,
+			BufferedImage.TYPE_INT_RGB,
+			BufferedImage.TYPE_BYTE_BINARY
+	);
+
+	public List<BufferedImageOp> newOps() {
+		final Mask mask = new Mask(5, 3).fill(true);
+		return Arrays.asList(
+				new InvertOp(),
+				new RankOp(RankOp.Rank.MEDIAN, mask, ImagePadder.Type.REFLECTIVE.getInstance()),
+				new MorphologyOp(MorphologyOp.Operation.DILATION, mask, ImagePadder.Type.ZERO.getInstance()),
+				new ResampleOp(0.7, 1.3, Interpolation.BILINEAR),
+				new LocalThresholdOp(LocalThresholdOp.Method.SAUVOLA, 15, 15)
+		);
+	}
+
+	/**
+	 * Tests that filters run by the scheduler produce the same results as if
+	 * run single threaded, with full-width strips, and with narrow columns (a
+	 * tiny cache) that still must not share any bytes of binary images.
+	 */
+	@Test
+	public void testSchedulerEquivalence() {
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (int cacheSize : new int[]{TileScheduler.DEFAULT_CACHE_SIZE, 512}) {
+				final TileScheduler scheduler = new TileScheduler(pool, 4);
+				scheduler.setCacheSize(cacheSize);
+				for (int type : types) {
+					final BufferedImage src = TestUtils.newRandomImage(331, 217, type);
+					for (BufferedImageOp op : newOps()) {
+						final String msg = "type=" + type
+								+ ", cacheSize=" + cacheSize
+								+ ", op=" + op.getClass().getSimpleName();
+						final BufferedImage expected = op.filter(src, null);
+						final BufferedImage dst = op.createCompatibleDestImage(src, src.getColorModel());
+						final Rectangle tile = scheduler.getTileSize(op, src, dst);
+						final BufferedImage actual = scheduler.filter(
+								(TileParallelizable<?>) op, src, dst, tile.width, tile.height
+						);
+						assertNotNull(msg, actual);
+						TestUtils.assertSamplesEqual(msg, expected, actual);
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Tests the tile geometry: power of two (or full-width) tile widths, and
+	 * enough rows to cover the padding.
+	 */
+	@Test
+	public void testTileSize() {
+		final TileScheduler scheduler = new TileScheduler(ForkJoinPool.commonPool(), 8);
+		for (int cacheSize : new int[]{TileScheduler.DEFAULT_CACHE_SIZE, 4096}) {
+			scheduler.setCacheSize(cacheSize);
+			for (int size : new int[]{100, 1000, 5000}) {
+				final BufferedImage src = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+				for (BufferedImageOp op : newOps()) {
+					final String msg = "size=" + size
+							+ ", cacheSize=" + cacheSize
+							+ ", op=" + op.getClass().getSimpleName();
+					final BufferedImage dst = op.createCompatibleDestImage(src, src.getColorModel());
+					final Rectangle tile = scheduler.getTileSize(op, src, dst);
+					final int width = (op instanceof ResampleOp) ? dst.getWidth() : size;
+					assertTrue(
+							msg + ", width=" + tile.width,
+							tile.width == width || Integer.bitCount(tile.width) == 1
+					);
+					assertTrue(msg, tile.width >= TileScheduler.MIN_TILE_SIZE);
+					assertTrue(
+							msg + ", height=" + tile.height,
+							tile.height >= Math.min(
+									dst.getHeight(),
+									4 * TileScheduler.getKernelRadius(op)
+							)
+					);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests the fallback to single threaded execution.
+	 */
+	@Test
+	public void testFallback() {
+		final TileScheduler scheduler = new TileScheduler(ForkJoinPool.commonPool(), 8);
+		final BufferedImage small = new BufferedImage(64, 64, BufferedImage.TYPE_3BYTE_BGR);
+		// cheap point op on a small image
+		assertFalse(scheduler.isParallel(new InvertOp(), small));
+		assertTrue(TileScheduler.getCostClass(new InvertOp()) == CostHint.CostClass.LOW);
+		// expensive op on the same image
+		final RankOp rankOp = new RankOp(
+				RankOp.Rank.MEDIAN,
+				new Mask(3, 3).fill(true),
+				ImagePadder.Type.ZERO.getInstance()
+		);
+		assertTrue(scheduler.isParallel(rankOp, small));
+		// single worker
+		assertFalse(new TileScheduler(ForkJoinPool.commonPool(), 1).isParallel(rankOp, small));
+	}
+
+	/**
+	 * Tests that workers only run on the worker permits left by others, and
+	 * that all permits are returned.
+	 */
+	@Test
+	public void testWorkerPermits() {
+		final DipThreadPool threadPool = new DipThreadPool("test-pool", 4);
+		try {
+			final TileScheduler scheduler = new TileScheduler(threadPool);
+			final BufferedImage src = TestUtils.newRandomImage(331, 217, BufferedImage.TYPE_3BYTE_BGR);
+			final RankOp op = new RankOp(
+					RankOp.Rank.MEDIAN,
+					new Mask(3, 3).fill(true),
+					ImagePadder.Type.REFLECTIVE.getInstance()
+			);
+			final BufferedImage expected = op.filter(src, null);
+
+			for (int taken : new int[]{0, 2, 4}) {
+				assertEquals(taken, threadPool.tryAcquireWorkers(taken));
+				final BufferedImage actual = scheduler.filter(op, src, null);
+				TestUtils.assertSamplesEqual("taken=" + taken, expected, actual);
+				threadPool.releaseWorkers(taken);
+				assertEquals("all permits returned", 4, threadPool.tryAcquireWorkers(5));
+				threadPool.releaseWorkers(4);
+			}
+		} finally {
+			threadPool.shutdown();
+		}
+	}
+
+	/**
+	 * Tests that a failing tile cancels the remaining tiles, and that the op
+	 * gets released only once no tile is being processed anymore.
+	 */
+	@Test
+	public void testFailure() {
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			final TileScheduler scheduler = new TileScheduler(pool, 4);
+			final AtomicInteger running = new AtomicInteger();
+			final AtomicInteger runningOnRelease = new AtomicInteger(-1);
+			final InvertOp op = new InvertOp() {
+				@Override
+				public void processTile(Rectangle tile, BufferedImage src, BufferedImage dst) {
+					running.incrementAndGet();
+					try {
+						if (tile.x == 0 && tile.y == 0) {
+							throw new IllegalStateException("failed tile");
+						}
+						try {
+							Thread.sleep(20);
+						} catch (InterruptedException ex) {
+							Thread.currentThread().interrupt();
+						}
+						super.processTile(tile, src, dst);
+					} finally {
+						running.decrementAndGet();
+					}
+				}
+
+				@Override
+				public void release(BufferedImage src, BufferedImage dst) {
+					runningOnRelease.set(running.get());
+				}
+			};
+			final BufferedImage src = TestUtils.newRandomImage(256, 256, BufferedImage.TYPE_BYTE_GRAY);
+			try {
+				scheduler.filter(op, src, op.createCompatibleDestImage(src, src.getColorModel()), 32, 32);
+				fail("failed tile not rethrown");
+			} catch (IllegalStateException ex) {
+				assertTrue(ex.getMessage().contains("failed tile"));
+			}
+			assertEquals("tiles running on release", 0, runningOnRelease.get());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+}
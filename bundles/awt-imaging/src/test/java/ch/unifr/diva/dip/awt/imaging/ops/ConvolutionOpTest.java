@@ -0,0 +1,190 @@
+package ch.unifr.diva.dip.awt.imaging.ops;
+
+import ch.unifr.diva.dip.api.datastructures.DoubleKernel;
+import ch.unifr.diva.dip.api.datastructures.DoubleMatrix;
+import ch.unifr.diva.dip.api.datastructures.FloatKernel;
+import ch.unifr.diva.dip.api.datastructures.FloatMatrix;
+import ch.unifr.diva.dip.api.datastructures.Kernel;
+import ch.unifr.diva.dip.awt.TestUtils;
+import ch.unifr.diva.dip.awt.imaging.ops.NullOp.SamplePrecision;
+import ch.unifr.diva.dip.awt.imaging.padders.ImagePadder;
+import ch.unifr.diva.dip.awt.imaging.scanners.PaddedImageTiler;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Convolution filter unit tests.
+ */
+public class ConvolutionOpTest {
+
+	public final List<Integer> types = Arrays.asList(
+			BufferedImage.TYPE_BYTE_GRAY,
+			BufferedImage.TYPE_3BYTE_BGR,
+			BufferedImage.TYPE_INT_RGB,
+			BufferedImage.TYPE_USHORT_GRAY,
+			BufferedImage.TYPE_BYTE_BINARY,
+			-1 // BufferedMatrix
+	);
+
+	public final List<Kernel<?>> kernels = Arrays.asList(
+			new FloatKernel(new FloatMatrix(new float[][]{
+				{0.1f, 0.2f, 0.1f},
+				{0.2f, -0.4f, 0.2f},
+				{0.1f, 0.2f, 0.3f},
+				{0.0f, -0.1f, 0.1f},
+				{0.05f, 0.1f, 0.05f}
+			})),
+			new DoubleKernel(new DoubleMatrix(new double[][]{
+				{0.25, -0.5, 0.25, 0.1}
+			})),
+			new FloatKernel(new FloatMatrix(new float[][]{
+				{1}
+			}))
+	);
+
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	public ConvolutionOp<?> newOp(Kernel kernel, ImagePadder.Type padder, boolean rescale, boolean directAccess) {
+		final ConvolutionOp<?> op;
+		if (rescale) {
+			op = new ConvolutionOp<>(
+					kernel, null, padder.getInstance(),
+					new boolean[]{true, false, true},
+					new double[]{1.5, 1, 0.5},
+					new double[]{3, 0, -1},
+					new double[]{0, 0, 0},
+					new double[]{255, 255, 255},
+					SamplePrecision.BYTE
+			);
+		} else {
+			op = new ConvolutionOp<>(
+					kernel, null, padder.getInstance(),
+					null, null, null, null, null,
+					SamplePrecision.FLOAT
+			);
+		}
+		op.setDirectAccess(directAccess);
+		return op;
+	}
+
+	/**
+	 * Tests that the direct access mode produces the same results as the
+	 * sample by sample convolution, on the whole image and with padded tiles.
+	 */
+	@Test
+	public void testDirectAccess() {
+		for (int type : types) {
+			final BufferedImage src = TestUtils.newRandomImage(41, 27, type);
+			for (Kernel<?> kernel : kernels) {
+				for (ImagePadder.Type padder : ImagePadder.Type.values()) {
+					for (boolean rescale : new boolean[]{false, true}) {
+						final String message = "type=" + type
+								+ ", kernel=" + kernel.width() + "x" + kernel.height()
+								+ ", padder=" + padder
+								+ ", rescale=" + rescale;
+						final BufferedImage expected = newOp(kernel, padder, rescale, false).filter(src, null);
+						final ConvolutionOp<?> op = newOp(kernel, padder, rescale, true);
+						TestUtils.assertSamplesEqual(message, expected, op.filter(src, null));
+
+						// tiled padding wraps around tiles, not the image
+						if (!padder.equals(ImagePadder.Type.TILED)) {
+							final BufferedImage dst = op.createCompatibleDestImage(
+									src,
+									rescale ? SamplePrecision.BYTE : SamplePrecision.FLOAT
+							);
+							final PaddedImageTiler tiler = op.getImageTiler(src, dst, 8, 8);
+							ConcurrentTileOp.processPaddedTiles(op, tiler, src, dst);
+							TestUtils.assertSamplesEqual(message + ", tiled", expected, dst);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that a separable kernel produces the same results as the column
+	 * pass followed by the row pass (with a floating point image in between),
+	 * on the whole image and with padded tiles. Double precision kernels keep
+	 * the intermediate result at double precision, hence may differ a bit.
+	 */
+	@Test
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	public void testSeparable() {
+		final List<Kernel[]> vectors = Arrays.asList(
+				new Kernel[]{
+					new FloatKernel(new FloatMatrix(new float[][]{
+						{0.25f, 0.5f, 0.25f, -0.1f}
+					})),
+					new FloatKernel(new FloatMatrix(new float[][]{
+						{0.1f}, {0.2f}, {0.4f}, {-0.2f}, {0.3f}
+					}))
+				},
+				new Kernel[]{
+					new DoubleKernel(new DoubleMatrix(new double[][]{
+						{0.3, 0.4, 0.3}
+					})),
+					new DoubleKernel(new DoubleMatrix(new double[][]{
+						{0.5}, {0.5}
+					}))
+				}
+		);
+
+		for (int type : types) {
+			final BufferedImage src = TestUtils.newRandomImage(41, 27, type);
+			for (Kernel[] v : vectors) {
+				final boolean isDouble = v[0] instanceof DoubleKernel;
+				for (ImagePadder.Type padder : ImagePadder.Type.values()) {
+					for (boolean rescale : new boolean[]{false, true}) {
+						final String message = "type=" + type
+								+ ", vectors=" + v[0].width() + "x" + v[1].height()
+								+ ", padder=" + padder
+								+ ", rescale=" + rescale;
+						final BufferedImage tmp = newOp(v[1], padder, false, false).filter(src, null);
+						final BufferedImage expected = newOp(v[0], padder, rescale, false).filter(tmp, null);
+						final double delta = isDouble ? (rescale ? 1 : 1e-4) : 0;
+
+						for (boolean directAccess : new boolean[]{false, true}) {
+							final ConvolutionOp<?> op = newSeparableOp(v[0], v[1], padder, rescale);
+							op.setDirectAccess(directAccess);
+							TestUtils.assertSamplesEqual(message, expected, op.filter(src, null), delta);
+
+							// tiled padding wraps around tiles, not the image
+							if (!padder.equals(ImagePadder.Type.TILED)) {
+								final BufferedImage dst = op.createCompatibleDestImage(
+										src,
+										rescale ? SamplePrecision.BYTE : SamplePrecision.FLOAT
+								);
+								final PaddedImageTiler tiler = op.getImageTiler(src, dst, 8, 8);
+								ConcurrentTileOp.processPaddedTiles(op, tiler, src, dst);
+								TestUtils.assertSamplesEqual(message + ", tiled", expected, dst, delta);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	public ConvolutionOp<?> newSeparableOp(Kernel rowVector, Kernel columnVector, ImagePadder.Type padder, boolean rescale) {
+		if (rescale) {
+			return new ConvolutionOp<>(
+					rowVector, columnVector, padder.getInstance(),
+					new boolean[]{true, false, true},
+					new double[]{1.5, 1, 0.5},
+					new double[]{3, 0, -1},
+					new double[]{0, 0, 0},
+					new double[]{255, 255, 255},
+					SamplePrecision.BYTE
+			);
+		}
+		return new ConvolutionOp<>(
+				rowVector, columnVector, padder.getInstance(),
+				null, null, null, null, null,
+				SamplePrecision.FLOAT
+		);
+	}
+
+}
@@ -0,0 +1,270 @@
+package ch.unifr.diva.dip.awt.imaging.ops;
+
+import ch.unifr.diva.dip.api.datastructures.IntegralImage;
+import ch.unifr.diva.dip.api.utils.DipThreadPool;
+import ch.unifr.diva.dip.awt.TestUtils;
+import ch.unifr.diva.dip.awt.imaging.Filter;
+import ch.unifr.diva.dip.awt.imaging.TileScheduler;
+import ch.unifr.diva.dip.awt.imaging.features.IntegralImages;
+import ch.unifr.diva.dip.awt.imaging.scanners.ImageTiler;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Integral image, local statistics, and local threshold filter unit tests.
+ */
+public class IntegralImageOpTest {
+
+	public final List<Integer> types = Arrays.asList(
+			BufferedImage.TYPE_BYTE_GRAY,
+			BufferedImage.TYPE_3BYTE_BGR,
+			BufferedImage.TYPE_USHORT_GRAY,
+			BufferedImage.TYPE_BYTE_BINARY,
+			-1 // BufferedMatrix
+	);
+
+	public final int[][] windows = new int[][]{
+		{1, 1},
+		{3, 3},
+		{4, 2},
+		{15, 7},
+		{301, 1}
+	};
+
+	/**
+	 * Tests that the integral image computed in parallel (in strips) equals
+	 * the one computed sequentially.
+	 */
+	@Test
+	public void testParallelIntegralImage() {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (int type : types) {
+				final BufferedImage src = TestUtils.newRandomImage(57, 301, type);
+				final IntegralImage expected = IntegralImages.compute(src);
+				final IntegralImage actual = IntegralImages.compute(executor, 4, src);
+				final String msg = "type=" + type;
+				if (expected.isIntegral()) {
+					assertArrayEquals(msg, expected.sums, actual.sums);
+					assertArrayEquals(msg, expected.squaredSums, actual.squaredSums);
+				} else {
+					assertArrayEquals(msg, expected.doubleSums, actual.doubleSums, 1e-6);
+					assertArrayEquals(msg, expected.doubleSquaredSums, actual.doubleSquaredSums, 1e-6);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Tests the local mean, variance, and standard deviation against sums over
+	 * all samples in the window, on the whole image and with tiles.
+	 */
+	@Test
+	public void testLocalStatistics() {
+		for (int type : types) {
+			final BufferedImage src = TestUtils.newRandomImage(83, 41, type);
+			final Raster raster = src.getRaster();
+			for (int[] window : windows) {
+				for (LocalStatisticsOp.Statistic statistic : LocalStatisticsOp.Statistic.values()) {
+					final String msg = "type=" + type
+							+ ", window=" + window[0] + "x" + window[1]
+							+ ", statistic=" + statistic;
+					final LocalStatisticsOp op = new LocalStatisticsOp(statistic, window[0], window[1]);
+					final BufferedImage dst = op.filter(src, null);
+					final WritableRaster dstRaster = dst.getRaster();
+					for (int b = 0; b < raster.getNumBands(); b++) {
+						for (int y = 0; y < src.getHeight(); y++) {
+							for (int x = 0; x < src.getWidth(); x++) {
+								final double[] ms = bruteForce(raster, b, x, y, window[0], window[1]);
+								final double expected;
+								switch (statistic) {
+									case VARIANCE:
+										expected = ms[1];
+										break;
+									case STANDARD_DEVIATION:
+										expected = Math.sqrt(ms[1]);
+										break;
+									default:
+										expected = ms[0];
+										break;
+								}
+								assertEquals(
+										msg + ", x=" + x + ", y=" + y + ", band=" + b,
+										expected,
+										dstRaster.getSampleDouble(x, y, b),
+										1e-3 * Math.max(1, Math.abs(expected))
+								);
+							}
+						}
+					}
+
+					final BufferedImage tiled = op.createCompatibleDestImage(src);
+					final ImageTiler<Rectangle> tiler = op.getImageTiler(src, tiled, 16, 8);
+					ConcurrentTileOp.processMappedTiles(op, tiler, src, tiled);
+					TestUtils.assertSamplesEqual(msg + ", tiled", dst, tiled);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests Niblack's and Sauvola's method against thresholds computed from
+	 * all samples in the window, on the whole image and with tiles.
+	 */
+	@Test
+	public void testLocalThreshold() {
+		for (int type : types) {
+			if (type == BufferedImage.TYPE_BYTE_BINARY) {
+				continue;
+			}
+			final BufferedImage src = TestUtils.newRandomImage(83, 41, type);
+			final Raster raster = src.getRaster();
+			for (int[] window : windows) {
+				for (LocalThresholdOp.Method method : LocalThresholdOp.Method.values()) {
+					final String msg = "type=" + type
+							+ ", window=" + window[0] + "x" + window[1]
+							+ ", method=" + method;
+					final LocalThresholdOp op = new LocalThresholdOp(method, window[0], window[1]);
+					final BufferedImage dst = op.filter(src, null);
+					assertEquals(msg, BufferedImage.TYPE_BYTE_BINARY, dst.getType());
+					final WritableRaster dstRaster = dst.getRaster();
+					int mismatches = 0;
+					for (int y = 0; y < src.getHeight(); y++) {
+						for (int x = 0; x < src.getWidth(); x++) {
+							final double[] ms = bruteForce(raster, 0, x, y, window[0], window[1]);
+							final double t = method.getThreshold(ms[0], Math.sqrt(ms[1]), op.getK(), op.getR());
+							final double v = raster.getSampleDouble(x, y, 0);
+							// samples right at the threshold may flip by rounding
+							if (Math.abs(v - t) < 1e-6) {
+								continue;
+							}
+							if (dstRaster.getSample(x, y, 0) != ((v > t) ? 1 : 0)) {
+								mismatches++;
+							}
+						}
+					}
+					assertEquals(msg, 0, mismatches);
+
+					final BufferedImage tiled = op.createCompatibleDestImage(src);
+					final ImageTiler<Rectangle> tiler = op.getImageTiler(src, tiled, 16, 8);
+					ConcurrentTileOp.processMappedTiles(op, tiler, src, tiled);
+					TestUtils.assertSamplesEqual(msg + ", tiled", dst, tiled);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that local statistics computed with the integral image computed in
+	 * parallel (and prepared for all tiles), by the thread pool passed to
+	 * {@code Filter} or by the thread pool of the op, equal those computed on
+	 * the calling thread, and that {@code Filter} leaves the op as is.
+	 */
+	@Test
+	public void testThreadPool() {
+		final DipThreadPool threadPool = new DipThreadPool(4);
+		try {
+			final BufferedImage src = TestUtils.newRandomImage(512, 384, BufferedImage.TYPE_BYTE_GRAY);
+			final LocalStatisticsOp op = new LocalStatisticsOp(LocalStatisticsOp.Statistic.VARIANCE, 15, 15);
+			final BufferedImage expected = op.filter(src, null);
+
+			final LocalStatisticsOp parallel = new LocalStatisticsOp(LocalStatisticsOp.Statistic.VARIANCE, 15, 15);
+			final BufferedImage actual = Filter.filter(threadPool, parallel, src, null);
+			assertNull(parallel.getThreadPool());
+			TestUtils.assertSamplesEqual("thread pool", expected, actual);
+
+			parallel.setThreadPool(threadPool);
+			final BufferedImage tiled = new TileScheduler(threadPool).filter(
+					parallel,
+					src,
+					parallel.createCompatibleDestImage(src, src.getColorModel()),
+					64,
+					32
+			);
+			TestUtils.assertSamplesEqual("tiled", expected, tiled);
+		} finally {
+			threadPool.shutdown();
+		}
+	}
+
+	/**
+	 * Tests that 32-bit integral samples are summed up in doubles, s.t. the
+	 * squared sums can't overflow.
+	 */
+	@Test
+	public void testWideSamples() {
+		final BufferedImage src = new BufferedImage(
+				new ComponentColorModel(
+						ColorSpace.getInstance(ColorSpace.CS_GRAY),
+						new int[]{32},
+						false,
+						false,
+						Transparency.OPAQUE,
+						DataBuffer.TYPE_INT
+				),
+				Raster.createBandedRaster(DataBuffer.TYPE_INT, 64, 64, 1, null),
+				false,
+				null
+		);
+		final WritableRaster raster = src.getRaster();
+		for (int y = 0; y < 64; y++) {
+			for (int x = 0; x < 64; x++) {
+				raster.setSample(x, y, 0, Integer.MAX_VALUE - ((x + y) % 2));
+			}
+		}
+		assertFalse(IntegralImages.isIntegral(raster));
+		assertTrue(IntegralImages.isIntegral(TestUtils.newRandomImage(4, 4, BufferedImage.TYPE_INT_RGB).getRaster()));
+
+		final IntegralImage ii = IntegralImages.compute(src);
+		assertEquals(Integer.MAX_VALUE - 0.5, ii.getMean(0, 0, 0, 64, 64), 1e-3);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooLarge() {
+		new IntegralImage(65536, 65536, 1, true);
+	}
+
+	// mean and variance of the samples in the (clipped) window
+	private static double[] bruteForce(Raster raster, int band, int x, int y, int width, int height) {
+		final int x0 = Math.max(0, x - width / 2);
+		final int y0 = Math.max(0, y - height / 2);
+		final int x1 = Math.min(raster.getWidth(), x - width / 2 + width);
+		final int y1 = Math.min(raster.getHeight(), y - height / 2 + height);
+		double sum = 0;
+		int n = 0;
+		for (int j = y0; j < y1; j++) {
+			for (int i = x0; i < x1; i++) {
+				sum += raster.getSampleDouble(i, j, band);
+				n++;
+			}
+		}
+		final double mean = sum / n;
+		double squares = 0;
+		for (int j = y0; j < y1; j++) {
+			for (int i = x0; i < x1; i++) {
+				final double d = raster.getSampleDouble(i, j, band) - mean;
+				squares += d * d;
+			}
+		}
+		return new double[]{mean, squares / n};
+	}
+
+}
@@ -0,0 +1,121 @@
+package ch.unifr.diva.dip.awt.imaging.ops;
+
+import ch.unifr.diva.dip.api.datastructures.Mask;
+import ch.unifr.diva.dip.awt.TestUtils;
+import ch.unifr.diva.dip.awt.imaging.padders.ImagePadder;
+import ch.unifr.diva.dip.awt.imaging.scanners.PaddedImageTiler;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Morphology filter unit tests.
+ */
+public class MorphologyOpTest {
+
+	public final List<Integer> types = Arrays.asList(
+			BufferedImage.TYPE_BYTE_GRAY,
+			BufferedImage.TYPE_3BYTE_BGR,
+			BufferedImage.TYPE_INT_RGB,
+			BufferedImage.TYPE_USHORT_GRAY,
+			BufferedImage.TYPE_BYTE_BINARY
+	);
+
+	public final List<Mask> masks = Arrays.asList(
+			// rectangles and lines
+			new Mask(1, 1, true),
+			new Mask(3, 3, true, true, true, true, true, true, true, true, true),
+			new Mask(2, 4, true, true, true, true, true, true, true, true),
+			new Mask(1, 70).fill(true),
+			new Mask(9, 1).fill(true),
+			// diagonals
+			new Mask(3, 3,
+					true, false, false,
+					false, true, false,
+					false, false, true
+			),
+			new Mask(4, 4,
+					false, false, false, true,
+					false, false, true, false,
+					false, true, false, false,
+					true, false, false, false
+			),
+			// diamonds
+			new Mask(3, 3,
+					false, true, false,
+					true, true, true,
+					false, true, false
+			),
+			new Mask(7, 7,
+					false, false, false, true, false, false, false,
+					false, false, true, true, true, false, false,
+					false, true, true, true, true, true, false,
+					true, true, true, true, true, true, true,
+					false, true, true, true, true, true, false,
+					false, false, true, true, true, false, false,
+					false, false, false, true, false, false, false
+			),
+			// runs
+			new Mask(5, 5,
+					false, false, true, false, false,
+					false, true, true, true, false,
+					true, true, false, true, true,
+					false, true, true, true, false,
+					false, false, true, false, false
+			),
+			new Mask(2, 4,
+					true, false, true, true,
+					false, true, true, false
+			)
+	);
+
+	/**
+	 * Tests that erosion and dilation produce the same results as a rank
+	 * filter of rank {@code MIN} and {@code MAX} that sorts all samples under
+	 * the mask, on the whole image and with padded tiles, with and without
+	 * bit-packed processing of binary images.
+	 */
+	@Test
+	public void testRankEquivalence() {
+		for (int type : types) {
+			final BufferedImage src = TestUtils.newRandomImage(131, 29, type);
+			for (Mask mask : masks) {
+				for (MorphologyOp.Operation operation : MorphologyOp.Operation.values()) {
+					for (ImagePadder.Type padder : ImagePadder.Type.values()) {
+						final String message = "type=" + type
+								+ ", mask=" + mask.width() + "x" + mask.height()
+								+ ", operation=" + operation
+								+ ", padder=" + padder;
+						final RankOp sortOp = new RankOp(
+								operation.equals(MorphologyOp.Operation.EROSION)
+										? RankOp.Rank.MIN
+										: RankOp.Rank.MAX,
+								mask,
+								padder.getInstance()
+						);
+						sortOp.setSlidingHistogram(false);
+						sortOp.setMorphology(false);
+						final BufferedImage expected = sortOp.filter(src, null);
+
+						for (boolean bitPacked : new boolean[]{true, false}) {
+							final MorphologyOp op = new MorphologyOp(operation, mask, padder.getInstance());
+							op.setBitPacked(bitPacked);
+							final String msg = message + ", bitPacked=" + bitPacked;
+							TestUtils.assertSamplesEqual(msg, expected, op.filter(src, null));
+
+							// tiled padding wraps around tiles, not the image
+							if (!padder.equals(ImagePadder.Type.TILED)) {
+								final BufferedImage dst = op.createCompatibleDestImage(src);
+								final PaddedImageTiler tiler = op.getImageTiler(src, dst, 16, 8);
+								ConcurrentTileOp.processPaddedTiles(op, tiler, src, dst);
+								TestUtils.assertSamplesEqual(msg + ", tiled", expected, dst);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+package ch.unifr.diva.dip.awt.imaging.ops;
+
+import ch.unifr.diva.dip.api.datastructures.Mask;
+import ch.unifr.diva.dip.awt.TestUtils;
+import ch.unifr.diva.dip.awt.imaging.padders.ImagePadder;
+import ch.unifr.diva.dip.awt.imaging.scanners.PaddedImageTiler;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Rank filter unit tests.
+ */
+public class RankOpTest {
+
+	public final List<Integer> types = Arrays.asList(
+			BufferedImage.TYPE_BYTE_GRAY,
+			BufferedImage.TYPE_3BYTE_BGR,
+			BufferedImage.TYPE_INT_RGB,
+			BufferedImage.TYPE_USHORT_GRAY,
+			BufferedImage.TYPE_BYTE_BINARY,
+			-1 // BufferedMatrix
+	);
+
+	public final List<Mask> masks = Arrays.asList(
+			new Mask(1, 1, true),
+			new Mask(3, 3, true, true, true, true, true, true, true, true, true),
+			new Mask(3, 5,
+					true, true, true, true, true,
+					true, true, true, true, true,
+					true, true, true, true, true
+			),
+			new Mask(5, 5,
+					false, false, true, false, false,
+					false, true, true, true, false,
+					true, true, false, true, true,
+					false, true, true, true, false,
+					false, false, true, false, false
+			),
+			new Mask(2, 4,
+					true, false, true, true,
+					false, true, true, false
+			)
+	);
+
+	/**
+	 * Tests that the sliding histogram produces the same results as sorting
+	 * all samples under the mask, on the whole image and with padded tiles.
+	 */
+	@Test
+	public void testSlidingHistogram() {
+		for (int type : types) {
+			final BufferedImage src = TestUtils.newRandomImage(37, 23, type);
+			for (Mask mask : masks) {
+				for (RankOp.Rank rank : RankOp.Rank.values()) {
+					for (ImagePadder.Type padder : ImagePadder.Type.values()) {
+						final String message = "type=" + type
+								+ ", mask=" + mask.width() + "x" + mask.height()
+								+ ", rank=" + rank
+								+ ", padder=" + padder;
+						final RankOp sortOp = new RankOp(rank, mask, padder.getInstance());
+						sortOp.setSlidingHistogram(false);
+						sortOp.setMorphology(false);
+						final BufferedImage expected = sortOp.filter(src, null);
+						final RankOp op = new RankOp(rank, mask, padder.getInstance());
+						op.setMorphology(false);
+						TestUtils.assertSamplesEqual(message, expected, op.filter(src, null));
+
+						// tiled padding wraps around tiles, not the image
+						if (!padder.equals(ImagePadder.Type.TILED)) {
+							final BufferedImage dst = op.createCompatibleDestImage(src);
+							final PaddedImageTiler tiler = op.getImageTiler(src, dst, 8, 8);
+							ConcurrentTileOp.processPaddedTiles(op, tiler, src, dst);
+							TestUtils.assertSamplesEqual(message + ", tiled", expected, dst);
+						}
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,174 @@
+package ch.unifr.diva.dip.awt.imaging.ops;
+
+import ch.unifr.diva.dip.awt.TestUtils;
+import ch.unifr.diva.dip.awt.imaging.interpolation.Interpolation;
+import ch.unifr.diva.dip.awt.imaging.padders.ImagePadder;
+import ch.unifr.diva.dip.imaging.rescaling.ResamplingFilter;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Resample filter unit tests.
+ */
+public class ResampleOpTest {
+
+	public final List<Integer> types = Arrays.asList(
+			BufferedImage.TYPE_BYTE_GRAY,
+			BufferedImage.TYPE_3BYTE_BGR,
+			BufferedImage.TYPE_INT_RGB,
+			BufferedImage.TYPE_USHORT_GRAY,
+			BufferedImage.TYPE_BYTE_BINARY,
+			-1 // BufferedMatrix
+	);
+
+	public final double[] scales = new double[]{0.25, 0.4, 0.5, 1, 1.7, 3};
+
+	/**
+	 * Tests that separable resampling produces the same results as the
+	 * interpolation of single pixels, on the whole image and on tiles. Samples
+	 * may differ by one due to rounding errors that get truncated, or by
+	 * rounding errors for floating point samples.
+	 */
+	@Test
+	public void testSeparable() {
+		for (int type : types) {
+			final BufferedImage src = TestUtils.newRandomImage(37, 23, type);
+			final int numBands = src.getRaster().getNumBands();
+			final double maxValue = (type < 0) ? 1 : ((1 << src.getSampleModel().getSampleSize(0)) - 1);
+			final double[] min = new double[numBands];
+			final double[] max = new double[numBands];
+			Arrays.fill(max, maxValue);
+			final double delta = (type < 0) ? 1e-4 : 1;
+
+			for (Interpolation interpolation : Interpolation.values()) {
+				for (ImagePadder.Type padder : ImagePadder.Type.values()) {
+					for (double sx : scales) {
+						final double sy = scales[scales.length - 1] / sx;
+						final String message = "type=" + type
+								+ ", interpolation=" + interpolation
+								+ ", padder=" + padder
+								+ ", scale=" + sx + "x" + sy;
+						final ResampleOp expectedOp = new ResampleOp(
+								sx, sy, interpolation, padder.getInstance(), min, max
+						);
+						expectedOp.setSeparable(false);
+						final BufferedImage expected = expectedOp.filter(src, null);
+
+						final ResampleOp op = new ResampleOp(
+								sx, sy, interpolation, padder.getInstance(), min, max
+						);
+						assertResampled(message, expected, op, src, delta);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests filter functions equivalent to interpolation methods (for
+	 * upscaling).
+	 */
+	@Test
+	public void testFilterFunctionUpscaling() {
+		final BufferedImage src = TestUtils.newRandomImage(37, 23, -1);
+		final double[] min = new double[]{0, 0, 0};
+		final double[] max = new double[]{1, 1, 1};
+		for (double scale : new double[]{1, 1.7, 3}) {
+			for (Interpolation interpolation : new Interpolation[]{Interpolation.BILINEAR, Interpolation.BICUBIC}) {
+				final ResampleOp expectedOp = new ResampleOp(scale, scale, interpolation, min, max);
+				expectedOp.setSeparable(false);
+				final ResampleOp op = new ResampleOp(
+						scale,
+						scale,
+						interpolation.equals(Interpolation.BILINEAR)
+								? ResamplingFilter.TRIANGLE
+								: ResamplingFilter.CATMULL_ROM,
+						min,
+						max
+				);
+				assertResampled(
+						"interpolation=" + interpolation + ", scale=" + scale,
+						expectedOp.filter(src, null), op, src, 1e-4
+				);
+			}
+		}
+	}
+
+	/**
+	 * Tests downscaling with a box filter, which takes the mean of all covered
+	 * source samples.
+	 */
+	@Test
+	public void testFilterFunctionDownscaling() {
+		final BufferedImage src = TestUtils.newRandomImage(40, 24, -1);
+		final Raster in = src.getRaster();
+		final ResampleOp op = new ResampleOp(0.5, 0.5, ResamplingFilter.BOX, null, null);
+		final BufferedImage dst = op.filter(src, null);
+		assertEquals("width", 20, dst.getWidth());
+		assertEquals("height", 12, dst.getHeight());
+
+		final BufferedImage expected = op.createCompatibleDestImage(src);
+		final WritableRaster out = expected.getRaster();
+		for (int band = 0; band < in.getNumBands(); band++) {
+			for (int y = 0; y < out.getHeight(); y++) {
+				for (int x = 0; x < out.getWidth(); x++) {
+					// centered on 2x - 0.5 (see PIXEL_SHIFT), with extended border
+					double sum = 0;
+					for (int j = 2 * y - 1; j <= 2 * y; j++) {
+						for (int i = 2 * x - 1; i <= 2 * x; i++) {
+							sum += in.getSampleDouble(Math.max(0, i), Math.max(0, j), band);
+						}
+					}
+					out.setSample(x, y, band, sum / 4);
+				}
+			}
+		}
+		TestUtils.assertSamplesEqual("box", expected, dst, 1e-4);
+	}
+
+	/**
+	 * Tests that all filter functions preserve a constant image.
+	 */
+	@Test
+	public void testFilterFunctions() {
+		final BufferedImage src = new BufferedImage(53, 31, BufferedImage.TYPE_BYTE_GRAY);
+		final WritableRaster raster = src.getRaster();
+		for (int y = 0; y < src.getHeight(); y++) {
+			for (int x = 0; x < src.getWidth(); x++) {
+				raster.setSample(x, y, 0, 100);
+			}
+		}
+		for (ResamplingFilter filter : ResamplingFilter.values()) {
+			for (double scale : new double[]{0.1, 0.25, 0.5, 0.7}) {
+				final ResampleOp op = new ResampleOp(
+						scale, scale, filter, new double[]{0}, new double[]{255}
+				);
+				final BufferedImage dst = op.filter(src, null);
+				final String message = "filter=" + filter + ", scale=" + scale;
+				for (int y = 0; y < dst.getHeight(); y++) {
+					for (int x = 0; x < dst.getWidth(); x++) {
+						assertEquals(message, 100, dst.getRaster().getSampleDouble(x, y, 0), 1);
+					}
+				}
+				assertResampled(message, dst, op, src, 0);
+			}
+		}
+	}
+
+	private void assertResampled(String message, BufferedImage expected, ResampleOp op, BufferedImage src, double delta) {
+		final BufferedImage dst = op.filter(src, null);
+		assertEquals(message + ", width", expected.getWidth(), dst.getWidth());
+		assertEquals(message + ", height", expected.getHeight(), dst.getHeight());
+		TestUtils.assertSamplesEqual(message, expected, dst, delta);
+
+		final BufferedImage tiled = op.createCompatibleDestImage(src);
+		ConcurrentTileOp.processMappedTiles(op, op.getImageTiler(src, tiled, 16, 8), src, tiled);
+		TestUtils.assertSamplesEqual(message + ", tiled", dst, tiled);
+	}
+
+}
@@ -0,0 +1,154 @@
+package ch.unifr.diva.dip.awt.imaging.ops;
+
+import ch.unifr.diva.dip.awt.TestUtils;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Lookup table unit tests.
+ */
+public class SampleLookupTableTest {
+
+	public final List<Integer> types = Arrays.asList(
+			BufferedImage.TYPE_BYTE_GRAY,
+			BufferedImage.TYPE_3BYTE_BGR,
+			BufferedImage.TYPE_INT_RGB,
+			BufferedImage.TYPE_USHORT_GRAY,
+			BufferedImage.TYPE_BYTE_BINARY
+	);
+
+	public RescaleOp newGainBiasOp(boolean abs, NullOp.SamplePrecision precision) {
+		return new RescaleOp(
+				new boolean[]{abs, false, abs},
+				new double[]{1.7, 0.5, -2.3},
+				new double[]{-13, 20.5, 300},
+				new double[]{0, 0, 0},
+				new double[]{255, 255, 255},
+				precision
+		);
+	}
+
+	public RescaleOp newRangeOp(NullOp.SamplePrecision precision) {
+		return new RescaleOp(
+				new double[][]{{0, 255}, {0, 65535}, {10, 200}},
+				new double[][]{{0, 1}, {0, 255}, {255, 0}},
+				precision
+		);
+	}
+
+	public InvertOp newInvertOp(boolean range) {
+		return range
+				? new InvertOp(new double[]{10, 0}, new double[]{200, 127})
+				: new InvertOp();
+	}
+
+	public GlobalThresholdOp newThresholdOp(int threshold) {
+		final GlobalThresholdOp op = new GlobalThresholdOp(0);
+		op.setThreshold(threshold);
+		return op;
+	}
+
+	/**
+	 * Tests that the point ops produce the same results with, and without a
+	 * lookup table, on the whole image and on tiles.
+	 */
+	@Test
+	public void testPointOps() {
+		for (int type : types) {
+			final BufferedImage src = TestUtils.newRandomImage(67, 23, type);
+			for (NullOp.SamplePrecision precision : NullOp.SamplePrecision.values()) {
+				for (boolean abs : new boolean[]{true, false}) {
+					final RescaleOp op = newGainBiasOp(abs, precision);
+					final RescaleOp expectedOp = newGainBiasOp(abs, precision);
+					expectedOp.setTableLookup(false);
+					assertLookupEquals(
+							"rescale gain/bias, type=" + type + ", precision=" + precision,
+							expectedOp.filter(src, null), op, src
+					);
+				}
+				final RescaleOp op = newRangeOp(precision);
+				final RescaleOp expectedOp = newRangeOp(precision);
+				expectedOp.setTableLookup(false);
+				assertLookupEquals(
+						"rescale range, type=" + type + ", precision=" + precision,
+						expectedOp.filter(src, null), op, src
+				);
+			}
+
+			for (boolean range : new boolean[]{true, false}) {
+				final InvertOp op = newInvertOp(range);
+				final InvertOp expectedOp = newInvertOp(range);
+				expectedOp.setTableLookup(false);
+				assertLookupEquals(
+						"invert, type=" + type + ", range=" + range,
+						expectedOp.filter(src, null), op, src
+				);
+			}
+
+			for (int threshold : new int[]{-1, 0, 127, 1000}) {
+				final GlobalThresholdOp op = newThresholdOp(threshold);
+				final GlobalThresholdOp expectedOp = newThresholdOp(threshold);
+				expectedOp.setTableLookup(false);
+				assertLookupEquals(
+						"threshold, type=" + type + ", threshold=" + threshold,
+						expectedOp.filter(src, null), op, src
+				);
+			}
+		}
+	}
+
+	/**
+	 * Tests that filtering a region of the full images produces the same
+	 * result as filtering sub-images, and leaves the rest of the destination
+	 * image untouched.
+	 */
+	@Test
+	public void testFilterRegion() {
+		final Rectangle region = new Rectangle(5, 3, 51, 17);
+		for (int type : types) {
+			final BufferedImage src = TestUtils.newRandomImage(67, 23, type);
+			for (boolean tableLookup : new boolean[]{true, false}) {
+				final RescaleOp rescaleOp = newGainBiasOp(true, NullOp.SamplePrecision.BYTE);
+				final InvertOp invertOp = newInvertOp(false);
+				final GlobalThresholdOp thresholdOp = newThresholdOp(100);
+				rescaleOp.setTableLookup(tableLookup);
+				invertOp.setTableLookup(tableLookup);
+				thresholdOp.setTableLookup(tableLookup);
+				for (NullOp op : Arrays.<NullOp>asList(rescaleOp, invertOp, thresholdOp)) {
+					final String msg = op.getClass().getSimpleName()
+							+ ", type=" + type
+							+ ", tableLookup=" + tableLookup;
+					final BufferedImage expected = op.createCompatibleDestImage(src, src.getColorModel());
+					op.filter(
+							src.getSubimage(region.x, region.y, region.width, region.height),
+							expected.getSubimage(region.x, region.y, region.width, region.height)
+					);
+					final BufferedImage actual = op.createCompatibleDestImage(src, src.getColorModel());
+					((SimpleTileParallelizable) op).filterRegion(src, actual, region);
+					TestUtils.assertSamplesEqual(msg, expected, actual);
+				}
+			}
+		}
+	}
+
+	private void assertLookupEquals(String message, BufferedImage expected, NullOp op, BufferedImage src) {
+		final BufferedImage dst = op.filter(src, null);
+		assertEquals(message + ", image class", expected.getClass(), dst.getClass());
+		assertEquals(message + ", image type", expected.getType(), dst.getType());
+		TestUtils.assertSamplesEqual(message, expected, dst);
+
+		final BufferedImage tiled = op.createCompatibleDestImage(dst);
+		ConcurrentTileOp.processTiles(
+				(SimpleTileParallelizable) op,
+				((SimpleTileParallelizable) op).getImageTiler(src, tiled, 16, 8),
+				src,
+				tiled
+		);
+		TestUtils.assertSamplesEqual(message + ", tiled", expected, tiled);
+	}
+
+}
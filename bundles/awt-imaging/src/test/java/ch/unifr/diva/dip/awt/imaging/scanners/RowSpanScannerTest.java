@@ -0,0 +1,98 @@
+package ch.unifr.diva.dip.awt.imaging.scanners;
+
+import ch.unifr.diva.dip.awt.TestUtils;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Row span scanner unit tests.
+ */
+public class RowSpanScannerTest {
+
+	public final List<Integer> types = Arrays.asList(
+			BufferedImage.TYPE_BYTE_GRAY,
+			BufferedImage.TYPE_3BYTE_BGR,
+			BufferedImage.TYPE_INT_RGB,
+			BufferedImage.TYPE_USHORT_GRAY,
+			BufferedImage.TYPE_BYTE_BINARY,
+			-1 // BufferedMatrix
+	);
+
+	@Test
+	public void scannerTest() {
+		for (int type : types) {
+			final BufferedImage image = TestUtils.newRandomImage(47, 21, type);
+			// a subimage, s.t. the sample model is translated
+			final BufferedImage sub = image.getSubimage(5, 3, 31, 17);
+			final Raster raster = sub.getRaster();
+			final int numBands = raster.getNumBands();
+			final int[] samples = new int[sub.getWidth()];
+			final int[] expected = new int[sub.getWidth()];
+
+			int n = 0;
+			for (RowSpan span : new RowSpanScanner(raster)) {
+				assertEquals("row", n / numBands, span.row);
+				assertEquals("band", n % numBands, span.band);
+				assertEquals("x0", 0, span.x0);
+				assertEquals("x1", sub.getWidth(), span.x1);
+
+				span.getSamples(samples);
+				raster.getSamples(0, span.row, span.length(), 1, span.band, expected);
+				assertArrayEquals("samples", expected, samples);
+
+				if (span.hasArray() && span.array instanceof byte[]) {
+					final byte[] data = (byte[]) span.array;
+					for (int i = 0; i < span.length(); i++) {
+						final int v = (data[span.offset + i * span.stride] & 0xFF & span.mask) >>> span.shift;
+						assertEquals("backing array", expected[i], v);
+					}
+				}
+				n++;
+			}
+			assertEquals("number of spans", sub.getHeight() * numBands, n);
+		}
+	}
+
+	@Test
+	public void regionTest() {
+		for (int type : types) {
+			final BufferedImage src = TestUtils.newRandomImage(47, 21, type);
+			final BufferedImage dst = TestUtils.newRandomImage(47, 21, type);
+			final WritableRaster dstRaster = dst.getRaster();
+			final Rectangle region = new Rectangle(7, 2, 19, 11);
+			final int numBands = dstRaster.getNumBands();
+			final int band = numBands - 1;
+			final RowSpanScanner dstSpans = new RowSpanScanner(dstRaster, region, band, 1);
+			final double[] samples = new double[region.width];
+
+			int n = 0;
+			for (RowSpan span : new RowSpanScanner(src.getRaster(), region, band, 1)) {
+				assertEquals("row", region.y + n, span.row);
+				assertEquals("band", band, span.band);
+				dstSpans.next().setSamples(span.getSamples(samples));
+				n++;
+			}
+			assertFalse(dstSpans.hasNext());
+			assertEquals("number of spans", region.height, n);
+
+			for (int y = 0; y < dst.getHeight(); y++) {
+				for (int x = 0; x < dst.getWidth(); x++) {
+					if (region.contains(x, y)) {
+						assertEquals(
+								src.getRaster().getSampleDouble(x, y, band),
+								dstRaster.getSampleDouble(x, y, band),
+								0
+						);
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -2,6 +2,10 @@ package ch.unifr.diva.dip.awt.imaging.scanners;
 
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -43,4 +47,35 @@ public class SimpleImageTilerTest extends ImageTilerTestBase {
 		}
 	}
 
+	@Test
+	public void concurrentTest() throws InterruptedException {
+		final BufferedImage image = new BufferedImage(2048, 1033, BufferedImage.TYPE_BYTE_BINARY);
+		final SimpleImageTiler tiler = new SimpleImageTiler(image, 32, 16);
+		final List<Rectangle> tiles = tiler.getTiles();
+		assertEquals("number of tiles", tiler.getNumTiles(), tiles.size());
+
+		// every tile is handed out exactly once, no matter the number of threads
+		final ConcurrentHashMap<Rectangle, AtomicInteger> counts = new ConcurrentHashMap<>();
+		final List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			final Thread thread = new Thread(() -> {
+				Rectangle tile;
+				while ((tile = tiler.next()) != null) {
+					counts.computeIfAbsent(tile, (t) -> new AtomicInteger()).incrementAndGet();
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertFalse("exhausted tiler", tiler.hasNext());
+		assertEquals("number of processed tiles", tiles.size(), counts.size());
+		for (Rectangle tile : tiles) {
+			assertEquals("tile processed once: " + tile, 1, counts.get(tile).get());
+		}
+	}
+
 }
@@ -455,41 +455,24 @@ public class ConvolutionFilter extends ProcessableBase implements Previewable {
 	}
 
 	private BufferedImage doProcess(ProcessorContext context, BufferedImage src, ProcessConfig cfg) {
-		final BufferedImage image;
-
-		// We need to manually do the two passes if run in parallel, or
-		// errors will be produced (see ConvolutionOp)
-		if (cfg.columnVector != null) {
-			// 2-pass convolution
-			ConvolutionOp<?> op = getConvolutionOp(cfg.columnVector, cfg.padderType);
-			final BufferedImage tmp = Filter.filter(
-					context, op, src,
-					getCompatibleDestImage(op, src)
-			);
-
-			op = getConvolutionOp(cfg.kernel, cfg.padderType);
-			image = Filter.filter(
-					context, op, tmp,
-					getCompatibleDestImage(op, src)
-			);
-		} else {
-			// 1-pass convolution
-			final ConvolutionOp<?> op = getConvolutionOp(cfg.kernel, cfg.padderType);
-
-			image = Filter.filter(
-					context, op, src,
-					getCompatibleDestImage(op, src)
-			);
-		}
+		// 1-pass convolution, or 2-pass convolution if the column vector is set
+		final ConvolutionOp<?> op = getConvolutionOp(
+				cfg.kernel,
+				cfg.columnVector,
+				cfg.padderType
+		);
 
-		return image;
+		return Filter.filter(
+				context, op, src,
+				getCompatibleDestImage(op, src)
+		);
 	}
 
 	@SuppressWarnings({"rawtypes", "unchecked"})
-	private ConvolutionOp<?> getConvolutionOp(Kernel kernel, ImagePadder.Type padderType) {
+	private ConvolutionOp<?> getConvolutionOp(Kernel kernel, Kernel columnVector, ImagePadder.Type padderType) {
 		return new ConvolutionOp<>(
 				kernel,
-				null,
+				columnVector,
 				padderType.getInstance(),
 				this.rescaleUnit.getAbs(),
 				this.rescaleUnit.getGain(),
@@ -235,6 +235,11 @@ public class DifferenceOfGaussians extends ProcessableBase implements Previewabl
 	}
 
 	private void dogInplace(FImage fimage) {
+		dogInplace(fimage, 1.0f);
+	}
+
+	// sigmas are given in pixels, and get scaled for previews at a reduced scale
+	private void dogInplace(FImage fimage, float scale) {
 		float s1 = sigma1.getFloat();
 		if (!Float.isFinite(s1) || s1 < 0) {
 			log.warn("invalid sigma1: {}. Sigma1 is reset to 1.0f.", s1);
@@ -246,7 +251,7 @@ public class DifferenceOfGaussians extends ProcessableBase implements Previewabl
 			s2 = 2.0f;
 		}
 
-		final DifferenceOfGaussian dog = new DifferenceOfGaussian(s1, s2);
+		final DifferenceOfGaussian dog = new DifferenceOfGaussian(s1 * scale, s2 * scale);
 		dog.processImage(fimage);
 
 		switch (normalization.getSelectedIndex()) {
@@ -380,6 +385,16 @@ public class DifferenceOfGaussians extends ProcessableBase implements Previewabl
 
 	@Override
 	public Image preview(ProcessorContext context, Rectangle bounds) {
+		return preview(context, bounds, 1.0);
+	}
+
+	@Override
+	public boolean isProgressivePreview() {
+		return true;
+	}
+
+	@Override
+	public Image preview(ProcessorContext context, Rectangle bounds, double scale) {
 		if (isForceFloat()) {
 			return null;
 		}
@@ -387,14 +402,15 @@ public class DifferenceOfGaussians extends ProcessableBase implements Previewabl
 		if (source instanceof BufferedMatrix) {
 			return null;
 		}
-		final BufferedImage image = source.getSubimage(
-				bounds.x,
-				bounds.y,
-				bounds.width,
-				bounds.height
-		);
+		final BufferedImage image = Previewable.getPreviewRegion(source, bounds, scale);
 		final FImage fimage = OpenIMAJUtils.toFImage(image, getBand(image));
-		dogInplace(fimage);
+		if (Thread.currentThread().isInterrupted()) {
+			return null;
+		}
+		dogInplace(fimage, (float) scale);
+		if (Thread.currentThread().isInterrupted()) {
+			return null;
+		}
 		final BufferedImage preview = OpenIMAJUtils.toBufferedImage(fimage);
 		return SwingFXUtils.toFXImage(preview, null);
 	}